@@ -18,7 +18,9 @@ package smartfire;
 
 import java.io.File;
 import smartfire.database.DatabaseConnection;
+import smartfire.export.ExportCache;
 import smartfire.gis.GeometryBuilder;
+import smartfire.gis.RenderCache;
 import smartfire.queue.JobQueue;
 import smartfire.queue.JobScheduler;
 
@@ -33,8 +35,10 @@ public class ApplicationSettings {
     private final JobQueue jobQueue;
     private final JobScheduler scheduler;
     private final GeometryBuilder geometryBuilder;
+    private final ExportCache exportCache;
+    private final RenderCache renderCache;
 
-    ApplicationSettings(File homeDir, Config config, DatabaseConnection conn, VersionInfo version, JobQueue jobQueue, JobScheduler scheduler, GeometryBuilder geometryBuilder) {
+    ApplicationSettings(File homeDir, Config config, DatabaseConnection conn, VersionInfo version, JobQueue jobQueue, JobScheduler scheduler, GeometryBuilder geometryBuilder, ExportCache exportCache, RenderCache renderCache) {
         this.homeDir = homeDir;
         this.config = config;
         this.conn = conn;
@@ -42,6 +46,8 @@ public class ApplicationSettings {
         this.jobQueue = jobQueue;
         this.scheduler = scheduler;
         this.geometryBuilder = geometryBuilder;
+        this.exportCache = exportCache;
+        this.renderCache = renderCache;
     }
 
     public File getHomeDir() {
@@ -71,4 +77,12 @@ public class ApplicationSettings {
     public GeometryBuilder getGeometryBuilder() {
         return this.geometryBuilder;
     }
+
+    public ExportCache getExportCache() {
+        return this.exportCache;
+    }
+
+    public RenderCache getRenderCache() {
+        return this.renderCache;
+    }
 }
@@ -57,9 +57,26 @@ public class Config {
     private String databaseUsername = "postgres";
     private String databasePassword = "admin";
     private Integer numThreads = Runtime.getRuntime().availableProcessors();
+    private Integer numFetchThreads = 4;
+    private Integer numMaintenanceThreads = 1;
+    private Integer numReconciliationThreads = 1;
+    private Integer numAssociationThreads = 1;
+    private Integer numSummaryLayerThreads = 1;
     private String coordSysWKT = "PROJCS[\"North_America_Albers_Equal_Area_Conic\",GEOGCS[\"GCS_North_American_1983\",DATUM[\"D_North_American_1983\",SPHEROID[\"GRS_1980\",6378137.0,298.257222101]],PRIMEM[\"Greenwich\",0.0],UNIT[\"Degree\",0.0174532925199433]],PROJECTION[\"Albers\"],PARAMETER[\"False_Easting\",0.0],PARAMETER[\"False_Northing\",0.0],PARAMETER[\"Central_Meridian\",-96.0],PARAMETER[\"Standard_Parallel_1\",20.0],PARAMETER[\"Standard_Parallel_2\",60.0],PARAMETER[\"Latitude_Of_Origin\",40.0],UNIT[\"Meter\",1.0]]";
     private String timeZone = "America/Los_Angeles";
     private String realtimeStreamNameSlug = "realtime";
+    private Integer renderCacheSizeMB = 16;
+    private Boolean renderCacheOnDisk = false;
+    private Boolean pipelinedAssociation = false;
+    private Integer backfillBatchSize = 1;
+    private Boolean persistentJobQueue = false;
+    private Boolean coordinatedFetchRounds = false;
+    private Boolean incrementalClumping = false;
+    private Boolean deferredEventFields = false;
+    private Boolean incrementalReconciliation = false;
+    private Integer clumpJobTimeLimitMinutes = 0;
+    private Integer associationJobTimeLimitMinutes = 0;
+    private Integer reconciliationJobTimeLimitMinutes = 0;
     @XStreamImplicit(itemFieldName="user")
     private List<User> users = Lists.newArrayList(User.newUser("admin", "admin"));
     private transient Map<String, User> userMap = null;
@@ -87,6 +104,12 @@ public class Config {
         this.coordSysWKT = coordSysWKT;
     }
 
+    /**
+     * Gets the number of threads for geometry processing jobs (clumping,
+     * association and reconciliation).
+     *
+     * @return a number of threads
+     */
     public int getNumThreads() {
         return numThreads;
     }
@@ -95,6 +118,77 @@ public class Config {
         this.numThreads = numThreads;
     }
 
+    /**
+     * Gets the number of threads for fetch and ingest jobs.
+     *
+     * @return a number of threads
+     */
+    public int getNumFetchThreads() {
+        return numFetchThreads;
+    }
+
+    public void setNumFetchThreads(Integer numFetchThreads) {
+        this.numFetchThreads = numFetchThreads;
+    }
+
+    /**
+     * Gets the number of threads for export and maintenance jobs.
+     *
+     * @return a number of threads
+     */
+    public int getNumMaintenanceThreads() {
+        return numMaintenanceThreads;
+    }
+
+    public void setNumMaintenanceThreads(Integer numMaintenanceThreads) {
+        this.numMaintenanceThreads = numMaintenanceThreads;
+    }
+
+    /**
+     * Gets the number of threads each reconciliation job may use to reconcile
+     * spatially independent groups of fires concurrently; 1 reconciles all
+     * fires on the job's own thread.
+     *
+     * @return a number of threads
+     */
+    public int getNumReconciliationThreads() {
+        return numReconciliationThreads;
+    }
+
+    public void setNumReconciliationThreads(Integer numReconciliationThreads) {
+        this.numReconciliationThreads = numReconciliationThreads;
+    }
+
+    /**
+     * Gets the number of threads each association job may use to associate
+     * spatially independent groups of clumps concurrently; 1 associates all
+     * clumps on the job's own thread.
+     *
+     * @return a number of threads
+     */
+    public int getNumAssociationThreads() {
+        return numAssociationThreads;
+    }
+
+    public void setNumAssociationThreads(Integer numAssociationThreads) {
+        this.numAssociationThreads = numAssociationThreads;
+    }
+
+    /**
+     * Gets the number of threads each reconciliation job may use to read
+     * summary data layers for its reconciled events concurrently; 1 reads
+     * every layer for every event on the job's own thread.
+     *
+     * @return a number of threads
+     */
+    public int getNumSummaryLayerThreads() {
+        return numSummaryLayerThreads;
+    }
+
+    public void setNumSummaryLayerThreads(Integer numSummaryLayerThreads) {
+        this.numSummaryLayerThreads = numSummaryLayerThreads;
+    }
+
     public String getDatabaseHost() {
         return databaseHost;
     }
@@ -143,6 +237,146 @@ public class Config {
         this.realtimeStreamNameSlug = realtimeStream;
     }
 
+    public int getRenderCacheSizeMB() {
+        return renderCacheSizeMB;
+    }
+
+    public void setRenderCacheSizeMB(Integer renderCacheSizeMB) {
+        this.renderCacheSizeMB = renderCacheSizeMB;
+    }
+
+    public boolean isRenderCacheOnDisk() {
+        return renderCacheOnDisk;
+    }
+
+    public void setRenderCacheOnDisk(Boolean renderCacheOnDisk) {
+        this.renderCacheOnDisk = renderCacheOnDisk;
+    }
+
+    public boolean isPipelinedAssociation() {
+        return pipelinedAssociation;
+    }
+
+    public void setPipelinedAssociation(Boolean pipelinedAssociation) {
+        this.pipelinedAssociation = pipelinedAssociation;
+    }
+
+    public int getBackfillBatchSize() {
+        return backfillBatchSize;
+    }
+
+    public void setBackfillBatchSize(Integer backfillBatchSize) {
+        this.backfillBatchSize = backfillBatchSize;
+    }
+
+    public boolean isPersistentJobQueue() {
+        return persistentJobQueue;
+    }
+
+    public void setPersistentJobQueue(Boolean persistentJobQueue) {
+        this.persistentJobQueue = persistentJobQueue;
+    }
+
+    /**
+     * Gets whether ScheduledFetches that are due in the same minute run
+     * together as one round, reconciling each stream once per round.
+     *
+     * @return true if fetches are scheduled in rounds
+     */
+    public boolean isCoordinatedFetchRounds() {
+        return coordinatedFetchRounds;
+    }
+
+    public void setCoordinatedFetchRounds(Boolean coordinatedFetchRounds) {
+        this.coordinatedFetchRounds = coordinatedFetchRounds;
+    }
+
+    /**
+     * Gets whether clumping jobs merge newly arrived data into the existing
+     * clumps of their interval instead of only clumping the new records.
+     *
+     * @return true if clumping is incremental
+     */
+    public boolean isIncrementalClumping() {
+        return incrementalClumping;
+    }
+
+    public void setIncrementalClumping(Boolean incrementalClumping) {
+        this.incrementalClumping = incrementalClumping;
+    }
+
+    /**
+     * Gets whether reconciliation jobs compute the derived fields of each
+     * changed event once at the end of the job, rather than every time a
+     * fire is added to it.
+     *
+     * @return true if event fields are computed once per job
+     */
+    public boolean isDeferredEventFields() {
+        return deferredEventFields;
+    }
+
+    public void setDeferredEventFields(Boolean deferredEventFields) {
+        this.deferredEventFields = deferredEventFields;
+    }
+
+    /**
+     * Gets whether reconciliation jobs only reconcile the fires that changed
+     * since their events were last reconciled, rather than every fire in
+     * their date range.
+     *
+     * @return true if reconciliation is incremental
+     */
+    public boolean isIncrementalReconciliation() {
+        return incrementalReconciliation;
+    }
+
+    public void setIncrementalReconciliation(Boolean incrementalReconciliation) {
+        this.incrementalReconciliation = incrementalReconciliation;
+    }
+
+    /**
+     * Gets the number of minutes a clumping job may run for before it is
+     * cancelled, or zero for no limit.
+     *
+     * @return the time limit in minutes
+     */
+    public int getClumpJobTimeLimitMinutes() {
+        return clumpJobTimeLimitMinutes;
+    }
+
+    public void setClumpJobTimeLimitMinutes(Integer clumpJobTimeLimitMinutes) {
+        this.clumpJobTimeLimitMinutes = clumpJobTimeLimitMinutes;
+    }
+
+    /**
+     * Gets the number of minutes a association job may run for before it is
+     * cancelled, or zero for no limit.
+     *
+     * @return the time limit in minutes
+     */
+    public int getAssociationJobTimeLimitMinutes() {
+        return associationJobTimeLimitMinutes;
+    }
+
+    public void setAssociationJobTimeLimitMinutes(Integer associationJobTimeLimitMinutes) {
+        this.associationJobTimeLimitMinutes = associationJobTimeLimitMinutes;
+    }
+
+    /**
+     * Gets the number of minutes a reconciliation job may run for before it is
+     * cancelled, or zero for no limit.
+     *
+     * @return the time limit in minutes
+     */
+    public int getReconciliationJobTimeLimitMinutes() {
+        return reconciliationJobTimeLimitMinutes;
+    }
+
+    public void setReconciliationJobTimeLimitMinutes(Integer reconciliationJobTimeLimitMinutes) {
+        this.reconciliationJobTimeLimitMinutes = reconciliationJobTimeLimitMinutes;
+    }
+
     public List<User> getUsers() {
         return Collections.unmodifiableList(users);
     }
@@ -205,6 +439,26 @@ public class Config {
             this.numThreads = new Config().getNumThreads();
             configCorrupt = true;
         }
+        if(this.numFetchThreads == null) {
+            this.numFetchThreads = new Config().getNumFetchThreads();
+            configCorrupt = true;
+        }
+        if(this.numMaintenanceThreads == null) {
+            this.numMaintenanceThreads = new Config().getNumMaintenanceThreads();
+            configCorrupt = true;
+        }
+        if(this.numReconciliationThreads == null) {
+            this.numReconciliationThreads = new Config().getNumReconciliationThreads();
+            configCorrupt = true;
+        }
+        if(this.numAssociationThreads == null) {
+            this.numAssociationThreads = new Config().getNumAssociationThreads();
+            configCorrupt = true;
+        }
+        if(this.numSummaryLayerThreads == null) {
+            this.numSummaryLayerThreads = new Config().getNumSummaryLayerThreads();
+            configCorrupt = true;
+        }
         if(this.coordSysWKT == null) {
             this.coordSysWKT = new Config().getCoordSysWKT();
             configCorrupt = true;
@@ -217,6 +471,54 @@ public class Config {
             this.realtimeStreamNameSlug = new Config().getRealtimeStreamNameSlug();
             configCorrupt = true;
         }
+        if(this.renderCacheSizeMB == null) {
+            this.renderCacheSizeMB = new Config().getRenderCacheSizeMB();
+            configCorrupt = true;
+        }
+        if(this.renderCacheOnDisk == null) {
+            this.renderCacheOnDisk = new Config().isRenderCacheOnDisk();
+            configCorrupt = true;
+        }
+        if(this.pipelinedAssociation == null) {
+            this.pipelinedAssociation = new Config().isPipelinedAssociation();
+            configCorrupt = true;
+        }
+        if(this.backfillBatchSize == null) {
+            this.backfillBatchSize = new Config().getBackfillBatchSize();
+            configCorrupt = true;
+        }
+        if(this.persistentJobQueue == null) {
+            this.persistentJobQueue = new Config().isPersistentJobQueue();
+            configCorrupt = true;
+        }
+        if(this.coordinatedFetchRounds == null) {
+            this.coordinatedFetchRounds = new Config().isCoordinatedFetchRounds();
+            configCorrupt = true;
+        }
+        if(this.incrementalClumping == null) {
+            this.incrementalClumping = new Config().isIncrementalClumping();
+            configCorrupt = true;
+        }
+        if(this.deferredEventFields == null) {
+            this.deferredEventFields = new Config().isDeferredEventFields();
+            configCorrupt = true;
+        }
+        if(this.incrementalReconciliation == null) {
+            this.incrementalReconciliation = new Config().isIncrementalReconciliation();
+            configCorrupt = true;
+        }
+        if(this.clumpJobTimeLimitMinutes == null) {
+            this.clumpJobTimeLimitMinutes = new Config().getClumpJobTimeLimitMinutes();
+            configCorrupt = true;
+        }
+        if(this.associationJobTimeLimitMinutes == null) {
+            this.associationJobTimeLimitMinutes = new Config().getAssociationJobTimeLimitMinutes();
+            configCorrupt = true;
+        }
+        if(this.reconciliationJobTimeLimitMinutes == null) {
+            this.reconciliationJobTimeLimitMinutes = new Config().getReconciliationJobTimeLimitMinutes();
+            configCorrupt = true;
+        }
         if(this.users == null) {
             this.users = Lists.newArrayList(new Config().getUsers());
             configCorrupt = true;
@@ -16,10 +16,12 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire;
 
+import com.google.common.base.Supplier;
 import java.util.Arrays;
 import java.util.List;
 import org.joda.time.DateTime;
 import smartfire.database.*;
+import smartfire.export.ExportCache;
 import smartfire.export.Exportable;
 
 public class DataView<T extends Exportable> extends DateIndexedView {
@@ -53,38 +55,23 @@ public class DataView<T extends Exportable> extends DateIndexedView {
     }
 
     @Override
-    protected Object getViewObjectByDate(DateTime startDate, DateTime endDate) {
+    protected Object getViewObjectByDate(final DateTime startDate, final DateTime endDate) {
         String individualLinkField = null;
         String individualLinkPrefix = null;
-        List<? extends Exportable> dataList = null;
-        if(endDate == null) {
-            if(RawData.class == klass) {
-                dataList = this.conn.getRawData().getByDate(source, startDate);
-            } else if(Clump.class == klass) {
-                dataList = this.conn.getClump().getByDate(source, startDate);
-            } else if(Fire.class == klass) {
-                dataList = this.conn.getFire().getByDate(source, startDate);
-                individualLinkField = "unique_id";
-                individualLinkPrefix = "/data/" + source.getNameSlug() + "/fire/";
-            }
-        } else {
-            if(RawData.class == klass) {
-                dataList = this.conn.getRawData().getByDate(source, startDate, endDate);
-            } else if(Clump.class == klass) {
-                dataList = this.conn.getClump().getByDate(source, startDate, endDate);
-            } else if(Fire.class == klass) {
-                dataList = this.conn.getFire().getByDate(source, startDate, endDate);
-                individualLinkField = "unique_id";
-                individualLinkPrefix = "/data/" + source.getNameSlug() + "/fire/";
-            }
-        }
-
-        if(dataList == null) {
+        if(Fire.class == klass) {
+            individualLinkField = "unique_id";
+            individualLinkPrefix = "/data/" + source.getNameSlug() + "/fire/";
+        } else if(RawData.class != klass && Clump.class != klass) {
             return null;
         }
-
-        @SuppressWarnings("unchecked")
-        List<T> entities = (List<T>) dataList;
+        Supplier<List<T>> entities = new Supplier<List<T>>() {
+            @Override
+            public List<T> get() {
+                @SuppressWarnings("unchecked")
+                List<T> dataList = (List<T>) getDataList(startDate, endDate);
+                return dataList;
+            }
+        };
         
         // Get display string for dates
         String dateString;
@@ -103,6 +90,7 @@ public class DataView<T extends Exportable> extends DateIndexedView {
                 startDate,
                 endDate,
                 entities,
+                ExportCache.scopeFor(source),
                 source.getName() + " " + dataType,
                 Arrays.asList("Data", source.getName(), dataType, dateString),
                 Arrays.asList(
@@ -114,6 +102,26 @@ public class DataView<T extends Exportable> extends DateIndexedView {
                 individualLinkPrefix);
     }
 
+    private List<? extends Exportable> getDataList(DateTime startDate, DateTime endDate) {
+        if(endDate == null) {
+            if(RawData.class == klass) {
+                return this.conn.getRawData().getByDate(source, startDate);
+            } else if(Clump.class == klass) {
+                return this.conn.getClump().getByDate(source, startDate);
+            } else {
+                return this.conn.getFire().getByDate(source, startDate);
+            }
+        } else {
+            if(RawData.class == klass) {
+                return this.conn.getRawData().getByDate(source, startDate, endDate);
+            } else if(Clump.class == klass) {
+                return this.conn.getClump().getByDate(source, startDate, endDate);
+            } else {
+                return this.conn.getFire().getByDate(source, startDate, endDate);
+            }
+        }
+    }
+
     @Override
     protected DateTime getCurrentDate() {
         return source.getLatestData();
@@ -16,6 +16,8 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.sti.justice.util.StringUtil;
 import java.util.List;
 import org.joda.time.DateTime;
@@ -28,14 +30,15 @@ import smartfire.export.Exports;
 
 public class ExportTableView<T extends Exportable> extends ModelView {
     private final ApplicationSettings appSettings;
-    private final List<T> dataList;
+    private final Supplier<List<T>> dataList;
+    private final String cacheScope;
     private final Class<T> klass;
     private final DateTime startDate;
     private final DateTime endDate;
     private final String title;
     private final List<String> breadcrumbNames;
     private final List<String> breadcrumbUrls;
-    private final List<String> attributeHeadings;
+    private List<String> attributeHeadings;
     private final String individualLinkField;
     private final String individualLinkPrefix;
 
@@ -44,7 +47,8 @@ public class ExportTableView<T extends Exportable> extends ModelView {
             Class<T> klass,
             DateTime startDate,
             DateTime endDate,
-            List<T> dataList,
+            Supplier<List<T>> dataList,
+            String cacheScope,
             String title,
             List<String> breadcrumbNames,
             List<String> breadcrumbUrls,
@@ -55,12 +59,15 @@ public class ExportTableView<T extends Exportable> extends ModelView {
         this.klass = klass;
         this.startDate = startDate;
         this.endDate = endDate;
-        this.dataList = dataList;
+        // Only load the data when it's actually needed, so that requests
+        // which can be answered from the ExportCache don't have to hit the
+        // database at all
+        this.dataList = Suppliers.memoize(dataList);
+        this.cacheScope = cacheScope;
         this.title = title;
         this.breadcrumbNames = breadcrumbNames;
         this.breadcrumbUrls = breadcrumbUrls;
 
-        this.attributeHeadings = Exports.getAllHeadings(dataList);
         this.individualLinkField = individualLinkField;
         this.individualLinkPrefix = individualLinkPrefix;
     }
@@ -81,6 +88,7 @@ public class ExportTableView<T extends Exportable> extends ModelView {
                 urlPiece,
                 klass,
                 dataList,
+                cacheScope,
                 startDate,
                 endDate,
                 appSettings,
@@ -116,12 +124,15 @@ public class ExportTableView<T extends Exportable> extends ModelView {
         return (individualLinkField != null);
     }
 
-    public List<String> getAttributeHeadings() {
+    public synchronized List<String> getAttributeHeadings() {
+        if(attributeHeadings == null) {
+            attributeHeadings = Exports.getAllHeadings(dataList.get());
+        }
         return attributeHeadings;
     }
 
     public List<ExportRow> getExportRows() {
-        return Exports.getExportRows(appSettings.getGeometryBuilder(), dataList);
+        return Exports.getExportRows(appSettings.getGeometryBuilder(), dataList.get());
     }
 
     public String getLinkUrl(ExportRow row) {
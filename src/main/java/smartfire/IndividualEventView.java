@@ -18,21 +18,19 @@ package smartfire;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import java.awt.image.BufferedImage;
-import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import javax.imageio.ImageIO;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.WebMethod;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 import smartfire.database.*;
-import smartfire.gis.Render;
+import smartfire.gis.RenderCache;
 import smartfire.gis.XYPoint;
+import smartfire.layer.ReverseGeocoder;
 import smartfire.util.Functions;
 
 @ExportedBean
@@ -63,7 +61,7 @@ public class IndividualEventView extends ModelView {
         this.latitude = coordFormat.format(point.getY());
         this.longitude = coordFormat.format(point.getX());
 
-        this.location = Functions.formatLocation(event);
+        this.location = Functions.formatLocation(event, ReverseGeocoder.getBuilt(stream));
         String loc = event.get("location");
         if(this.location.equals(loc)) {
             this.additionalLocation = null;
@@ -77,32 +75,12 @@ public class IndividualEventView extends ModelView {
      */
     @WebMethod(name="shape.png")
     public void doShapePng(StaplerRequest request, StaplerResponse response) throws Exception {
-        response.setHeader("Content-type", "image/png");
-        OutputStream out = null;
-        try {
-            out = response.getCompressedOutputStream(request);
-            BufferedImage image = Render.drawScaledShape(300, 300, event.getShape());
-            ImageIO.write(image, "png", out);
-        } finally {
-            if(out != null) {
-                out.close();
-            }
-        }
+        serveShapeImage(request, response, "event", event.getId(), RenderCache.SHAPE_SIZE, event.getShape());
     }
 
     @WebMethod(name="thumbnail.png")
     public void doThumbnailPng(StaplerRequest request, StaplerResponse response) throws Exception {
-        response.setHeader("Content-type", "image/png");
-        OutputStream out = null;
-        try {
-            out = response.getCompressedOutputStream(request);
-            BufferedImage image = Render.drawScaledShape(32, 32, event.getShape());
-            ImageIO.write(image, "png", out);
-        } finally {
-            if(out != null) {
-                out.close();
-            }
-        }
+        serveShapeImage(request, response, "event", event.getId(), RenderCache.THUMBNAIL_SIZE, event.getShape());
     }
 
     public Api getApi() {
@@ -17,19 +17,16 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 package smartfire;
 
 import com.google.common.collect.Maps;
-import java.awt.image.BufferedImage;
-import java.io.OutputStream;
 import java.text.DecimalFormat;
 import java.util.List;
 import java.util.Map;
-import javax.imageio.ImageIO;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 import org.kohsuke.stapler.WebMethod;
 import smartfire.database.Fire;
-import smartfire.database.FireDay;
+import smartfire.database.FireDayArea;
 import smartfire.database.Source;
-import smartfire.gis.Render;
+import smartfire.gis.RenderCache;
 import smartfire.gis.XYPoint;
 import smartfire.util.Functions;
 
@@ -58,17 +55,7 @@ public class IndividualFireView extends ModelView {
     
     @WebMethod(name="shape.png")
     public void doShapePng(StaplerRequest request, StaplerResponse response) throws Exception {
-        response.setHeader("Content-type", "image/png");
-        OutputStream out = null;
-        try {
-            out = response.getCompressedOutputStream(request);
-            BufferedImage image = Render.drawScaledShape(300, 300, fire.getShape());
-            ImageIO.write(image, "png", out);
-        } finally {
-            if(out != null) {
-                out.close();
-            }
-        }
+        serveShapeImage(request, response, "fire", fire.getId(), RenderCache.SHAPE_SIZE, fire.getShape());
     }
     
     /*
@@ -82,8 +69,8 @@ public class IndividualFireView extends ModelView {
         return fire;
     }
     
-    public List<FireDay> getFireDays() {
-        return fire.getFireDays();
+    public List<FireDayArea> getFireDays() {
+        return fire.getDailyAreas();
     }
     
     public String getFireName() {
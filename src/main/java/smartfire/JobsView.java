@@ -18,12 +18,17 @@ package smartfire;
 
 import com.google.common.collect.Lists;
 import java.util.List;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 import smartfire.database.DatabaseConnection;
 import smartfire.database.JobHistory;
+import smartfire.database.JobTimingStats;
 import smartfire.queue.JobInfo;
+import smartfire.queue.JobPoolStatistics;
 import smartfire.queue.JobState;
+import smartfire.queue.JobWaitStatistics;
 
 /**
  * JobsView Dashboard and related pages.
@@ -59,11 +64,33 @@ public class JobsView {
         return result;
     }
 
+    @Exported(name="waitStatistics")
+    public List<JobWaitStatistics> getWaitStatistics() {
+        return appSettings.getJobQueue().getWaitStatistics();
+    }
+
+    @Exported(name="poolStatistics")
+    public List<JobPoolStatistics> getPoolStatistics() {
+        return appSettings.getJobQueue().getPoolStatistics();
+    }
+
     @Exported(name="recentlyFinishedJobs")
     public List<JobHistory> getRecentlyFinishedJobs() {
         return conn.getJobHistory().getRecentlyFinished();
     }
 
+    /**
+     * Gets timing percentiles for the jobs that finished successfully in the
+     * past week, by job type and Source.
+     *
+     * @return a list of JobTimingStats
+     */
+    @Exported(name="timingStatistics")
+    public List<JobTimingStats> getTimingStatistics() {
+        DateTime endDate = new DateTime(DateTimeZone.UTC);
+        return conn.getJobHistory().getTimingStats(endDate.minusDays(7), endDate);
+    }
+
     public List<JobHistory> getJobHistory() {
         return this.conn.getJobHistory().getAll();
     }
@@ -16,7 +16,17 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire;
 
+import com.vividsolutions.jts.geom.Geometry;
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.servlet.http.HttpServletResponse;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+import smartfire.gis.RenderCache;
+
 public class ModelView {
+    // Browsers may reuse a shape image for this long before revalidating it
+    private static final int SHAPE_IMAGE_MAX_AGE_SECONDS = 300;
     private final Application app;
     
     protected ModelView(Application app) {
@@ -30,4 +40,58 @@ public class ModelView {
     public ApplicationSettings getAppSettings() {
         return app.getAppSettings();
     }
+
+    /**
+     * Writes a PNG image of the given shape to the response, using the
+     * application's RenderCache.  The response carries an ETag derived from
+     * the shape, and conditional requests for an unchanged shape are answered
+     * with "304 Not Modified" without rendering anything.
+     *
+     * @param request the current request
+     * @param response the response to write to
+     * @param kind the kind of entity depicted, e.g. "event" or "fire"
+     * @param id the id of the entity
+     * @param size the width and height of the image in pixels
+     * @param geom the shape to draw
+     * @throws IOException if an error occurs writing the response
+     */
+    protected void serveShapeImage(StaplerRequest request, StaplerResponse response,
+            String kind, Object id, int size, Geometry geom) throws IOException {
+        RenderCache cache = getAppSettings().getRenderCache();
+        RenderCache.Key key = RenderCache.keyFor(kind, id, size, size, geom);
+        String etag = key.getETag();
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "public, max-age=" + SHAPE_IMAGE_MAX_AGE_SECONDS);
+        if(matchesETag(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] png = cache.getOrRender(key, geom);
+        response.setHeader("Content-type", "image/png");
+        response.setContentLength(png.length);
+        // PNG data is already compressed, so it is written as-is
+        OutputStream out = response.getOutputStream();
+        try {
+            out.write(png);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if(ifNoneMatch == null) {
+            return false;
+        }
+        for(String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if(tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if(tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -18,9 +18,11 @@ package smartfire;
 
 import java.io.IOException;
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import smartfire.database.DatabaseConnection;
+import smartfire.export.ExportCache;
 
 /**
  * Filter to run before and after every servlet request, to manage our
@@ -59,6 +61,15 @@ public class PersistenceFilter implements Filter {
                 }
                 conn.resolveTransaction();
             }
+
+            // Requests that may have modified data (e.g. admin forms) could
+            // have changed anything, so don't serve any stale exports
+            if(success && isModifyingRequest(req)) {
+                ExportCache exportCache = ((SmartfireApp) app).getAppSettings().getExportCache();
+                if(exportCache != null) {
+                    exportCache.invalidateAll();
+                }
+            }
         } else {
             chain.doFilter(req, resp);
         }
@@ -66,6 +77,14 @@ public class PersistenceFilter implements Filter {
         cleanUpStaplerThreadLocal();
     }
 
+    private static boolean isModifyingRequest(ServletRequest req) {
+        if(req instanceof HttpServletRequest) {
+            String method = ((HttpServletRequest) req).getMethod();
+            return !("GET".equals(method) || "HEAD".equals(method));
+        }
+        return false;
+    }
+
     private void cleanUpStaplerThreadLocal() {
         try {
             Class<?> klass = org.kohsuke.stapler.Stapler.class;
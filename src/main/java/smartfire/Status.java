@@ -29,6 +29,7 @@ import org.kohsuke.stapler.export.Exported;
 import org.kohsuke.stapler.export.ExportedBean;
 import smartfire.database.DatabaseConnection;
 import smartfire.database.JobStats;
+import smartfire.database.JobTimingStats;
 import smartfire.database.Source;
 
 /**
@@ -92,6 +93,11 @@ public class Status {
         return stats;
     }
 
+    @Exported
+    public List<JobTimingStats> getTimingStats() {
+        return conn.getJobHistory().getTimingStats(startDate, endDate);
+    }
+
     public DateTime getStartDate() {
         return startDate;
     }
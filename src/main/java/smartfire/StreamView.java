@@ -16,6 +16,7 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire;
 
+import com.google.common.base.Supplier;
 import java.util.Arrays;
 import java.util.List;
 import org.joda.time.DateTime;
@@ -23,6 +24,7 @@ import smartfire.database.DatabaseConnection;
 import smartfire.database.Event;
 import smartfire.database.ReconciliationStream;
 import smartfire.database.Source;
+import smartfire.export.ExportCache;
 
 public class StreamView extends DateIndexedView {
     private final ReconciliationStream stream;
@@ -35,32 +37,35 @@ public class StreamView extends DateIndexedView {
     }
     
     @Override
-    protected Object getViewObjectByDate(DateTime startDate, DateTime endDate) {
-        List<Event> events;
+    protected Object getViewObjectByDate(final DateTime startDate, DateTime endDate) {
+        final DateTime queryEnd;
         String dateString;
         String urlString;
         if(endDate == null) {
-            events = conn.getEvent().getByDate(stream, startDate, startDate.plusDays(1).minusMillis(1));
+            queryEnd = startDate.plusDays(1).minusMillis(1);
             dateString = startDate.toString("MMM d, yyyy");
             urlString = startDate.toString("yyyyMMdd") + "/";
         } else {
-            events = conn.getEvent().getByDate(stream, startDate, endDate);
+            queryEnd = endDate;
             dateString = startDate.toString("MMM d, yyyy") + " to " + endDate.toString("MMM d, yyyy");
             urlString = "range/?startDate=" + startDate.toString("yyyyMMdd") + "&endDate=" + endDate.toString("yyyyMMdd");
         }
+        Supplier<List<Event>> events = new Supplier<List<Event>>() {
+            @Override
+            public List<Event> get() {
+                return conn.getEvent().getByDate(stream, startDate, queryEnd);
+            }
+        };
         String individualLinkField = "unique_id";
         String individualLinkPrefix = "/events/";
-        
-        if(events == null) {
-            return null;
-        }
-        
+
         return new ExportTableView<Event>(
                 getApp(),
                 Event.class,
                 startDate,
                 endDate,
                 events,
+                ExportCache.scopeFor(stream),
                 stream.getName() + " Fire Events",
                 Arrays.asList("Streams", stream.getName(), dateString),
                 Arrays.asList(
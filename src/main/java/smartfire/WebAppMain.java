@@ -40,7 +40,16 @@ import smartfire.config.SmartfireConfig;
 import smartfire.database.DatabaseConnection;
 import smartfire.database.ReconciliationStream;
 import smartfire.database.ScheduledFetch;
+import smartfire.export.ExportCache;
 import smartfire.gis.GeometryBuilder;
+import smartfire.gis.RenderCache;
+import smartfire.jobs.AssociationJob;
+import smartfire.jobs.ClumpJob;
+import smartfire.jobs.ExportCacheInvalidator;
+import smartfire.jobs.IndexLocationsJob;
+import smartfire.jobs.JobResumer;
+import smartfire.jobs.ReconciliationJob;
+import smartfire.jobs.RenderCacheWarmer;
 import smartfire.queue.JobQueue;
 import smartfire.queue.JobScheduler;
 
@@ -82,7 +91,11 @@ public class WebAppMain extends AbstractWebAppMain<SmartfireApp> {
 
         DatabaseConnection conn = new DatabaseConnection(config);
        
-        JobQueue jobQueue = new JobQueue(conn, config.getNumThreads());
+        JobQueue jobQueue = new JobQueue(conn, config.getNumFetchThreads(),
+                config.getNumThreads(), config.getNumMaintenanceThreads());
+        jobQueue.setTimeLimit(ClumpJob.class, config.getClumpJobTimeLimitMinutes() * 60000L);
+        jobQueue.setTimeLimit(AssociationJob.class, config.getAssociationJobTimeLimitMinutes() * 60000L);
+        jobQueue.setTimeLimit(ReconciliationJob.class, config.getReconciliationJobTimeLimitMinutes() * 60000L);
 
         // Start job scheduler
         JobScheduler scheduler = new JobScheduler(config.getDateTimeZone());
@@ -90,7 +103,18 @@ public class WebAppMain extends AbstractWebAppMain<SmartfireApp> {
 
         GeometryBuilder geometryBuilder = new GeometryBuilder(config);
 
-        ApplicationSettings appSettings = new ApplicationSettings(homeDir, config, conn, version, jobQueue, scheduler, geometryBuilder);
+        // Invalidate cached exports whenever a job changes the data they
+        // were generated from
+        ExportCache exportCache = new ExportCache();
+        jobQueue.addJobListener(new ExportCacheInvalidator(exportCache));
+
+        // Cache rendered shape images, and render images of newly reconciled
+        // events ahead of time
+        File renderCacheDir = config.isRenderCacheOnDisk() ? new File(homeDir, "render-cache") : null;
+        RenderCache renderCache = new RenderCache(config.getRenderCacheSizeMB() * 1024L * 1024L, renderCacheDir);
+        jobQueue.addJobListener(new RenderCacheWarmer(conn, jobQueue, renderCache));
+
+        ApplicationSettings appSettings = new ApplicationSettings(homeDir, config, conn, version, jobQueue, scheduler, geometryBuilder, exportCache, renderCache);
         SmartfireConfig.fromDatabaseConnection(conn); // Load global system db configurations
         
         // Decide Application to launch
@@ -99,6 +123,16 @@ public class WebAppMain extends AbstractWebAppMain<SmartfireApp> {
             return new InvalidDatabaseApp(appSettings);
         }
 
+        // Resume any chains of jobs that were interrupted when the
+        // application last stopped
+        if(config.isPersistentJobQueue()) {
+            jobQueue.setPersistent(true);
+            int numResumed = JobResumer.resume(appSettings);
+            if(numResumed > 0) {
+                log.info("Resumed {} saved jobs", numResumed);
+            }
+        }
+
         // Schedule all automatic fetch methods
         conn.beginTransaction();
         List<ScheduledFetch> fetches = conn.getScheduledFetch().getAllAutomaticFetches();
@@ -114,6 +148,14 @@ public class WebAppMain extends AbstractWebAppMain<SmartfireApp> {
             appSettings.getScheduler().schedule(appSettings, stream);
         }
         conn.resolveTransaction();
+
+        // Index the location boundaries of each stream in the background,
+        // so that views can describe event locations
+        conn.beginTransaction();
+        for(ReconciliationStream stream : conn.getReconciliationStream().getAll()) {
+            IndexLocationsJob.enqueue(appSettings, stream);
+        }
+        conn.resolveTransaction();
         
         return new SmartfireApp(appSettings);
     }
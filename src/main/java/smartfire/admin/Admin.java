@@ -39,8 +39,10 @@ import smartfire.database.*;
 import smartfire.export.ExportXML;
 import smartfire.func.MethodConfig;
 import smartfire.func.Methods;
+import smartfire.jobs.IndexLocationsJob;
 import smartfire.jobs.JobChain;
 import smartfire.layer.Layers;
+import smartfire.queue.JobPriority;
 
 /**
  * Root of administrative pages.
@@ -89,6 +91,62 @@ public class Admin extends ModelView {
             }
             this.config.setNumThreads(numThreads);
 
+            Integer numFetchThreads = this.config.getNumFetchThreads();
+            try {
+                numFetchThreads = Integer.parseInt(req.getParameter("numFetchThreads").trim());
+            } catch(Exception e) {
+            }
+            this.config.setNumFetchThreads(numFetchThreads);
+
+            Integer numMaintenanceThreads = this.config.getNumMaintenanceThreads();
+            try {
+                numMaintenanceThreads = Integer.parseInt(req.getParameter("numMaintenanceThreads").trim());
+            } catch(Exception e) {
+            }
+            this.config.setNumMaintenanceThreads(numMaintenanceThreads);
+
+            Integer numReconciliationThreads = this.config.getNumReconciliationThreads();
+            try {
+                numReconciliationThreads = Integer.parseInt(req.getParameter("numReconciliationThreads").trim());
+            } catch(Exception e) {
+            }
+            this.config.setNumReconciliationThreads(numReconciliationThreads);
+
+            Integer numAssociationThreads = this.config.getNumAssociationThreads();
+            try {
+                numAssociationThreads = Integer.parseInt(req.getParameter("numAssociationThreads").trim());
+            } catch(Exception e) {
+            }
+            this.config.setNumAssociationThreads(numAssociationThreads);
+
+            Integer numSummaryLayerThreads = this.config.getNumSummaryLayerThreads();
+            try {
+                numSummaryLayerThreads = Integer.parseInt(req.getParameter("numSummaryLayerThreads").trim());
+            } catch(Exception e) {
+            }
+            this.config.setNumSummaryLayerThreads(numSummaryLayerThreads);
+
+            Integer clumpJobTimeLimitMinutes = this.config.getClumpJobTimeLimitMinutes();
+            try {
+                clumpJobTimeLimitMinutes = Integer.parseInt(req.getParameter("clumpJobTimeLimitMinutes").trim());
+            } catch(Exception e) {
+            }
+            this.config.setClumpJobTimeLimitMinutes(clumpJobTimeLimitMinutes);
+
+            Integer associationJobTimeLimitMinutes = this.config.getAssociationJobTimeLimitMinutes();
+            try {
+                associationJobTimeLimitMinutes = Integer.parseInt(req.getParameter("associationJobTimeLimitMinutes").trim());
+            } catch(Exception e) {
+            }
+            this.config.setAssociationJobTimeLimitMinutes(associationJobTimeLimitMinutes);
+
+            Integer reconciliationJobTimeLimitMinutes = this.config.getReconciliationJobTimeLimitMinutes();
+            try {
+                reconciliationJobTimeLimitMinutes = Integer.parseInt(req.getParameter("reconciliationJobTimeLimitMinutes").trim());
+            } catch(Exception e) {
+            }
+            this.config.setReconciliationJobTimeLimitMinutes(reconciliationJobTimeLimitMinutes);
+
             this.config.save(appSettings.getHomeDir());
             this.message = "SMARTFIRE configuration saved successfully. Please Restart the server for the changes to take place.";
         } catch(Exception e) {
@@ -264,6 +322,13 @@ public class Admin extends ModelView {
 
         this.conn.getSummaryDataLayer().save(layer);
 
+        // Re-index the locations of the streams that use the layer
+        for(ReconciliationStream stream : this.conn.getReconciliationStream().getAll()) {
+            if(stream.getSummaryDataLayers().contains(layer)) {
+                IndexLocationsJob.enqueue(appSettings, stream);
+            }
+        }
+
         // Forward with a success message.
         this.message = "Data Layer (" + layer.getName() + ") has been saved.";
         res.forward(this, "index", req);
@@ -337,6 +402,8 @@ public class Admin extends ModelView {
             this.appSettings.getScheduler().schedule(appSettings, stream);
         }
 
+        IndexLocationsJob.enqueue(appSettings, stream);
+
         // Forward with a success message.
         this.message = "Stream (" + stream.getName() + ") has been saved.";
         res.forward(this, "index", req);
@@ -442,6 +509,8 @@ public class Admin extends ModelView {
             this.appSettings.getScheduler().schedule(appSettings, stream);
         }
 
+        IndexLocationsJob.enqueue(appSettings, stream);
+
         // Forward with a success message.
         this.message = "Stream (" + stream.getName() + ") has been saved.";
         res.forward(this, "index", req);
@@ -588,7 +657,7 @@ public class Admin extends ModelView {
         // Get date
         DateTime date = parseDate(req.getParameter("date"));
 
-        JobChain.schedule(appSettings, fetch, date, true); // TBD: dynamically set useMaxBackwardDays
+        JobChain.schedule(appSettings, fetch, date, true, JobPriority.INTERACTIVE); // TBD: dynamically set useMaxBackwardDays
 
         res.sendRedirect2("../jobs");
     }
@@ -606,7 +675,7 @@ public class Admin extends ModelView {
         DateTime startDate = parseDate(req.getParameter("startDate"));
         DateTime endDate = parseDate(req.getParameter("endDate"));
 
-        JobChain.schedule(appSettings, stream, startDate, endDate);
+        JobChain.schedule(appSettings, stream, startDate, endDate, JobPriority.INTERACTIVE);
 
         res.sendRedirect2("../jobs");
     }
@@ -655,7 +724,7 @@ public class Admin extends ModelView {
             fileItem.write(file);
             fileItem.delete();
             
-            JobChain.schedule(appSettings, source, file.getPath(), new DateTime(config.getDateTimeZone()), runReconciliation, true); // TBD: dynamically set useMaxBackwardDays
+            JobChain.schedule(appSettings, source, file.getPath(), new DateTime(config.getDateTimeZone()), runReconciliation, true, JobPriority.INTERACTIVE); // TBD: dynamically set useMaxBackwardDays
             // this is a kludge because JobChain appears to be having trouble scheduling jobs in quick succession --
             // -- the database transaction commit is failing otherwise.
             if (fileItemIter.hasNext())
@@ -665,6 +734,19 @@ public class Admin extends ModelView {
         res.sendRedirect2("../jobs");
     }
 
+    public void doCancelJob(StaplerRequest req, StaplerResponse res) throws Exception {
+        Integer jobId;
+        try {
+            jobId = Integer.parseInt(req.getParameter("jobId").trim());
+        } catch(NumberFormatException e) {
+            throw new SmartfireException("Cannot parse job id");
+        }
+
+        appSettings.getJobQueue().cancel(jobId, "Cancelled by " + req.getUserPrincipal().getName());
+
+        res.sendRedirect2("../jobs");
+    }
+
     public void doDeleteOrphanedFires(StaplerRequest req, StaplerResponse res) throws Exception {
         for(Source source : conn.getSource().getAll()) {
             conn.getFire().deleteOrphanedFires(source);
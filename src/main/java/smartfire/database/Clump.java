@@ -63,6 +63,9 @@ public class Clump implements SfEntity<Integer>, Exportable, GeometryEntity, Ser
     @JoinColumn(name = "clump_id")
     private List<RawData> rawData;
 
+    @Column(name = "needs_association", nullable = false)
+    private boolean needsAssociation = true;
+
     public Clump() {
         this.rawData = new ArrayList<RawData>();
     }
@@ -135,6 +138,86 @@ public class Clump implements SfEntity<Integer>, Exportable, GeometryEntity, Ser
         this.rawData.remove(rawDataRecord);
     }
 
+    /**
+     * Makes this Clump take on the shape, dates and area of an unsaved Clump
+     * produced by re-clumping this Clump's RawData together with other
+     * records, and moves the unsaved Clump's RawData records into this one.
+     *
+     * @param reclumped an unsaved Clump
+     * @param previousClumps the saved Clump that each RawData record belonged
+     *                       to before it was re-clumped, if any
+     */
+    public void absorb(Clump reclumped, Map<RawData, Clump> previousClumps) {
+        markChanged();
+        this.shape = reclumped.shape;
+        this.area = reclumped.area;
+        this.startDate = reclumped.startDate;
+        this.endDate = reclumped.endDate;
+        for(RawData record : reclumped.rawData) {
+            Clump previous = previousClumps.get(record);
+            if(previous != this) {
+                if(previous != null) {
+                    previous.removeRawDataRecord(record);
+                    previous.markChanged();
+                }
+                this.rawData.add(record);
+            }
+            record.associateWithClump(this);
+        }
+    }
+
+    /**
+     * Removes this unsaved Clump's RawData records from the saved Clumps they
+     * belonged to before they were re-clumped.
+     *
+     * @param previousClumps the saved Clump that each RawData record belonged
+     *                       to before it was re-clumped, if any
+     */
+    public void detachFromPreviousClumps(Map<RawData, Clump> previousClumps) {
+        for(RawData record : rawData) {
+            Clump previous = previousClumps.get(record);
+            if(previous != null && previous != this) {
+                previous.removeRawDataRecord(record);
+                previous.markChanged();
+            }
+        }
+    }
+
+    /**
+     * Returns true if this Clump is new, or has changed since it was last
+     * associated with a Fire.  Incremental association jobs only associate
+     * these Clumps.
+     *
+     * @return true if this Clump needs to be associated
+     */
+    public boolean needsAssociation() {
+        return needsAssociation;
+    }
+
+    /**
+     * Records that this Clump has been associated with a Fire in its current
+     * form.
+     */
+    public void markAssociated() {
+        this.needsAssociation = false;
+    }
+
+    /**
+     * Records that this Clump's Fire has changed in a way that its
+     * association should be recomputed, e.g. because another of its Clumps
+     * was deleted.
+     */
+    void markNeedsAssociation() {
+        this.needsAssociation = true;
+    }
+
+    private void markChanged() {
+        this.needsAssociation = true;
+        if(fire != null) {
+            fire.clumpChanged();
+        }
+    }
+
     public Source getSource() {
         return source;
     }
@@ -84,6 +84,33 @@ public class ClumpDao extends AbstractDao<Clump, Integer> {
                 )).getResultList();
     }
 
+    /**
+     * Gets the Clump records for a given source and date range that are new,
+     * or have changed since they were last associated with a Fire.
+     *
+     * @param source the source for the clump data.
+     * @param start the start date of interest
+     * @param end the end date of interest
+     * @return a list of Clump records
+     * @see Clump#needsAssociation()
+     */
+    public List<Clump> getNeedingAssociationByDate(Source source, ReadableDateTime start, ReadableDateTime end) {
+        EntityManager em = getEntityManager();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Clump> cq = cb.createQuery(Clump.class);
+        Root<Clump> clump = cq.from(Clump.class);
+        Date startDate = start.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        Date endDate = end.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        return em.createQuery(cq
+                .select(clump)
+                .where(
+                    cb.equal(clump.get(Clump_.source), source),
+                    cb.lessThanOrEqualTo(clump.get(Clump_.startDate), endDate),
+                    cb.greaterThanOrEqualTo(clump.get(Clump_.endDate), startDate),
+                    cb.isTrue(clump.get(Clump_.needsAssociation))
+                )).getResultList();
+    }
+
     /**
      * Deletes all the Clump records that are available for a given date.
      *
@@ -132,6 +159,12 @@ public class ClumpDao extends AbstractDao<Clump, Integer> {
             fire.removeClump(entity);
             if(fire.getClumps().isEmpty()) {
                 em.remove(fire);
+            } else {
+                // The Fire's area and shape have changed, so have the next
+                // incremental association job revisit it
+                for(Clump remaining : fire.getClumps()) {
+                    remaining.markNeedsAssociation();
+                }
             }
         }
         em.remove(entity);
@@ -178,6 +178,16 @@ public final class DatabaseConnection {
         getEntityManager().clear();
     }
 
+    /**
+     * Returns true if a transaction has been started in the current thread
+     * and not yet resolved.
+     *
+     * @return true if the current thread is in a transaction
+     */
+    public boolean isInTransaction() {
+        return registry.get() != null;
+    }
+
     public EntityManager getEntityManager() {
         EntityManager em = registry.get();
         if(em == null) {
@@ -197,6 +207,23 @@ public final class DatabaseConnection {
         trn.rollback();
     }
 
+    /**
+     * Commits the work done so far in the current thread's transaction, and
+     * begins a new transaction using the same EntityManager, so entities
+     * loaded before the checkpoint remain managed afterwards.  Does nothing
+     * if the transaction has been marked rollback-only.
+     */
+    public void checkpoint() {
+        EntityManager em = getEntityManager();
+        if(rollbackReg.get()) {
+            return;
+        }
+        commitTransaction();
+        EntityTransaction trans = em.getTransaction();
+        transReg.set(trans);
+        trans.begin();
+    }
+
     public void resolveTransaction() {
         EntityManager em = getEntityManager();
         try {
@@ -249,6 +276,10 @@ public final class DatabaseConnection {
         return new JobHistoryDao(this);
     }
 
+    public PersistentJobDao getPersistentJob() {
+        return new PersistentJobDao(this);
+    }
+
     public ScheduledFetchDao getScheduledFetch() {
         return new ScheduledFetchDao(this);
     }
@@ -33,6 +33,7 @@ import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import smartfire.export.Exportable;
 import smartfire.gis.GeometryEntity;
+import smartfire.util.Sorted;
 
 @Entity
 @Table(name = "event")
@@ -82,6 +83,10 @@ public class Event extends AbstractMap<String, String>
     @Temporal(javax.persistence.TemporalType.DATE)
     private Date createDate;
 
+    @Column(name = "reconciled_date", nullable = true)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date reconciledDate;
+
     @ManyToOne
     private ReconciliationStream reconciliationStream;
 
@@ -102,6 +107,15 @@ public class Event extends AbstractMap<String, String>
     @JoinColumn(name = "event_id")
     @MapKey(name = "attrName")
     private Map<String, EventAttribute> eventAttributes;
+
+    @Transient
+    private List<EventSlice> slices;
+
+    @Transient
+    private Map<Comparator<EventSlice>, List<EventSlice>> sortedSlices;
+
+    @Transient
+    private long slicesFireVersion;
     
     public Event() {
         this.uniqueId = UUID.randomUUID().toString();
@@ -150,6 +164,37 @@ public class Event extends AbstractMap<String, String>
         this.createDate = createDate;
     }
 
+    /**
+     * Gets the time as of which this Event reflects the state of all its
+     * Fires, or null if it is known to be out of date.
+     *
+     * @return the time this Event was last reconciled, or null
+     */
+    public DateTime getReconciledDateTime() {
+        if(reconciledDate == null) {
+            return null;
+        }
+        return new DateTime(reconciledDate, DateTimeZone.UTC);
+    }
+
+    /**
+     * Records that this Event reflects its Fires as they were at the given
+     * time.  Fires modified after that time will be reconciled again.
+     *
+     * @param reconciledTime the time the Event's Fires were read
+     */
+    public void markReconciled(DateTime reconciledTime) {
+        this.reconciledDate = reconciledTime.toDate();
+    }
+
+    /**
+     * Records that this Event no longer reflects its Fires, e.g. because one
+     * of them was deleted, so that all its Fires are reconciled again.
+     */
+    public void invalidateReconciliation() {
+        this.reconciledDate = null;
+    }
+
     public String getDisplayName() {
         return displayName;
     }
@@ -198,6 +243,7 @@ public class Event extends AbstractMap<String, String>
 
     public void setReconciliationStream(ReconciliationStream reconciliationStream) {
         this.reconciliationStream = reconciliationStream;
+        invalidateSlices();
     }
 
     public String getFireType() {
@@ -271,6 +317,7 @@ public class Event extends AbstractMap<String, String>
     public void addFire(Fire fire) {
         this.fires.add(fire);
         fire.associateWithEvent(this);
+        invalidateSlices();
     }
     
     public void addFires(Iterable<Fire> fires) {
@@ -281,6 +328,7 @@ public class Event extends AbstractMap<String, String>
     
     void removeFire(Fire fire) {
         this.fires.remove(fire);
+        invalidateSlices();
     }
     
     ///////////////////////////////////////////////////////////////////////////
@@ -424,7 +472,58 @@ public class Event extends AbstractMap<String, String>
     // EventSlice
     ///////////////////////////////////////////////////////////////////////////
     
+    /**
+     * Gets the slices of this Event, one for each Source in the stream's
+     * weightings that has fires with clumps in this Event.  The slices are
+     * built once and reused until the Event's fires change, either by being
+     * added or removed or by one of them being modified.
+     *
+     * @return an unmodifiable list of slices, in weighting order
+     */
     public List<EventSlice> getSlices() {
+        long fireVersion = computeFireVersion();
+        if(slices == null || slicesFireVersion != fireVersion) {
+            slices = Collections.unmodifiableList(buildSlices());
+            sortedSlices = Maps.newHashMap();
+            slicesFireVersion = fireVersion;
+        }
+        return slices;
+    }
+
+    /**
+     * Gets the slices of this Event ordered by the given comparator.  Each
+     * ordering is computed once and reused for as long as the slices
+     * themselves are.
+     *
+     * @param comparator one of the orderings defined on {@link EventSlice}
+     * @return an unmodifiable list of slices, sorted by the comparator
+     */
+    public List<EventSlice> getSlicesSortedBy(Comparator<EventSlice> comparator) {
+        List<EventSlice> unsorted = getSlices();
+        List<EventSlice> result = sortedSlices.get(comparator);
+        if(result == null) {
+            result = Collections.unmodifiableList(Sorted.by(unsorted, comparator));
+            sortedSlices.put(comparator, result);
+        }
+        return result;
+    }
+
+    private void invalidateSlices() {
+        this.slices = null;
+        this.sortedSlices = null;
+    }
+
+    private long computeFireVersion() {
+        // Fires never lose modifications, so the sum only moves forward
+        // while the fire set stays the same
+        long version = 0;
+        for(Fire fire : fires) {
+            version += fire.getModificationCount();
+        }
+        return version;
+    }
+
+    private List<EventSlice> buildSlices() {
         // FIXME - SF-292
         ReconciliationStream stream = getReconciliationStream();
         List<ReconciliationWeighting> weights = stream.getReconciliationWeightings();        
@@ -18,7 +18,7 @@ package smartfire.database;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Geometry;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -159,11 +159,31 @@ public class EventDao extends AbstractDao<Event, Long> {
      * @return a single event object representing the merger of all the input events
      */
     public Event merge(Iterable<Event> events) {
+        List<Event> inputs = Lists.newArrayList(events);
+        Event result = combine(inputs);
+        for(Event event : inputs) {
+            // Schedule the input event for deletion
+            this.delete(event);
+        }
+        return result;
+    }
+
+    /**
+     * Combine a collection of Event objects into a single new Event, like
+     * {@link #merge(Iterable)}, but without deleting the input events.  This
+     * does not use the EntityManager, so it may be called from a thread
+     * other than the one that owns the current transaction; the caller is
+     * responsible for deleting the input events afterwards.
+     *
+     * @param events a collection of input events
+     * @return a single event object representing the merger of all the input events
+     */
+    public Event combine(Iterable<Event> events) {
         Event result = new Event();
 
         Map<String, String> attrs = Maps.newHashMap();
         List<Fire> fires = Lists.newArrayList();
-        MultiPolygon poly = null;
+        List<Geometry> shapes = Lists.newArrayList();
 
         Event largestEvent = null;
         DateTime startDate = null;
@@ -195,21 +215,14 @@ public class EventDao extends AbstractDao<Event, Long> {
                 endDate = event.getEndDateTime();
             }
 
-            // Union the shapes together
-            if(poly == null) {
-                poly = event.getShape();
-            } else {
-                poly = Union.toMultiPolygon(Union.union(poly, event.getShape()));
-            }
+            // Collect the shapes to union together once at the end
+            shapes.add(event.getShape());
 
             // Copy all the attributes from this event
             attrs.putAll(event);
 
             // Copy the Fires
             fires.addAll(event.getFires());
-
-            // Schedule the input event for deletion
-            this.delete(event);
         }
 
         if(numEvents == 0) {
@@ -221,7 +234,7 @@ public class EventDao extends AbstractDao<Event, Long> {
         result.setTotalArea(largestEvent.getTotalArea());
         result.setStartDate(startDate);
         result.setEndDate(endDate);
-        result.setShape(poly);
+        result.setShape(Union.toMultiPolygon(Union.cascadedUnion(shapes)));
         result.putAll(attrs);
         result.addFires(fires);
 
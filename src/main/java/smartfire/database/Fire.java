@@ -31,6 +31,7 @@ import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 import org.hibernate.annotations.LazyCollection;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,6 +39,7 @@ import smartfire.SmartfireException;
 import smartfire.export.Exportable;
 import smartfire.gis.GeometryEntity;
 import smartfire.gis.Union;
+import smartfire.util.Sorted;
 
 @Entity
 @Table(name = "fire")
@@ -96,6 +98,10 @@ public class Fire extends AbstractMap<String, String>
     
     @Column(name = "fire_type", nullable = false)
     private String fireType;
+
+    @Column(name = "modified_date", nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date modifiedDate;
     
     @OneToMany()
     @JoinColumn(name = "fire_id")
@@ -114,6 +120,10 @@ public class Fire extends AbstractMap<String, String>
     @MapKey(name = "name")
     private Map<String, FireAttribute> fireAttributes;
     
+    @OneToMany(cascade = { CascadeType.ALL }, orphanRemoval = true)
+    @JoinColumn(name = "fire_id")
+    private Set<FireDayArea> dailyAreas;
+
     @Transient
     private MultiPolygon shape;
 
@@ -128,12 +138,17 @@ public class Fire extends AbstractMap<String, String>
 
     @Transient
     private List<FireDay> fireDays;
+
+    @Transient
+    private int modificationCount;
     
     public Fire() {
         this.uniqueId = UUID.randomUUID().toString();
         this.fireAttributes = new LinkedHashMap<String, FireAttribute>();
         this.clumps = new HashSet<Clump>();
         this.events = new HashSet<Event>();
+        this.dailyAreas = new HashSet<FireDayArea>();
+        this.modifiedDate = new Date();
         this.shape = null;
         this.startDate = null;
         this.endDate = null;
@@ -183,6 +198,9 @@ public class Fire extends AbstractMap<String, String>
     }
 
     public void setProbability(Double probability) {
+        if(this.probability == null ? probability != null : !this.probability.equals(probability)) {
+            markModified();
+        }
         this.probability = probability;
     }
 
@@ -191,6 +209,9 @@ public class Fire extends AbstractMap<String, String>
     }
 
     public void setFireType(String fireType) {
+        if(this.fireType == null ? fireType != null : !this.fireType.equals(fireType)) {
+            markModified();
+        }
         this.fireType = fireType;
     }
     
@@ -200,9 +221,52 @@ public class Fire extends AbstractMap<String, String>
     }
     
     public void setArea(double area) {
+        if(this.area != area) {
+            markModified();
+        }
         this.area = area;
     }
 
+    /**
+     * Gets the time this Fire's clumps, area, probability, type or
+     * attributes last changed.  Reconciliation uses this to find the Fires
+     * that changed since their Events were last reconciled.
+     *
+     * @return the time of the last modification
+     */
+    public DateTime getModifiedDateTime() {
+        return new DateTime(modifiedDate, DateTimeZone.UTC);
+    }
+
+    /**
+     * Records that something that reconciliation depends on has changed in
+     * this Fire, or in one of its Clumps.
+     */
+    public void markModified() {
+        this.modifiedDate = new Date();
+        this.modificationCount++;
+    }
+
+    /**
+     * Records that the shape, dates or area of one of this Fire's Clumps
+     * has changed, discarding everything derived from them.
+     */
+    void clumpChanged() {
+        markModified();
+        invalidateCachedClumpData();
+    }
+
+    /**
+     * Gets the number of times this Fire has been marked as modified since
+     * it was loaded.  Unlike the modified date, this always changes when the
+     * Fire does, so it is suitable for invalidating derived in-memory data.
+     *
+     * @return the in-memory modification count
+     */
+    int getModificationCount() {
+        return modificationCount;
+    }
+
     public String getUniqueId() {
         return uniqueId;
     }
@@ -216,7 +280,10 @@ public class Fire extends AbstractMap<String, String>
     }
 
     public void addClump(Clump clump) {
-        this.clumps.add(clump);
+        if(this.clumps.add(clump)) {
+            markModified();
+            invalidateDailyData();
+        }
         clump.associateWithFire(this);
         updateCachedClumpData(clump);
     }
@@ -228,7 +295,9 @@ public class Fire extends AbstractMap<String, String>
     }
 
     public void removeClump(Clump clump) {
-        this.clumps.remove(clump);
+        if(this.clumps.remove(clump)) {
+            markModified();
+        }
         invalidateCachedClumpData();
     }
 
@@ -237,6 +306,9 @@ public class Fire extends AbstractMap<String, String>
         for (Clump clump : this.clumps) {
             clump.associateWithFire(null);
         }
+        if(!this.clumps.isEmpty()) {
+            markModified();
+        }
         this.clumps.clear();
         invalidateCachedClumpData();
     }
@@ -326,9 +398,13 @@ public class Fire extends AbstractMap<String, String>
             attr.setName(key);
             attr.setAttrValue(value);
             fireAttributes.put(key, attr);
+            markModified();
             return null;
         } else {
             String oldValue = attr.getAttrValue();
+            if(oldValue == null ? value != null : !oldValue.equals(value)) {
+                markModified();
+            }
             attr.setAttrValue(value);
             return oldValue;
         }
@@ -341,6 +417,7 @@ public class Fire extends AbstractMap<String, String>
         }
         FireAttribute attr = fireAttributes.remove((String) key);
         if(attr != null) {
+            markModified();
             return attr.getAttrValue();
         }
         return null;
@@ -348,6 +425,9 @@ public class Fire extends AbstractMap<String, String>
     
     @Override
     public void clear() {
+        if(!fireAttributes.isEmpty()) {
+            markModified();
+        }
         fireAttributes.clear();
     }
 
@@ -402,7 +482,14 @@ public class Fire extends AbstractMap<String, String>
         this.envelope = null;
         this.startDate = null;
         this.endDate = null;
+        invalidateDailyData();
+    }
+
+    private void invalidateDailyData() {
         this.fireDays = null;
+        if(!this.dailyAreas.isEmpty()) {
+            this.dailyAreas.clear();
+        }
     }
 
     @Override
@@ -475,6 +562,50 @@ public class Fire extends AbstractMap<String, String>
         return this.fireDays;
     }
     
+    /**
+     * Gets the area of this Fire on each day it was burning.  If the areas
+     * are stored with the Fire (see {@link #storeDailyAreas()}), they are
+     * returned without unioning the day's shapes again; otherwise they are
+     * computed from {@link #getFireDays()}, and are not stored.
+     *
+     * @return an unmodifiable list of daily areas, sorted by date
+     */
+    public List<FireDayArea> getDailyAreas() {
+        if(this.dailyAreas.isEmpty()) {
+            List<FireDayArea> result = Lists.newArrayList();
+            for(FireDay fireDay : getFireDays()) {
+                result.add(new FireDayArea(fireDay));
+            }
+            return Collections.unmodifiableList(result);
+        }
+        return Collections.unmodifiableList(Sorted.by(this.dailyAreas, FireDayArea.BY_DATE_ASC));
+    }
+
+    /**
+     * Computes this Fire's daily areas and stores them with the Fire, unless
+     * they are already stored.  The stored areas are discarded whenever the
+     * Fire's clumps change, so this is called by the jobs that change them,
+     * on the thread that owns the current transaction.
+     */
+    public void storeDailyAreas() {
+        if(this.dailyAreas.isEmpty() && !this.clumps.isEmpty()) {
+            for(FireDay fireDay : getFireDays()) {
+                this.dailyAreas.add(new FireDayArea(fireDay));
+            }
+        }
+    }
+
+    /**
+     * Returns true if this Fire's daily areas are stored with it.  Unlike
+     * {@link #getDailyAreas()}, this never computes anything, so it can be
+     * used just to load the stored areas.
+     *
+     * @return true if the daily areas are stored
+     */
+    public boolean hasStoredDailyAreas() {
+        return !this.dailyAreas.isEmpty();
+    }
+
     @Override
     public String getShapeName() {
         return this.getUniqueId();
@@ -83,7 +83,65 @@ public class FireDao extends AbstractDao<Fire, Integer> {
                     cb.equal(fire.get(Fire_.source), source)
                 )).getResultList();
     }
-    
+
+    /**
+     * Gets the Fire records for a source and date range that need to be
+     * reconciled in the given stream: those that are not part of any of the
+     * stream's Events, and those modified since their Event was last
+     * reconciled.
+     *
+     * @param source the source for the fire data
+     * @param stream the reconciliation stream
+     * @param start the start date of interest
+     * @param end the end date of interest
+     * @return a list of Fire records
+     */
+    public List<Fire> getUnreconciledByDate(Source source, ReconciliationStream stream, ReadableDateTime start, ReadableDateTime end) {
+        Date startDate = start.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        Date endDate = end.toDateTime().withZone(DateTimeZone.UTC).toDate();
+
+        EntityManager em = getEntityManager();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Fire> cq = cb.createQuery(Fire.class);
+        Root<Fire> fire = cq.from(Fire.class);
+
+        Subquery<Integer> subquery = cq.subquery(Integer.class);
+        Root<Fire> f = subquery.from(Fire.class);
+        Join<Fire, Clump> clump = f.join(Fire_.clumps);
+
+        Expression<Date> minStartDate = cb.least(clump.get(Clump_.startDate));
+        Expression<Date> maxEndDate = cb.greatest(clump.get(Clump_.endDate));
+
+        // An Event of the stream that already reflects the fire's changes
+        Subquery<Long> reconciled = cq.subquery(Long.class);
+        Root<Event> event = reconciled.from(Event.class);
+        Join<Event, Fire> eventFire = event.join(Event_.fires);
+
+        return em.createQuery(cq
+                .select(fire)
+                .where(
+                    fire.get(Fire_.id).in(subquery
+                        .select(f.get(Fire_.id))
+                        .groupBy(f.get(Fire_.id))
+                        .having(
+                            cb.and(
+                                cb.lessThanOrEqualTo(minStartDate, endDate),
+                                cb.greaterThanOrEqualTo(maxEndDate, startDate)
+                            )
+                        )
+                    ),
+                    cb.equal(fire.get(Fire_.source), source),
+                    cb.not(cb.exists(reconciled
+                        .select(event.get(Event_.id))
+                        .where(
+                            cb.equal(eventFire, fire),
+                            cb.equal(event.get(Event_.reconciliationStream), stream),
+                            cb.greaterThanOrEqualTo(event.get(Event_.reconciledDate), fire.get(Fire_.modifiedDate))
+                        )
+                    ))
+                )).getResultList();
+    }
+
     /**
      * Finds all the Fire instances in the database that are orphaned due to
      * having no associated Clumps.
@@ -191,6 +249,26 @@ public class FireDao extends AbstractDao<Fire, Integer> {
      * @return a single fire object representing the merger of all the input fires
      */
     public Fire merge(Iterable<Fire> fires) {
+        List<Fire> inputs = Lists.newArrayList(fires);
+        Fire result = combine(inputs);
+        for(Fire fire : inputs) {
+            // Schedule the input fire for deletion
+            this.delete(fire);
+        }
+        return result;
+    }
+
+    /**
+     * Combine a collection of Fire objects into a single new Fire, like
+     * {@link #merge(Iterable)}, but without deleting the input fires.  This
+     * does not use the EntityManager, so it may be called from a thread
+     * other than the one that owns the current transaction; the caller is
+     * responsible for deleting the input fires afterwards.
+     *
+     * @param fires a collection of input fires
+     * @return a single fire object representing the merger of all the input fires
+     */
+    public Fire combine(Iterable<Fire> fires) {
         Fire result = new Fire();
 
         Map<String, String> attrs = new HashMap<String, String>();
@@ -221,9 +299,6 @@ public class FireDao extends AbstractDao<Fire, Integer> {
                 event.removeFire(fire);
                 event.addFire(result);
             }
-
-            // Schedule the input fire for deletion
-            this.delete(fire);
         }
 
         result.putAll(attrs);
@@ -278,6 +353,8 @@ public class FireDao extends AbstractDao<Fire, Integer> {
             fire.removeEvent(event);
             if(event.getFires().isEmpty()) {
                 em.remove(event);
+            } else {
+                event.invalidateReconciliation();
             }
         }
         em.remove(fire);
@@ -0,0 +1,84 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.database;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Date;
+import javax.persistence.*;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+
+/**
+ * The stored area of a Fire on a particular date.  Unlike {@link FireDay},
+ * this doesn't carry the day's shape, so it can be saved with the Fire and
+ * reused without unioning the day's clumps again.
+ */
+@Entity
+@Table(name = "fire_day_area")
+public class FireDayArea implements SfEntity<Integer>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final Comparator<FireDayArea> BY_DATE_ASC = new Comparator<FireDayArea>() {
+        @Override
+        public int compare(FireDayArea a, FireDayArea b) {
+            return a.getDate().compareTo(b.getDate());
+        }
+    };
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="fire_day_area_seq_gen")
+    @SequenceGenerator(name="fire_day_area_seq_gen", sequenceName="fire_day_area_seq")
+    private Integer id;
+
+    @Column(name = "fire_date", nullable = false)
+    @Temporal(javax.persistence.TemporalType.DATE)
+    private Date fireDate;
+
+    @Column(name = "daily_area", nullable = false)
+    private double dailyArea;
+
+    @Column(name = "num_clumps", nullable = false)
+    private int numClumps;
+
+    public FireDayArea() { }
+
+    FireDayArea(FireDay fireDay) {
+        this.fireDate = fireDay.getDate().toDateTimeAtStartOfDay(DateTimeZone.UTC).toDate();
+        this.dailyArea = fireDay.getArea();
+        this.numClumps = fireDay.getNumClumps();
+    }
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    public LocalDate getDate() {
+        return new DateTime(fireDate, DateTimeZone.UTC).toLocalDate();
+    }
+
+    public double getArea() {
+        return dailyArea;
+    }
+
+    public int getNumClumps() {
+        return numClumps;
+    }
+}
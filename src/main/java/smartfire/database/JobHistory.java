@@ -17,7 +17,10 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 package smartfire.database;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.persistence.*;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -68,6 +71,18 @@ public class JobHistory implements SfEntity<Integer>, Serializable {
     @Temporal(javax.persistence.TemporalType.TIMESTAMP)
     private Date endDate;
 
+    @Column(name = "source_id")
+    private Integer sourceId;
+
+    @Column(name = "cpu_time_ms")
+    private Long cpuTimeMillis;
+
+    @Column(name = "allocated_bytes")
+    private Long allocatedBytes;
+
+    @Column(name = "stage_timings")
+    private String stageTimings;
+
     @Exported
     public String getName() {
         return name;
@@ -135,4 +150,93 @@ public class JobHistory implements SfEntity<Integer>, Serializable {
     public void setFinalStatus(String finalStatus) {
         this.finalStatus = finalStatus;
     }
+
+    /**
+     * Gets the ID of the Source the job worked on, or null if it didn't work
+     * on a single Source.
+     *
+     * @return a Source ID, or null
+     */
+    public Integer getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(Integer sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public long getRunTimeMillis() {
+        return endDate.getTime() - startDate.getTime();
+    }
+
+    /**
+     * Gets the CPU time used by the job's thread and its worker threads, or
+     * null if it wasn't measured.
+     *
+     * @return the CPU time in milliseconds, or null
+     */
+    @Exported
+    public Long getCpuTimeMillis() {
+        return cpuTimeMillis;
+    }
+
+    public void setCpuTimeMillis(Long cpuTimeMillis) {
+        this.cpuTimeMillis = cpuTimeMillis;
+    }
+
+    /**
+     * Gets the number of bytes allocated by the job's thread and its worker
+     * threads, or null if it wasn't measured.
+     *
+     * @return the allocated bytes, or null
+     */
+    @Exported
+    public Long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public void setAllocatedBytes(Long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Gets the wall-clock time the job spent in each of its stages.
+     *
+     * @return a map of stage names to milliseconds; empty if the job didn't
+     *         record any stages
+     */
+    public Map<String, Long> getStageTimings() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        if(stageTimings != null && !stageTimings.isEmpty()) {
+            for(String pair : stageTimings.split(",")) {
+                int index = pair.lastIndexOf('=');
+                if(index > 0) {
+                    result.put(pair.substring(0, index), Long.parseLong(pair.substring(index + 1)));
+                }
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Sets the wall-clock time the job spent in each of its stages.  Stage
+     * names must not contain commas.
+     *
+     * @param timings a map of stage names to milliseconds
+     */
+    public void setStageTimings(Map<String, Long> timings) {
+        StringBuilder sb = new StringBuilder();
+        for(Map.Entry<String, Long> entry : timings.entrySet()) {
+            if(sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        this.stageTimings = sb.toString();
+    }
+
+    @Exported(name="stageTimings")
+    public String getStageTimingsString() {
+        return stageTimings;
+    }
 }
@@ -16,8 +16,11 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.database;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -98,4 +101,55 @@ public class JobHistoryDao extends AbstractDao<JobHistory, Integer> {
 
         return new JobStats(totalJobs, successfulJobs, failedJobs);
     }
+
+    /**
+     * Gets timing and resource usage percentiles for the jobs that finished
+     * successfully in the given time period, grouped by job type and Source.
+     *
+     * @param startDate the start of the time period
+     * @param endDate the end of the time period
+     * @return a JobTimingStats instance for each job type and Source, ordered
+     *         by job type
+     */
+    public List<JobTimingStats> getTimingStats(DateTime startDate, DateTime endDate) {
+        EntityManager em = getEntityManager();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<JobHistory> cq = cb.createQuery(JobHistory.class);
+        Root<JobHistory> jobHistory = cq.from(JobHistory.class);
+        Date start = startDate.withZone(DateTimeZone.UTC).toDate();
+        Date end = endDate.withZone(DateTimeZone.UTC).toDate();
+
+        List<JobHistory> histories = em.createQuery(cq
+                .select(jobHistory)
+                .where(
+                    cb.greaterThanOrEqualTo(jobHistory.get(JobHistory_.endDate), start),
+                    cb.lessThanOrEqualTo(jobHistory.get(JobHistory_.endDate), end),
+                    cb.equal(jobHistory.get(JobHistory_.status), JobState.SUCCESS.toString())
+                )
+                .orderBy(cb.asc(jobHistory.get(JobHistory_.type)))
+                ).getResultList();
+
+        Map<String, List<JobHistory>> groups = Maps.newLinkedHashMap();
+        for(JobHistory history : histories) {
+            String key = history.getType() + "/" + history.getSourceId();
+            List<JobHistory> group = groups.get(key);
+            if(group == null) {
+                group = Lists.newArrayList();
+                groups.put(key, group);
+            }
+            group.add(history);
+        }
+
+        List<JobTimingStats> result = Lists.newArrayList();
+        for(List<JobHistory> group : groups.values()) {
+            JobHistory first = group.get(0);
+            String sourceName = null;
+            if(first.getSourceId() != null) {
+                Source source = conn.getSource().getById(first.getSourceId());
+                sourceName = (source == null ? "(deleted source)" : source.getName());
+            }
+            result.add(new JobTimingStats(first.getType(), sourceName, group));
+        }
+        return result;
+    }
 }
@@ -0,0 +1,235 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.database;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+import smartfire.queue.JobWaitStatistics;
+
+/**
+ * Represents timing and resource usage percentiles for the JobHistory
+ * records of one type of job working on one Source.
+ */
+@ExportedBean(defaultVisibility=10)
+public class JobTimingStats {
+    private final String type;
+    private final String sourceName;
+    private final int numJobs;
+    private final long[] runTimeMillis;
+    private final long[] cpuTimeMillis;
+    private final long[] allocatedBytes;
+    private final List<StageStats> stages;
+
+    JobTimingStats(String type, String sourceName, List<JobHistory> histories) {
+        this.type = type;
+        this.sourceName = sourceName;
+        this.numJobs = histories.size();
+
+        List<Long> runTimes = Lists.newArrayList();
+        List<Long> cpuTimes = Lists.newArrayList();
+        List<Long> allocations = Lists.newArrayList();
+        Map<String, List<Long>> stageTimes = Maps.newLinkedHashMap();
+        for(JobHistory history : histories) {
+            runTimes.add(history.getRunTimeMillis());
+            if(history.getCpuTimeMillis() != null) {
+                cpuTimes.add(history.getCpuTimeMillis());
+            }
+            if(history.getAllocatedBytes() != null) {
+                allocations.add(history.getAllocatedBytes());
+            }
+            for(Map.Entry<String, Long> entry : history.getStageTimings().entrySet()) {
+                List<Long> times = stageTimes.get(entry.getKey());
+                if(times == null) {
+                    times = Lists.newArrayList();
+                    stageTimes.put(entry.getKey(), times);
+                }
+                times.add(entry.getValue());
+            }
+        }
+        this.runTimeMillis = sorted(runTimes);
+        this.cpuTimeMillis = sorted(cpuTimes);
+        this.allocatedBytes = sorted(allocations);
+        List<StageStats> stageStats = Lists.newArrayList();
+        for(Map.Entry<String, List<Long>> entry : stageTimes.entrySet()) {
+            stageStats.add(new StageStats(entry.getKey(), sorted(entry.getValue())));
+        }
+        this.stages = Collections.unmodifiableList(stageStats);
+    }
+
+    @Exported
+    public String getType() {
+        return type;
+    }
+
+    public String getShortType() {
+        return type.substring(type.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Gets the name of the Source the jobs worked on, or null if they didn't
+     * work on a single Source.
+     *
+     * @return a Source name, or null
+     */
+    @Exported
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    @Exported
+    public int getNumJobs() {
+        return numJobs;
+    }
+
+    @Exported
+    public long getMedianRunTimeMillis() {
+        return percentile(runTimeMillis, 50);
+    }
+
+    @Exported
+    public long getP90RunTimeMillis() {
+        return percentile(runTimeMillis, 90);
+    }
+
+    @Exported
+    public long getMaxRunTimeMillis() {
+        return percentile(runTimeMillis, 100);
+    }
+
+    @Exported
+    public long getMedianCpuTimeMillis() {
+        return percentile(cpuTimeMillis, 50);
+    }
+
+    @Exported
+    public long getP90CpuTimeMillis() {
+        return percentile(cpuTimeMillis, 90);
+    }
+
+    @Exported
+    public long getMedianAllocatedBytes() {
+        return percentile(allocatedBytes, 50);
+    }
+
+    @Exported
+    public long getP90AllocatedBytes() {
+        return percentile(allocatedBytes, 90);
+    }
+
+    @Exported
+    public List<StageStats> getStages() {
+        return stages;
+    }
+
+    public String getRunTimeString() {
+        return JobWaitStatistics.formatMillis(getMedianRunTimeMillis()) + " / "
+                + JobWaitStatistics.formatMillis(getP90RunTimeMillis()) + " / "
+                + JobWaitStatistics.formatMillis(getMaxRunTimeMillis());
+    }
+
+    public String getCpuTimeString() {
+        if(cpuTimeMillis.length == 0) {
+            return "";
+        }
+        return JobWaitStatistics.formatMillis(getMedianCpuTimeMillis()) + " / "
+                + JobWaitStatistics.formatMillis(getP90CpuTimeMillis());
+    }
+
+    public String getAllocatedString() {
+        if(allocatedBytes.length == 0) {
+            return "";
+        }
+        return formatBytes(getMedianAllocatedBytes()) + " / " + formatBytes(getP90AllocatedBytes());
+    }
+
+    /**
+     * Returns the given percentile of a sorted array of values, using the
+     * nearest-rank method.
+     *
+     * @param sortedValues values in ascending order
+     * @param percent the percentile to return, from 0 to 100
+     * @return the percentile, or zero if there are no values
+     */
+    static long percentile(long[] sortedValues, int percent) {
+        if(sortedValues.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percent / 100.0 * sortedValues.length);
+        return sortedValues[Math.max(rank, 1) - 1];
+    }
+
+    private static long[] sorted(List<Long> values) {
+        long[] result = new long[values.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private static String formatBytes(long bytes) {
+        if(bytes < 1024 * 1024) {
+            return (bytes / 1024) + " KB";
+        }
+        return (bytes / (1024 * 1024)) + " MB";
+    }
+
+    /**
+     * Represents timing percentiles for one stage of a type of job.
+     */
+    @ExportedBean(defaultVisibility=10)
+    public static class StageStats {
+        private final String name;
+        private final long[] millis;
+
+        private StageStats(String name, long[] millis) {
+            this.name = name;
+            this.millis = millis;
+        }
+
+        @Exported
+        public String getName() {
+            return name;
+        }
+
+        @Exported
+        public int getNumJobs() {
+            return millis.length;
+        }
+
+        @Exported
+        public long getMedianMillis() {
+            return percentile(millis, 50);
+        }
+
+        @Exported
+        public long getP90Millis() {
+            return percentile(millis, 90);
+        }
+
+        public String getTimeString() {
+            return JobWaitStatistics.formatMillis(getMedianMillis()) + " / "
+                    + JobWaitStatistics.formatMillis(getP90Millis());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.database;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.*;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import smartfire.SmartfireException;
+
+/**
+ * Represents a pending job in a persistent JobQueue, so that it can be
+ * resumed if the application is restarted before the job completes.
+ */
+@Entity
+@Table(name = "persistent_job")
+public class PersistentJob implements SfEntity<Integer>, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final String ENCODING = "UTF-8";
+
+    @Id
+    @Column(name = "id")
+    @GeneratedValue(strategy=GenerationType.SEQUENCE, generator="persistent_job_seq_gen")
+    @SequenceGenerator(name="persistent_job_seq_gen", sequenceName="persistent_job_seq")
+    private Integer id;
+
+    @Column(name = "name", nullable = false, length = 100)
+    private String name;
+
+    @Column(name = "type", nullable = false)
+    private String type;
+
+    @Column(name = "priority", nullable = false, length = 20)
+    private String priority;
+
+    @Column(name = "state", nullable = false, length = 20)
+    private String state;
+
+    @Column(name = "parameters", nullable = false)
+    private String parameters = "";
+
+    @Column(name = "upstream_ids", nullable = false)
+    private String upstreamIds = "";
+
+    @Column(name = "created_date", nullable = false)
+    @Temporal(javax.persistence.TemporalType.TIMESTAMP)
+    private Date createdDate;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the fully-qualified class name of the job.
+     *
+     * @return a class name
+     */
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getPriority() {
+        return priority;
+    }
+
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    /**
+     * Gets the parameters needed to recreate the job.
+     *
+     * @return an unmodifiable map of parameter names to values
+     */
+    public Map<String, String> getParameters() {
+        Map<String, String> result = Maps.newLinkedHashMap();
+        try {
+            for(String pair : Splitter.on('&').omitEmptyStrings().split(parameters)) {
+                int index = pair.indexOf('=');
+                result.put(URLDecoder.decode(pair.substring(0, index), ENCODING),
+                        URLDecoder.decode(pair.substring(index + 1), ENCODING));
+            }
+        } catch(UnsupportedEncodingException e) {
+            throw new SmartfireException(e);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    public void setParameters(Map<String, String> parameters) {
+        List<String> pairs = Lists.newArrayList();
+        try {
+            for(Map.Entry<String, String> entry : parameters.entrySet()) {
+                pairs.add(URLEncoder.encode(entry.getKey(), ENCODING) + "="
+                        + URLEncoder.encode(entry.getValue(), ENCODING));
+            }
+        } catch(UnsupportedEncodingException e) {
+            throw new SmartfireException(e);
+        }
+        this.parameters = Joiner.on('&').join(pairs);
+    }
+
+    /**
+     * Gets the IDs of the other PersistentJobs that this job depends on.
+     * Any of them that no longer exist have already completed.
+     *
+     * @return a list of PersistentJob IDs
+     */
+    public List<Integer> getUpstreamIds() {
+        List<Integer> result = Lists.newArrayList();
+        for(String upstreamId : Splitter.on(',').omitEmptyStrings().split(upstreamIds)) {
+            result.add(Integer.valueOf(upstreamId));
+        }
+        return result;
+    }
+
+    public void setUpstreamIds(Iterable<Integer> upstreamIds) {
+        this.upstreamIds = Joiner.on(',').join(upstreamIds);
+    }
+
+    public DateTime getCreatedDate() {
+        return new DateTime(createdDate, DateTimeZone.UTC);
+    }
+
+    public void setCreatedDate(DateTime createdDate) {
+        this.createdDate = createdDate.withZone(DateTimeZone.UTC).toDate();
+    }
+}
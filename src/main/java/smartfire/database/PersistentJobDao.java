@@ -0,0 +1,43 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.database;
+
+import java.util.List;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+public class PersistentJobDao extends AbstractDao<PersistentJob, Integer> {
+    public PersistentJobDao(DatabaseConnection conn) {
+        super(PersistentJob.class, conn);
+    }
+
+    /**
+     * Gets a list of all PersistentJob records.
+     *
+     * @return a list of all PersistentJob records, in the order they were
+     *         created
+     */
+    @Override
+    public List<PersistentJob> getAll() {
+        CriteriaBuilder cb = getEntityManager().getCriteriaBuilder();
+        CriteriaQuery<PersistentJob> q = cb.createQuery(PersistentJob.class);
+        Root<PersistentJob> from = q.from(PersistentJob.class);
+        q.orderBy(cb.asc(from.get(PersistentJob_.id)));
+        return getEntityManager().createQuery(q.select(from)).getResultList();
+    }
+}
@@ -60,6 +60,30 @@ public class RawDataDao extends AbstractDao<RawData, Long> {
         return q.getResultList();
     }
 
+    /**
+     * Gets the RawData records for a given source and date range that don't
+     * belong to a Clump yet.
+     *
+     * @param source the source for the raw data
+     * @param start the start date of interest
+     * @param end the end date of interest
+     * @return a list of unclumped RawData records
+     */
+    public List<RawData> getUnclumpedByDate(Source source, ReadableDateTime start, ReadableDateTime end) {
+        EntityManager em = getEntityManager();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<RawData> cq = cb.createQuery(RawData.class);
+        Root<RawData> rawData = cq.from(RawData.class);
+        Date startDate = start.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        Date endDate = end.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        return em.createQuery(cq.select(rawData).where(
+                cb.equal(rawData.get(RawData_.source), source),
+                cb.lessThanOrEqualTo(rawData.get(RawData_.startDate), endDate),
+                cb.greaterThanOrEqualTo(rawData.get(RawData_.endDate), startDate),
+                // and rawData.clump is null
+                cb.isNull(rawData.get(RawData_.clump)))).getResultList();
+    }
+
     /**
      * Gets all the RawData records that are available for a given source and date range.
      *
@@ -219,6 +243,30 @@ public class RawDataDao extends AbstractDao<RawData, Long> {
         return em.createQuery(cq).getSingleResult();
     }
 
+    /**
+     * Counts the number of RawData records for a given source that overlap
+     * the given date range.
+     *
+     * @param source the source for the raw data.
+     * @param start the start date of interest
+     * @param end the end date of interest
+     * @return the number of data records overlapping the date range
+     */
+    public Long getDataCount(Source source, ReadableDateTime start, ReadableDateTime end) {
+        EntityManager em = getEntityManager();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Long> cq = cb.createQuery(Long.class);
+        Root<RawData> rawData = cq.from(RawData.class);
+        Date startDate = start.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        Date endDate = end.toDateTime().withZone(DateTimeZone.UTC).toDate();
+        cq.select(cb.count(rawData));
+        cq.where(
+                cb.equal(rawData.get(RawData_.source), source),
+                cb.lessThanOrEqualTo(rawData.get(RawData_.startDate), endDate),
+                cb.greaterThanOrEqualTo(rawData.get(RawData_.endDate), startDate));
+        return em.createQuery(cq).getSingleResult();
+    }
+
     /**
      * Deletes all the RawData records that are available for a given source.
      *
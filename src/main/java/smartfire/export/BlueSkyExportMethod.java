@@ -43,7 +43,6 @@ import smartfire.database.EventSlice;
 import smartfire.database.Fire;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.XYPoint;
-import smartfire.util.Sorted;
 
 /**
  * ExportMethod for exporting data to the BlueSky Framework.
@@ -175,8 +174,7 @@ public class BlueSkyExportMethod extends AbstractExportMethod<Event> implements
             String eventId = "SF11E" + event.getId().toString();
 
             // Get event slice with greatest growth weight
-            List<EventSlice> slices = event.getSlices();
-            EventSlice slice = Sorted.by(slices, EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
+            EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
 
             // Get event name and url
             String eventName = slice.getEvent().getDisplayName();
@@ -32,7 +32,6 @@ import smartfire.Config;
 import smartfire.database.*;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.XYPoint;
-import smartfire.util.Sorted;
 
 /**
  * ExportMethod for exporting FRP data to the BlueSky Framework.  FRP values are acquired from raw data.
@@ -74,8 +73,7 @@ public class BlueSkyFRPExportMethod extends BlueSkyTextExportMethod implements E
             String eventId = "SF2FRP" + event.getId().toString();
 
             // Get event slice with greatest growth weight (this will also dictate FRP)
-            List<EventSlice> slices = event.getSlices();
-            EventSlice slice = Sorted.by(slices, EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
+            EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
 
             // Get event name and url
             String eventName = slice.getEvent().getDisplayName();
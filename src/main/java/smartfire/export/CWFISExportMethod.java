@@ -33,7 +33,6 @@ import smartfire.Config;
 import smartfire.database.*;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.XYPoint;
-import smartfire.util.Sorted;
 
 /**
  * ExportMethod for exporting data to the BlueSky Framework.
@@ -78,8 +77,7 @@ public class CWFISExportMethod extends BlueSkyTextExportMethod implements Export
             String eventId = "SF11E" + event.getId().toString();
 
             // Get event slice with greatest growth weight
-            List<EventSlice> slices = event.getSlices();
-            EventSlice slice = Sorted.by(slices, EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
+            EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
 
             // Get event name and url
             String eventName = slice.getEvent().getDisplayName();
@@ -0,0 +1,345 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.google.common.collect.Maps;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.Source;
+
+/**
+ * Caches the output of export requests.
+ *
+ * <p>Every cached export belongs to a "scope", which identifies the data it
+ * was generated from (e.g. the events in a particular ReconciliationStream,
+ * or the raw data, clumps and fires from a particular Source).  Each scope has
+ * a version number that is bumped whenever the underlying data changes; an
+ * export is only served from the cache if it was generated from the current
+ * version of its scope.  The version also forms part of the export's ETag,
+ * so conditional requests can be answered without generating the export or
+ * even loading the data.
+ *
+ * <p>The cache is bounded by the total size of the cached exports, and
+ * evicts the least recently used exports first.
+ */
+public class ExportCache {
+    private static final Logger log = LoggerFactory.getLogger(ExportCache.class);
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    // Distinguishes ETags issued before and after a restart
+    private final String instanceTag = Long.toHexString(System.currentTimeMillis());
+    private final AtomicLong versionCounter = new AtomicLong();
+    private final ConcurrentMap<String, ScopeVersion> scopeVersions = Maps.newConcurrentMap();
+    private volatile ScopeVersion defaultVersion;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    public ExportCache() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Constructs a new ExportCache.
+     *
+     * @param maxBytes the maximum total size of the cached exports; a single
+     *                 export larger than a quarter of this will not be cached
+     */
+    public ExportCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+        this.defaultVersion = new ScopeVersion(0, System.currentTimeMillis());
+    }
+
+    public static String scopeFor(Source source) {
+        return "source:" + source.getId();
+    }
+
+    public static String scopeFor(ReconciliationStream stream) {
+        return "stream:" + stream.getId();
+    }
+
+    public static String scopeForStream(Integer streamId) {
+        return "stream:" + streamId;
+    }
+
+    /**
+     * Marks the data in the given scope as changed.  Any exports cached for
+     * that scope will no longer be served, and their ETags will change.
+     *
+     * @param scope the scope whose data has changed
+     */
+    public void invalidate(String scope) {
+        long version = versionCounter.incrementAndGet();
+        scopeVersions.put(scope, new ScopeVersion(version, System.currentTimeMillis()));
+        synchronized(entries) {
+            Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+            while(iter.hasNext()) {
+                Entry entry = iter.next().getValue();
+                if(entry.scope.equals(scope)) {
+                    totalBytes -= entry.content.length;
+                    iter.remove();
+                }
+            }
+        }
+        log.debug("Invalidated cached exports for {}", scope);
+    }
+
+    /**
+     * Marks the data in every scope as changed.
+     */
+    public void invalidateAll() {
+        long version = versionCounter.incrementAndGet();
+        long now = System.currentTimeMillis();
+        for(String scope : scopeVersions.keySet()) {
+            scopeVersions.put(scope, new ScopeVersion(version, now));
+        }
+        // Scopes that haven't been invalidated before use the default version
+        defaultVersion = new ScopeVersion(version, now);
+        synchronized(entries) {
+            entries.clear();
+            totalBytes = 0;
+        }
+        log.debug("Invalidated all cached exports");
+    }
+
+    /**
+     * Gets the current data version of the given scope.
+     *
+     * @param scope the scope
+     * @return a version number, which changes whenever the scope's data does
+     */
+    public long getVersion(String scope) {
+        return getScopeVersion(scope).version;
+    }
+
+    /**
+     * Gets the time at which the data in the given scope was last known to
+     * change.  Before any change has been seen, this is the time the cache
+     * was created.
+     *
+     * @param scope the scope
+     * @return the last modification time, in milliseconds since the epoch
+     */
+    public long getLastModified(String scope) {
+        return getScopeVersion(scope).lastModified;
+    }
+
+    /**
+     * Computes the ETag for an export in the given scope with the given key.
+     *
+     * @param scope the scope of the export
+     * @param key a key identifying the export within its scope
+     * @param version the data version of the scope
+     * @return a quoted ETag string
+     */
+    public String getETag(String scope, String key, long version) {
+        String tag = instanceTag + "-" + Long.toHexString(version) + "-" + Integer.toHexString((scope + "|" + key).hashCode());
+        return "\"" + tag + "\"";
+    }
+
+    /**
+     * Looks up a cached export.
+     *
+     * @param scope the scope of the export
+     * @param key a key identifying the export within its scope
+     * @return the cached export, or null if there is no current export
+     */
+    public Entry get(String scope, String key) {
+        long version = getVersion(scope);
+        synchronized(entries) {
+            Entry entry = entries.get(scope + "|" + key);
+            if(entry != null && entry.version != version) {
+                entries.remove(scope + "|" + key);
+                totalBytes -= entry.content.length;
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Returns an OutputStream that passes output through to the given stream
+     * while recording it, so it can be added to the cache afterwards by
+     * calling {@link Recorder#commit()}.
+     *
+     * @param out the stream to write to
+     * @param scope the scope of the export
+     * @param key a key identifying the export within its scope
+     * @param version the data version of the scope at the time the export's
+     *                data was loaded
+     * @param contentType the content type of the export
+     * @return a new Recorder
+     */
+    public Recorder record(OutputStream out, String scope, String key, long version, String contentType) {
+        return new Recorder(out, scope, key, version, contentType);
+    }
+
+    /**
+     * Returns the total size of all cached exports.
+     *
+     * @return the size, in bytes
+     */
+    public long getTotalBytes() {
+        synchronized(entries) {
+            return totalBytes;
+        }
+    }
+
+    private ScopeVersion getScopeVersion(String scope) {
+        ScopeVersion result = scopeVersions.get(scope);
+        return (result == null) ? defaultVersion : result;
+    }
+
+    private void put(Entry entry) {
+        if(entry.version != getVersion(entry.scope)) {
+            // The data changed while we were generating the export
+            return;
+        }
+        String fullKey = entry.scope + "|" + entry.key;
+        synchronized(entries) {
+            Entry previous = entries.put(fullKey, entry);
+            if(previous != null) {
+                totalBytes -= previous.content.length;
+            }
+            totalBytes += entry.content.length;
+            Iterator<Entry> iter = entries.values().iterator();
+            while(totalBytes > maxBytes && iter.hasNext()) {
+                Entry eldest = iter.next();
+                totalBytes -= eldest.content.length;
+                iter.remove();
+            }
+        }
+    }
+
+    private static final class ScopeVersion {
+        private final long version;
+        private final long lastModified;
+
+        ScopeVersion(long version, long lastModified) {
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * A cached export.
+     */
+    public static final class Entry {
+        private final String scope;
+        private final String key;
+        private final long version;
+        private final String contentType;
+        private final byte[] content;
+
+        Entry(String scope, String key, long version, String contentType, byte[] content) {
+            this.scope = scope;
+            this.key = key;
+            this.version = version;
+            this.contentType = contentType;
+            this.content = content;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(content);
+        }
+    }
+
+    /**
+     * OutputStream that records everything written through it, up to the
+     * cache's per-export size limit.
+     */
+    public final class Recorder extends OutputStream {
+        private final OutputStream out;
+        private final String scope;
+        private final String key;
+        private final long version;
+        private final String contentType;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        private Recorder(OutputStream out, String scope, String key, long version, String contentType) {
+            this.out = out;
+            this.scope = scope;
+            this.key = key;
+            this.version = version;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if(buffer != null) {
+                buffer.write(b);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if(buffer != null) {
+                buffer.write(b, off, len);
+                checkSize();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        /**
+         * Adds the recorded output to the cache.  This should only be called
+         * once the export has completed successfully.
+         */
+        public void commit() {
+            if(buffer != null) {
+                put(new Entry(scope, key, version, contentType, buffer.toByteArray()));
+                buffer = null;
+            }
+        }
+
+        private void checkSize() {
+            if(buffer.size() > maxEntryBytes) {
+                log.debug("Export {} is too large to cache", key);
+                buffer = null;
+            }
+        }
+    }
+}
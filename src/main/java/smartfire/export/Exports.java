@@ -16,11 +16,16 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.export;
 
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.*;
+import javax.servlet.http.HttpServletResponse;
 import org.joda.time.DateTime;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -34,6 +39,12 @@ import smartfire.gis.GeometryBuilder;
 public final class Exports {
     private static final Map<String, ExportMethod> methodsBySlugName;
     private static final Map<String, ExportMethod> methodsByDisplayName;
+    private static final Comparator<Exportable> BY_AREA_DESC = new Comparator<Exportable>() {
+        @Override
+        public int compare(Exportable a, Exportable b) {
+            return Double.compare(b.getArea(), a.getArea());
+        }
+    };
     
     static {
         methodsBySlugName = Maps.newHashMap();
@@ -58,6 +69,47 @@ public final class Exports {
             StaplerRequest request, 
             StaplerResponse response
             ) throws IOException {
+        handleDynamicRequest(urlPiece, entityClass, Suppliers.ofInstance(entities), null,
+                startDate, endDate, appSettings, fileBaseName, request, response);
+    }
+
+    /**
+     * Handles a request to export data, using the application's ExportCache.
+     * 
+     * <p>The response carries an ETag and Last-Modified header derived from
+     * the current data version of the given cache scope.  If the request's
+     * If-None-Match (or If-Modified-Since) header shows that the client
+     * already has the current export, a 304 response is sent without loading
+     * the entities.  Otherwise the export is served from the cache if
+     * possible, or generated and added to the cache.
+     * 
+     * @param <T> the type of entities to export
+     * @param urlPiece the slug name of the requested ExportMethod
+     * @param entityClass the class of the entities to export
+     * @param entities supplies the entities to export; it is only called
+     *                 if the export actually needs to be generated
+     * @param cacheScope the ExportCache scope that the entities belong to,
+     *                   or null to disable caching
+     * @param startDate the start of the exported date range
+     * @param endDate the end of the exported date range
+     * @param appSettings the current application settings
+     * @param fileBaseName the base name of the downloaded file
+     * @param request the current request
+     * @param response the current response
+     * @throws IOException if an error occurs writing the response
+     */
+    public static <T extends Exportable> void handleDynamicRequest(
+            String urlPiece, 
+            Class<T> entityClass, 
+            Supplier<? extends List<T>> entities,
+            String cacheScope,
+            DateTime startDate,
+            DateTime endDate,
+            ApplicationSettings appSettings,
+            String fileBaseName,
+            StaplerRequest request, 
+            StaplerResponse response
+            ) throws IOException {
         
         ExportMethod method = methodsBySlugName.get(urlPiece);
         Class<? extends Exportable> exportableType = method.getExportableType();
@@ -66,22 +118,91 @@ public final class Exports {
                     + " using ExportMethod " + method.getDisplayName());
         }
         
-        @SuppressWarnings("unchecked")
-        List<Exportable> downcastList = (List<Exportable>) Collections.unmodifiableList(entities);
-        
         response.setHeader("Content-type", method.getContentType());
         String attachmentFileName = fileBaseName + method.getFileExtension();
         response.setHeader("Content-disposition", "attachment;filename=" + attachmentFileName);
+
+        ExportCache cache = appSettings.getExportCache();
+        if(cacheScope == null || cache == null) {
+            OutputStream out = null;
+            try {
+                out = response.getCompressedOutputStream(request);
+                exportToStream(method, request, out, appSettings, attachmentFileName, entities.get(), startDate, endDate);
+            } finally {
+                if(out != null) {
+                    out.close();
+                }
+            }
+            return;
+        }
+
+        String key = urlPiece + "|" + startDate + "|" + endDate + "|" + request.getQueryString();
+        long version = cache.getVersion(cacheScope);
+        long lastModified = cache.getLastModified(cacheScope);
+        String etag = cache.getETag(cacheScope, key, version);
+        response.setHeader("ETag", etag);
+        response.setDateHeader("Last-Modified", lastModified);
+        response.setHeader("Cache-Control", "no-cache");
+        if(isNotModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
         OutputStream out = null;
         try {
             out = response.getCompressedOutputStream(request);
-            method.exportToStream(request, out, appSettings, attachmentFileName, downcastList, startDate, endDate);
+            ExportCache.Entry cached = cache.get(cacheScope, key);
+            if(cached != null) {
+                cached.writeTo(out);
+            } else {
+                ExportCache.Recorder recorder = cache.record(out, cacheScope, key, version, method.getContentType());
+                exportToStream(method, request, recorder, appSettings, attachmentFileName, entities.get(), startDate, endDate);
+                recorder.commit();
+            }
         } finally {
             if(out != null) {
                 out.close();
             }
         }
     }
+
+    private static <T extends Exportable> void exportToStream(
+            ExportMethod method,
+            StaplerRequest request,
+            OutputStream out,
+            ApplicationSettings appSettings,
+            String attachmentFileName,
+            List<T> entities,
+            DateTime startDate,
+            DateTime endDate) throws IOException {
+        @SuppressWarnings("unchecked")
+        List<Exportable> downcastList = (List<Exportable>) Collections.unmodifiableList(entities);
+        method.exportToStream(request, out, appSettings, attachmentFileName, downcastList, startDate, endDate);
+    }
+
+    private static boolean isNotModified(StaplerRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if(ifNoneMatch != null) {
+            for(String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if(tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if(tag.equals(etag) || tag.equals("*")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader("If-Modified-Since");
+        } catch(IllegalArgumentException e) {
+            return false;
+        }
+        // HTTP dates only have a resolution of one second
+        return ifModifiedSince >= 0 && (lastModified / 1000) <= (ifModifiedSince / 1000);
+    }
     
     public static Map<String, Class<?>> getMemberMapSpecialFields(Iterable<? extends Exportable> records) {
         Map<String, Class<?>> result = Maps.newTreeMap(String.CASE_INSENSITIVE_ORDER);
@@ -140,6 +261,28 @@ public final class Exports {
         return getExportRows(geometryBuilder, records, attributeNames);
     }
     
+    /**
+     * Returns the export rows for the given records, in the same order as
+     * {@link #getExportRows}, but creates each row only as it is iterated.
+     * The returned Iterable may be iterated more than once.
+     * 
+     * @param geometryBuilder the GeometryBuilder used to locate each record
+     * @param records the records to export
+     * @param attributeNames the attributes to include in each row
+     * @return a lazily-evaluated Iterable of export rows
+     */
+    public static Iterable<ExportRow> iterateExportRows(final GeometryBuilder geometryBuilder,
+            Iterable<? extends Exportable> records, final List<String> attributeNames) {
+        List<Exportable> entities = Lists.newArrayList(records);
+        Collections.sort(entities, BY_AREA_DESC);
+        return Iterables.transform(entities, new Function<Exportable, ExportRow>() {
+            @Override
+            public ExportRow apply(Exportable entity) {
+                return new ExportRow(geometryBuilder, attributeNames, entity);
+            }
+        });
+    }
+    
     public static Map<String, Object> getExportedValues(Exportable entity) {
         Map<String, Object> result = Maps.newLinkedHashMap();
         for(String key : entity.getExtraExportMemberMap().keySet()) {
@@ -0,0 +1,296 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.MultiPoint;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.joda.time.DateTime;
+import org.joda.time.ReadableInstant;
+import org.kohsuke.MetaInfServices;
+import org.kohsuke.stapler.StaplerRequest;
+import smartfire.ApplicationSettings;
+import smartfire.SmartfireException;
+import smartfire.gis.CoordinateTransformer;
+import smartfire.gis.GeometryBuilder;
+
+/**
+ * ExportMethod for exporting as a GeoJSON FeatureCollection.
+ * 
+ * <p>Coordinates are written as (longitude, latitude) pairs.  Two optional
+ * request parameters control the size of the output:
+ * <ul>
+ *   <li><b>precision</b>: the number of decimal places written for each
+ *       coordinate (default 5, which is roughly one meter)</li>
+ *   <li><b>simplify</b>: a simplification tolerance, in meters, applied to
+ *       each shape before it is written (default 0, meaning none)</li>
+ * </ul>
+ */
+@MetaInfServices(ExportMethod.class)
+public class GeoJSONExportMethod extends AbstractExportMethod<Exportable> implements ExportMethod {
+    public static final int DEFAULT_PRECISION = 5;
+    public static final int MAX_PRECISION = 10;
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    static {
+        jsonFactory.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    }
+
+    public GeoJSONExportMethod() {
+        super("GeoJSON", "geojson", "/images/icons/geojsonfile-32x32.png", Exportable.class, "application/json", ".geojson");
+    }
+
+    @Override
+    protected void performExport(
+            StaplerRequest request,
+            OutputStream stream,
+            ApplicationSettings appSettings,
+            String exportFileName,
+            List<Exportable> records,
+            DateTime startDate,
+            DateTime endDate
+            ) throws IOException {
+        int precision = DEFAULT_PRECISION;
+        double tolerance = 0;
+        if(request != null) {
+            precision = parsePrecision(request.getParameter("precision"));
+            tolerance = parseTolerance(request.getParameter("simplify"));
+        }
+        writeGeoJson(stream, appSettings.getGeometryBuilder(), records, precision, tolerance);
+    }
+
+    /**
+     * Writes the given records to a stream as a GeoJSON FeatureCollection.
+     * Each feature is generated from its record only when it is written, so
+     * apart from the records themselves, nothing is held in memory for the
+     * collection as a whole.
+     * 
+     * @param out the stream to write to; it is not closed
+     * @param geometryBuilder the GeometryBuilder used to transform shapes
+     *                        into longitude/latitude
+     * @param records the records to export
+     * @param precision the number of decimal places to write for coordinates
+     * @param tolerance the simplification tolerance in the native coordinate
+     *                  system units (meters), or zero to disable simplification
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public static void writeGeoJson(OutputStream out, GeometryBuilder geometryBuilder,
+            List<? extends Exportable> records, int precision, double tolerance) throws IOException {
+        CoordinateTransformer xform = geometryBuilder.newLonLatOutputTransformer();
+        CoordinateFormat format = new CoordinateFormat(precision);
+        JsonGenerator json = jsonFactory.createJsonGenerator(out, JsonEncoding.UTF8);
+        try {
+            json.writeStartObject();
+            json.writeStringField("type", "FeatureCollection");
+            json.writeArrayFieldStart("features");
+            List<String> attributeNames = Exports.getAllHeadings(records);
+            for(ExportRow row : Exports.iterateExportRows(geometryBuilder, records, attributeNames)) {
+                json.writeStartObject();
+                json.writeStringField("type", "Feature");
+
+                json.writeFieldName("geometry");
+                Geometry shape = row.getExportShape();
+                if(shape == null || shape.isEmpty()) {
+                    json.writeNull();
+                } else {
+                    if(tolerance > 0 && !(shape instanceof Point) && !(shape instanceof MultiPoint)) {
+                        shape = TopologyPreservingSimplifier.simplify(shape, tolerance);
+                    }
+                    writeGeometry(json, format, xform.transform(shape));
+                }
+
+                json.writeObjectFieldStart("properties");
+                for(Map.Entry<String, Object> entry : row.getExportedValues().entrySet()) {
+                    json.writeFieldName(entry.getKey());
+                    writeValue(json, entry.getValue());
+                }
+                json.writeEndObject();
+
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } finally {
+            json.close();
+        }
+    }
+
+    static int parsePrecision(String value) {
+        if(value == null || value.isEmpty()) {
+            return DEFAULT_PRECISION;
+        }
+        try {
+            int precision = Integer.parseInt(value);
+            return Math.max(0, Math.min(MAX_PRECISION, precision));
+        } catch(NumberFormatException e) {
+            throw new SmartfireException("Invalid precision \"" + value + "\"; expected a number of decimal places");
+        }
+    }
+
+    static double parseTolerance(String value) {
+        if(value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Double.parseDouble(value));
+        } catch(NumberFormatException e) {
+            throw new SmartfireException("Invalid simplify tolerance \"" + value + "\"; expected a distance in meters");
+        }
+    }
+
+    private static void writeValue(JsonGenerator json, Object value) throws IOException {
+        if(value == null) {
+            json.writeNull();
+        } else if(value instanceof Integer || value instanceof Long || value instanceof Short) {
+            json.writeNumber(((Number) value).longValue());
+        } else if(value instanceof Number) {
+            json.writeNumber(((Number) value).doubleValue());
+        } else if(value instanceof Boolean) {
+            json.writeBoolean((Boolean) value);
+        } else if(value instanceof java.util.Date || value instanceof ReadableInstant) {
+            json.writeString(new DateTime(value).toString());
+        } else {
+            json.writeString(value.toString());
+        }
+    }
+
+    private static void writeGeometry(JsonGenerator json, CoordinateFormat format, Geometry geom) throws IOException {
+        json.writeStartObject();
+        if(geom instanceof Point) {
+            json.writeStringField("type", "Point");
+            json.writeFieldName("coordinates");
+            writeCoordinate(json, format, geom.getCoordinate());
+        } else if(geom instanceof LineString) {
+            json.writeStringField("type", "LineString");
+            json.writeFieldName("coordinates");
+            writeCoordinates(json, format, geom.getCoordinates());
+        } else if(geom instanceof Polygon) {
+            json.writeStringField("type", "Polygon");
+            json.writeFieldName("coordinates");
+            writePolygon(json, format, (Polygon) geom);
+        } else if(geom instanceof MultiPoint) {
+            json.writeStringField("type", "MultiPoint");
+            json.writeFieldName("coordinates");
+            writeCoordinates(json, format, geom.getCoordinates());
+        } else if(geom instanceof MultiLineString) {
+            json.writeStringField("type", "MultiLineString");
+            json.writeArrayFieldStart("coordinates");
+            for(int i = 0; i < geom.getNumGeometries(); i++) {
+                writeCoordinates(json, format, geom.getGeometryN(i).getCoordinates());
+            }
+            json.writeEndArray();
+        } else if(geom instanceof MultiPolygon) {
+            json.writeStringField("type", "MultiPolygon");
+            json.writeArrayFieldStart("coordinates");
+            for(int i = 0; i < geom.getNumGeometries(); i++) {
+                writePolygon(json, format, (Polygon) geom.getGeometryN(i));
+            }
+            json.writeEndArray();
+        } else if(geom instanceof GeometryCollection) {
+            json.writeStringField("type", "GeometryCollection");
+            json.writeArrayFieldStart("geometries");
+            for(int i = 0; i < geom.getNumGeometries(); i++) {
+                writeGeometry(json, format, geom.getGeometryN(i));
+            }
+            json.writeEndArray();
+        } else {
+            throw new SmartfireException("Error exporting to GeoJSON: unable to write \""
+                    + geom.getGeometryType() + "\" geometry");
+        }
+        json.writeEndObject();
+    }
+
+    private static void writePolygon(JsonGenerator json, CoordinateFormat format, Polygon poly) throws IOException {
+        json.writeStartArray();
+        writeCoordinates(json, format, poly.getExteriorRing().getCoordinates());
+        for(int i = 0; i < poly.getNumInteriorRing(); i++) {
+            writeCoordinates(json, format, poly.getInteriorRingN(i).getCoordinates());
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeCoordinates(JsonGenerator json, CoordinateFormat format, Coordinate[] coords) throws IOException {
+        json.writeStartArray();
+        for(Coordinate coord : coords) {
+            writeCoordinate(json, format, coord);
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeCoordinate(JsonGenerator json, CoordinateFormat format, Coordinate coord) throws IOException {
+        json.writeStartArray();
+        json.writeNumber(format.format(coord.x));
+        json.writeNumber(format.format(coord.y));
+        json.writeEndArray();
+    }
+
+    /**
+     * Formats coordinate values to a fixed number of decimal places, without
+     * trailing zeros or exponential notation.
+     */
+    static class CoordinateFormat {
+        private final int precision;
+        private final double scale;
+        private final StringBuilder sb = new StringBuilder();
+
+        CoordinateFormat(int precision) {
+            this.precision = precision;
+            this.scale = Math.pow(10, precision);
+        }
+
+        String format(double value) {
+            long scaled = Math.round(Math.abs(value) * scale);
+            if(scaled == 0) {
+                return "0";
+            }
+            sb.setLength(0);
+            if(value < 0) {
+                sb.append('-');
+            }
+            long divisor = (long) scale;
+            sb.append(scaled / divisor);
+            long fraction = scaled % divisor;
+            if(fraction != 0) {
+                sb.append('.');
+                String digits = Long.toString(fraction);
+                for(int i = digits.length(); i < precision; i++) {
+                    sb.append('0');
+                }
+                int end = digits.length();
+                while(digits.charAt(end - 1) == '0') {
+                    end--;
+                }
+                sb.append(digits, 0, end);
+            }
+            return sb.toString();
+        }
+    }
+}
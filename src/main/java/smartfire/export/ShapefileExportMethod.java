@@ -17,35 +17,14 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 package smartfire.export;
 
 import com.google.common.collect.Lists;
-import com.sti.justice.util.ZipUtil;
-import com.vividsolutions.jts.geom.Geometry;
-import java.io.*;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.geotools.data.DefaultTransaction;
-import org.geotools.data.FeatureSource;
-import org.geotools.data.FeatureStore;
-import org.geotools.data.Transaction;
-import org.geotools.data.shapefile.ShapefileDataStore;
-import org.geotools.data.shapefile.ShapefileDataStoreFactory;
-import org.geotools.feature.DefaultFeatureCollection;
-import org.geotools.feature.FeatureCollection;
-import org.geotools.feature.FeatureCollections;
-import org.geotools.feature.simple.SimpleFeatureBuilder;
-import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
-import org.geotools.referencing.CRS;
 import org.joda.time.DateTime;
 import org.kohsuke.MetaInfServices;
 import org.kohsuke.stapler.StaplerRequest;
-import org.opengis.feature.simple.SimpleFeature;
-import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import smartfire.ApplicationSettings;
-import smartfire.SmartfireException;
-import smartfire.gis.GeometryBuilder;
 
 
 /**
@@ -72,166 +51,25 @@ public class ShapefileExportMethod extends AbstractExportMethod<Exportable> impl
             DateTime startDate,
             DateTime endDate) throws IOException {
 
-        File shapeFile = null;
-        InputStream in = null;
-        try {
-            shapeFile = createShapefile(appSettings, exportFileName, entities);
-            if (shapeFile != null) {
-                in = new FileInputStream(shapeFile);
-                IOUtils.copy(in, out);
-            }
-        } finally {
-            if(in != null) {
-                in.close();
-            }
-            if(out != null) {
-                out.close();
-            }
-
-            // Cleanup shape file
-            if(shapeFile != null) {
-                shapeFile.delete();
-            }
-        }
-    }
-
-    protected <T extends Exportable> File createShapefile(
-            ApplicationSettings settings, String baseFileName, Iterable<T> records) {
-        List<T> recordList = Lists.newArrayList(records);
-        if(recordList.isEmpty()) {
-            return null;
-        }
-        File folder = getTempFolder();
-        try {
-            String wkt = settings.getConfig().getCoordSysWKT();
-            CoordinateReferenceSystem crs = CRS.parseWKT(wkt);
-            Map<String, Class<?>> memberMap = Exports.getMemberMapAllFields(records);
-            SimpleFeatureType featureType = buildFeatureType(crs, recordList, memberMap);
-            FeatureCollection<SimpleFeatureType, SimpleFeature> features = buildFeatures(settings.getGeometryBuilder(), featureType, recordList, memberMap);
-            createShapefile(folder, baseFileName, featureType, features);
-            // NOTE: We re-create the .prj file because GeoTools does it in a way
-            // that the ESRI tools don't like.  This may not be an issue with
-            // ArcGIS 10 but it seemed better to be backwards-compatible.
-            File prjFile = new File(folder, baseFileName + ".prj");
-            prjFile.delete();
-            FileUtils.writeStringToFile(prjFile, wkt);
-            return ZipUtil.zipUpFolder(folder);
-        } catch(Exception e) {
-            log.error("Unable to create shapefile.", e);
-            throw new SmartfireException("Unable to create shapefile", e);
-        } finally {
-            try {
-                log.debug("Deleting temporary folder {}", folder);
-                FileUtils.deleteDirectory(folder);
-            } catch(IOException e) {
-                log.warn("Unable to delete temporary folder", e);
-            }
-        }
-    }
-
-    protected void createShapefile(File folder, String baseFileName, SimpleFeatureType featureType,
-            FeatureCollection<SimpleFeatureType, SimpleFeature> features) throws Exception {
-
-        File shapeFile = new File(folder, baseFileName + ".shp");
-
-        // Create the ShapefileDataStore
-        ShapefileDataStoreFactory dataStoreFactory = new ShapefileDataStoreFactory();
-        Map<String, Serializable> params = new HashMap<String, Serializable>();
-        params.put("url", shapeFile.toURI().toURL());
-        params.put("create spatial index", Boolean.TRUE);
-        ShapefileDataStore newDataStore = (ShapefileDataStore) dataStoreFactory.createNewDataStore(params);
-        newDataStore.createSchema(featureType);
-
-        // Write the features to the shapefile
-        Transaction transaction = new DefaultTransaction("create");
-
-        String typeName = newDataStore.getTypeNames()[0];
-        FeatureSource<SimpleFeatureType, SimpleFeature> featureSource = newDataStore.getFeatureSource(typeName);
-
-        if(!(featureSource instanceof FeatureStore<?, ?>)) {
-            throw new SmartfireException("File does not support read/write access");
+        if(entities.isEmpty()) {
+            return;
         }
-
-        FeatureStore<SimpleFeatureType, SimpleFeature> featureStore = (FeatureStore<SimpleFeatureType, SimpleFeature>) featureSource;
-
-        featureStore.setTransaction(transaction);
-        try {
-            featureStore.addFeatures(features);
-            transaction.commit();
-        } catch(Exception e) {
-            log.error("Problem creating shape file.", e);
-            throw new SmartfireException("Problem creating file.", e);
-        } finally {
-            transaction.close();
-            newDataStore.dispose();
-        }
-    }
-
-    protected <T extends Exportable> FeatureCollection<SimpleFeatureType, SimpleFeature> buildFeatures(
-            GeometryBuilder geometryBuilder, SimpleFeatureType featureType, List<T> records, Map<String, Class<?>> memberMap) {
-
-        // Construct the FeatureCollection that will hold all the records
-        FeatureCollection<SimpleFeatureType, SimpleFeature> fc = FeatureCollections.newCollection();
-        DefaultFeatureCollection result = new DefaultFeatureCollection(fc);
-
-        // Construct a builder for the FeatureType
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
-
+        Map<String, Class<?>> memberMap = getMemberMap(entities);
         List<String> attributeNames = Lists.newArrayList(memberMap.keySet());
-        List<ExportRow> rows = Exports.getExportRows(geometryBuilder, records, attributeNames);
-
-        // Create Feature objects
-        for(ExportRow row : rows) {
-            // Set the geometry field
-            builder.set("shape", row.getExportShape());
-
-            // Set other fields from the export member map
-            for(String key : row.getHeadings()) {
-                if(!"shape".equals(key)) {
-                    builder.set(key, row.getExportMember(key));
-                }
-            }
+        Iterable<ExportRow> rows = Exports.iterateExportRows(appSettings.getGeometryBuilder(), entities, attributeNames);
 
-            // Build the feature
-            SimpleFeature feature = builder.buildFeature(null);
-
-            // And add it to the result collection
-            result.add(feature);
-        }
-        return result;
+        String wkt = appSettings.getConfig().getCoordSysWKT();
+        StreamingShapefileWriter writer = new StreamingShapefileWriter(exportFileName, wkt);
+        writer.writeZip(out, memberMap, rows);
     }
 
-    protected <T extends Exportable> SimpleFeatureType buildFeatureType(
-            CoordinateReferenceSystem crs, List<T> records, Map<String, Class<?>> memberMap) throws Exception {
-
-        if(records.isEmpty()) {
-            throw new SmartfireException("Unable to export an empty list");
-        }
-
-        SimpleFeatureTypeBuilder builder = new SimpleFeatureTypeBuilder();
-        builder.setCRS(crs);
-
-        // Set the name from the class name
-        T obj = records.get(0);
-        builder.setName(obj.getClass().getSimpleName());
-
-        // Get geometry class and verify it is a geometry.
-        Class<?> geomClass = records.get(0).getShape().getClass();
-        if(!Geometry.class.isAssignableFrom(geomClass)) {
-            throw new SmartfireException("Unexpected shape class: " + geomClass.getName());
-        }
-
-        // Add geometry column
-        builder.add("shape", geomClass);
-
-        // Add exportable fields
-        for(Map.Entry<String, Class<?>> entry : memberMap.entrySet()) {
-            String key = entry.getKey();
-            if(!"shape".equals(key)) {
-                builder.add(entry.getKey(), entry.getValue());
-            }
-        }
-
-        return builder.buildFeatureType();
+    /**
+     * Determines the attribute columns to include in the exported shapefile.
+     * 
+     * @param records the records being exported
+     * @return a map of attribute names to their types
+     */
+    protected Map<String, Class<?>> getMemberMap(List<? extends Exportable> records) {
+        return Exports.getMemberMapAllFields(records);
     }
 }
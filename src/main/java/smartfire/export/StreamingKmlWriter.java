@@ -0,0 +1,266 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import smartfire.SmartfireException;
+import smartfire.gis.CoordinateTransformer;
+import smartfire.gis.GeometryBuilder;
+import smartfire.gis.GeometryEntity;
+import smartfire.gis.XYPoint;
+
+/**
+ * Writes KML documents directly to an OutputStream, one placemark at a time.
+ *
+ * <p>This produces the same document structure as the JAK object model
+ * would, but without building the whole document tree in memory before
+ * marshalling it.  Typical usage is:
+ * <pre>
+ *     StreamingKmlWriter writer = new StreamingKmlWriter(out, geometryBuilder);
+ *     writer.writeStartDocument(folderName);
+ *     for(GeometryEntity entity : entities) {
+ *         writer.writePlacemark(entity);
+ *     }
+ *     writer.writeEndDocument();
+ * </pre>
+ */
+public class StreamingKmlWriter implements Closeable {
+    public static final String KML_NAMESPACE = "http://www.opengis.net/kml/2.2";
+    private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final DecimalFormat df = new DecimalFormat("#.##");
+    private final XMLStreamWriter xml;
+    private final CoordinateTransformer xform;
+    private final StringBuilder coords = new StringBuilder();
+    private int numPlacemarks = 0;
+
+    public StreamingKmlWriter(OutputStream out, GeometryBuilder geometryBuilder) throws IOException {
+        this.xform = geometryBuilder.newLonLatOutputTransformer();
+        try {
+            this.xml = outputFactory.createXMLStreamWriter(out, "UTF-8");
+        } catch(XMLStreamException e) {
+            throw new IOException("Unable to create KML writer", e);
+        }
+    }
+
+    /**
+     * Writes the KML header, the shared placemark styles, and opens the
+     * Folder that will contain the placemarks.
+     *
+     * @param folderName the name of the enclosing Folder
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public void writeStartDocument(String folderName) throws IOException {
+        try {
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.setDefaultNamespace(KML_NAMESPACE);
+            xml.writeStartElement(KML_NAMESPACE, "kml");
+            xml.writeDefaultNamespace(KML_NAMESPACE);
+            xml.writeStartElement(KML_NAMESPACE, "Document");
+
+            xml.writeStartElement(KML_NAMESPACE, "Style");
+            xml.writeAttribute("id", "fire");
+            xml.writeStartElement(KML_NAMESPACE, "IconStyle");
+            writeElement("color", "FFE22B8A");
+            writeElement("scale", "0.2");
+            xml.writeStartElement(KML_NAMESPACE, "Icon");
+            writeElement("href", "http://www.getbluesky.org/images/drawSquare.png"); // FIXME: Hard coded icon
+            xml.writeEndElement(); // Icon
+            xml.writeEndElement(); // IconStyle
+            xml.writeEndElement(); // Style
+
+            xml.writeStartElement(KML_NAMESPACE, "Style");
+            xml.writeAttribute("id", "poly");
+            xml.writeStartElement(KML_NAMESPACE, "LineStyle");
+            writeElement("color", "CC4C4CA6");
+            xml.writeEndElement(); // LineStyle
+            xml.writeStartElement(KML_NAMESPACE, "PolyStyle");
+            writeElement("color", "CC4C4CA6");
+            writeElement("fill", "1");
+            writeElement("outline", "1");
+            xml.writeEndElement(); // PolyStyle
+            xml.writeEndElement(); // Style
+
+            xml.writeStartElement(KML_NAMESPACE, "Folder");
+            writeElement("name", folderName);
+        } catch(XMLStreamException e) {
+            throw new IOException("Error writing KML header", e);
+        }
+    }
+
+    /**
+     * Writes a single Placemark for the given entity.  Points are written
+     * with the "fire" style, and Polygons and MultiPolygons with the "poly"
+     * style.
+     *
+     * @param entity the entity to write
+     * @throws IOException if an error occurs writing to the stream
+     * @throws SmartfireException if the entity's geometry type is not
+     *                            supported
+     */
+    public void writePlacemark(GeometryEntity entity) throws IOException {
+        Geometry geom = entity.getShape();
+        try {
+            if(geom instanceof Point) {
+                Point point = (Point) geom;
+                XYPoint lonlat = xform.transform(point.getX(), point.getY());
+                xml.writeStartElement(KML_NAMESPACE, "Placemark");
+                writeElement("name", defaultName(entity.getShapeName(), lonlat));
+                writeElement("open", "0");
+                writeElement("styleUrl", "#fire");
+                xml.writeStartElement(KML_NAMESPACE, "Point");
+                coords.setLength(0);
+                appendCoordinate(lonlat);
+                writeElement("coordinates", coords.toString());
+                xml.writeEndElement(); // Point
+                xml.writeEndElement(); // Placemark
+            } else if(geom instanceof MultiPolygon || geom instanceof Polygon) {
+                Point centroid = geom.getCentroid();
+                XYPoint lonlat = xform.transform(centroid.getX(), centroid.getY());
+                xml.writeStartElement(KML_NAMESPACE, "Placemark");
+                writeElement("name", defaultName(entity.getShapeName(), lonlat));
+                writeElement("styleUrl", "#poly");
+                if(geom instanceof MultiPolygon) {
+                    xml.writeStartElement(KML_NAMESPACE, "MultiGeometry");
+                    final int numPolygons = geom.getNumGeometries();
+                    for(int i = 0; i < numPolygons; i++) {
+                        writePolygon((Polygon) geom.getGeometryN(i));
+                    }
+                    xml.writeEndElement(); // MultiGeometry
+                } else {
+                    writePolygon((Polygon) geom);
+                }
+                xml.writeEndElement(); // Placemark
+            } else {
+                throw new SmartfireException("Error exporting to KML: unable to construct KML for \""
+                        + geom.getGeometryType() + "\" geometry");
+            }
+        } catch(XMLStreamException e) {
+            throw new IOException("Error writing KML placemark", e);
+        }
+        numPlacemarks++;
+    }
+
+    /**
+     * Closes the Folder, Document and kml elements and flushes the
+     * underlying stream.  The underlying OutputStream is not closed.
+     *
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public void writeEndDocument() throws IOException {
+        try {
+            xml.writeEndElement(); // Folder
+            xml.writeEndElement(); // Document
+            xml.writeEndElement(); // kml
+            xml.writeEndDocument();
+            xml.flush();
+        } catch(XMLStreamException e) {
+            throw new IOException("Error writing KML footer", e);
+        }
+    }
+
+    /**
+     * Returns the number of placemarks written so far.
+     *
+     * @return the number of placemarks
+     */
+    public int getNumPlacemarks() {
+        return numPlacemarks;
+    }
+
+    public void flush() throws IOException {
+        try {
+            xml.flush();
+        } catch(XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            xml.close();
+        } catch(XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void writePolygon(Polygon poly) throws XMLStreamException {
+        xml.writeStartElement(KML_NAMESPACE, "Polygon");
+        writeElement("extrude", "1");
+        writeElement("altitudeMode", "clampToGround");
+
+        xml.writeStartElement(KML_NAMESPACE, "outerBoundaryIs");
+        writeRing(poly.getExteriorRing());
+        xml.writeEndElement();
+
+        final int numInteriorRings = poly.getNumInteriorRing();
+        for(int i = 0; i < numInteriorRings; i++) {
+            xml.writeStartElement(KML_NAMESPACE, "innerBoundaryIs");
+            writeRing(poly.getInteriorRingN(i));
+            xml.writeEndElement();
+        }
+
+        xml.writeEndElement(); // Polygon
+    }
+
+    private void writeRing(LineString line) throws XMLStreamException {
+        xml.writeStartElement(KML_NAMESPACE, "LinearRing");
+        coords.setLength(0);
+        final int numPoints = line.getNumPoints();
+        for(int i = 0; i < numPoints; i++) {
+            Coordinate coord = line.getCoordinateN(i);
+            if(i > 0) {
+                coords.append(' ');
+            }
+            appendCoordinate(xform.transform(coord.x, coord.y));
+        }
+        writeElement("coordinates", coords.toString());
+        xml.writeEndElement();
+    }
+
+    private void appendCoordinate(XYPoint lonlat) {
+        // Same "lon,lat" representation used by JAK's Coordinate.toString()
+        coords.append(lonlat.getX()).append(',').append(lonlat.getY());
+    }
+
+    private String defaultName(String name, XYPoint lonlat) {
+        if(name == null || name.isEmpty()) {
+            return "(" + df.format(lonlat.getY()) + ", " + df.format(lonlat.getX()) + ")";
+        }
+        return name;
+    }
+
+    private void writeElement(String name, String text) throws XMLStreamException {
+        xml.writeStartElement(KML_NAMESPACE, name);
+        if(text != null) {
+            xml.writeCharacters(text);
+        }
+        xml.writeEndElement();
+    }
+}
@@ -0,0 +1,340 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.geotools.data.shapefile.dbf.DbaseFileHeader;
+import org.geotools.data.shapefile.dbf.DbaseFileWriter;
+import org.geotools.data.shapefile.shp.JTSUtilities;
+import org.geotools.data.shapefile.shp.ShapeHandler;
+import org.geotools.data.shapefile.shp.ShapeType;
+import org.geotools.data.shapefile.shp.ShapefileHeader;
+import org.joda.time.ReadableInstant;
+import smartfire.SmartfireException;
+
+/**
+ * Writes a zipped shapefile directly to an OutputStream.
+ *
+ * <p>The .shp, .shx, .dbf and .prj members are each written as a zip entry,
+ * one record at a time, without staging anything on disk.  The shapefile
+ * headers need to know the total file length and bounding box before any
+ * records are written, so the export rows are visited twice: once to
+ * compute the record lengths and bounds, and once to write the records.
+ * Only the record lengths are kept between the passes; since the .shx index
+ * is just a table of those lengths, it can be generated from them as well.
+ */
+public class StreamingShapefileWriter {
+    private static final int HEADER_LENGTH = 100;
+    private static final int RECORD_HEADER_LENGTH = 8;
+    private static final int NULL_SHAPE_LENGTH = 4;
+    private final String baseFileName;
+    private final String coordSysWKT;
+
+    /**
+     * Constructs a new StreamingShapefileWriter.
+     *
+     * @param baseFileName the base name of the files inside the zip
+     * @param coordSysWKT the WKT of the coordinate system of the shapes,
+     *                    written verbatim as the .prj file
+     */
+    public StreamingShapefileWriter(String baseFileName, String coordSysWKT) {
+        this.baseFileName = baseFileName;
+        this.coordSysWKT = coordSysWKT;
+    }
+
+    /**
+     * Writes a zip file containing a shapefile with one record for each of
+     * the given rows.  The underlying OutputStream is not closed.
+     *
+     * <p>The rows are iterated more than once, so they should be cheap to
+     * revisit.  Converted shapes are not retained between passes; only the
+     * length of each record is kept, which is needed for the .shx index.
+     *
+     * @param out the stream to write the zip file to
+     * @param memberMap the attribute columns to write, and their types
+     * @param rows the rows to write
+     * @throws IOException if an error occurs writing to the stream
+     */
+    public void writeZip(OutputStream out, Map<String, Class<?>> memberMap, Iterable<ExportRow> rows) throws IOException {
+        // First pass: determine the shape type, bounds, and record lengths
+        ShapeType shapeType = determineShapeType(rows);
+        ShapeHandler handler;
+        try {
+            handler = shapeType.getShapeHandler(new GeometryFactory());
+        } catch(Exception e) {
+            throw new SmartfireException("Unable to write shapes of type " + shapeType, e);
+        }
+        int numRecords = 0;
+        int[] lengths = new int[64];
+        Envelope bounds = new Envelope();
+        int fileLength = HEADER_LENGTH;
+        for(ExportRow row : rows) {
+            Geometry shape = convertShape(row, shapeType);
+            int length = NULL_SHAPE_LENGTH;
+            if(shape != null) {
+                length = handler.getLength(shape);
+                bounds.expandToInclude(shape.getEnvelopeInternal());
+            }
+            if(numRecords == lengths.length) {
+                lengths = Arrays.copyOf(lengths, numRecords * 2);
+            }
+            lengths[numRecords++] = length;
+            fileLength += RECORD_HEADER_LENGTH + length;
+        }
+        if(numRecords == 0) {
+            throw new SmartfireException("Unable to export an empty list");
+        }
+        if(bounds.isNull()) {
+            bounds = new Envelope(0, 0, 0, 0);
+        }
+
+        ZipOutputStream zip = new ZipOutputStream(new NonClosingOutputStream(out));
+        WritableByteChannel channel = Channels.newChannel(zip);
+
+        // .shp: header followed by each record, converting each shape again
+        // rather than holding them all from the first pass
+        zip.putNextEntry(new ZipEntry(baseFileName + ".shp"));
+        writeFully(channel, header(shapeType, numRecords, fileLength / 2, bounds));
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int recordNumber = 0;
+        for(ExportRow row : rows) {
+            if(recordNumber == numRecords) {
+                throw new SmartfireException("Export rows changed while writing shapefile");
+            }
+            int length = lengths[recordNumber];
+            int recordLength = RECORD_HEADER_LENGTH + length;
+            if(buffer.capacity() < recordLength) {
+                buffer = ByteBuffer.allocate(recordLength);
+            }
+            buffer.clear();
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            buffer.putInt(++recordNumber);
+            buffer.putInt(length / 2);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            Geometry shape = convertShape(row, shapeType);
+            if(shape == null) {
+                buffer.putInt(ShapeType.NULL.id);
+            } else {
+                buffer.putInt(shapeType.id);
+                handler.write(buffer, shape);
+            }
+            buffer.flip();
+            writeFully(channel, buffer);
+        }
+        zip.closeEntry();
+
+        // .shx: header followed by the offset and length of each record
+        zip.putNextEntry(new ZipEntry(baseFileName + ".shx"));
+        int indexLength = HEADER_LENGTH + RECORD_HEADER_LENGTH * numRecords;
+        writeFully(channel, header(shapeType, numRecords, indexLength / 2, bounds));
+        ByteBuffer index = ByteBuffer.allocate(RECORD_HEADER_LENGTH * 512);
+        index.order(ByteOrder.BIG_ENDIAN);
+        int offset = HEADER_LENGTH;
+        for(int i = 0; i < numRecords; i++) {
+            if(!index.hasRemaining()) {
+                index.flip();
+                writeFully(channel, index);
+                index.clear();
+            }
+            index.putInt(offset / 2);
+            index.putInt(lengths[i] / 2);
+            offset += RECORD_HEADER_LENGTH + lengths[i];
+        }
+        index.flip();
+        writeFully(channel, index);
+        zip.closeEntry();
+
+        // .dbf: attribute table
+        zip.putNextEntry(new ZipEntry(baseFileName + ".dbf"));
+        writeAttributes(zip, memberMap, rows, numRecords);
+        zip.closeEntry();
+
+        // NOTE: We write the .prj file ourselves because GeoTools does it in
+        // a way that the ESRI tools don't like.  This may not be an issue
+        // with ArcGIS 10 but it seemed better to be backwards-compatible.
+        zip.putNextEntry(new ZipEntry(baseFileName + ".prj"));
+        zip.write(coordSysWKT.getBytes("ISO-8859-1"));
+        zip.closeEntry();
+
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeAttributes(OutputStream out, Map<String, Class<?>> memberMap,
+            Iterable<ExportRow> rows, int numRecords) throws IOException {
+        List<String> columns = Lists.newArrayList();
+        List<Class<?>> types = Lists.newArrayList();
+        DbaseFileHeader header = new DbaseFileHeader();
+        for(Map.Entry<String, Class<?>> entry : memberMap.entrySet()) {
+            if("shape".equals(entry.getKey())) {
+                continue;
+            }
+            columns.add(entry.getKey());
+            types.add(entry.getValue());
+            try {
+                addColumn(header, entry.getKey(), entry.getValue());
+            } catch(Exception e) {
+                throw new SmartfireException("Unable to add shapefile column \"" + entry.getKey() + "\"", e);
+            }
+        }
+        header.setNumRecords(numRecords);
+
+        // DbaseFileWriter.close() writes the end-of-file marker and closes
+        // the channel, so shield the zip stream from being closed.
+        DbaseFileWriter writer = new DbaseFileWriter(header,
+                Channels.newChannel(new NonClosingOutputStream(out)));
+        try {
+            Object[] record = new Object[columns.size()];
+            for(ExportRow row : rows) {
+                for(int i = 0; i < record.length; i++) {
+                    record[i] = convertValue(row.getExportMember(columns.get(i)), types.get(i));
+                }
+                writer.write(record);
+            }
+        } catch(Exception e) {
+            throw new SmartfireException("Problem writing shapefile attributes", e);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Maps an exported member type to a DBF column, using the same column
+     * definitions that GeoTools' ShapefileDataStore uses.
+     */
+    private static void addColumn(DbaseFileHeader header, String name, Class<?> type) throws Exception {
+        if(Integer.class.equals(type) || Short.class.equals(type) || Byte.class.equals(type)) {
+            header.addColumn(name, 'N', 9, 0);
+        } else if(Long.class.equals(type)) {
+            header.addColumn(name, 'N', 19, 0);
+        } else if(BigInteger.class.equals(type)) {
+            header.addColumn(name, 'N', 33, 0);
+        } else if(Number.class.isAssignableFrom(type)) {
+            header.addColumn(name, 'N', 33, 15);
+        } else if(Date.class.isAssignableFrom(type) || Calendar.class.isAssignableFrom(type)) {
+            header.addColumn(name, 'D', 8, 0);
+        } else if(Boolean.class.equals(type)) {
+            header.addColumn(name, 'L', 1, 0);
+        } else {
+            header.addColumn(name, 'C', 254, 0);
+        }
+    }
+
+    private static Object convertValue(Object value, Class<?> type) {
+        if(value == null) {
+            return null;
+        }
+        if(Number.class.isAssignableFrom(type)) {
+            if(value instanceof Number) {
+                return value;
+            }
+            try {
+                return Double.valueOf(value.toString());
+            } catch(NumberFormatException e) {
+                return null;
+            }
+        }
+        if(Date.class.isAssignableFrom(type) || Calendar.class.isAssignableFrom(type)) {
+            if(value instanceof ReadableInstant) {
+                return ((ReadableInstant) value).toInstant().toDate();
+            }
+            if(value instanceof Calendar) {
+                return ((Calendar) value).getTime();
+            }
+            return (value instanceof Date) ? value : null;
+        }
+        if(Boolean.class.equals(type)) {
+            return (value instanceof Boolean) ? value : Boolean.valueOf(value.toString());
+        }
+        return value.toString();
+    }
+
+    private static ShapeType determineShapeType(Iterable<ExportRow> rows) {
+        for(ExportRow row : rows) {
+            Geometry shape = row.getExportShape();
+            if(shape != null && !shape.isEmpty()) {
+                try {
+                    return JTSUtilities.getShapeType(shape, 2);
+                } catch(Exception e) {
+                    throw new SmartfireException("Unexpected shape class: " + shape.getClass().getName(), e);
+                }
+            }
+        }
+        return ShapeType.POINT;
+    }
+
+    private static Geometry convertShape(ExportRow row, ShapeType shapeType) {
+        Geometry shape = row.getExportShape();
+        if(shape == null || shape.isEmpty()) {
+            return null;
+        }
+        return JTSUtilities.convertToCollection(shape, shapeType);
+    }
+
+    private static ByteBuffer header(ShapeType type, int numGeoms, int lengthInWords, Envelope bounds) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+        ShapefileHeader header = new ShapefileHeader();
+        header.write(buffer, type, numGeoms, lengthInWords,
+                bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY());
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Passes writes through to the wrapped stream, but only flushes it on
+     * close.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        public NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -50,12 +50,11 @@ import smartfire.database.Clump;
 import smartfire.database.Event;
 import smartfire.database.EventSlice;
 import smartfire.database.Fire;
-import smartfire.database.FireDay;
+import smartfire.database.FireDayArea;
 import smartfire.database.RawData;
 import smartfire.gis.CoordinateTransformer;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.XYPoint;
-import smartfire.util.Sorted;
 
 /**
  * ExportMethod for exporting summary data to the BlueSky Framework.
@@ -164,10 +163,9 @@ public class SummaryDataExportMethod extends AbstractExportMethod<Event> impleme
         CoordinateTransformer transformer = appSettings.getGeometryBuilder().newLonLatOutputTransformer();
         GeometryJSON geojson = new GeometryJSON();
         Map<String, Object> fireDataMap = new LinkedHashMap<String, Object>();
-        List<EventSlice> slices = event.getSlices();
         // Get fires from the source with the greatest size weight
 
-        EventSlice sizeWeightedSlice = Sorted.by(slices, EventSlice.BY_SIZE_WEIGHT_DESC).get(0);
+        EventSlice sizeWeightedSlice = event.getSlicesSortedBy(EventSlice.BY_SIZE_WEIGHT_DESC).get(0);
         double fireSize = 0;
         for(Fire fire : sizeWeightedSlice.getFires()) {
             fireSize += fire.getArea();
@@ -222,8 +220,7 @@ public class SummaryDataExportMethod extends AbstractExportMethod<Event> impleme
         Map<String, Object> growthMap = new LinkedHashMap<String, Object>();
         
         // Get event slice with greatest growth weight (this will also dictate FRP)
-        List<EventSlice> slices = event.getSlices();
-        EventSlice slice = Sorted.by(slices, EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
+        EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
         growthMap.put("source", slice.getSource().getName());
         
         // Map sorted by date strings ascending
@@ -240,7 +237,7 @@ public class SummaryDataExportMethod extends AbstractExportMethod<Event> impleme
         double totalArea = event.getTotalArea();
         double sumArea = 0;
         for(Fire fire : slice.getFires()) {
-            for(FireDay fireDay : fire.getFireDays()) {
+            for(FireDayArea fireDay : fire.getDailyAreas()) {
                 String date = fireDay.getDate().toString(DATE_FORMAT);
                 double size = fireDay.getArea() * ACRES_PER_SQ_METER;
                 
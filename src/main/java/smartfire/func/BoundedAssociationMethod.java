@@ -0,0 +1,47 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.func;
+
+/**
+ * An AssociationMethod whose searches are bounded, so that clumps further
+ * apart than the bounds can never end up in the same Fire.
+ */
+public interface BoundedAssociationMethod extends AssociationMethod {
+    /**
+     * Gets the largest distance, in meters, around a Clump that
+     * {@link #associate} will search for Fires.
+     *
+     * @return a distance in meters
+     */
+    double getMaxAssociationDistance();
+
+    /**
+     * Gets the largest number of days before a Clump's start that
+     * {@link #associate} will search for Fires.
+     *
+     * @return a number of days
+     */
+    int getMaxBackwardDays();
+
+    /**
+     * Gets the largest number of days after a Clump's end that
+     * {@link #associate} will search for Fires.
+     *
+     * @return a number of days
+     */
+    int getMaxForwardDays();
+}
@@ -24,4 +24,16 @@ import smartfire.gis.QueryableEventSet;
  */
 public interface ReconciliationMethod {
     void reconcile(Fire fire, QueryableEventSet eventSet);
+
+    /**
+     * Called once all fires have been reconciled into the given event set,
+     * before any new events are saved.  Implementations that defer work
+     * while the set is in deferred mode (see
+     * {@link QueryableEventSet#isDeferringEventFields()}) must finish it here.
+     *
+     * @param eventSet the event set passed to {@link #reconcile}
+     * @param numLayerThreads the number of threads that may be used to read
+     *                        summary data layers for the finished events
+     */
+    void completeReconciliation(QueryableEventSet eventSet, int numLayerThreads);
 }
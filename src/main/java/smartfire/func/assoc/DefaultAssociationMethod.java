@@ -27,15 +27,15 @@ import org.slf4j.LoggerFactory;
 import smartfire.database.Clump;
 import smartfire.database.Fire;
 import smartfire.database.RawData;
-import smartfire.func.AssociationMethod;
 import smartfire.func.Attribute;
+import smartfire.func.BoundedAssociationMethod;
 import smartfire.gis.QueryableFireSet;
 
 /**
  * The default association method.
  */
 @MetaInfServices
-public class DefaultAssociationMethod implements AssociationMethod {
+public class DefaultAssociationMethod implements BoundedAssociationMethod {
     private static final Logger log = LoggerFactory.getLogger(DefaultAssociationMethod.class);
     private final int numForwardDays;
     private final int numBackwardDays;
@@ -130,6 +130,28 @@ public class DefaultAssociationMethod implements AssociationMethod {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Subclasses that override {@link #getFireAssociationDistance},
+     * {@link #getNumBackwardDays} or {@link #getNumForwardDays} to return
+     * larger values must override the matching bound as well.
+     */
+    @Override
+    public double getMaxAssociationDistance() {
+        return Math.max(smallFireDistance, largeFireDistance);
+    }
+
+    @Override
+    public int getMaxBackwardDays() {
+        return numBackwardDays;
+    }
+
+    @Override
+    public int getMaxForwardDays() {
+        return numForwardDays;
+    }
+
     protected double computeArea(Fire fire) {
         // The default method is to compute the area of the shape footprint 
         // (which in turn is computed as the union of all the associated 
@@ -39,6 +39,9 @@ import smartfire.gis.QueryableEventSet;
 import smartfire.gis.Union;
 import smartfire.layer.LayerAttributes;
 import smartfire.layer.Layers;
+import smartfire.layer.ParallelLayerReader;
+import smartfire.layer.ReverseGeocoder;
+import smartfire.queue.ProgressReporter;
 import smartfire.util.Functions;
 import smartfire.util.Sorted;
 
@@ -55,6 +58,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     private final int maxNumBackwardDays;
     private final DateTime reconciliationStartTime;
     private final DateTime reconciliationEndTime;
+    private final Map<Event, Source> outlineSources = Maps.newIdentityHashMap();
 
     public DefaultReconciliationMethod(GeometryBuilder geometryBuilder, ReconciliationStream stream,
             DateTime reconciliationStartTime, DateTime reconciliationEndTime,
@@ -114,16 +118,79 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
         result.addFire(fire);
         result.setReconciliationStream(stream);
 
-        populateEventFields(result);
+        if(eventSet.isDeferringEventFields()) {
+            updateQueryFields(result, fire);
+            eventSet.markDirty(result);
+        } else {
+            populateEventFields(result);
+        }
 
         eventSet.add(result);
     }
 
+    @Override
+    public void completeReconciliation(QueryableEventSet eventSet, int numLayerThreads) {
+        List<Event> events = eventSet.getDirtyEvents();
+
+        // Find every outline first, so that the summary data layers can be
+        // read for all the events together
+        Map<String, Geometry> outlines = Maps.newLinkedHashMap();
+        for(Event event : events) {
+            ProgressReporter.checkCurrentThreadCancelled();
+            event.setShape(determineOutlineShape(event, event.getSlices()));
+            outlines.put(event.getUniqueId(), event.getShape());
+        }
+        ParallelLayerReader layerReader = new ParallelLayerReader(geometryBuilder, numLayerThreads);
+        Map<String, List<LayerAttributes>> layerAttributes = layerReader.readAttributes(
+                stream.getSummaryDataLayers(), outlines, 95, 99);
+
+        for(Event event : events) {
+            ProgressReporter.checkCurrentThreadCancelled();
+            List<LayerAttributes> attributes = layerAttributes.get(event.getUniqueId());
+            if(attributes != null) {
+                associateSummaryData(event, attributes);
+            }
+            populateFieldsFromOutline(event, event.getSlices());
+        }
+        eventSet.clearDirty();
+        outlineSources.clear();
+    }
+
+    /**
+     * In deferred mode, keeps up to date only the fields that later calls to
+     * reconcile() query by: the outline shape and the start and end dates.
+     * These have the same values populateEventFields() would give them.  The
+     * outline is only re-unioned from scratch when the slice it comes from
+     * changes; a fire from that slice is unioned into the current outline,
+     * and fires from other slices leave it alone.
+     */
+    protected void updateQueryFields(Event event, Fire fire) {
+        List<EventSlice> slices = event.getSlices();
+        Source shapeSource = event.getSlicesSortedBy(EventSlice.BY_SHAPE_WEIGHT_DESC).get(0).getSource();
+        Source outlineSource = outlineSources.get(event);
+        if(outlineSource == null || !outlineSource.equals(shapeSource)) {
+            event.setShape(determineOutlineShape(event, slices));
+            outlineSources.put(event, shapeSource);
+        } else if(outlineSource.equals(fire.getSource())) {
+            event.setShape(Union.toMultiPolygon(Union.union(event.getShape(), fire.getShape())));
+        }
+        event.setStartDate(determineStartDate(event, slices));
+        event.setEndDate(determineEndDate(event, slices));
+    }
+
     protected void populateEventFields(Event event) {
         List<EventSlice> slices = event.getSlices();
 
         event.setShape(determineOutlineShape(event, slices));
         associateSummaryData(event);
+        populateFieldsFromOutline(event, slices);
+    }
+
+    /**
+     * Populates the fields that populateEventFields() computes after the
+     * outline shape and the summary data layer attributes.
+     */
+    protected void populateFieldsFromOutline(Event event, List<EventSlice> slices) {
         event.setDisplayName(determineDisplayName(event, slices));
         event.setStartDate(determineStartDate(event, slices));
         event.setEndDate(determineEndDate(event, slices));
@@ -135,7 +202,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     }
 
     protected String determineDisplayName(Event event, List<EventSlice> slices) {
-        for(EventSlice slice : Sorted.by(slices, EventSlice.BY_NAME_WEIGHT_DESC)) {
+        for(EventSlice slice : event.getSlicesSortedBy(EventSlice.BY_NAME_WEIGHT_DESC)) {
             String name = Fire.UNKNOWN_FIRE_NAME;
             DateTime endDate = null;
             for(Fire fire : slice.getFires()) {
@@ -154,7 +221,8 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
         }
 
         event.setWeightingSourceName(Weighting.NAME_WEIGHT, Source.UNKNOWN_SOURCE_NAME);
-        String location = Functions.formatLocation(event);
+        String location = Functions.formatLocation(event,
+                ReverseGeocoder.forStream(geometryBuilder, stream));
         if("Unknown".equals(location)) {
             return Fire.UNKNOWN_FIRE_NAME;
         }
@@ -164,7 +232,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
 
     protected DateTime determineStartDate(Event event, List<EventSlice> slices) {
         // 
-        EventSlice tempSlice = Sorted.by(slices, EventSlice.BY_START_DATE_ASC).get(0);
+        EventSlice tempSlice = event.getSlicesSortedBy(EventSlice.BY_START_DATE_ASC).get(0);
         event.setWeightingSourceName(Weighting.START_DATE_UNCERTAINTY, tempSlice.getSource());
         
         // Finds the earliest possible fire without considering start date uncertainty
@@ -182,7 +250,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     }
 
     protected DateTime determineEndDate(Event event, List<EventSlice> slices) {
-        EventSlice slice = Sorted.by(slices, EventSlice.BY_END_DATE_ASC).get(0);
+        EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_END_DATE_ASC).get(0);
         event.setWeightingSourceName(Weighting.END_DATE_UNCERTAINTY, slice.getSource());
         DateTime endDate = null;
         for(Fire fire : slice.getFires()) {
@@ -196,7 +264,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     }
 
     protected double determineTotalArea(Event event, List<EventSlice> slices) {
-        EventSlice slice = Sorted.by(slices, EventSlice.BY_SIZE_WEIGHT_DESC).get(0);
+        EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_SIZE_WEIGHT_DESC).get(0);
         event.setWeightingSourceName(Weighting.SIZE_WEIGHT, slice.getSource());
         double totalArea = 0;
         for(Fire fire : slice.getFires()) {
@@ -206,9 +274,9 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     }
 
     protected MultiPolygon determineOutlineShape(Event event, List<EventSlice> slices) {
-        EventSlice slice = Sorted.by(slices, EventSlice.BY_SHAPE_WEIGHT_DESC).get(0);
+        EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_SHAPE_WEIGHT_DESC).get(0);
         event.setWeightingSourceName(Weighting.SHAPE_WEIGHT, slice.getSource());
-        Geometry geom = Union.unionAllShapes(slice.getFires());
+        Geometry geom = Union.cascadedUnionShapes(slice.getFires());
         return Union.toMultiPolygon(geom);
     }
 
@@ -226,7 +294,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     }
 
     protected String determineFireType(Event event, List<EventSlice> slices) {
-        EventSlice slice = Sorted.by(slices, EventSlice.BY_TYPE_WEIGHT_DESC).get(0);
+        EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_TYPE_WEIGHT_DESC).get(0);
         event.setWeightingSourceName(Weighting.TYPE_WEIGHT, slice.getSource());
         String fireType = "";
         for(Fire fire : slice.getFires()) {
@@ -241,21 +309,20 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     }
 
     protected List<EventDay> determineEventDays(Event event, List<EventSlice> slices) {
-        EventSlice slice = Sorted.by(slices, EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
+        EventSlice slice = event.getSlicesSortedBy(EventSlice.BY_GROWTH_WEIGHT_DESC).get(0);
         event.setWeightingSourceName(Weighting.GROWTH_WEIGHT, slice.getSource());
         double totalArea = event.getTotalArea();
 
         double sumArea = 0;
-        SortedMap<LocalDate, List<FireDay>> dateFires = new TreeMap<LocalDate, List<FireDay>>();
+        SortedMap<LocalDate, Double> dateAreas = new TreeMap<LocalDate, Double>();
         for(Fire fire : slice.getFires()) {
-            for(FireDay fireDay : fire.getFireDays()) {
+            for(FireDayArea fireDay : fire.getDailyAreas()) {
                 LocalDate date = fireDay.getDate();
-                List<FireDay> fireDayList = dateFires.get(date);
-                if(fireDayList == null) {
-                    fireDayList = Lists.newArrayList();
-                    dateFires.put(date, fireDayList);
+                Double dateArea = dateAreas.get(date);
+                if(dateArea == null) {
+                    dateArea = 0.0;
                 }
-                fireDayList.add(fireDay);
+                dateAreas.put(date, dateArea + fireDay.getArea());
                 sumArea += fireDay.getArea();
             }
         }
@@ -264,16 +331,9 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
 
         List<EventDay> result = Lists.newArrayList();
 
-        for(Map.Entry<LocalDate, List<FireDay>> entry : dateFires.entrySet()) {
+        for(Map.Entry<LocalDate, Double> entry : dateAreas.entrySet()) {
             LocalDate date = entry.getKey();
-            List<FireDay> fireDays = entry.getValue();
-
-            double fireDayArea = 0;
-            for(FireDay fireDay : fireDays) {
-                fireDayArea += fireDay.getArea();
-            }
-
-            double eventDayArea = fireDayArea * scaleFactor;
+            double eventDayArea = entry.getValue() * scaleFactor;
 
             EventDay eventDay = new EventDay();
             eventDay.setEventDate(date);
@@ -287,7 +347,7 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
     protected void setEventAttributes(Event event, List<EventSlice> slices) {
         Map<String, String> attrs = Maps.newHashMap();
 
-        for(EventSlice slice : Sorted.by(slices, EventSlice.BY_NAME_WEIGHT_ASC)) {
+        for(EventSlice slice : event.getSlicesSortedBy(EventSlice.BY_NAME_WEIGHT_ASC)) {
             for(Fire fire : Sorted.by(slice.getFires(), Fire.BY_SIZE_ASC)) {
                 attrs.putAll(fire);
             }
@@ -299,8 +359,15 @@ public class DefaultReconciliationMethod implements ReconciliationMethod {
 
     protected void associateSummaryData(Event event) {
         Geometry eventShape = event.getShape();
+        List<LayerAttributes> layerAttributes = Lists.newArrayList();
         for(SummaryDataLayer layer : stream.getSummaryDataLayers()) {
-            LayerAttributes attributes = Layers.readAttributes(geometryBuilder, layer, eventShape);
+            layerAttributes.add(Layers.readAttributes(geometryBuilder, layer, eventShape, event.getUniqueId()));
+        }
+        associateSummaryData(event, layerAttributes);
+    }
+
+    protected void associateSummaryData(Event event, List<LayerAttributes> layerAttributes) {
+        for(LayerAttributes attributes : layerAttributes) {
             if(attributes.getRepresentativeFraction() > 0) {
                 associateLayerAttributes(event, attributes);
             }
@@ -18,12 +18,14 @@ package smartfire.gis;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import java.util.*;
 import org.joda.time.DateTime;
 import smartfire.database.AbstractDao;
 import smartfire.database.QueryableEntity;
+import smartfire.queue.ProgressReporter;
 
 /**
  * Abstract base class for QueryableFireSet and QueryableEventSet.
@@ -35,9 +37,14 @@ import smartfire.database.QueryableEntity;
 abstract class AbstractQueryableSet<TEntity extends QueryableEntity<TKey>, TKey, TDao extends AbstractDao<TEntity, TKey>> 
         extends AbstractSet<TEntity> {
     private final TDao dao;
-    private final Set<TEntity> storage = new HashSet<TEntity>();
+    // Saving an entity assigns its id, which changes its hash code, so the
+    // entities are kept by identity; the EntityManager guarantees that one
+    // database row is always the same instance
+    private final Set<TEntity> storage = Sets.newIdentityHashSet();
+    private final List<TEntity> mergedEntities = Lists.newArrayList();
     private DateTime currentStart = null;
     private DateTime currentEnd = null;
+    private boolean partition = false;
     
     protected AbstractQueryableSet(TDao dao) {
         this.dao = dao;
@@ -46,12 +53,18 @@ abstract class AbstractQueryableSet<TEntity extends QueryableEntity<TKey>, TKey,
     protected abstract List<TEntity> fetchByDate(TDao dao, DateTime startDate, DateTime endDate);
     
     protected abstract TEntity mergeInternal(TDao dao, List<TEntity> toMerge);
+
+    /**
+     * Merges the given entities like {@link #mergeInternal}, but without
+     * deleting them or otherwise using the EntityManager.
+     */
+    protected abstract TEntity combineInternal(TDao dao, List<TEntity> toMerge);
     
     protected void prefetch(DateTime requestedStart, DateTime requestedEnd) {
         // if private storage is empty, then query the database and
         // and save to private storage.
         if(currentStart == null || currentEnd == null) {
-            this.add(this.fetchByDate(dao, requestedStart, requestedEnd));
+            this.add(fetchByDateTimed(requestedStart, requestedEnd));
             currentStart = requestedStart;
             currentEnd = requestedEnd;
             return;
@@ -64,12 +77,71 @@ abstract class AbstractQueryableSet<TEntity extends QueryableEntity<TKey>, TKey,
         if(startDateNotInRange || endDateNotInRange) {
             DateTime fetchStart = min(currentEnd, requestedStart);
             DateTime fetchEnd = max(currentStart, requestedEnd);
-            this.add(this.fetchByDate(dao, fetchStart, fetchEnd));
+            this.add(fetchByDateTimed(fetchStart, fetchEnd));
             currentStart = min(currentStart, requestedStart);
             currentEnd = max(currentEnd, requestedEnd);
         }
     }
     
+    /**
+     * Fills this set with entities that are already known to be every
+     * entity in the given date range, so that queries within that range
+     * never need to touch the database.
+     *
+     * @param records the entities in the date range
+     * @param start the start of the date range
+     * @param end the end of the date range
+     */
+    protected void preload(Iterable<TEntity> records, DateTime start, DateTime end) {
+        this.add(records);
+        currentStart = start;
+        currentEnd = end;
+    }
+
+    /**
+     * Makes this set a partition of another set, holding the given entities.
+     * A partition never touches the database, so that it can be used from a
+     * thread other than the one that owns the current transaction; the
+     * caller guarantees that no other entity in the given date range can
+     * match the queries that will be made against it.  Entities it merges
+     * are only deleted once it is folded back into its parent with
+     * {@link #mergePartitionInternal}.
+     *
+     * @param records the entities of the partition
+     * @param start the start of the date range the partition covers
+     * @param end the end of the date range the partition covers
+     */
+    protected void preloadPartition(Iterable<TEntity> records, DateTime start, DateTime end) {
+        this.partition = true;
+        preload(records, start, end);
+    }
+
+    /**
+     * Folds a partition of this set back into it: entities the partition
+     * merged away are removed from this set and deleted, and the partition's
+     * entities are added to this set.
+     *
+     * @param other a partition of this set
+     */
+    protected void mergePartitionInternal(AbstractQueryableSet<TEntity, TKey, TDao> other) {
+        for(TEntity record : other.mergedEntities) {
+            this.remove(record);
+            dao.delete(record);
+        }
+        this.add(other);
+    }
+
+    private List<TEntity> fetchByDateTimed(DateTime startDate, DateTime endDate) {
+        // Count the query against the current job's "prefetch" stage, rather
+        // than against whatever stage needed the data
+        String previousStage = ProgressReporter.enterCurrentThreadStage("prefetch");
+        try {
+            return this.fetchByDate(dao, startDate, endDate);
+        } finally {
+            ProgressReporter.enterCurrentThreadStage(previousStage);
+        }
+    }
+
     /**
      * If any entities are associated with this set but not yet persisted to
      * the database, save them using the associated DAO object.  Returns the
@@ -93,6 +165,16 @@ abstract class AbstractQueryableSet<TEntity extends QueryableEntity<TKey>, TKey,
         return storage.add(record);
     }
 
+    @Override
+    public boolean contains(Object record) {
+        return storage.contains(record);
+    }
+
+    @Override
+    public boolean remove(Object record) {
+        return storage.remove(record);
+    }
+
     public void add(Iterable<TEntity> newRecords) {
         for(TEntity fire : newRecords) {
             this.add(fire);
@@ -148,7 +230,13 @@ abstract class AbstractQueryableSet<TEntity extends QueryableEntity<TKey>, TKey,
     
     public TEntity merge(Iterable<TEntity> toMerge) {
         List<TEntity> entities = Lists.newArrayList(toMerge);
-        TEntity result = mergeInternal(dao, entities);
+        final TEntity result;
+        if(partition) {
+            result = combineInternal(dao, entities);
+            mergedEntities.addAll(entities);
+        } else {
+            result = mergeInternal(dao, entities);
+        }
         this.removeAll(entities);
         this.add(result);
         return result;
@@ -88,6 +88,7 @@ public class Dissolve {
 
         log.trace("Starting pass 1: separate into buckets");
         for(T entity : input) {
+            progressReporter.checkCancelled();
             counter++;
             int newPercent = (int) ((counter / (double) size) * 50);
             if(newPercent > percent) {
@@ -143,6 +144,7 @@ public class Dissolve {
         List<DissolvedEntity<T>> result = Lists.newArrayListWithCapacity(resultSize);
         counter = 0;
         for(Bucket<T> bucket : buckets) {
+            progressReporter.checkCancelled();
             counter++;
             int newPercent = (int) ((counter / (double) resultSize) * 40) + 60;
             if(newPercent > percent) {
@@ -0,0 +1,125 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.gis;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Geometry;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The areas by which a Geometry intersects each feature of a layer, along
+ * with the attributes of those features.
+ *
+ * <p>Unlike {@link ShapeAttributes}, which only keeps the feature with the
+ * greatest intersection, this keeps every intersecting feature.  Because
+ * intersection areas add up over disjoint regions, the FeatureAreas for a
+ * grown Geometry can be found from the FeatureAreas of the original
+ * Geometry {@link #plus(FeatureAreas) plus} those of the region it grew by.
+ */
+public class FeatureAreas {
+    private final double geomArea;
+    private final Map<String, Double> areas;
+    private final Map<String, Map<String, String>> attributes;
+
+    /**
+     * Constructs a new FeatureAreas object.
+     *
+     * @param geomArea the area of the intersected Geometry
+     * @param areas the intersection area for each feature, by feature ID,
+     *              in the order the features were read
+     * @param attributes the attributes of each feature, by feature ID
+     */
+    public FeatureAreas(
+            double geomArea,
+            Map<String, Double> areas,
+            Map<String, Map<String, String>> attributes) {
+        this.geomArea = geomArea;
+        this.areas = Collections.unmodifiableMap(Maps.newLinkedHashMap(areas));
+        this.attributes = ImmutableMap.copyOf(attributes);
+    }
+
+    public static FeatureAreas emptyIntersection(double geomArea) {
+        Map<String, Double> areas = Collections.emptyMap();
+        Map<String, Map<String, String>> attributes = Collections.emptyMap();
+        return new FeatureAreas(geomArea, areas, attributes);
+    }
+
+    /**
+     * Gets the area of the Geometry that was intersected, in the same units
+     * as the feature intersection areas.
+     *
+     * @return the area of the intersected Geometry
+     */
+    public double getGeomArea() {
+        return geomArea;
+    }
+
+    /**
+     * Gets the intersection area for each intersecting feature.
+     *
+     * @return an unmodifiable map from feature ID to intersection area
+     */
+    public Map<String, Double> getAreas() {
+        return areas;
+    }
+
+    /**
+     * Combines these FeatureAreas with the FeatureAreas of a region that
+     * doesn't overlap the Geometry these were read for.  The result is the
+     * FeatureAreas of the union of the two regions.
+     *
+     * @param other the FeatureAreas of a disjoint region
+     * @return the FeatureAreas of the combined region
+     */
+    public FeatureAreas plus(FeatureAreas other) {
+        Map<String, Double> combinedAreas = Maps.newLinkedHashMap(areas);
+        Map<String, Map<String, String>> combinedAttributes = Maps.newHashMap(attributes);
+        for(Map.Entry<String, Double> entry : other.areas.entrySet()) {
+            String featureId = entry.getKey();
+            Double area = combinedAreas.get(featureId);
+            combinedAreas.put(featureId, (area == null) ? entry.getValue() : area + entry.getValue());
+            if(!combinedAttributes.containsKey(featureId)) {
+                combinedAttributes.put(featureId, other.attributes.get(featureId));
+            }
+        }
+        return new FeatureAreas(geomArea + other.geomArea, combinedAreas, combinedAttributes);
+    }
+
+    /**
+     * Gets the attributes of the feature with the greatest intersection, as
+     * a ShapeAttributes object for the given Geometry.
+     *
+     * @param geom the Geometry these FeatureAreas were read for
+     * @return the attributes of the best-matching feature
+     */
+    public ShapeAttributes toShapeAttributes(Geometry geom) {
+        String bestFeature = null;
+        double bestArea = 0;
+        for(Map.Entry<String, Double> entry : areas.entrySet()) {
+            if(bestFeature == null || entry.getValue() > bestArea) {
+                bestFeature = entry.getKey();
+                bestArea = entry.getValue();
+            }
+        }
+        if(bestFeature == null) {
+            return ShapeAttributes.emptyIntersection(geom);
+        }
+        return new ShapeAttributes(attributes.get(bestFeature), geom, bestArea / geomArea);
+    }
+}
@@ -0,0 +1,104 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.gis;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateFilter;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import smartfire.SmartfireException;
+
+/**
+ * Computes compact fingerprints of geometries, for use in cache keys.
+ *
+ * <p>Two geometries with the same type and the same coordinates in the same
+ * order always have the same fingerprint.  Computing a fingerprint visits
+ * each coordinate once, which is much cheaper than rendering or overlaying
+ * the geometry.
+ *
+ * <p>Where a collision would give a wrong answer rather than a cache miss,
+ * use {@link #digest(Geometry)}, which is slower but cryptographically
+ * strong.
+ */
+public class GeometryFingerprint {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private GeometryFingerprint() { }
+
+    /**
+     * Computes the fingerprint of the given geometry.
+     *
+     * @param geom a Geometry object
+     * @return a 64-bit fingerprint of the geometry
+     */
+    public static long of(Geometry geom) {
+        final long[] hash = { mix(FNV_OFFSET_BASIS, geom.getGeometryType().hashCode()) };
+        hash[0] = mix(hash[0], geom.getNumGeometries());
+        geom.apply(new CoordinateFilter() {
+            @Override
+            public void filter(Coordinate coord) {
+                hash[0] = mix(hash[0], Double.doubleToLongBits(coord.x));
+                hash[0] = mix(hash[0], Double.doubleToLongBits(coord.y));
+            }
+        });
+        return hash[0];
+    }
+
+    /**
+     * Computes the fingerprint of the given geometry, as a hexadecimal string.
+     *
+     * @param geom a Geometry object
+     * @return the fingerprint of the geometry, in hexadecimal
+     */
+    public static String toHexString(Geometry geom) {
+        return Long.toHexString(of(geom));
+    }
+
+    /**
+     * Computes a SHA-1 digest of the geometry's well-known binary form, as
+     * a hexadecimal string.
+     *
+     * @param geom a Geometry object
+     * @return the digest of the geometry, in hexadecimal
+     */
+    public static String digest(Geometry geom) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-1").digest(new WKBWriter().write(geom));
+        } catch(NoSuchAlgorithmException e) {
+            throw new SmartfireException("SHA-1 is not available", e);
+        }
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for(byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static long mix(long hash, long value) {
+        for(int i = 0; i < 8; i++) {
+            hash ^= (value & 0xff);
+            hash *= FNV_PRIME;
+            value >>>= 8;
+        }
+        return hash;
+    }
+}
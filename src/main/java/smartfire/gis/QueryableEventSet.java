@@ -16,23 +16,113 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.gis;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import java.util.List;
+import java.util.Set;
 import org.joda.time.DateTime;
 import smartfire.database.Event;
 import smartfire.database.EventDao;
 import smartfire.database.ReconciliationStream;
+import smartfire.func.ReconciliationMethod;
 
 /**
  * Represents a collection of Events, backed by an EventDao, with enhanced query
  * capabilities.  Subsequent queries are guaranteed to retrieve the same Event
  * instances, so that they can be mutated.
+ *
+ * <p>In deferred mode, a ReconciliationMethod only records which Events it
+ * has changed with {@link #markDirty(Event)}, and computes their derived
+ * fields once, when {@link ReconciliationMethod#completeReconciliation} is
+ * called.
+ *
+ * <p>A partition, created with {@link #newPartition}, holds a subset of this
+ * set's Events and never touches the database, so that it can be used from
+ * a thread other than the one that owns the current transaction.
  */
 public class QueryableEventSet extends AbstractQueryableSet<Event, Long, EventDao> {
+    private final EventDao eventDao;
     private final ReconciliationStream stream;
+    private final boolean deferEventFields;
+    private final Set<Event> dirtyEvents = Sets.newIdentityHashSet();
 
     public QueryableEventSet(EventDao eventDao, ReconciliationStream stream) {
+        this(eventDao, stream, false);
+    }
+
+    public QueryableEventSet(EventDao eventDao, ReconciliationStream stream, boolean deferEventFields) {
         super(eventDao);
+        this.eventDao = eventDao;
         this.stream = stream;
+        this.deferEventFields = deferEventFields;
+    }
+
+    /**
+     * Creates a partition of this set, holding the given Events.  The caller
+     * guarantees that no other Event of this set in the given date range can
+     * match the queries that will be made against the partition.
+     *
+     * @param events the Events of the partition
+     * @param startDate the start of the date range the partition covers
+     * @param endDate the end of the date range the partition covers
+     * @return a new partition
+     */
+    public QueryableEventSet newPartition(Iterable<Event> events, DateTime startDate, DateTime endDate) {
+        QueryableEventSet result = new QueryableEventSet(eventDao, stream, deferEventFields);
+        result.preloadPartition(events, startDate, endDate);
+        return result;
+    }
+
+    /**
+     * Folds a partition created by {@link #newPartition} back into this set:
+     * Events the partition merged away are removed from this set and deleted,
+     * and the partition's Events are added to this set.
+     *
+     * @param partition a partition of this set
+     */
+    public void mergePartition(QueryableEventSet partition) {
+        mergePartitionInternal(partition);
+        this.dirtyEvents.addAll(partition.dirtyEvents);
+    }
+
+    /**
+     * Returns true if derived Event fields should be computed once per
+     * changed Event, rather than every time a fire is added to one.
+     *
+     * @return true if this set is in deferred mode
+     */
+    public boolean isDeferringEventFields() {
+        return deferEventFields;
+    }
+
+    /**
+     * Records that the given Event's derived fields are out of date.
+     *
+     * @param event the changed Event
+     */
+    public void markDirty(Event event) {
+        dirtyEvents.add(event);
+    }
+
+    /**
+     * Gets the Events marked dirty since the last call to
+     * {@link #clearDirty()} that are still part of this set; Events that
+     * have since been merged into another Event are left out.
+     *
+     * @return a list of dirty Events
+     */
+    public List<Event> getDirtyEvents() {
+        List<Event> result = Lists.newArrayListWithCapacity(dirtyEvents.size());
+        for(Event event : dirtyEvents) {
+            if(this.contains(event)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    public void clearDirty() {
+        dirtyEvents.clear();
     }
 
     @Override
@@ -44,4 +134,9 @@ public class QueryableEventSet extends AbstractQueryableSet<Event, Long, EventDa
     protected Event mergeInternal(EventDao dao, List<Event> toMerge) {
         return dao.merge(toMerge);
     }
+
+    @Override
+    protected Event combineInternal(EventDao dao, List<Event> toMerge) {
+        return dao.combine(toMerge);
+    }
 }
@@ -28,13 +28,44 @@ import smartfire.database.Source;
  * instances, so that they can be mutated.
  */
 public class QueryableFireSet extends AbstractQueryableSet<Fire, Integer, FireDao> {
+    private final FireDao fireDao;
     private final Source source;
     
     public QueryableFireSet(FireDao fireDao, Source source) {
         super(fireDao);
+        this.fireDao = fireDao;
         this.source = source;
     }
 
+    /**
+     * Creates a partition of this set, holding the given Fires.  A partition
+     * never touches the database, so that it can be used from a thread other
+     * than the one that owns the current transaction.  The caller guarantees
+     * that no other Fire of this set in the given date range can match the
+     * queries that will be made against the partition.
+     *
+     * @param fires the Fires of the partition
+     * @param startDate the start of the date range the partition covers
+     * @param endDate the end of the date range the partition covers
+     * @return a new partition
+     */
+    public QueryableFireSet newPartition(Iterable<Fire> fires, DateTime startDate, DateTime endDate) {
+        QueryableFireSet result = new QueryableFireSet(fireDao, source);
+        result.preloadPartition(fires, startDate, endDate);
+        return result;
+    }
+
+    /**
+     * Folds a partition created by {@link #newPartition} back into this set:
+     * Fires the partition merged away are removed from this set and deleted,
+     * and the partition's Fires are added to this set.
+     *
+     * @param partition a partition of this set
+     */
+    public void mergePartition(QueryableFireSet partition) {
+        mergePartitionInternal(partition);
+    }
+
     public Source getSource() {
         return source;
     }
@@ -48,4 +79,9 @@ public class QueryableFireSet extends AbstractQueryableSet<Fire, Integer, FireDa
     protected Fire mergeInternal(FireDao dao, List<Fire> toMerge) {
         return dao.merge(toMerge);
     }
+
+    @Override
+    protected Fire combineInternal(FireDao dao, List<Fire> toMerge) {
+        return dao.combine(toMerge);
+    }
 }
@@ -0,0 +1,302 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.gis;
+
+import com.google.common.io.Files;
+import com.vividsolutions.jts.geom.Geometry;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import javax.imageio.ImageIO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches PNG images of rendered shapes.
+ *
+ * <p>Images are keyed by the kind and id of the entity they depict, the
+ * image size, and a {@link GeometryFingerprint} of the shape that was drawn.
+ * When an entity's shape changes its fingerprint changes too, so a stale
+ * image is never served; there is no need to explicitly invalidate anything.
+ *
+ * <p>Recently used images are kept in memory, bounded by their total size.
+ * Optionally, images are also written to a directory on disk, so that they
+ * survive being evicted from memory and restarting the application.  The
+ * disk tier holds at most one file per entity and image size; each file
+ * begins with the fingerprint of the shape it depicts, followed by the PNG
+ * data.
+ */
+public class RenderCache {
+    private static final Logger log = LoggerFactory.getLogger(RenderCache.class);
+    public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    public static final int SHAPE_SIZE = 300;
+    public static final int THUMBNAIL_SIZE = 32;
+    private final long maxBytes;
+    private final File diskDir;
+    private final LinkedHashMap<String, byte[]> images = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long totalBytes = 0;
+
+    public RenderCache() {
+        this(DEFAULT_MAX_BYTES, null);
+    }
+
+    /**
+     * Constructs a new RenderCache.
+     *
+     * @param maxBytes the maximum total size of the images kept in memory
+     * @param diskDir the directory in which to store rendered images, or null
+     *                to keep images in memory only
+     */
+    public RenderCache(long maxBytes, File diskDir) {
+        this.maxBytes = maxBytes;
+        this.diskDir = diskDir;
+        if(diskDir != null && !diskDir.isDirectory() && !diskDir.mkdirs()) {
+            log.warn("Unable to create render cache directory {}; caching images in memory only", diskDir);
+        }
+    }
+
+    /**
+     * Constructs the key of an image.
+     *
+     * @param kind the kind of entity depicted, e.g. "event" or "fire"
+     * @param id the id of the entity
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param geom the shape drawn in the image
+     * @return a Key identifying the image
+     */
+    public static Key keyFor(String kind, Object id, int width, int height, Geometry geom) {
+        return new Key(kind + "-" + id + "-" + width + "x" + height, GeometryFingerprint.of(geom), width, height);
+    }
+
+    /**
+     * Gets a cached image, if there is one.
+     *
+     * @param key the key of the image
+     * @return the PNG data of the image, or null if it is not cached
+     */
+    public byte[] get(Key key) {
+        synchronized(images) {
+            byte[] png = images.get(key.toString());
+            if(png != null) {
+                return png;
+            }
+        }
+        byte[] png = readFromDisk(key);
+        if(png != null) {
+            putInMemory(key, png);
+        }
+        return png;
+    }
+
+    /**
+     * Gets a cached image, rendering and caching it first if necessary.
+     *
+     * @param key the key of the image
+     * @param geom the shape to draw; this must be the shape that the key was
+     *             constructed from
+     * @return the PNG data of the image
+     * @throws IOException if the image could not be encoded
+     */
+    public byte[] getOrRender(Key key, Geometry geom) throws IOException {
+        byte[] png = get(key);
+        if(png == null) {
+            png = render(key.getWidth(), key.getHeight(), geom);
+            putInMemory(key, png);
+            writeToDisk(key, png);
+        }
+        return png;
+    }
+
+    /**
+     * Renders an image of the given shape as PNG data, without caching it.
+     *
+     * @param width the width of the image in pixels
+     * @param height the height of the image in pixels
+     * @param geom the shape to draw
+     * @return the PNG data of the image
+     * @throws IOException if the image could not be encoded
+     */
+    public static byte[] render(int width, int height, Geometry geom) throws IOException {
+        BufferedImage image = Render.drawScaledShape(width, height, geom);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", bytes);
+        return bytes.toByteArray();
+    }
+
+    public long getTotalBytes() {
+        synchronized(images) {
+            return totalBytes;
+        }
+    }
+
+    private void putInMemory(Key key, byte[] png) {
+        if(png.length > maxBytes) {
+            return;
+        }
+        synchronized(images) {
+            byte[] previous = images.put(key.toString(), png);
+            if(previous != null) {
+                totalBytes -= previous.length;
+            }
+            totalBytes += png.length;
+            Iterator<byte[]> iter = images.values().iterator();
+            while(totalBytes > maxBytes && iter.hasNext()) {
+                totalBytes -= iter.next().length;
+                iter.remove();
+            }
+        }
+    }
+
+    private byte[] readFromDisk(Key key) {
+        if(diskDir == null) {
+            return null;
+        }
+        File file = getFile(key);
+        if(!file.isFile()) {
+            return null;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if(in.readLong() != key.getFingerprint()) {
+                // The image depicts an older version of the shape
+                return null;
+            }
+            byte[] png = new byte[(int) file.length() - 8];
+            in.readFully(png);
+            return png;
+        } catch(IOException e) {
+            log.warn("Unable to read cached image " + file, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeToDisk(Key key, byte[] png) {
+        if(diskDir == null || !diskDir.isDirectory()) {
+            return;
+        }
+        File file = getFile(key);
+        File tempFile = new File(diskDir, file.getName() + ".tmp" + Thread.currentThread().getId());
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(tempFile));
+            out.writeLong(key.getFingerprint());
+            out.write(png);
+            out.close();
+            out = null;
+            // Replace the file in one step, so readers never see a partial image
+            if(!tempFile.renameTo(file)) {
+                Files.move(tempFile, file);
+            }
+        } catch(IOException e) {
+            log.warn("Unable to write cached image " + file, e);
+            tempFile.delete();
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private File getFile(Key key) {
+        return new File(diskDir, key.getName() + ".png");
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if(in != null) {
+            try {
+                in.close();
+            } catch(IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static void closeQuietly(OutputStream out) {
+        if(out != null) {
+            try {
+                out.close();
+            } catch(IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * Identifies a cached image.
+     */
+    public static final class Key {
+        private final String name;
+        private final long fingerprint;
+        private final int width;
+        private final int height;
+
+        private Key(String name, long fingerprint, int width, int height) {
+            this.name = name;
+            this.fingerprint = fingerprint;
+            this.width = width;
+            this.height = height;
+        }
+
+        /**
+         * Gets the name of the image, which identifies the entity and image
+         * size but not the version of the shape.
+         *
+         * @return the name of the image
+         */
+        public String getName() {
+            return name;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        /**
+         * Gets an HTTP entity tag for the image, which changes whenever the
+         * depicted shape does.
+         *
+         * @return a quoted ETag value
+         */
+        public String getETag() {
+            return "\"" + toString() + "\"";
+        }
+
+        @Override
+        public String toString() {
+            return name + "-" + Long.toHexString(fingerprint);
+        }
+    }
+}
@@ -18,12 +18,14 @@ package smartfire.gis;
 
 import com.google.common.collect.Lists;
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import com.vividsolutions.jts.precision.GeometryPrecisionReducer;
 import com.vividsolutions.jts.simplify.TopologyPreservingSimplifier;
 import java.util.Arrays;
 import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import smartfire.queue.ProgressReporter;
 
 /**
  * Utility methods for unioning geometries.
@@ -32,6 +34,7 @@ public class Union {
     private static final Logger log = LoggerFactory.getLogger(Union.class);
     private static final double SIMPLIFY_RESOLUTION = 10.0;
     private static final double PRECISION_SCALE = 8.0;
+    private static final int CASCADE_NODE_CAPACITY = 4;
     
     private Union() { }
     
@@ -84,7 +87,87 @@ public class Union {
         return unionAllImpl(geomList);
     }
 
+    /**
+     * Union all the Geometry objects in the input into a single geometry,
+     * using a tree-structured (cascaded) union.
+     *
+     * <p>The inputs are grouped by an STR-tree over their envelopes, and each
+     * node of the tree is unioned from the already-unioned results of its
+     * children.  Nearby geometries are therefore combined first, and no
+     * intermediate result is re-unioned more than once per tree level, which
+     * is much cheaper than folding the inputs into a growing result one at a
+     * time.
+     *
+     * <p>Unlike {@link #unionAll(java.lang.Iterable) unionAll}, a
+     * TopologyException is handled separately for each node of the tree: only
+     * the geometries being unioned at that node are simplified (or have their
+     * precision reduced), so a single bad polygon doesn't degrade the rest of
+     * the result.
+     *
+     * <p>If the input iterable contains zero geometries, this method throws
+     * an IllegalArgumentException.
+     *
+     * @param geometries an iterable of Geometry objects
+     * @return a single unioned Geometry
+     */
+    public static Geometry cascadedUnion(Iterable<? extends Geometry> geometries) {
+        STRtree tree = new STRtree(CASCADE_NODE_CAPACITY);
+        Geometry empty = null;
+        int numItems = 0;
+        for(Geometry geom : geometries) {
+            if(geom.isEmpty()) {
+                // Empty geometries have no envelope to index them by
+                empty = geom;
+                continue;
+            }
+            tree.insert(geom.getEnvelopeInternal(), geom);
+            numItems++;
+        }
+        if(numItems == 0) {
+            if(empty != null) {
+                return empty;
+            }
+            throw new IllegalArgumentException("Cannot union zero geometries");
+        }
+        return unionTree(tree.itemsTree());
+    }
+
+    /**
+     * Union all the geometries of all the GeometryEntity objects in the input
+     * into a single geometry, using a tree-structured (cascaded) union.
+     *
+     * @param geometries an iterable of GeometryEntity objects
+     * @return a single unioned Geometry
+     * @see #cascadedUnion(java.lang.Iterable)
+     */
+    public static Geometry cascadedUnionShapes(Iterable<? extends GeometryEntity> geometries) {
+        List<Geometry> geomList = Lists.newArrayList();
+        for(GeometryEntity entity : geometries) {
+            Geometry geom = entity.getShape();
+            if(geom == null) {
+                throw new IllegalArgumentException("Geometry of " + entity + " is null");
+            }
+            geomList.add(geom);
+        }
+        return cascadedUnion(geomList);
+    }
+
+    private static Geometry unionTree(List<?> node) {
+        List<Geometry> children = Lists.newArrayListWithExpectedSize(node.size());
+        for(Object child : node) {
+            if(child instanceof List) {
+                children.add(unionTree((List<?>) child));
+            } else {
+                children.add((Geometry) child);
+            }
+        }
+        return unionAllImpl(children);
+    }
+
     private static Geometry unionAllImpl(List<Geometry> geomList) {
+        // Unioning large inputs can take a very long time, so give the
+        // current job a chance to stop first
+        ProgressReporter.checkCurrentThreadCancelled();
         int numGeoms = geomList.size();
         Geometry[] geoms = geomList.toArray(new Geometry[numGeoms]);
         if(numGeoms == 0) {
@@ -100,6 +183,7 @@ public class Union {
             result = collection.union();
         } catch (TopologyException e) {
             log.info("Unioning shapes produced a topology exception. Simplifying each of the shapes...");
+            ProgressReporter.checkCurrentThreadCancelled();
             for (int i = 0; i < geoms.length; i++) {
                 geoms[i] = TopologyPreservingSimplifier.simplify(geoms[i], SIMPLIFY_RESOLUTION);
             }
@@ -108,6 +192,7 @@ public class Union {
                 result = collection.union();
             } catch (TopologyException e2) {
                 log.info("Topology exception still encountered.  Reducing precision of each shape...");
+                ProgressReporter.checkCurrentThreadCancelled();
                 for (int i = 0; i < geoms.length; i++) {
                     geoms[i] = GeometryPrecisionReducer.reduce(geoms[i], new PrecisionModel(PRECISION_SCALE));
                 }
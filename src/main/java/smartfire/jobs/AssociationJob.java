@@ -16,30 +16,58 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.jobs;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sti.justice.concurrent.NamedThreadFactory;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import smartfire.database.*;
 import smartfire.func.AssociationMethod;
+import smartfire.func.BoundedAssociationMethod;
 import smartfire.func.FireTypeMethod;
 import smartfire.func.Methods;
 import smartfire.func.ProbabilityMethod;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.QueryableFireSet;
 import smartfire.queue.Job;
+import smartfire.queue.JobResource;
+import smartfire.queue.PersistableJob;
 import smartfire.queue.ProgressReporter;
+import smartfire.queue.ResourceJob;
+import smartfire.queue.SourceJob;
 
 /**
  * The <b>Association</b> Job.  For a description of this job, see the 
  * appropriate section under the "SMARTFIRE 2.0 Job Chain" specification in
  * the SMARTFIRE 2.0 software design document (STI-910050-TM2).
  */
-public class AssociationJob implements Job {
+public class AssociationJob implements SourceJob, ResourceJob, PersistableJob {
+    private static final Logger log = LoggerFactory.getLogger(AssociationJob.class);
     private final GeometryBuilder geometryBuilder;
     private final ClumpDao clumpDao;
     private final FireDao fireDao;
     private final Source source;
     private final DateTime startTime;
     private final DateTime endTime;
+    private final boolean deleteOrphans;
+    private final List<Interval> intervals;
+    private final DatabaseConnection conn;
+    private final int checkpointIntervals;
+    private final int numThreads;
+    private final boolean incremental;
 
     /**
      * Constructs a new AssociationJob.
@@ -52,70 +80,429 @@ public class AssociationJob implements Job {
      * @param endTime the end DateTime of data to associate
      */
     AssociationJob(GeometryBuilder geometryBuilder, ClumpDao clumpDao, FireDao fireDao, Source source, DateTime startTime, DateTime endTime) {
+        this(geometryBuilder, clumpDao, fireDao, source, startTime, endTime, true, 1, false);
+    }
+
+    /**
+     * Constructs a new AssociationJob.
+     *
+     * @param geometryBuilder the geometry builder for SF2
+     * @param clumpDao the DAO for the Clump table
+     * @param fireDao the DAO for the Fire table
+     * @param source the current input Source
+     * @param startTime the start DateTime of data to associate
+     * @param endTime the end DateTime of data to associate
+     * @param deleteOrphans whether to delete the Source's orphaned fires
+     *                      before associating
+     * @param numThreads the number of threads to associate independent
+     *                   groups of clumps on; 1 to associate serially
+     * @param incremental true to associate only the clumps that are new or
+     *                    have changed; see {@link #isIncremental()}
+     */
+    AssociationJob(GeometryBuilder geometryBuilder, ClumpDao clumpDao, FireDao fireDao, Source source, DateTime startTime, DateTime endTime, boolean deleteOrphans, int numThreads, boolean incremental) {
         this.geometryBuilder = geometryBuilder;
         this.clumpDao = clumpDao;
         this.fireDao = fireDao;
         this.source = source;
         this.startTime = startTime;
         this.endTime = endTime;
+        this.deleteOrphans = deleteOrphans;
+        this.intervals = Collections.singletonList(new Interval(startTime, endTime));
+        this.conn = null;
+        this.checkpointIntervals = 0;
+        this.numThreads = numThreads;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Constructs a new AssociationJob that associates a contiguous block of
+     * intervals in order, as though each had its own AssociationJob.  The
+     * fire set and methods are shared by all the intervals, and the job's
+     * work is committed after every {@code checkpointIntervals} intervals.
+     *
+     * @param geometryBuilder the geometry builder for SF2
+     * @param clumpDao the DAO for the Clump table
+     * @param fireDao the DAO for the Fire table
+     * @param source the current input Source
+     * @param intervals the intervals of data to associate, in order
+     * @param deleteOrphans whether to delete the Source's orphaned fires
+     *                      before associating
+     * @param conn the database connection, used for checkpoints
+     * @param checkpointIntervals the number of intervals between checkpoints
+     * @param numThreads the number of threads to associate independent
+     *                   groups of clumps on; 1 to associate serially
+     * @param incremental true to associate only the clumps that are new or
+     *                    have changed; see {@link #isIncremental()}
+     */
+    AssociationJob(GeometryBuilder geometryBuilder, ClumpDao clumpDao, FireDao fireDao, Source source, List<Interval> intervals, boolean deleteOrphans, DatabaseConnection conn, int checkpointIntervals, int numThreads, boolean incremental) {
+        this.geometryBuilder = geometryBuilder;
+        this.clumpDao = clumpDao;
+        this.fireDao = fireDao;
+        this.source = source;
+        this.startTime = intervals.get(0).getStart();
+        this.endTime = intervals.get(intervals.size() - 1).getEnd();
+        this.deleteOrphans = deleteOrphans;
+        this.intervals = ImmutableList.copyOf(intervals);
+        this.conn = conn;
+        this.checkpointIntervals = checkpointIntervals;
+        this.numThreads = numThreads;
+        this.incremental = incremental;
     }
 
     @Override
     public void execute(ProgressReporter progressReporter) throws Exception {
-        progressReporter.setProgress(5, "Deleting orphaned fires");
-        fireDao.deleteOrphanedFires(source);
+        if(deleteOrphans) {
+            progressReporter.setProgress(5, "Deleting orphaned fires");
+            progressReporter.enterStage("deleteOrphans");
+            fireDao.deleteOrphanedFires(source);
+        }
 
         progressReporter.setProgress(10, "Setting up association");
         AssociationMethod assocMethod = Methods.newAssociationMethod(source);
         ProbabilityMethod probMethod = Methods.newProbabilityMethod(source);
         FireTypeMethod fireTypeMethod = Methods.newFireTypeMethod(geometryBuilder, source);
-        Collection<Clump> clumps = clumpDao.getByDate(source, startTime, endTime);
         QueryableFireSet fireSet = new QueryableFireSet(fireDao, source);
+        boolean parallel = (numThreads > 1 && assocMethod instanceof BoundedAssociationMethod);
+        if(numThreads > 1 && !parallel) {
+            log.info("Association method for {} does not declare its search bounds; associating serially",
+                    source.getName());
+        }
+
+        // The groups of every interval share one pool of worker threads
+        ExecutorService executor = null;
+        if(parallel) {
+            executor = NamedThreadFactory.newFixedThreadPool("SMARTFIRE-associate", numThreads);
+        }
+        try {
+            associateIntervals(fireSet, assocMethod, probMethod, fireTypeMethod, executor, progressReporter);
+        } finally {
+            if(executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
 
+    private void associateIntervals(QueryableFireSet fireSet, AssociationMethod assocMethod,
+            ProbabilityMethod probMethod, FireTypeMethod fireTypeMethod, ExecutorService executor,
+            ProgressReporter progressReporter) throws Exception {
         progressReporter.setProgress(30, "Creating fires");
         final int PROGRESS_START = 30;
         final int PROGRESS_MULTIPLIER = 65;
-        int percentProgress = PROGRESS_START;
+        final int numIntervals = intervals.size();
+        int numRecords = 0;
+        int numCreated = 0;
+        for(int i = 0; i < numIntervals; i++) {
+            progressReporter.checkCancelled();
+            Interval interval = intervals.get(i);
+            int intervalProgressStart = PROGRESS_START + (PROGRESS_MULTIPLIER * i) / numIntervals;
+            int intervalProgressEnd = PROGRESS_START + (PROGRESS_MULTIPLIER * (i + 1)) / numIntervals;
+            progressReporter.enterStage("query");
+            Collection<Clump> clumps;
+            if(incremental) {
+                clumps = clumpDao.getNeedingAssociationByDate(source, interval.getStart(), interval.getEnd());
+            } else {
+                clumps = clumpDao.getByDate(source, interval.getStart(), interval.getEnd());
+            }
+            if(executor != null) {
+                associateClumpsInParallel(clumps, fireSet, (BoundedAssociationMethod) assocMethod,
+                        executor, progressReporter, intervalProgressStart, intervalProgressEnd);
+            } else {
+                associateClumps(clumps, fireSet, assocMethod, probMethod, fireTypeMethod,
+                        progressReporter, intervalProgressStart, intervalProgressEnd);
+            }
+            progressReporter.enterStage("dailyAreas");
+            for(Clump clump : clumps) {
+                clump.markAssociated();
+                Fire fire = clump.getFire();
+                if(fire != null) {
+                    fire.storeDailyAreas();
+                }
+            }
+            numRecords += clumps.size();
+
+            // Save any newly created fires
+            progressReporter.enterStage("save");
+            numCreated += fireSet.saveNewEntities();
+
+            if(conn != null && i + 1 < numIntervals) {
+                progressReporter.enterStage("checkpoint");
+                if((i + 1) % checkpointIntervals == 0) {
+                    progressReporter.setProgress(intervalProgressEnd, "Committing fires through " + interval.getEnd().toLocalDate());
+                    conn.checkpoint();
+                } else {
+                    // Make this interval's fires visible to the queries for
+                    // the next one, as a separate job would
+                    conn.getEntityManager().flush();
+                }
+            }
+        }
+
+        if(numCreated == 0) {
+            progressReporter.setProgress(100, "Zero fires created");
+        } else {
+            progressReporter.setProgress(100, "Successfully associated "
+                    + numRecords + " clumps into "
+                    + numCreated + " fires");
+        }
+
+    }
+
+    private void associateClumps(Collection<Clump> clumps, QueryableFireSet fireSet,
+            AssociationMethod assocMethod, ProbabilityMethod probMethod, FireTypeMethod fireTypeMethod,
+            ProgressReporter progressReporter, int progressStart, int progressEnd) {
+        int percentProgress = progressStart;
         int counter = 0;
         int numRecords = clumps.size();
         for(Clump clump : clumps) {
+            progressReporter.checkCancelled();
+            progressReporter.enterStage("association");
             assocMethod.associate(clump, fireSet);
 
             // Find the fire that the Clump ended up associated with
             Fire associatedFire = clump.getFire();
             if(associatedFire != null) {
-                // Determine the probability for the fire 
-                double probability = probMethod.calculateFireProbability(associatedFire);
-                associatedFire.setProbability(probability);
-                
-                // Determine the fire type for the fire
-                String fireType = fireTypeMethod.determineFireType(associatedFire);
-                if(fireType.isEmpty()) {
-                    fireType = "NA";
-                }
-                associatedFire.setFireType(fireType);
+                progressReporter.enterStage("probability");
+                updateProbability(associatedFire, probMethod);
+                progressReporter.enterStage("fireType");
+                updateFireType(associatedFire, fireTypeMethod);
             }
 
             // Update progress
             counter++;
-            int newProgress = (int) (PROGRESS_START + (counter / (double) numRecords) * PROGRESS_MULTIPLIER);
+            int newProgress = (int) (progressStart + (counter / (double) numRecords) * (progressEnd - progressStart));
             if(newProgress > percentProgress) {
                 percentProgress = newProgress;
                 progressReporter.setProgress(percentProgress, "Associating clump " + counter + " of " + numRecords);
             }
         }
+    }
 
-        // Save any newly created fires
-        int numCreated = fireSet.saveNewEntities();
+    private static void updateProbability(Fire fire, ProbabilityMethod probMethod) {
+        // Determine the probability for the fire 
+        double probability = probMethod.calculateFireProbability(fire);
+        fire.setProbability(probability);
+    }
 
-        if(numCreated == 0) {
-            progressReporter.setProgress(100, "Zero fires created");
-        } else {
-            progressReporter.setProgress(100, "Successfully associated "
-                    + numRecords + " clumps into "
-                    + numCreated + " fires");
+    private static void updateFireType(Fire fire, FireTypeMethod fireTypeMethod) {
+        // Determine the fire type for the fire
+        String fireType = fireTypeMethod.determineFireType(fire);
+        if(fireType.isEmpty()) {
+            fireType = "NA";
+        }
+        fire.setFireType(fireType);
+    }
+
+    /**
+     * Splits the clumps into groups that can never end up in the same Fire,
+     * and associates the groups concurrently, each into its own partition of
+     * the fire set.  Within a group, clumps are associated in the same order
+     * as the serial path, so the resulting Fires are the same.
+     *
+     * <p>Two clumps are in the same group if the envelope of one, grown by
+     * the association method's largest search distance, touches the other or
+     * an existing Fire that touches the other.  A Fire's shape is the union
+     * of its clumps' shapes, so clumps in different groups can never reach
+     * each other's Fires.  Existing Fires that share an Event are also kept
+     * in one group, since merging a Fire rewrites its Events' fire lists.
+     *
+     * <p>The worker threads have no EntityManager of their own, so every
+     * lazily loaded association they will read is loaded here first, and
+     * Fires merged away in a partition are only deleted once the partition
+     * has been merged back on this thread.
+     */
+    private void associateClumpsInParallel(Collection<Clump> clumps, QueryableFireSet fireSet,
+            BoundedAssociationMethod assocMethod, ExecutorService executor,
+            final ProgressReporter progressReporter, int progressStart, int progressEnd) throws Exception {
+        if(clumps.isEmpty()) {
+            return;
+        }
+        List<Clump> clumpList = Lists.newArrayList(clumps);
+        double maxDistance = assocMethod.getMaxAssociationDistance();
+        DateTime windowStart = null;
+        DateTime windowEnd = null;
+        for(Clump clump : clumpList) {
+            loadClump(clump);
+            DateTime clumpStart = clump.getStartDateTime().minusDays(assocMethod.getMaxBackwardDays());
+            DateTime clumpEnd = clump.getEndDateTime().plusDays(assocMethod.getMaxForwardDays());
+            if(windowStart == null || clumpStart.isBefore(windowStart)) {
+                windowStart = clumpStart;
+            }
+            if(windowEnd == null || clumpEnd.isAfter(windowEnd)) {
+                windowEnd = clumpEnd;
+            }
+        }
+        progressReporter.enterStage("query");
+        List<Fire> fires = fireSet.getByDate(windowStart, windowEnd);
+        progressReporter.enterStage("association");
+
+        // Find the connected groups of clumps and existing fires
+        int numClumps = clumpList.size();
+        int[] parents = new int[numClumps + fires.size()];
+        STRtree index = new STRtree();
+        for(int i = 0; i < numClumps; i++) {
+            parents[i] = i;
+            index.insert(clumpList.get(i).getShape().getEnvelopeInternal(), i);
+        }
+        Map<Event, Integer> eventFires = Maps.newHashMap();
+        for(int i = 0; i < fires.size(); i++) {
+            Fire fire = fires.get(i);
+            parents[numClumps + i] = numClumps + i;
+            index.insert(fire.getShapeEnvelope(), numClumps + i);
+            for(Event event : fire.getEvents()) {
+                Integer other = eventFires.get(event);
+                if(other == null) {
+                    eventFires.put(event, numClumps + i);
+                } else {
+                    join(parents, other, numClumps + i);
+                }
+            }
+        }
+        for(int i = 0; i < numClumps; i++) {
+            Envelope queryEnvelope = new Envelope(clumpList.get(i).getShape().getEnvelopeInternal());
+            queryEnvelope.expandBy(maxDistance);
+            for(Object other : index.query(queryEnvelope)) {
+                join(parents, i, (Integer) other);
+            }
+        }
+
+        Map<Integer, ClumpGroup> groups = Maps.newLinkedHashMap();
+        for(int i = 0; i < numClumps; i++) {
+            int root = find(parents, i);
+            ClumpGroup group = groups.get(root);
+            if(group == null) {
+                group = new ClumpGroup();
+                groups.put(root, group);
+            }
+            group.clumps.add(clumpList.get(i));
+        }
+        for(int i = 0; i < fires.size(); i++) {
+            ClumpGroup group = groups.get(find(parents, numClumps + i));
+            if(group != null) {
+                Fire fire = fires.get(i);
+                loadFire(fire);
+                group.fires.add(fire);
+            }
+        }
+
+        List<Future<QueryableFireSet>> results = Lists.newArrayListWithCapacity(groups.size());
+        try {
+            for(final ClumpGroup group : groups.values()) {
+                // Methods may keep state, so each group gets its own
+                final AssociationMethod groupAssocMethod = Methods.newAssociationMethod(source);
+                final ProbabilityMethod probMethod = Methods.newProbabilityMethod(source);
+                final FireTypeMethod fireTypeMethod = Methods.newFireTypeMethod(geometryBuilder, source);
+                final QueryableFireSet partition = fireSet.newPartition(group.fires, windowStart, windowEnd);
+                results.add(executor.submit(ProgressReporter.forCurrentJob(new Callable<QueryableFireSet>() {
+                    @Override
+                    public QueryableFireSet call() {
+                        for(Clump clump : group.clumps) {
+                            progressReporter.checkCancelled();
+                            groupAssocMethod.associate(clump, partition);
+                            Fire associatedFire = clump.getFire();
+                            if(associatedFire != null) {
+                                updateProbability(associatedFire, probMethod);
+                                updateFireType(associatedFire, fireTypeMethod);
+                            }
+                        }
+                        // Union each fire's days here, so that storing its
+                        // daily areas on the job thread only copies them
+                        for(Clump clump : group.clumps) {
+                            if(clump.getFire() != null) {
+                                clump.getFire().getFireDays();
+                            }
+                        }
+                        return partition;
+                    }
+                })));
+            }
+
+            int percentProgress = progressStart;
+            int counter = 0;
+            int groupNum = 0;
+            for(ClumpGroup group : groups.values()) {
+                fireSet.mergePartition(getResult(results.get(groupNum)));
+
+                // Update progress
+                groupNum++;
+                counter += group.clumps.size();
+                int newProgress = (int) (progressStart + (counter / (double) numClumps) * (progressEnd - progressStart));
+                if(newProgress > percentProgress) {
+                    percentProgress = newProgress;
+                    progressReporter.setProgress(percentProgress, "Associated clump group " + groupNum
+                            + " of " + groups.size());
+                }
+            }
+        } finally {
+            // Don't leave this interval's groups running into the next one
+            for(Future<QueryableFireSet> result : results) {
+                result.cancel(true);
+            }
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static void loadClump(Clump clump) {
+        for(RawData record : clump.getRawData()) {
+            record.size();
+        }
+    }
+
+    private static void loadFire(Fire fire) {
+        for(Clump clump : fire.getClumps()) {
+            loadClump(clump);
+        }
+        fire.getShapeEnvelope();
+        // Adding a clump discards the stored daily areas, so load them too
+        fire.hasStoredDailyAreas();
+        for(Event event : fire.getEvents()) {
+            event.getFires().size();
+        }
+        fire.size();
+    }
+
+    private static int find(int[] parents, int i) {
+        while(parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void join(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if(rootA != rootB) {
+            parents[rootB] = rootA;
         }
+    }
+
+    private static class ClumpGroup {
+        private final List<Clump> clumps = Lists.newArrayList();
+        private final List<Fire> fires = Lists.newArrayList();
+    }
 
+    /**
+     * Returns true if this job only associates the Clumps that are new or
+     * have changed since they were last associated, rather than every Clump
+     * in its intervals.  Incremental clumping marks the Clumps it touches,
+     * so only those Clumps and their Fires are revisited.
+     *
+     * @return true if this job associates incrementally
+     * @see Clump#needsAssociation()
+     */
+    public boolean isIncremental() {
+        return incremental;
     }
 
     public DateTime getEndTime() {
@@ -126,6 +513,42 @@ public class AssociationJob implements Job {
         return startTime;
     }
 
+    /**
+     * Gets the name of the JobResource representing the fires of the given
+     * Source.  Association jobs write these fires; reconciliation jobs read
+     * them.
+     *
+     * @param source a Source
+     * @return a resource name
+     */
+    static String firesResourceName(Source source) {
+        return "fires:source:" + source.getId();
+    }
+
+    @Override
+    public List<JobResource> getResources() {
+        return Collections.singletonList(
+                JobResource.exclusive(firesResourceName(source), startTime, endTime));
+    }
+
+    @Override
+    public Map<String, String> getParameters() {
+        Map<String, String> parameters = Maps.newLinkedHashMap();
+        parameters.put("sourceId", source.getId().toString());
+        parameters.put("intervals", JobResumer.formatIntervals(intervals));
+        parameters.put("deleteOrphans", Boolean.toString(deleteOrphans));
+        if(conn != null) {
+            parameters.put("checkpointIntervals", Integer.toString(checkpointIntervals));
+        }
+        if(numThreads > 1) {
+            parameters.put("threads", Integer.toString(numThreads));
+        }
+        if(incremental) {
+            parameters.put("incremental", "true");
+        }
+        return parameters;
+    }
+
     public Source getSource() {
         return source;
     }
@@ -140,7 +563,9 @@ public class AssociationJob implements Job {
         }
         boolean sameSource = source.getId() == otherAssoc.source.getId();
         boolean dateContained = !(otherAssoc.startTime.isAfter(startTime) || otherAssoc.endTime.isBefore(endTime));
-        return (sameSource && dateContained);
+        // A job that associates every clump covers an incremental one
+        boolean clumpsContained = (!incremental || otherAssoc.incremental);
+        return (sameSource && dateContained && clumpsContained);
     }
 
     @Override
@@ -16,29 +16,45 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.jobs;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.joda.time.DateTime;
+import org.joda.time.Interval;
 import smartfire.database.*;
 import smartfire.func.ClumpMethod;
 import smartfire.func.Methods;
 import smartfire.gis.GeometryBuilder;
 import smartfire.queue.Job;
+import smartfire.queue.JobResource;
+import smartfire.queue.PersistableJob;
 import smartfire.queue.ProgressReporter;
+import smartfire.queue.ResourceJob;
+import smartfire.queue.SourceJob;
 
 /**
  * The <b>Clump</b> Job.  For a description of this job, see the appropriate
  * section under the "SMARTFIRE 2.0 Job Chain" specification in the SMARTFIRE
  * 2.0 software design document (STI-910050-TM2).
  */
-public class ClumpJob implements Job {
+public class ClumpJob implements SourceJob, ResourceJob, PersistableJob {
     private final GeometryBuilder geometryBuilder;
     private final RawDataDao rawDataDao;
     private final ClumpDao clumpDao;
     private final Source source;
     private final DateTime startTime;
     private final DateTime endTime;
+    private final List<Interval> intervals;
+    private final DatabaseConnection conn;
+    private final int checkpointIntervals;
+    private final boolean incremental;
 
     /**
      * Constructs a new ClumpJob.
@@ -48,24 +64,104 @@ public class ClumpJob implements Job {
      * @param source the current input Source
      * @param startTime the start DateTime of data to clump
      * @param endTime the end DateTime of data to clump
+     * @param incremental true to merge new RawData into the existing Clumps
+     *                    of the interval; see {@link #isIncremental()}
      */
-    ClumpJob(GeometryBuilder geometryBuilder, RawDataDao rawDataDao, ClumpDao clumpDao, Source source, DateTime startTime, DateTime endTime) {
+    ClumpJob(GeometryBuilder geometryBuilder, RawDataDao rawDataDao, ClumpDao clumpDao, Source source, DateTime startTime, DateTime endTime, boolean incremental) {
         this.geometryBuilder = geometryBuilder;
         this.rawDataDao = rawDataDao;
         this.clumpDao = clumpDao;
         this.source = source;
         this.startTime = startTime;
         this.endTime = endTime;
+        this.intervals = Collections.singletonList(new Interval(startTime, endTime));
+        this.conn = null;
+        this.checkpointIntervals = 0;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Constructs a new ClumpJob that clumps a contiguous block of intervals
+     * in order, as though each had its own ClumpJob, committing its work
+     * after every {@code checkpointIntervals} intervals.
+     *
+     * @param rawDataDao the DAO for the RawData table
+     * @param clumpDao the DAO for the Clump table
+     * @param source the current input Source
+     * @param intervals the intervals of data to clump, in order
+     * @param conn the database connection, used for checkpoints
+     * @param checkpointIntervals the number of intervals between checkpoints
+     * @param incremental true to merge new RawData into the existing Clumps
+     *                    of each interval; see {@link #isIncremental()}
+     */
+    ClumpJob(GeometryBuilder geometryBuilder, RawDataDao rawDataDao, ClumpDao clumpDao, Source source, List<Interval> intervals, DatabaseConnection conn, int checkpointIntervals, boolean incremental) {
+        this.geometryBuilder = geometryBuilder;
+        this.rawDataDao = rawDataDao;
+        this.clumpDao = clumpDao;
+        this.source = source;
+        this.startTime = intervals.get(0).getStart();
+        this.endTime = intervals.get(intervals.size() - 1).getEnd();
+        this.intervals = ImmutableList.copyOf(intervals);
+        this.conn = conn;
+        this.checkpointIntervals = checkpointIntervals;
+        this.incremental = incremental;
     }
 
     @Override
     public void execute(ProgressReporter progressReporter) throws Exception {
         progressReporter.setProgress(25, "Clumping raw data");
 
+        // The same ClumpMethod is used for every interval in the job
+        ClumpMethod method = Methods.newClumpMethod(geometryBuilder, source);
+
+        final int PROGRESS_START = 25;
+        final int PROGRESS_MULTIPLIER = 70;
+        final int numIntervals = intervals.size();
+        int numRecords = 0;
+        for(int i = 0; i < numIntervals; i++) {
+            progressReporter.checkCancelled();
+            Interval interval = intervals.get(i);
+            int intervalProgressStart = PROGRESS_START + (PROGRESS_MULTIPLIER * i) / numIntervals;
+            int intervalProgressEnd = PROGRESS_START + (PROGRESS_MULTIPLIER * (i + 1)) / numIntervals;
+            if(incremental) {
+                numRecords += clumpIntervalIncrementally(method, interval.getStart(), interval.getEnd(),
+                        progressReporter, intervalProgressStart, intervalProgressEnd);
+            } else {
+                numRecords += clumpInterval(method, interval.getStart(), interval.getEnd(),
+                        progressReporter, intervalProgressStart, intervalProgressEnd);
+            }
+
+            if(conn != null && i + 1 < numIntervals) {
+                progressReporter.enterStage("checkpoint");
+                if((i + 1) % checkpointIntervals == 0) {
+                    progressReporter.setProgress(intervalProgressEnd, "Committing clumps through " + interval.getEnd().toLocalDate());
+                    conn.checkpoint();
+                } else {
+                    // Make this interval's clumps visible to the queries
+                    // for the next one, as a separate job would
+                    conn.getEntityManager().flush();
+                }
+            }
+        }
+
+        progressReporter.setProgress(95, "Finishing job");
+
+        if(numRecords == 0) {
+            progressReporter.setProgress(100, "Zero clumps created");
+        } else if(incremental) {
+            progressReporter.setProgress(100, "Successfully created or updated " + numRecords + " clumps");
+        } else {
+            progressReporter.setProgress(100, "Successfully created " + numRecords + " clumps");
+        }
+    }
+
+    private int clumpInterval(ClumpMethod method, DateTime start, DateTime end,
+            ProgressReporter progressReporter, int progressStart, int progressEnd) {
         // The records from the RawData table for the given Source and
         // time range will be read, and fed to the ClumpMethod associated with
         // the current Source as input. 
-        List<RawData> rawData = rawDataDao.getByDate(source, startTime, endTime);
+        progressReporter.enterStage("query");
+        List<RawData> rawData = rawDataDao.getByDate(source, start, end);
 
         // Filter out any RawData records that already have Clumps
         List<RawData> toBeClumped = Lists.newArrayListWithExpectedSize(rawData.size());
@@ -76,43 +172,268 @@ public class ClumpJob implements Job {
         }
 
         // Run the ClumpMethod
-        ClumpMethod method = Methods.newClumpMethod(geometryBuilder, source);
+        progressReporter.enterStage("clump");
         Collection<Clump> clumpData = method.clump(toBeClumped);
+        progressReporter.checkCancelled();
 
         // Any records the ClumpMethod creates will be inserted into the Clump
         // table, and relationship records will be inserted linking Clumps to
         // their associated RawData record(s).
 
-        final int PROGRESS_START = 25;
-        final int PROGRESS_MULTIPLIER = 70;
-        int percentProgress = PROGRESS_START;
+        int percentProgress = progressStart;
         int counter = 0;
         int numRecords = clumpData.size();
 
         // Insert clumps into the Clump table.
+        progressReporter.enterStage("save");
         for(Clump clump : clumpData) {
+            progressReporter.checkCancelled();
             if(clump != null) {
                 clumpDao.save(clump);
             }
 
             // Update progress
             counter++;
-            int newProgress = (int) (PROGRESS_START + (counter / (double) numRecords) * PROGRESS_MULTIPLIER);
+            int newProgress = (int) (progressStart + (counter / (double) numRecords) * (progressEnd - progressStart));
             if(newProgress > percentProgress) {
                 percentProgress = newProgress;
                 progressReporter.setProgress(percentProgress, "Clumping record " + counter + " of " + numRecords);
             }
         }
+        return numRecords;
+    }
 
-        progressReporter.setProgress(95, "Finishing job");
+    /**
+     * Clumps only the RawData records of the interval that don't belong to a
+     * Clump yet.  New clumps that don't touch any existing Clump of the
+     * interval are saved as they are.  Those that do are re-clumped together
+     * with the existing Clumps they touch, and the result is written back
+     * into those Clumps; existing Clumps left without any RawData are deleted.
+     *
+     * @return the number of clumps created or updated
+     */
+    private int clumpIntervalIncrementally(ClumpMethod method, DateTime start, DateTime end,
+            ProgressReporter progressReporter, int progressStart, int progressEnd) {
+        progressReporter.enterStage("query");
+        List<RawData> newRecords = rawDataDao.getUnclumpedByDate(source, start, end);
+        if(newRecords.isEmpty()) {
+            return 0;
+        }
 
-        if(numRecords == 0) {
-            progressReporter.setProgress(100, "Zero clumps created");
-        } else {
-            progressReporter.setProgress(100, "Successfully created " + numRecords + " clumps");
+        progressReporter.enterStage("clump");
+        Collection<Clump> newClumps = method.clump(newRecords);
+        progressReporter.checkCancelled();
+
+        // Index the clumps that already exist for this interval
+        progressReporter.enterStage("query");
+        STRtree index = new STRtree();
+        for(Clump existing : clumpDao.getByDate(source, start, end)) {
+            index.insert(existing.getShape().getEnvelopeInternal(), existing);
+        }
+
+        // Group the new clumps with the existing clumps they touch; new
+        // clumps that touch the same existing clump end up in one group
+        progressReporter.enterStage("merge");
+        List<Clump> toSave = Lists.newArrayList();
+        Map<Clump, MergeGroup> groupOf = Maps.newIdentityHashMap();
+        for(Clump clump : newClumps) {
+            if(clump == null) {
+                continue;
+            }
+            MergeGroup group = null;
+            for(Object candidate : index.query(clump.getShape().getEnvelopeInternal())) {
+                Clump existing = (Clump) candidate;
+                if(!clump.getShape().intersects(existing.getShape())) {
+                    continue;
+                }
+                MergeGroup existingGroup = groupOf.get(existing);
+                if(existingGroup == null) {
+                    existingGroup = new MergeGroup();
+                    existingGroup.existingClumps.add(existing);
+                    groupOf.put(existing, existingGroup);
+                }
+                if(group == null) {
+                    group = existingGroup;
+                } else if(group != existingGroup) {
+                    group.absorb(existingGroup);
+                    for(Clump moved : existingGroup.existingClumps) {
+                        groupOf.put(moved, group);
+                    }
+                }
+            }
+            if(group == null) {
+                toSave.add(clump);
+            } else {
+                group.newClumps.add(clump);
+            }
+        }
+
+        int percentProgress = progressStart;
+        int counter = 0;
+        Set<MergeGroup> groups = Sets.newIdentityHashSet();
+        groups.addAll(groupOf.values());
+        int numRecords = toSave.size() + groups.size();
+        int numUpdated = 0;
+        Set<Fire> changedFires = Sets.newIdentityHashSet();
+        for(MergeGroup group : groups) {
+            progressReporter.checkCancelled();
+            for(Clump existing : group.existingClumps) {
+                if(existing.getFire() != null) {
+                    changedFires.add(existing.getFire());
+                }
+            }
+            numUpdated += mergeGroup(method, group.existingClumps, group.newClumps);
+
+            counter++;
+            int newProgress = (int) (progressStart + (counter / (double) numRecords) * (progressEnd - progressStart));
+            if(newProgress > percentProgress) {
+                percentProgress = newProgress;
+                progressReporter.setProgress(percentProgress, "Merging clump group " + counter + " of " + groups.size());
+            }
+        }
+
+        // Changing a fire's clumps discards its stored daily areas
+        progressReporter.enterStage("dailyAreas");
+        for(Fire fire : changedFires) {
+            fire.storeDailyAreas();
+        }
+
+        progressReporter.enterStage("save");
+        for(Clump clump : toSave) {
+            progressReporter.checkCancelled();
+            clumpDao.save(clump);
+        }
+        return toSave.size() + numUpdated;
+    }
+
+    /**
+     * Re-clumps the RawData of a group of existing and new clumps, and writes
+     * the result back into the existing clumps where possible.
+     *
+     * @return the number of clumps created or updated
+     */
+    /* package */ int mergeGroup(ClumpMethod method, List<Clump> existingClumps, List<Clump> newClumps) {
+        Map<RawData, Clump> previousClumps = Maps.newIdentityHashMap();
+        List<RawData> records = Lists.newArrayList();
+        for(Clump existing : existingClumps) {
+            for(RawData record : existing.getRawData()) {
+                previousClumps.put(record, existing);
+                records.add(record);
+            }
+        }
+        for(Clump clump : newClumps) {
+            records.addAll(clump.getRawData());
+        }
+
+        int numUpdated = 0;
+        Set<Clump> used = Sets.newIdentityHashSet();
+        for(Clump reclumped : method.clump(records)) {
+            if(reclumped == null) {
+                continue;
+            }
+            Clump target = chooseTarget(reclumped, previousClumps, used);
+            if(target != null) {
+                target.absorb(reclumped, previousClumps);
+                used.add(target);
+            } else {
+                reclumped.detachFromPreviousClumps(previousClumps);
+                clumpDao.save(reclumped);
+            }
+            numUpdated++;
+        }
+
+        // Existing clumps whose records all moved elsewhere are now empty
+        for(Clump existing : existingClumps) {
+            if(existing.getRawData().isEmpty()) {
+                clumpDao.delete(existing);
+            }
+        }
+        return numUpdated;
+    }
+
+    /**
+     * Chooses the existing clump that a re-clumped clump should be written
+     * into: the one that contributed most of its records, so that clump
+     * keeps its Fire.  Each existing clump can only be chosen once.
+     *
+     * @param reclumped an unsaved clump produced by re-clumping
+     * @param previousClumps the existing clump that each record belonged to
+     * @param used the existing clumps that have already been chosen
+     * @return an existing clump, or null if the re-clumped clump has no
+     *         records from an unused existing clump
+     */
+    /* package */ static Clump chooseTarget(Clump reclumped, Map<RawData, Clump> previousClumps, Set<Clump> used) {
+        Clump target = null;
+        int targetCount = 0;
+        Map<Clump, Integer> counts = Maps.newIdentityHashMap();
+        for(RawData record : reclumped.getRawData()) {
+            Clump previous = previousClumps.get(record);
+            if(previous == null || used.contains(previous)) {
+                continue;
+            }
+            Integer count = counts.get(previous);
+            count = (count == null ? 1 : count + 1);
+            counts.put(previous, count);
+            if(count > targetCount) {
+                target = previous;
+                targetCount = count;
+            }
+        }
+        return target;
+    }
+
+    private static class MergeGroup {
+        private final List<Clump> existingClumps = Lists.newArrayList();
+        private final List<Clump> newClumps = Lists.newArrayList();
+
+        void absorb(MergeGroup other) {
+            existingClumps.addAll(other.existingClumps);
+            newClumps.addAll(other.newClumps);
         }
     }
 
+    /**
+     * Returns true if this job merges newly arrived RawData into the existing
+     * Clumps of its intervals, rather than clumping new records on their own.
+     *
+     * @return true if this job clumps incrementally
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    public DateTime getEndTime() {
+        return endTime;
+    }
+
+    public DateTime getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public List<JobResource> getResources() {
+        return Collections.singletonList(
+                JobResource.exclusive("clumps:source:" + source.getId(), startTime, endTime));
+    }
+
+    @Override
+    public Map<String, String> getParameters() {
+        Map<String, String> parameters = Maps.newLinkedHashMap();
+        parameters.put("sourceId", source.getId().toString());
+        parameters.put("intervals", JobResumer.formatIntervals(intervals));
+        if(conn != null) {
+            parameters.put("checkpointIntervals", Integer.toString(checkpointIntervals));
+        }
+        if(incremental) {
+            parameters.put("incremental", "true");
+        }
+        return parameters;
+    }
+
+    public Source getSource() {
+        return source;
+    }
+
     @Override
     public boolean isEquivalentTo(Job other) {
         ClumpJob otherClumpJob;
@@ -0,0 +1,64 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import smartfire.export.ExportCache;
+import smartfire.queue.DataAcquireJob;
+import smartfire.queue.Job;
+import smartfire.queue.JobListener;
+import smartfire.queue.JobState;
+import smartfire.queue.QueuedJob;
+
+/**
+ * JobListener that invalidates cached exports when a job commits changes to
+ * the data they were generated from.
+ *
+ * <p>Fetch, ingest, clump and association jobs change the raw data, clumps
+ * and fires of their Source; reconciliation jobs change the events of their
+ * ReconciliationStream.  PrerenderEventsJobs only read data.
+ */
+public class ExportCacheInvalidator implements JobListener {
+    private final ExportCache cache;
+
+    public ExportCacheInvalidator(ExportCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void jobFinished(QueuedJob queuedJob) {
+        if(queuedJob.getState() != JobState.SUCCESS) {
+            // The job's transaction was rolled back, so nothing changed
+            return;
+        }
+        Job job = queuedJob.getJob();
+        if(job instanceof DataAcquireJob) {
+            cache.invalidate(ExportCache.scopeFor(((DataAcquireJob) job).getSource()));
+        } else if(job instanceof ClumpJob) {
+            cache.invalidate(ExportCache.scopeFor(((ClumpJob) job).getSource()));
+        } else if(job instanceof AssociationJob) {
+            cache.invalidate(ExportCache.scopeFor(((AssociationJob) job).getSource()));
+        } else if(job instanceof ReconciliationJob) {
+            cache.invalidate(ExportCache.scopeForStream(((ReconciliationJob) job).getReconciliationStreamId()));
+        } else if(job instanceof PrerenderEventsJob) {
+            // Only reads data
+            return;
+        } else {
+            // We don't know what this job changed, so assume everything
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.ApplicationSettings;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.ScheduledFetch;
+import smartfire.queue.JobListener;
+import smartfire.queue.JobPriority;
+import smartfire.queue.JobQueue;
+import smartfire.queue.JobState;
+import smartfire.queue.QueuedJob;
+
+/**
+ * Runs several ScheduledFetches as one round.
+ *
+ * <p>The fetches are queued together, so they run concurrently in the
+ * JobQueue's fetch thread pool, and each of them goes on to clump and
+ * associate its own data as usual.  Reconciliation, however, waits until
+ * every fetch in the round has finished: each ReconciliationStream fed by
+ * the round is then reconciled once, over the combined date range of all
+ * its sources, instead of once per source.
+ *
+ * <p>A job that depends on a failed job fails too, so a stream's merged
+ * reconciliation isn't queued until all of its association jobs have
+ * finished.  It then depends only on the ones that succeeded; a source
+ * whose fetch, clumping or association failed doesn't keep the rest of the
+ * stream from being reconciled.
+ */
+public final class FetchRound implements JobListener {
+    private static final Logger log = LoggerFactory.getLogger(FetchRound.class);
+    private final JobQueue queue;
+    private final ReconciliationScheduler scheduler;
+    private final Set<QueuedJob> pendingFetches = Sets.newHashSet();
+    private final Map<Integer, PlannedReconciliation> reconciliations = Maps.newLinkedHashMap();
+    private boolean allFetchesQueued = false;
+    private boolean finished = false;
+
+    private FetchRound(final ApplicationSettings settings) {
+        this(settings.getJobQueue(), new ReconciliationScheduler() {
+            @Override
+            public void schedule(ReconciliationStream stream, DateTime startTime, DateTime endTime,
+                    JobPriority priority, List<QueuedJob> assocJobs) {
+                JobChain.schedule(settings, stream, startTime, endTime, priority, assocJobs);
+            }
+        });
+    }
+
+    /* package */ FetchRound(JobQueue queue, ReconciliationScheduler scheduler) {
+        this.queue = queue;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Queues the reconciliation jobs planned by a round.
+     */
+    interface ReconciliationScheduler {
+        void schedule(ReconciliationStream stream, DateTime startTime, DateTime endTime,
+                JobPriority priority, List<QueuedJob> assocJobs);
+    }
+
+    /**
+     * Schedule a round of fetches.
+     *
+     * @param settings the current application settings
+     * @param fetches the ScheduledFetches to run
+     * @param fetchTime the date/time of data to fetch
+     * @param useMaxBackwardDays whether to limit how far back the fetches go
+     * @param priority the priority of the jobs in the round
+     */
+    public static void schedule(ApplicationSettings settings, List<ScheduledFetch> fetches, DateTime fetchTime, boolean useMaxBackwardDays, JobPriority priority) {
+        FetchRound round = new FetchRound(settings);
+        round.start(settings, fetches, fetchTime, useMaxBackwardDays, priority);
+    }
+
+    private void start(ApplicationSettings settings, List<ScheduledFetch> fetches, DateTime fetchTime, boolean useMaxBackwardDays, JobPriority priority) {
+        log.info("Starting a round of {} fetches", fetches.size());
+
+        // Listen before queueing, so that no fetch can finish unnoticed
+        queue.addJobListener(this);
+        for(ScheduledFetch fetch : fetches) {
+            addFetch(JobChain.schedule(settings, fetch, fetchTime, useMaxBackwardDays, priority, this));
+        }
+        fetchesQueued();
+    }
+
+    /* package */ synchronized void addFetch(QueuedJob fetchJob) {
+        if(!fetchJob.isFinished()) {
+            pendingFetches.add(fetchJob);
+        }
+    }
+
+    /* package */ void fetchesQueued() {
+        synchronized(this) {
+            allFetchesQueued = true;
+        }
+        scheduleReady();
+    }
+
+    /**
+     * Called by the JobChain of each fetch in the round, in place of
+     * scheduling its own reconciliation job.
+     */
+    synchronized void addReconciliation(ReconciliationStream stream, DateTime startTime, DateTime endTime,
+            JobPriority priority, List<QueuedJob> assocJobs) {
+        PlannedReconciliation planned = reconciliations.get(stream.getId());
+        if(planned == null) {
+            planned = new PlannedReconciliation(stream, startTime, endTime, priority);
+            reconciliations.put(stream.getId(), planned);
+        } else {
+            planned.extend(startTime, endTime, priority);
+        }
+        planned.assocJobs.addAll(assocJobs);
+    }
+
+    @Override
+    public void jobFinished(QueuedJob queuedJob) {
+        // Association jobs are waited for as well as fetches, so any job
+        // finishing may make a reconciliation ready
+        synchronized(this) {
+            pendingFetches.remove(queuedJob);
+        }
+        scheduleReady();
+    }
+
+    private void scheduleReady() {
+        List<PlannedReconciliation> toSchedule = Lists.newArrayList();
+        boolean done = true;
+        synchronized(this) {
+            if(finished || !allFetchesQueued || !pendingFetches.isEmpty()) {
+                return;
+            }
+            for(PlannedReconciliation planned : reconciliations.values()) {
+                if(planned.scheduled) {
+                    continue;
+                }
+                if(planned.isReady()) {
+                    planned.scheduled = true;
+                    toSchedule.add(planned);
+                } else {
+                    done = false;
+                }
+            }
+            finished = done;
+        }
+        if(done) {
+            queue.removeJobListener(this);
+            log.info("Fetch round finished");
+        }
+
+        for(PlannedReconciliation planned : toSchedule) {
+            List<QueuedJob> succeeded = planned.getSucceededAssocJobs();
+            int numFailed = planned.assocJobs.size() - succeeded.size();
+            if(succeeded.isEmpty() && numFailed > 0) {
+                log.warn("Not reconciling stream {}, since none of its association jobs succeeded",
+                        planned.stream.getName());
+                continue;
+            }
+            if(numFailed > 0) {
+                log.warn("Reconciling stream {} without the {} association jobs that failed",
+                        planned.stream.getName(), numFailed);
+            }
+            scheduler.schedule(planned.stream, planned.startTime, planned.endTime, planned.priority, succeeded);
+        }
+    }
+
+    /**
+     * Returns true if the given job has failed or been cancelled, or never
+     * will run because a job that it depends on has.
+     */
+    /* package */ static boolean hasFailed(QueuedJob queuedJob) {
+        if(queuedJob.isFinished()) {
+            return queuedJob.getState() != JobState.SUCCESS;
+        }
+        for(QueuedJob upstreamJob : queuedJob.getUpstreamJobs()) {
+            if(hasFailed(upstreamJob)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class PlannedReconciliation {
+        private final ReconciliationStream stream;
+        private final List<QueuedJob> assocJobs = Lists.newArrayList();
+        private DateTime startTime;
+        private DateTime endTime;
+        private JobPriority priority;
+        private boolean scheduled = false;
+
+        PlannedReconciliation(ReconciliationStream stream, DateTime startTime, DateTime endTime, JobPriority priority) {
+            this.stream = stream;
+            this.startTime = startTime;
+            this.endTime = endTime;
+            this.priority = priority;
+        }
+
+        void extend(DateTime newStartTime, DateTime newEndTime, JobPriority newPriority) {
+            if(newStartTime.isBefore(startTime)) {
+                startTime = newStartTime;
+            }
+            if(newEndTime.isAfter(endTime)) {
+                endTime = newEndTime;
+            }
+            // Run at the most urgent priority of any of the fetches
+            if(newPriority.compareTo(priority) < 0) {
+                priority = newPriority;
+            }
+        }
+
+        boolean isReady() {
+            for(QueuedJob assocJob : assocJobs) {
+                if(!assocJob.isFinished() && !hasFailed(assocJob)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        List<QueuedJob> getSucceededAssocJobs() {
+            List<QueuedJob> result = Lists.newArrayList();
+            for(QueuedJob assocJob : assocJobs) {
+                if(!hasFailed(assocJob)) {
+                    result.add(assocJob);
+                }
+            }
+            return result;
+        }
+    }
+}
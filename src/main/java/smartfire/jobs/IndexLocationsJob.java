@@ -0,0 +1,108 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import java.util.List;
+import java.util.Set;
+import smartfire.ApplicationSettings;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.SummaryDataLayer;
+import smartfire.gis.GeometryBuilder;
+import smartfire.layer.ReverseGeocoder;
+import smartfire.queue.CategorizedJob;
+import smartfire.queue.Job;
+import smartfire.queue.JobCategory;
+import smartfire.queue.ProgressReporter;
+
+/**
+ * Builds the ReverseGeocoder index of a stream's summary data layers, so
+ * that web views can describe event locations without reading the layer
+ * files themselves.
+ *
+ * <p>The job works from a copy of the stream's list of layers taken when it
+ * is queued, so it doesn't depend on when the change that queued it is
+ * committed.
+ */
+public class IndexLocationsJob implements CategorizedJob {
+    private final GeometryBuilder geometryBuilder;
+    private final Integer streamId;
+    private final List<SummaryDataLayer> layers;
+
+    /**
+     * Constructs a new IndexLocationsJob.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings
+     * @param streamId the id of the ReconciliationStream
+     * @param layers the stream's SummaryDataLayers
+     */
+    public IndexLocationsJob(GeometryBuilder geometryBuilder, Integer streamId, List<SummaryDataLayer> layers) {
+        this.geometryBuilder = geometryBuilder;
+        this.streamId = streamId;
+        this.layers = ImmutableList.copyOf(layers);
+    }
+
+    /**
+     * Queues an IndexLocationsJob for the given stream.
+     *
+     * @param settings the current application settings
+     * @param stream the ReconciliationStream to index
+     */
+    public static void enqueue(ApplicationSettings settings, ReconciliationStream stream) {
+        settings.getJobQueue().enqueueIfNoneEquivalent(
+                new IndexLocationsJob(settings.getGeometryBuilder(), stream.getId(),
+                        ImmutableList.copyOf(stream.getSummaryDataLayers())),
+                "Index locations for stream " + stream.getName());
+    }
+
+    @Override
+    public void execute(ProgressReporter progressReporter) throws Exception {
+        progressReporter.setProgress(0, "Indexing " + layers.size() + " summary data layers");
+        ReverseGeocoder.forStream(geometryBuilder, streamId, layers);
+        progressReporter.setProgress(100, "Indexed " + layers.size() + " summary data layers");
+    }
+
+    @Override
+    public JobCategory getCategory() {
+        return JobCategory.MAINTENANCE;
+    }
+
+    @Override
+    public boolean isEquivalentTo(Job other) {
+        if(other instanceof IndexLocationsJob) {
+            IndexLocationsJob job = (IndexLocationsJob) other;
+            return streamId.equals(job.streamId) && describe(layers).equals(describe(job.layers));
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isConflictingWith(Job other) {
+        // Only reads the layer files
+        return false;
+    }
+
+    private static Set<String> describe(List<SummaryDataLayer> layers) {
+        Set<String> result = Sets.newTreeSet();
+        for(SummaryDataLayer layer : layers) {
+            result.add(layer.getId() + ":" + layer.getDataLocation());
+        }
+        return result;
+    }
+}
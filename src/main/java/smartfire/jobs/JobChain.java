@@ -30,6 +30,7 @@ import smartfire.config.SmartfireConfig;
 import smartfire.database.*;
 import smartfire.gis.GeometryBuilder;
 import smartfire.queue.DataAcquireJob;
+import smartfire.queue.JobPriority;
 import smartfire.queue.JobQueue;
 import smartfire.queue.QueuedJob;
 
@@ -37,22 +38,56 @@ import smartfire.queue.QueuedJob;
  * Utility class for triggering the whole chain of SMARTFIRE jobs.
  */
 public class JobChain {
+    /**
+     * Downstream jobs covering more intervals than this are considered to
+     * be reprocessing historical data, and run at BACKFILL priority.
+     */
+    static final int BACKFILL_INTERVAL_THRESHOLD = 7;
+    /**
+     * Batched clump and association jobs commit their work after this many
+     * intervals.
+     */
+    static final int BATCH_CHECKPOINT_INTERVALS = 7;
     private final JobQueue queue;
     private final DatabaseConnection conn;
     private final GeometryBuilder geometryBuilder;
     private final DateTime fetchTime;
     private final DateTimeZone timeZone;
+    private final JobPriority priority;
+    private final boolean pipelinedAssociation;
+    private final boolean incrementalClumping;
+    private final boolean deferredEventFields;
+    private final boolean incrementalReconciliation;
+    private final int numReconciliationThreads;
+    private final int numSummaryLayerThreads;
+    private final int numAssociationThreads;
+    private final int backfillBatchSize;
+    private final FetchRound round;
     private volatile QueuedJob queuedDataAcquireJob;
     private final List<QueuedJob> queuedClumpJobs = Lists.newArrayList();
     private final List<QueuedJob> queuedAssocJobs = Lists.newArrayList();
     private final List<QueuedJob> queuedReconcileJobs = Lists.newArrayList();
 
-    private JobChain(ApplicationSettings settings, DateTime fetchTime, int dateOffset) {
+    private JobChain(ApplicationSettings settings, DateTime fetchTime, int dateOffset, JobPriority priority) {
+        this(settings, fetchTime, dateOffset, priority, null);
+    }
+
+    private JobChain(ApplicationSettings settings, DateTime fetchTime, int dateOffset, JobPriority priority, FetchRound round) {
+        this.round = round;
         this.queue = settings.getJobQueue();
         this.conn = settings.getDatabaseConnection();
         this.geometryBuilder = settings.getGeometryBuilder();
         this.fetchTime = fetchTime.minusDays(dateOffset);
         this.timeZone = settings.getConfig().getDateTimeZone();
+        this.priority = priority;
+        this.pipelinedAssociation = settings.getConfig().isPipelinedAssociation();
+        this.incrementalClumping = settings.getConfig().isIncrementalClumping();
+        this.deferredEventFields = settings.getConfig().isDeferredEventFields();
+        this.incrementalReconciliation = settings.getConfig().isIncrementalReconciliation();
+        this.numReconciliationThreads = settings.getConfig().getNumReconciliationThreads();
+        this.numSummaryLayerThreads = settings.getConfig().getNumSummaryLayerThreads();
+        this.numAssociationThreads = settings.getConfig().getNumAssociationThreads();
+        this.backfillBatchSize = settings.getConfig().getBackfillBatchSize();
     }
 
     /**
@@ -63,10 +98,46 @@ public class JobChain {
      * @param settings the current application settings
      * @param scheduledFetch the ScheduledFetch currently being triggered
      * @param fetchTime the date/time of data to fetch
+     * @param priority the priority of the jobs in the chain
+     */
+    public static void schedule(ApplicationSettings settings, ScheduledFetch scheduledFetch, DateTime fetchTime, boolean useMaxBackwardDays, JobPriority priority) {
+        JobChain jobChain = new JobChain(settings, fetchTime, scheduledFetch.getDateOffset(), priority);
+        jobChain.scheduleFetchJob(scheduledFetch.getSource(), scheduledFetch, useMaxBackwardDays);
+    }
+
+    /**
+     * Schedule a FetchJob as part of a FetchRound.  Instead of scheduling
+     * its own reconciliation jobs, the chain hands them to the round to be
+     * merged with those of the other fetches.
+     *
+     * @param settings the current application settings
+     * @param scheduledFetch the ScheduledFetch currently being triggered
+     * @param fetchTime the date/time of data to fetch
+     * @param priority the priority of the jobs in the chain
+     * @param round the FetchRound the fetch belongs to
+     * @return the queued FetchJob
      */
-    public static void schedule(ApplicationSettings settings, ScheduledFetch scheduledFetch, DateTime fetchTime, boolean useMaxBackwardDays) {
-        JobChain jobChain = new JobChain(settings, fetchTime, scheduledFetch.getDateOffset());
+    static QueuedJob schedule(ApplicationSettings settings, ScheduledFetch scheduledFetch, DateTime fetchTime, boolean useMaxBackwardDays, JobPriority priority, FetchRound round) {
+        JobChain jobChain = new JobChain(settings, fetchTime, scheduledFetch.getDateOffset(), priority, round);
         jobChain.scheduleFetchJob(scheduledFetch.getSource(), scheduledFetch, useMaxBackwardDays);
+        return jobChain.queuedDataAcquireJob;
+    }
+
+    /**
+     * Schedule a ReconciliationJob that runs after the given association
+     * jobs, e.g. those of all the fetches in a FetchRound.
+     *
+     * @param settings the current application settings
+     * @param stream the ReconciliationStream to reconcile
+     * @param startDate the start of the date range to reconcile
+     * @param endDate the end of the date range to reconcile
+     * @param priority the priority of the reconciliation job
+     * @param assocJobs the association jobs to wait for
+     */
+    static void schedule(ApplicationSettings settings, ReconciliationStream stream, DateTime startDate, DateTime endDate, JobPriority priority, List<QueuedJob> assocJobs) {
+        JobChain jobChain = new JobChain(settings, startDate, 0, priority);
+        jobChain.queuedAssocJobs.addAll(assocJobs);
+        jobChain.scheduleReconciliationJob(stream, startDate, endDate, priority);
     }
 
     /**
@@ -77,9 +148,10 @@ public class JobChain {
      * @param source the Source of the data to be ingested
      * @param filePath the path of the file to be processed by the ingest job.
      * @param ingestTime the date/time of data to be ingested
+     * @param priority the priority of the jobs in the chain
      */
-    public static void schedule(ApplicationSettings settings, Source source, String filePath, DateTime ingestTime, boolean runReconciliation, boolean useMaxBackwardDays) {
-        JobChain jobChain = new JobChain(settings, ingestTime, 0);
+    public static void schedule(ApplicationSettings settings, Source source, String filePath, DateTime ingestTime, boolean runReconciliation, boolean useMaxBackwardDays, JobPriority priority) {
+        JobChain jobChain = new JobChain(settings, ingestTime, 0, priority);
         jobChain.scheduleIngestJob(source, filePath, runReconciliation, useMaxBackwardDays);
     }
 
@@ -91,22 +163,23 @@ public class JobChain {
      * @param stream the ReconciliationStream to schedule
      * @param startDate the start of the date range to reconcile
      * @param endDate the end of the date range to reconcile
+     * @param priority the priority of the reconciliation job
      */
-    public static void schedule(ApplicationSettings settings, ReconciliationStream stream, DateTime startDate, DateTime endDate) {
+    public static void schedule(ApplicationSettings settings, ReconciliationStream stream, DateTime startDate, DateTime endDate, JobPriority priority) {
         boolean useMaxBackwardDays = false; // Manual scheduling of reconciliaton, don't enforce backward day limit
-        JobChain jobChain = new JobChain(settings, startDate, 0);
-        jobChain.scheduleReconciliationJob(stream, startDate, endDate, useMaxBackwardDays);
+        JobChain jobChain = new JobChain(settings, startDate, 0, priority);
+        jobChain.scheduleReconciliationJob(stream, startDate, endDate, useMaxBackwardDays, priority);
     }
     
-    private void scheduleReconciliationJob(ReconciliationStream stream, DateTime startDate, DateTime endDate) {
+    private void scheduleReconciliationJob(ReconciliationStream stream, DateTime startDate, DateTime endDate, JobPriority priority) {
         boolean useMaxBackwardDays = true; // Automated scheduling of reconciliation, do enforce backward day limit
-        this.scheduleReconciliationJob(stream, startDate, endDate, useMaxBackwardDays);
+        this.scheduleReconciliationJob(stream, startDate, endDate, useMaxBackwardDays, priority);
     }
 
     /**
      * Schedule a new Reconciliation Job; the final step in the chain.
      */
-    private void scheduleReconciliationJob(ReconciliationStream stream, DateTime startDate, DateTime endDate, boolean useMaxBackwardDays) {
+    private void scheduleReconciliationJob(ReconciliationStream stream, DateTime startDate, DateTime endDate, boolean useMaxBackwardDays, JobPriority priority) {
         String recJobName = String.format("Reconcile %s %s",
                 stream.getName(), describeTimeInterval(startDate, endDate));
         
@@ -117,14 +190,19 @@ public class JobChain {
                 conn.getReconciliationStream(),
                 stream,
                 startDate,
-                endDate);
+                endDate,
+                deferredEventFields,
+                numReconciliationThreads,
+                numSummaryLayerThreads,
+                // Manual reconciliations always reconcile every fire
+                incrementalReconciliation && useMaxBackwardDays);
 
         List<QueuedJob> recJobDependencies = Lists.newArrayList(queuedAssocJobs);
         recJobDependencies.addAll(this.queuedReconcileJobs);
         QueuedJob[] recJobDependenciesArray = recJobDependencies.toArray(
                 new QueuedJob[recJobDependencies.size()]);
 
-        QueuedJob queuedRecJob = queue.enqueueIfNoneEquivalent(job, recJobName,
+        QueuedJob queuedRecJob = queue.enqueueIfNoneEquivalent(job, recJobName, priority,
                 recJobDependenciesArray);
 
         this.queuedReconcileJobs.add(queuedRecJob);
@@ -138,7 +216,7 @@ public class JobChain {
         String dateString = fetchTime.toString("yyyy-MM-dd");
         String jobName = String.format("%s: Upload Ingest for %s", sourceName, dateString);
         DataAcquireJob ingestJob = new IngestJob(this, filePath, conn.getRawData(), source, conn.getSource(), geometryBuilder, fetchTime, runReconciliation, useMaxBackwardDays);
-        this.queuedDataAcquireJob = queue.enqueueIfNoneEquivalent(ingestJob, jobName);
+        this.queuedDataAcquireJob = queue.enqueueIfNoneEquivalent(ingestJob, jobName, priority);
     }
 
     /**
@@ -150,7 +228,7 @@ public class JobChain {
         String fetchJobName = String.format("%s: Fetch %s for %s",
                 fetch.getName(), sourceName, fetchDateString);
         DataAcquireJob fetchJob = new FetchJob(this, conn.getRawData(), source, conn.getSource(), fetch, conn.getScheduledFetch(), geometryBuilder, fetchTime, useMaxBackwardDays);
-        this.queuedDataAcquireJob = queue.enqueueIfNoneEquivalent(fetchJob, fetchJobName);
+        this.queuedDataAcquireJob = queue.enqueueIfNoneEquivalent(fetchJob, fetchJobName, priority);
     }
 
     /**
@@ -178,49 +256,139 @@ public class JobChain {
         String sourceName = source.getName();
 
         Granularity granularity = source.getGranularity();
+        List<Interval> intervals = Lists.newArrayList(granularity.getIntervals(earliestTime, latestTime, timeZone));
+
+        // A long span of data is a backfill, which shouldn't hold up
+        // fetches and other work of the same priority
+        final JobPriority downstreamPriority;
+        if(intervals.size() > BACKFILL_INTERVAL_THRESHOLD) {
+            downstreamPriority = JobPriority.BACKFILL;
+        } else {
+            downstreamPriority = priority;
+        }
+
+        // A backfill can also clump and associate several contiguous
+        // intervals in each job, to save the per-job overhead
+        final List<List<Interval>> blocks;
+        if(downstreamPriority == JobPriority.BACKFILL && backfillBatchSize > 1) {
+            blocks = Lists.partition(intervals, backfillBatchSize);
+        } else {
+            blocks = Lists.partition(intervals, 1);
+        }
+
+        // When pipelining, each association job only waits for the earlier
+        // intervals that are close enough in time to share fires with it
+        Integer assocWindowDays = pipelinedAssociation ? getAssociationWindowDays(source) : null;
+        List<QueuedJob> earlierAssocJobs = Lists.newArrayList(queuedAssocJobs);
+        List<QueuedJob> chainClumpJobs = Lists.newArrayList();
+        List<QueuedJob> chainAssocJobs = Lists.newArrayList();
+        List<Interval> chainSpans = Lists.newArrayList();
+        List<Boolean> chainHasData = Lists.newArrayList();
 
         // First loop: create Clump and Association Jobs
-        for(Interval interval : granularity.getIntervals(earliestTime, latestTime, timeZone)) {
-            DateTime startTime = interval.getStart();
-            DateTime endTime = interval.getEnd();
+        for(int i = 0; i < blocks.size(); i++) {
+            List<Interval> block = blocks.get(i);
+            DateTime startTime = block.get(0).getStart();
+            DateTime endTime = block.get(block.size() - 1).getEnd();
+            Interval interval = new Interval(startTime, endTime);
 
             String clumpJobName = String.format("Clump %s %s",
                     sourceName, describeTimeInterval(startTime, endTime));
 
             // The Clump job; the second step in the chain
-            ClumpJob clumpJob = new ClumpJob(
-                    geometryBuilder,
-                    conn.getRawData(),
-                    conn.getClump(),
-                    source,
-                    startTime,
-                    endTime);
-
-            QueuedJob queuedClumpJob = queue.enqueueIfNoneEquivalent(clumpJob, clumpJobName, queuedDataAcquireJob);
+            final ClumpJob clumpJob;
+            if(block.size() == 1) {
+                clumpJob = new ClumpJob(
+                        geometryBuilder,
+                        conn.getRawData(),
+                        conn.getClump(),
+                        source,
+                        startTime,
+                        endTime,
+                        incrementalClumping);
+            } else {
+                clumpJob = new ClumpJob(
+                        geometryBuilder,
+                        conn.getRawData(),
+                        conn.getClump(),
+                        source,
+                        block,
+                        conn,
+                        BATCH_CHECKPOINT_INTERVALS,
+                        incrementalClumping);
+            }
+
+            QueuedJob queuedClumpJob = queue.enqueueIfNoneEquivalent(clumpJob, clumpJobName, downstreamPriority, queuedDataAcquireJob);
             this.queuedClumpJobs.add(queuedClumpJob);
 
             String assocJobName = String.format("Associate %s %s",
                     sourceName, describeTimeInterval(startTime, endTime));
 
-            // The Association job; the third step in the chain
-            AssociationJob assocJob = new AssociationJob(
-                    geometryBuilder,
-                    conn.getClump(),
-                    conn.getFire(),
-                    source,
-                    startTime,
-                    endTime);
-
             List<QueuedJob> assocJobDependencies = Lists.newArrayList();
             assocJobDependencies.add(queuedClumpJob);
-            assocJobDependencies.addAll(queuedAssocJobs);
+            // Orphaned fires have no clumps, so they are never candidates
+            // for association; when pipelining, deleting them once, after
+            // the rest of the chain, gives the same result as deleting them
+            // in every job
+            boolean lastInterval = (i == blocks.size() - 1);
+            boolean deleteOrphans = (assocWindowDays == null || lastInterval);
+
+            // The Association job; the third step in the chain
+            final AssociationJob assocJob;
+            if(block.size() == 1) {
+                assocJob = new AssociationJob(
+                        geometryBuilder,
+                        conn.getClump(),
+                        conn.getFire(),
+                        source,
+                        startTime,
+                        endTime,
+                        deleteOrphans,
+                        numAssociationThreads,
+                        incrementalClumping);
+            } else {
+                assocJob = new AssociationJob(
+                        geometryBuilder,
+                        conn.getClump(),
+                        conn.getFire(),
+                        source,
+                        block,
+                        deleteOrphans,
+                        conn,
+                        BATCH_CHECKPOINT_INTERVALS,
+                        numAssociationThreads,
+                        incrementalClumping);
+            }
+
+            if(assocWindowDays == null) {
+                assocJobDependencies.addAll(queuedAssocJobs);
+            } else {
+                boolean hasData = conn.getRawData().getDataCount(source, startTime, endTime) > 0;
+                assocJobDependencies.addAll(earlierAssocJobs);
+                for(int j = 0; j < i; j++) {
+                    if(lastInterval) {
+                        assocJobDependencies.add(chainAssocJobs.get(j));
+                    } else if(isWithinAssociationWindow(chainSpans.get(j), interval, assocWindowDays)) {
+                        // An interval without raw data has no clumps, so it
+                        // can't create, extend or see any fires
+                        assocJobDependencies.add(chainClumpJobs.get(j));
+                        if(hasData && chainHasData.get(j)) {
+                            assocJobDependencies.add(chainAssocJobs.get(j));
+                        }
+                    }
+                }
+                chainHasData.add(hasData);
+            }
             QueuedJob[] assocJobDependenciesArray = assocJobDependencies.toArray(
                     new QueuedJob[assocJobDependencies.size()]);
 
-            QueuedJob queuedAssocJob = queue.enqueueIfNoneEquivalent(assocJob, assocJobName,
+            QueuedJob queuedAssocJob = queue.enqueueIfNoneEquivalent(assocJob, assocJobName, downstreamPriority,
                     assocJobDependenciesArray);
 
             this.queuedAssocJobs.add(queuedAssocJob);
+            chainSpans.add(interval);
+            chainClumpJobs.add(queuedClumpJob);
+            chainAssocJobs.add(queuedAssocJob);
         }
 
         // Second loop: create ReconciliationJobs
@@ -232,12 +400,54 @@ public class JobChain {
                         // If this source isn't enabled for this stream, skip it
                         continue;
                     }
-                    this.scheduleReconciliationJob(stream, earliestTime, latestTime);
+                    if(round != null) {
+                        round.addReconciliation(stream, earliestTime, latestTime, downstreamPriority, queuedAssocJobs);
+                    } else {
+                        this.scheduleReconciliationJob(stream, earliestTime, latestTime, downstreamPriority);
+                    }
                 }
             }
         }
     }
 
+    /**
+     * Gets the total number of days, backward plus forward, that the Source's
+     * association method searches for existing fires.  Association jobs
+     * whose intervals are further apart than this can't affect each other.
+     *
+     * @param source a Source
+     * @return the number of days, or null if the association method doesn't
+     *         declare its window
+     */
+    static Integer getAssociationWindowDays(Source source) {
+        String numBackwardDays = source.get("numBackwardDays");
+        String numForwardDays = source.get("numForwardDays");
+        if(numBackwardDays == null || numForwardDays == null) {
+            return null;
+        }
+        try {
+            int backward = Integer.parseInt(numBackwardDays.trim());
+            int forward = Integer.parseInt(numForwardDays.trim());
+            return Math.max(0, backward) + Math.max(0, forward);
+        } catch(NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Determines whether an association job for the later interval could see
+     * fires written by one for the earlier interval, or vice versa.
+     *
+     * @param earlier the earlier interval
+     * @param later the later interval
+     * @param windowDays the association window, as returned by
+     *                   {@link #getAssociationWindowDays}
+     * @return true if the two jobs must run in order
+     */
+    static boolean isWithinAssociationWindow(Interval earlier, Interval later, int windowDays) {
+        return !earlier.getEnd().plusDays(windowDays).isBefore(later.getStart());
+    }
+
     private static String describeTimeInterval(DateTime startTime, DateTime endTime) {
         LocalDate startDate = startTime.toLocalDate();
         LocalDate endDate = endTime.toLocalDate();
@@ -0,0 +1,265 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.ApplicationSettings;
+import smartfire.database.DatabaseConnection;
+import smartfire.database.PersistentJob;
+import smartfire.database.PersistentJobDao;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.Source;
+import smartfire.gis.GeometryBuilder;
+import smartfire.queue.Job;
+import smartfire.queue.JobPriority;
+import smartfire.queue.JobQueue;
+import smartfire.queue.JobState;
+import smartfire.queue.QueuedJob;
+
+/**
+ * Resumes the jobs that a persistent JobQueue had saved when the application
+ * was last stopped.  Only the jobs that hadn't yet completed were saved, so
+ * interrupted chains pick up from their last completed stage.
+ */
+public final class JobResumer {
+    private static final Logger log = LoggerFactory.getLogger(JobResumer.class);
+
+    private JobResumer() { }
+
+    /**
+     * Re-enqueues all the saved jobs, with the same dependencies between
+     * them.  Saved jobs that can no longer be recreated (for example,
+     * because their Source has been deleted) are discarded, along with the
+     * jobs that depend on them.
+     *
+     * @param settings the current application settings
+     * @return the number of jobs resumed
+     */
+    public static int resume(final ApplicationSettings settings) {
+        DatabaseConnection conn = settings.getDatabaseConnection();
+        final JobQueue queue = settings.getJobQueue();
+        Map<Integer, QueuedJob> resumed = Maps.newHashMap();
+        conn.beginTransaction();
+        try {
+            final PersistentJobDao dao = conn.getPersistentJob();
+            resumed = resumeInOrder(Lists.newArrayList(dao.getAll()), new Resumer<QueuedJob>() {
+                @Override
+                public QueuedJob resume(PersistentJob record, List<QueuedJob> upstreamJobs) {
+                    Job job = createJob(settings, record);
+                    if(job == null) {
+                        return null;
+                    }
+                    if(JobState.RUNNING.name().equals(record.getState())) {
+                        log.info("Restarting job {}, which was interrupted", record.getName());
+                    } else {
+                        log.info("Resuming job {}", record.getName());
+                    }
+                    return queue.resume(job, record.getName(), parsePriority(record.getPriority()),
+                            record.getId(), upstreamJobs.toArray(new QueuedJob[upstreamJobs.size()]));
+                }
+
+                @Override
+                public void discard(PersistentJob record) {
+                    log.warn("Discarding saved job {}", record.getName());
+                    dao.delete(record);
+                }
+            });
+        } catch(RuntimeException ex) {
+            log.error("Error while resuming saved jobs", ex);
+            conn.rollbackOnly();
+        } finally {
+            conn.resolveTransaction();
+        }
+        return resumed.size();
+    }
+
+    /**
+     * Resumes a single saved job; see {@link #resumeInOrder}.
+     *
+     * @param <T> the type of a resumed job
+     */
+    interface Resumer<T> {
+        /**
+         * Recreates and resumes the job for a saved record.
+         *
+         * @param record the saved job
+         * @param upstreamJobs the resumed jobs that it depends on
+         * @return the resumed job, or null if it can't be recreated
+         */
+        T resume(PersistentJob record, List<T> upstreamJobs);
+
+        /**
+         * Discards a saved job that won't be resumed.
+         *
+         * @param record the saved job
+         */
+        void discard(PersistentJob record);
+    }
+
+    /**
+     * Resumes each saved job after all of its saved upstream jobs.  Upstream
+     * jobs that weren't saved have already completed, so they are ignored.
+     * Jobs that the Resumer can't recreate are discarded, along with every
+     * job that depends on them.
+     *
+     * @param <T> the type of a resumed job
+     * @param records the saved jobs
+     * @param resumer recreates and discards the saved jobs
+     * @return the resumed jobs, by the ID of their saved record
+     */
+    static <T> Map<Integer, T> resumeInOrder(List<PersistentJob> records, Resumer<T> resumer) {
+        Map<Integer, T> resumed = Maps.newHashMap();
+        List<PersistentJob> remaining = Lists.newArrayList(records);
+        Set<Integer> savedIds = Sets.newHashSet();
+        for(PersistentJob record : remaining) {
+            savedIds.add(record.getId());
+        }
+        Set<Integer> discardedIds = Sets.newHashSet();
+
+        boolean progress = true;
+        while(progress) {
+            progress = false;
+            for(Iterator<PersistentJob> it = remaining.iterator(); it.hasNext();) {
+                PersistentJob record = it.next();
+                List<T> upstreamJobs = Lists.newArrayList();
+                boolean ready = true;
+                boolean discard = false;
+                for(Integer upstreamId : record.getUpstreamIds()) {
+                    if(resumed.containsKey(upstreamId)) {
+                        upstreamJobs.add(resumed.get(upstreamId));
+                    } else if(discardedIds.contains(upstreamId)) {
+                        discard = true;
+                    } else if(savedIds.contains(upstreamId)) {
+                        ready = false;
+                    }
+                }
+                if(!ready && !discard) {
+                    continue;
+                }
+                it.remove();
+                progress = true;
+
+                T job = discard ? null : resumer.resume(record, upstreamJobs);
+                if(job == null) {
+                    discardedIds.add(record.getId());
+                    resumer.discard(record);
+                    continue;
+                }
+                resumed.put(record.getId(), job);
+            }
+        }
+        return resumed;
+    }
+
+    private static Job createJob(ApplicationSettings settings, PersistentJob record) {
+        DatabaseConnection conn = settings.getDatabaseConnection();
+        GeometryBuilder geometryBuilder = settings.getGeometryBuilder();
+        Map<String, String> parameters = record.getParameters();
+        String type = record.getType();
+        try {
+            if(type.equals(ClumpJob.class.getName()) || type.equals(AssociationJob.class.getName())) {
+                Source source = conn.getSource().getById(Integer.valueOf(parameters.get("sourceId")));
+                if(source == null) {
+                    return null;
+                }
+                List<Interval> intervals = parseIntervals(parameters.get("intervals"));
+                String checkpointIntervals = parameters.get("checkpointIntervals");
+                boolean incremental = Boolean.parseBoolean(parameters.get("incremental"));
+                if(type.equals(ClumpJob.class.getName())) {
+                    if(checkpointIntervals == null) {
+                        return new ClumpJob(geometryBuilder, conn.getRawData(), conn.getClump(), source,
+                                intervals.get(0).getStart(), intervals.get(0).getEnd(), incremental);
+                    }
+                    return new ClumpJob(geometryBuilder, conn.getRawData(), conn.getClump(), source,
+                            intervals, conn, Integer.parseInt(checkpointIntervals), incremental);
+                }
+                boolean deleteOrphans = Boolean.parseBoolean(parameters.get("deleteOrphans"));
+                int numThreads = parameters.containsKey("threads") ? Integer.parseInt(parameters.get("threads")) : 1;
+                if(checkpointIntervals == null) {
+                    return new AssociationJob(geometryBuilder, conn.getClump(), conn.getFire(), source,
+                            intervals.get(0).getStart(), intervals.get(0).getEnd(), deleteOrphans, numThreads,
+                            incremental);
+                }
+                return new AssociationJob(geometryBuilder, conn.getClump(), conn.getFire(), source,
+                        intervals, deleteOrphans, conn, Integer.parseInt(checkpointIntervals), numThreads,
+                        incremental);
+            } else if(type.equals(ReconciliationJob.class.getName())) {
+                ReconciliationStream stream = conn.getReconciliationStream().getById(
+                        Integer.valueOf(parameters.get("streamId")));
+                if(stream == null) {
+                    return null;
+                }
+                return new ReconciliationJob(geometryBuilder, conn.getFire(), conn.getEvent(),
+                        conn.getReconciliationStream(), stream,
+                        new DateTime(parameters.get("startTime")), new DateTime(parameters.get("endTime")),
+                        Boolean.parseBoolean(parameters.get("deferEventFields")),
+                        parameters.containsKey("threads") ? Integer.parseInt(parameters.get("threads")) : 1,
+                        parameters.containsKey("layerThreads") ? Integer.parseInt(parameters.get("layerThreads")) : 1,
+                        Boolean.parseBoolean(parameters.get("incremental")));
+            }
+            log.warn("Unknown saved job type {}", type);
+        } catch(RuntimeException ex) {
+            log.warn("Unable to recreate saved job " + record.getName(), ex);
+        }
+        return null;
+    }
+
+    private static JobPriority parsePriority(String priority) {
+        try {
+            return JobPriority.valueOf(priority);
+        } catch(IllegalArgumentException ex) {
+            return JobPriority.SCHEDULED;
+        }
+    }
+
+    /**
+     * Formats a list of intervals as a single string, for a job's saved
+     * parameters.
+     *
+     * @param intervals a list of intervals
+     * @return the intervals in ISO-8601 format, separated by commas
+     */
+    static String formatIntervals(List<Interval> intervals) {
+        return Joiner.on(',').join(intervals);
+    }
+
+    /**
+     * Parses a string created by {@link #formatIntervals}.
+     *
+     * @param intervals a string of intervals
+     * @return a list of intervals
+     */
+    static List<Interval> parseIntervals(String intervals) {
+        List<Interval> result = Lists.newArrayList();
+        for(String interval : Splitter.on(',').omitEmptyStrings().split(intervals)) {
+            result.add(new Interval(interval));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,97 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import java.util.List;
+import smartfire.database.Event;
+import smartfire.database.EventDao;
+import smartfire.gis.RenderCache;
+import smartfire.queue.CategorizedJob;
+import smartfire.queue.Job;
+import smartfire.queue.JobCategory;
+import smartfire.queue.ProgressReporter;
+
+/**
+ * Renders the shape and thumbnail images of a set of events into the
+ * RenderCache, so that they are ready before anyone asks for them.
+ *
+ * <p>Events whose images are already cached for their current shape are
+ * skipped, so re-running this job over the same events is cheap.
+ */
+public class PrerenderEventsJob implements CategorizedJob {
+    private final EventDao eventDao;
+    private final RenderCache renderCache;
+    private final List<Long> eventIds;
+
+    /**
+     * Constructs a new PrerenderEventsJob.
+     *
+     * @param eventDao the DAO for the Event table
+     * @param renderCache the cache to render images into
+     * @param eventIds the ids of the events to render
+     */
+    public PrerenderEventsJob(EventDao eventDao, RenderCache renderCache, List<Long> eventIds) {
+        this.eventDao = eventDao;
+        this.renderCache = renderCache;
+        this.eventIds = eventIds;
+    }
+
+    @Override
+    public void execute(ProgressReporter progressReporter) throws Exception {
+        int numEvents = eventIds.size();
+        int percentProgress = 0;
+        int counter = 0;
+        for(Long eventId : eventIds) {
+            Event event = eventDao.getById(eventId);
+            counter++;
+            if(event == null) {
+                // The event was merged away or deleted since it was reconciled
+                continue;
+            }
+            renderCache.getOrRender(RenderCache.keyFor("event", eventId,
+                    RenderCache.THUMBNAIL_SIZE, RenderCache.THUMBNAIL_SIZE, event.getShape()), event.getShape());
+            renderCache.getOrRender(RenderCache.keyFor("event", eventId,
+                    RenderCache.SHAPE_SIZE, RenderCache.SHAPE_SIZE, event.getShape()), event.getShape());
+
+            int newProgress = (int) ((counter / (double) numEvents) * 100);
+            if(newProgress > percentProgress) {
+                percentProgress = newProgress;
+                progressReporter.setProgress(percentProgress, "Rendered event " + counter + " of " + numEvents);
+            }
+        }
+        progressReporter.setProgress(100, "Rendered images for " + numEvents + " events");
+    }
+
+    @Override
+    public JobCategory getCategory() {
+        return JobCategory.MAINTENANCE;
+    }
+
+    @Override
+    public boolean isEquivalentTo(Job other) {
+        if(other instanceof PrerenderEventsJob) {
+            return eventIds.equals(((PrerenderEventsJob) other).eventIds);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isConflictingWith(Job other) {
+        // Only reads events, and the cache is safe for concurrent use
+        return false;
+    }
+}
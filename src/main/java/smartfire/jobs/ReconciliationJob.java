@@ -17,9 +17,19 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 package smartfire.jobs;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sti.justice.concurrent.NamedThreadFactory;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.index.strtree.STRtree;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import org.joda.time.DateTime;
 import smartfire.database.*;
 import smartfire.func.Methods;
@@ -27,14 +37,17 @@ import smartfire.func.ReconciliationMethod;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.QueryableEventSet;
 import smartfire.queue.Job;
+import smartfire.queue.JobResource;
+import smartfire.queue.PersistableJob;
 import smartfire.queue.ProgressReporter;
+import smartfire.queue.ResourceJob;
 
 /**
  * The <b>Reconciliation</b> Job.  For a description of this job, see the 
  * appropriate section under the "SMARTFIRE 2.0 Job Chain" specification in
  * the SMARTFIRE 2.0 software design document (STI-910050-TM2).
  */
-public class ReconciliationJob implements Job {
+public class ReconciliationJob implements ResourceJob, PersistableJob {
     private final GeometryBuilder geometryBuilder;
     private final FireDao fireDao;
     private final EventDao eventDao;
@@ -42,6 +55,11 @@ public class ReconciliationJob implements Job {
     private final Integer reconciliationStreamId;
     private final DateTime startTime;
     private final DateTime endTime;
+    private final boolean deferEventFields;
+    private final int numThreads;
+    private final int numLayerThreads;
+    private final boolean incremental;
+    private volatile List<Long> reconciledEventIds = Collections.emptyList();
 
     /**
      * Constructs a new ReconciliationJob.
@@ -51,6 +69,17 @@ public class ReconciliationJob implements Job {
      * @param stream the ReconciliationStream that this job will reconcile for
      * @param startTime the start DateTime of the data to reconcile
      * @param endTime the end DateTime of the data to reconcile
+     * @param deferEventFields true to compute the derived fields of each
+     *                         changed Event once, after all fires have been
+     *                         reconciled
+     * @param numThreads the number of threads to reconcile independent
+     *                   groups of fires on; 1 to reconcile serially
+     * @param numLayerThreads the number of threads to read summary data
+     *                        layers for the changed Events on when their
+     *                        fields are computed after reconciliation; 1 to
+     *                        read them serially
+     * @param incremental true to only reconcile the fires that changed since
+     *                    their Events were last reconciled
      */
     ReconciliationJob(
             GeometryBuilder geometryBuilder,
@@ -59,7 +88,11 @@ public class ReconciliationJob implements Job {
             ReconciliationStreamDao streamDao,
             ReconciliationStream stream,
             DateTime startTime,
-            DateTime endTime) {
+            DateTime endTime,
+            boolean deferEventFields,
+            int numThreads,
+            int numLayerThreads,
+            boolean incremental) {
         this.geometryBuilder = geometryBuilder;
         this.fireDao = fireDao;
         this.eventDao = eventDao;
@@ -67,30 +100,87 @@ public class ReconciliationJob implements Job {
         this.reconciliationStreamId = stream.getId();
         this.startTime = startTime;
         this.endTime = endTime;
+        this.deferEventFields = deferEventFields;
+        this.numThreads = numThreads;
+        this.numLayerThreads = numLayerThreads;
+        this.incremental = incremental;
     }
 
     @Override
     public void execute(ProgressReporter progressReporter) throws Exception {
 
         progressReporter.setProgress(10, "Setting up reconciliation");
+        progressReporter.enterStage("query");
         ReconciliationStream stream = streamDao.getById(reconciliationStreamId);
         ReconciliationMethod method = Methods.newReconciliationMethod(geometryBuilder, stream, startTime, endTime);
 
-        // Get all fires for every source in the reconciliation stream
+        // Events reconciled by this job reflect their fires as of now
+        DateTime reconciledTime = new DateTime();
+
+        // Get all fires (or, in incremental mode, the changed fires) for
+        // every source in the reconciliation stream
         List<Fire> fires = Lists.newArrayList();
         for(Source source : stream.getSources()) {
-            fires.addAll(fireDao.getByDate(source, startTime, endTime));
+            if(incremental) {
+                fires.addAll(fireDao.getUnreconciledByDate(source, stream, startTime, endTime));
+            } else {
+                fires.addAll(fireDao.getByDate(source, startTime, endTime));
+            }
         }
         
-        QueryableEventSet eventSet = new QueryableEventSet(eventDao, stream);
+        QueryableEventSet eventSet = new QueryableEventSet(eventDao, stream, deferEventFields);
 
         progressReporter.setProgress(30, "Reconciling fires");
+        progressReporter.enterStage("reconciliation");
+        int numRecords = fires.size();
+        if(numThreads > 1) {
+            reconcileInParallel(stream, fires, eventSet, progressReporter);
+        } else {
+            reconcileSerially(method, fires, eventSet, progressReporter);
+        }
+
+        // Record that the events these fires ended up in are up to date
+        progressReporter.enterStage("save");
+        for(Fire fire : fires) {
+            if(fire.getClumps().isEmpty()) {
+                continue;
+            }
+            for(Event event : fire.getEvents()) {
+                if(stream.equals(event.getReconciliationStream())) {
+                    event.markReconciled(reconciledTime);
+                }
+            }
+        }
+
+        // Save any newly created events
+        int numCreated = eventSet.saveNewEntities();
+
+        // Remember which events were considered, so that their images can be
+        // rendered ahead of time once this job has committed
+        List<Long> eventIds = Lists.newArrayListWithCapacity(eventSet.size());
+        for(Event event : eventSet) {
+            eventIds.add(event.getId());
+        }
+        reconciledEventIds = Collections.unmodifiableList(eventIds);
+
+        if(numRecords == 0) {
+            progressReporter.setProgress(100, "Zero events created");
+        } else {
+            progressReporter.setProgress(100, "Successfully reconciled " + numRecords
+                    + " fires, creating " + numCreated + " new events");
+        }
+    }
+
+    private void reconcileSerially(ReconciliationMethod method, List<Fire> fires,
+            QueryableEventSet eventSet, ProgressReporter progressReporter) {
         final int PROGRESS_START = 30;
         final int PROGRESS_MULTIPLIER = 65;
         int percentProgress = PROGRESS_START;
         int counter = 0;
         int numRecords = fires.size();
         for(Fire fire : fires) {
+            progressReporter.checkCancelled();
+
             // Ensure we are only working with Fires with valid shapes.
             if(fire.getClumps().isEmpty()) {
                 continue;
@@ -108,15 +198,202 @@ public class ReconciliationJob implements Job {
             }
         }
 
-        // Save any newly created events
-        int numCreated = eventSet.saveNewEntities();
+        // Compute the fields of any events whose computation was deferred
+        progressReporter.setProgress(95, "Updating reconciled events");
+        progressReporter.enterStage("eventFields");
+        method.completeReconciliation(eventSet, numLayerThreads);
+    }
 
-        if(numRecords == 0) {
-            progressReporter.setProgress(100, "Zero events created");
-        } else {
-            progressReporter.setProgress(100, "Successfully reconciled " + numRecords
-                    + " fires, creating " + numCreated + " new events");
+    /**
+     * Splits the fires into groups that can never end up in the same Event,
+     * and reconciles the groups concurrently, each into its own partition of
+     * the event set.  Within a group, fires are reconciled in the same order
+     * as the serial path, so the resulting Events are the same.
+     *
+     * <p>Two fires are in the same group if the envelope of one, grown by the
+     * widest location uncertainty of any source in the stream, touches the
+     * other, or touches an existing Event that touches the other.  An Event's
+     * outline is always a union of the shapes of its fires and of its
+     * previous outline, so fires in different groups can never reach each
+     * other's Events.  Dates are not used to split groups: an Event's date
+     * range and outline may come from different fires, so a pairwise date
+     * test would not be safe.
+     *
+     * <p>The worker threads have no EntityManager of their own, so every
+     * lazily loaded association they will read is loaded here first, and
+     * Events merged away in a partition are only deleted once the partition
+     * has been merged back on this thread.
+     */
+    private void reconcileInParallel(final ReconciliationStream stream, List<Fire> fires,
+            QueryableEventSet eventSet, final ProgressReporter progressReporter) throws Exception {
+        // The widest location and date windows any fire will be queried with
+        double maxBufferDistance = 0;
+        int maxBackwardDays = 0;
+        int maxForwardDays = 0;
+        for(ReconciliationWeighting weights : stream.getReconciliationWeightings()) {
+            maxBufferDistance = Math.max(maxBufferDistance, weights.getLocationUncertainty() * 1000 / 2);
+            maxBackwardDays = Math.max(maxBackwardDays, weights.getStartDateUncertainty());
+            maxForwardDays = Math.max(maxForwardDays, weights.getEndDateUncertainty());
+        }
+        stream.getSummaryDataLayers().size();
+
+        List<Fire> validFires = Lists.newArrayListWithCapacity(fires.size());
+        DateTime windowStart = null;
+        DateTime windowEnd = null;
+        for(Fire fire : fires) {
+            // Ensure we are only working with Fires with valid shapes.
+            if(fire.getClumps().isEmpty()) {
+                continue;
+            }
+            loadFire(fire);
+            validFires.add(fire);
+            DateTime fireStart = fire.getStartDateTime().minusDays(maxBackwardDays);
+            DateTime fireEnd = fire.getEndDateTime().plusDays(maxForwardDays);
+            if(windowStart == null || fireStart.isBefore(windowStart)) {
+                windowStart = fireStart;
+            }
+            if(windowEnd == null || fireEnd.isAfter(windowEnd)) {
+                windowEnd = fireEnd;
+            }
+        }
+        if(validFires.isEmpty()) {
+            return;
+        }
+        List<Event> events = eventSet.getByDate(windowStart, windowEnd);
+
+        // Find the connected groups of fires and existing events
+        int numFires = validFires.size();
+        int[] parents = new int[numFires + events.size()];
+        STRtree index = new STRtree();
+        for(int i = 0; i < numFires; i++) {
+            parents[i] = i;
+            index.insert(validFires.get(i).getShapeEnvelope(), i);
         }
+        for(int i = 0; i < events.size(); i++) {
+            parents[numFires + i] = numFires + i;
+            index.insert(events.get(i).getShape().getEnvelopeInternal(), numFires + i);
+        }
+        for(int i = 0; i < numFires; i++) {
+            Envelope queryEnvelope = new Envelope(validFires.get(i).getShapeEnvelope());
+            queryEnvelope.expandBy(maxBufferDistance);
+            for(Object other : index.query(queryEnvelope)) {
+                join(parents, i, (Integer) other);
+            }
+        }
+
+        Map<Integer, FireGroup> groups = Maps.newLinkedHashMap();
+        for(int i = 0; i < numFires; i++) {
+            int root = find(parents, i);
+            FireGroup group = groups.get(root);
+            if(group == null) {
+                group = new FireGroup();
+                groups.put(root, group);
+            }
+            group.fires.add(validFires.get(i));
+        }
+        for(int i = 0; i < events.size(); i++) {
+            FireGroup group = groups.get(find(parents, numFires + i));
+            if(group != null) {
+                Event event = events.get(i);
+                loadEvent(event);
+                group.events.add(event);
+            }
+        }
+        progressReporter.setProgress(35, "Reconciling " + numFires + " fires in "
+                + groups.size() + " independent groups");
+
+        ExecutorService executor = NamedThreadFactory.newFixedThreadPool(
+                "SMARTFIRE-reconcile", Math.min(numThreads, groups.size()));
+        try {
+            List<Future<QueryableEventSet>> results = Lists.newArrayListWithCapacity(groups.size());
+            for(final FireGroup group : groups.values()) {
+                final ReconciliationMethod method = Methods.newReconciliationMethod(geometryBuilder, stream, startTime, endTime);
+                final QueryableEventSet partition = eventSet.newPartition(group.events, windowStart, windowEnd);
+                results.add(executor.submit(ProgressReporter.forCurrentJob(new Callable<QueryableEventSet>() {
+                    @Override
+                    public QueryableEventSet call() {
+                        for(Fire fire : group.fires) {
+                            progressReporter.checkCancelled();
+                            method.reconcile(fire, partition);
+                        }
+                        // The groups already run in parallel, so read
+                        // their summary layers serially
+                        method.completeReconciliation(partition, 1);
+                        return partition;
+                    }
+                })));
+            }
+
+            final int PROGRESS_START = 35;
+            final int PROGRESS_MULTIPLIER = 60;
+            int percentProgress = PROGRESS_START;
+            int counter = 0;
+            int groupNum = 0;
+            for(FireGroup group : groups.values()) {
+                eventSet.mergePartition(getResult(results.get(groupNum)));
+
+                // Update progress
+                groupNum++;
+                counter += group.fires.size();
+                int newProgress = (int) (PROGRESS_START + (counter / (double) numFires) * PROGRESS_MULTIPLIER);
+                if(newProgress > percentProgress) {
+                    percentProgress = newProgress;
+                    progressReporter.setProgress(percentProgress, "Reconciled group " + groupNum
+                            + " of " + groups.size());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private static void loadFire(Fire fire) {
+        fire.getShapeEnvelope();
+        fire.hasStoredDailyAreas();
+        fire.getEvents().size();
+        fire.size();
+    }
+
+    private static void loadEvent(Event event) {
+        for(Fire fire : event.getFires()) {
+            fire.getClumps().size();
+            loadFire(fire);
+        }
+        event.getEventDays().size();
+        event.size();
+    }
+
+    private static int find(int[] parents, int i) {
+        while(parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    private static void join(int[] parents, int a, int b) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        if(rootA != rootB) {
+            parents[rootB] = rootA;
+        }
+    }
+
+    private static class FireGroup {
+        private final List<Fire> fires = Lists.newArrayList();
+        private final List<Event> events = Lists.newArrayList();
     }
 
     public DateTime getEndTime() {
@@ -127,6 +404,52 @@ public class ReconciliationJob implements Job {
         return startTime;
     }
 
+    public Integer getReconciliationStreamId() {
+        return reconciliationStreamId;
+    }
+
+    /**
+     * Gets the ids of the events in this job's date range, as of the end of
+     * its most recent execution.
+     *
+     * @return a list of Event ids; empty if the job has not yet executed
+     */
+    public List<Long> getReconciledEventIds() {
+        return reconciledEventIds;
+    }
+
+    @Override
+    public List<JobResource> getResources() {
+        List<JobResource> resources = Lists.newArrayList();
+        resources.add(JobResource.exclusive("events:stream:" + reconciliationStreamId, startTime, endTime));
+        for(Source source : getStreamSources()) {
+            // Reconciliations of different streams may read the same fires
+            resources.add(JobResource.shared(AssociationJob.firesResourceName(source), startTime, endTime));
+        }
+        return resources;
+    }
+
+    @Override
+    public Map<String, String> getParameters() {
+        Map<String, String> parameters = Maps.newLinkedHashMap();
+        parameters.put("streamId", reconciliationStreamId.toString());
+        parameters.put("startTime", startTime.toString());
+        parameters.put("endTime", endTime.toString());
+        if(deferEventFields) {
+            parameters.put("deferEventFields", "true");
+        }
+        if(numThreads > 1) {
+            parameters.put("threads", Integer.toString(numThreads));
+        }
+        if(numLayerThreads > 1) {
+            parameters.put("layerThreads", Integer.toString(numLayerThreads));
+        }
+        if(incremental) {
+            parameters.put("incremental", "true");
+        }
+        return parameters;
+    }
+
     public Set<Source> getStreamSources() {
         return new HashSet<Source>(streamDao.getById(reconciliationStreamId).getSources());
     }
@@ -141,7 +464,9 @@ public class ReconciliationJob implements Job {
         }
         boolean sameStream = (this.reconciliationStreamId == otherRec.reconciliationStreamId);
         boolean dateContained = !(otherRec.startTime.isAfter(startTime) || otherRec.endTime.isBefore(endTime));
-        return (sameStream && dateContained);
+        // An incremental job does not stand in for one that reconciles every fire
+        boolean sameFires = (!incremental || otherRec.incremental);
+        return (sameStream && dateContained && sameFires);
     }
 
     @Override
@@ -0,0 +1,60 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import java.util.List;
+import smartfire.database.DatabaseConnection;
+import smartfire.gis.RenderCache;
+import smartfire.queue.Job;
+import smartfire.queue.JobListener;
+import smartfire.queue.JobQueue;
+import smartfire.queue.JobState;
+import smartfire.queue.QueuedJob;
+
+/**
+ * JobListener that queues a PrerenderEventsJob after every successful
+ * reconciliation, so that images of newly reconciled events are already
+ * cached when users browse to them.
+ */
+public class RenderCacheWarmer implements JobListener {
+    private final DatabaseConnection conn;
+    private final JobQueue jobQueue;
+    private final RenderCache renderCache;
+
+    public RenderCacheWarmer(DatabaseConnection conn, JobQueue jobQueue, RenderCache renderCache) {
+        this.conn = conn;
+        this.jobQueue = jobQueue;
+        this.renderCache = renderCache;
+    }
+
+    @Override
+    public void jobFinished(QueuedJob queuedJob) {
+        if(queuedJob.getState() != JobState.SUCCESS) {
+            return;
+        }
+        Job job = queuedJob.getJob();
+        if(job instanceof ReconciliationJob) {
+            ReconciliationJob recJob = (ReconciliationJob) job;
+            List<Long> eventIds = recJob.getReconciledEventIds();
+            if(!eventIds.isEmpty()) {
+                jobQueue.enqueueIfNoneEquivalent(
+                        new PrerenderEventsJob(conn.getEvent(), renderCache, eventIds),
+                        "Render images for " + eventIds.size() + " events in stream " + recJob.getReconciliationStreamId());
+            }
+        }
+    }
+}
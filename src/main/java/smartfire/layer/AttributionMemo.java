@@ -0,0 +1,129 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.layer;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.TopologyException;
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.database.SummaryDataLayer;
+import smartfire.gis.FeatureAreas;
+import smartfire.gis.GeometryBuilder;
+import smartfire.gis.GeometryFingerprint;
+
+/**
+ * Remembers the FeatureAreas read from summary data layers, so that the same
+ * shape is only intersected with a layer once for as long as the layer's
+ * data is unchanged.
+ *
+ * <p>Results are keyed by the layer, the layer's version (the modification
+ * time of its data file) and a fingerprint of the shape.  The last result
+ * for each owner (such as an Event) is also kept, so that when the owner's
+ * shape grows, only the newly covered region needs to be read.
+ */
+final class AttributionMemo {
+    private static final Logger log = LoggerFactory.getLogger(AttributionMemo.class);
+    private static final int MAX_ENTRIES = 5000;
+
+    private final Map<String, Entry> byShape = newLruMap();
+    private final Map<String, Entry> byOwner = newLruMap();
+
+    private static final class Entry {
+        private final Geometry shape;
+        private final FeatureAreas areas;
+
+        Entry(Geometry shape, FeatureAreas areas) {
+            this.shape = shape;
+            this.areas = areas;
+        }
+    }
+
+    /**
+     * Gets the FeatureAreas for the given shape, reading only what isn't
+     * already known.
+     *
+     * @param method the LayerReadingMethod for the layer
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings
+     * @param layer the SummaryDataLayer to read
+     * @param geom the Geometry of interest
+     * @param ownerKey identifies the object the shape belongs to, or null
+     * @return the FeatureAreas of the shape
+     */
+    FeatureAreas readFeatureAreas(LayerReadingMethod method, GeometryBuilder geometryBuilder,
+            SummaryDataLayer layer, Geometry geom, String ownerKey) {
+        String layerKey = layer.getId() + ":" + layer.getDataLocation() + ":"
+                + new File(layer.getDataLocation()).lastModified();
+        String shapeKey = layerKey + ":" + GeometryFingerprint.digest(geom);
+        String fullOwnerKey = (ownerKey == null) ? null : layerKey + ":" + ownerKey;
+
+        Entry entry = byShape.get(shapeKey);
+        if(entry == null) {
+            Entry previous = (fullOwnerKey == null) ? null : byOwner.get(fullOwnerKey);
+            FeatureAreas areas = null;
+            if(previous != null) {
+                areas = readGrowth(method, geometryBuilder, layer, previous, geom);
+            }
+            if(areas == null) {
+                areas = method.readFeatureAreas(geometryBuilder, layer, geom);
+            }
+            entry = new Entry(geom, areas);
+            byShape.put(shapeKey, entry);
+        }
+        if(fullOwnerKey != null) {
+            byOwner.put(fullOwnerKey, entry);
+        }
+        return entry.areas;
+    }
+
+    /**
+     * If the new shape covers the previous one, reads just the region it
+     * grew by and adds it to the previous result.  Returns null if the shape
+     * didn't simply grow.
+     */
+    private static FeatureAreas readGrowth(LayerReadingMethod method, GeometryBuilder geometryBuilder,
+            SummaryDataLayer layer, Entry previous, Geometry geom) {
+        try {
+            if(!geom.covers(previous.shape)) {
+                return null;
+            }
+            Geometry growth = geom.difference(previous.shape);
+            if(growth.isEmpty()) {
+                return previous.areas;
+            }
+            return previous.areas.plus(method.readFeatureAreas(geometryBuilder, layer, growth));
+        } catch(TopologyException e) {
+            log.debug("Unable to find the growth of a shape; reading the whole shape instead", e);
+            return null;
+        }
+    }
+
+    private static Map<String, Entry> newLruMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    }
+}
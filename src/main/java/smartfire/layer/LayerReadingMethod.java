@@ -18,6 +18,7 @@ package smartfire.layer;
 
 import com.vividsolutions.jts.geom.Geometry;
 import smartfire.database.SummaryDataLayer;
+import smartfire.gis.FeatureAreas;
 import smartfire.gis.GeometryBuilder;
 
 /**
@@ -36,6 +37,21 @@ public interface LayerReadingMethod {
      */
     LayerAttributes readAttributes(GeometryBuilder geometryBuilder, SummaryDataLayer layer, Geometry geom);
 
+    /**
+     * Reads the area by which a given Geometry intersects each feature of a
+     * layer.  Unlike {@link #readAttributes readAttributes}, the result keeps
+     * every intersecting feature, so results for adjoining regions can be
+     * added together.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, used to determine the coordinate
+     *                        system to use
+     * @param layer the SummaryDataLayer to read from
+     * @param geom the Geometry to intersect with
+     * @return a FeatureAreas object representing the result
+     */
+    FeatureAreas readFeatureAreas(GeometryBuilder geometryBuilder, SummaryDataLayer layer, Geometry geom);
+
     /**
      * Attempts to read the maximum legal extent of data in a given data file.
      * If the dataLocation is not readable or does not correspond to a data
@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.ServiceLoader;
 import smartfire.SmartfireException;
 import smartfire.database.SummaryDataLayer;
+import smartfire.gis.FeatureAreas;
 import smartfire.gis.GeometryBuilder;
 
 /**
@@ -31,6 +32,7 @@ import smartfire.gis.GeometryBuilder;
  */
 public final class Layers {
     private static final Map<String, LayerReadingMethod> layerReadingMethods;
+    private static final AttributionMemo memo = new AttributionMemo();
     
     static {
         layerReadingMethods = Maps.newHashMap();
@@ -67,6 +69,39 @@ public final class Layers {
         return method.readAttributes(geometryBuilder, layer, geom);
     }
 
+    /**
+     * Read a LayerAttributes object from the given SummaryDataLayer for the
+     * region that intersects the given Geometry, reusing earlier results.
+     *
+     * <p>The intersections are remembered for as long as the layer's data
+     * doesn't change, so reading the same shape again doesn't touch the
+     * layer.  If the owner's shape has grown since it was last read, only
+     * the region it grew by is intersected with the layer.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, used to determine the coordinate
+     *                        system to use
+     * @param layer the SummaryDataLayer to read
+     * @param geom the Geometry of interest
+     * @param ownerKey a stable identifier for the object the Geometry
+     *                 describes, such as an Event's unique ID
+     * @return a LayerAttributes object
+     */
+    public static LayerAttributes readAttributes(GeometryBuilder geometryBuilder, SummaryDataLayer layer,
+            Geometry geom, String ownerKey) {
+        LayerReadingMethod method = layerReadingMethods.get(layer.getLayerReadingMethod());
+        if(method == null) {
+            throw new SmartfireException("No such LayerReadingMethod \"" + layer.getLayerReadingMethod() + "\"");
+        }
+
+        if(!layer.getExtent().intersects(geom)) {
+            return LayerAttributes.emptyIntersection(layer, geom);
+        }
+
+        FeatureAreas areas = memo.readFeatureAreas(method, geometryBuilder, layer, geom, ownerKey);
+        return new LayerAttributes(areas.toShapeAttributes(geom), layer);
+    }
+
     /**
      * Determines the extent of available data in the given dataLocation, as
      * extracted by the named LayerReadingMethod.
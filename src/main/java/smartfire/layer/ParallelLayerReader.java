@@ -0,0 +1,160 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.layer;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.sti.justice.concurrent.NamedThreadFactory;
+import com.vividsolutions.jts.geom.Geometry;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import smartfire.SmartfireException;
+import smartfire.database.SummaryDataLayer;
+import smartfire.gis.GeometryBuilder;
+import smartfire.queue.ProgressReporter;
+
+/**
+ * Reads summary data layer attributes for many shapes at once, on a bounded
+ * number of threads.  Each combination of layer and shape is read as a
+ * separate task, since the reads are independent of each other.
+ *
+ * <p>Progress and cancellation go through the ProgressReporter of the job
+ * running in the calling thread, if any.
+ */
+public class ParallelLayerReader {
+    private final GeometryBuilder geometryBuilder;
+    private final int numThreads;
+
+    /**
+     * Constructs a new ParallelLayerReader.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings
+     * @param numThreads the maximum number of layers to read at once; 1 to
+     *                   read them all on the calling thread
+     */
+    public ParallelLayerReader(GeometryBuilder geometryBuilder, int numThreads) {
+        this.geometryBuilder = geometryBuilder;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Reads the attributes of every layer for every shape.
+     *
+     * @param layers the SummaryDataLayers to read
+     * @param shapes the shapes to read them for, keyed by a stable identifier
+     *               of the object each shape belongs to (see
+     *               {@link Layers#readAttributes(GeometryBuilder, SummaryDataLayer, Geometry, String)})
+     * @param progressStart the job progress percentage to report at the start
+     * @param progressEnd the job progress percentage to report when finished
+     * @return the attributes read for each shape, in the same order as layers
+     */
+    public Map<String, List<LayerAttributes>> readAttributes(
+            Collection<SummaryDataLayer> layers,
+            Map<String, Geometry> shapes,
+            int progressStart,
+            int progressEnd) {
+        Map<String, List<LayerAttributes>> result = Maps.newLinkedHashMap();
+        if(layers.isEmpty() || shapes.isEmpty()) {
+            return result;
+        }
+        if(numThreads <= 1) {
+            int counter = 0;
+            int percentProgress = progressStart;
+            for(Map.Entry<String, Geometry> entry : shapes.entrySet()) {
+                List<LayerAttributes> attributes = Lists.newArrayListWithCapacity(layers.size());
+                for(SummaryDataLayer layer : layers) {
+                    ProgressReporter.checkCurrentThreadCancelled();
+                    attributes.add(Layers.readAttributes(geometryBuilder, layer, entry.getValue(), entry.getKey()));
+                }
+                result.put(entry.getKey(), attributes);
+                counter++;
+                percentProgress = reportProgress(counter, shapes.size(), progressStart, progressEnd, percentProgress);
+            }
+            return result;
+        }
+
+        ExecutorService executor = NamedThreadFactory.newFixedThreadPool(
+                "SMARTFIRE-layer-reader", Math.min(numThreads, layers.size() * shapes.size()));
+        try {
+            Map<String, List<Future<LayerAttributes>>> futures = Maps.newLinkedHashMap();
+            for(Map.Entry<String, Geometry> entry : shapes.entrySet()) {
+                final String ownerKey = entry.getKey();
+                final Geometry shape = entry.getValue();
+                List<Future<LayerAttributes>> ownerFutures = Lists.newArrayListWithCapacity(layers.size());
+                for(final SummaryDataLayer layer : layers) {
+                    ownerFutures.add(executor.submit(ProgressReporter.forCurrentJob(new Callable<LayerAttributes>() {
+                        @Override
+                        public LayerAttributes call() {
+                            return Layers.readAttributes(geometryBuilder, layer, shape, ownerKey);
+                        }
+                    })));
+                }
+                futures.put(ownerKey, ownerFutures);
+            }
+
+            int counter = 0;
+            int percentProgress = progressStart;
+            for(Map.Entry<String, List<Future<LayerAttributes>>> entry : futures.entrySet()) {
+                List<LayerAttributes> attributes = Lists.newArrayListWithCapacity(layers.size());
+                for(Future<LayerAttributes> future : entry.getValue()) {
+                    ProgressReporter.checkCurrentThreadCancelled();
+                    attributes.add(getResult(future));
+                }
+                result.put(entry.getKey(), attributes);
+                counter++;
+                percentProgress = reportProgress(counter, shapes.size(), progressStart, progressEnd, percentProgress);
+            }
+            return result;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int reportProgress(int counter, int numShapes, int progressStart, int progressEnd,
+            int percentProgress) {
+        int newProgress = progressStart + (int) ((counter / (double) numShapes) * (progressEnd - progressStart));
+        if(newProgress > percentProgress) {
+            ProgressReporter.setCurrentThreadProgress(newProgress,
+                    "Read summary layers for " + counter + " of " + numShapes + " events");
+        }
+        return Math.max(newProgress, percentProgress);
+    }
+
+    private static LayerAttributes getResult(Future<LayerAttributes> future) {
+        try {
+            return future.get();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SmartfireException("Interrupted while reading summary data layers", e);
+        } catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new SmartfireException("Error reading summary data layers", cause);
+        }
+    }
+}
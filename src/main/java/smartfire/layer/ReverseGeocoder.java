@@ -0,0 +1,293 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.layer;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.SmartfireException;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.SummaryDataLayer;
+import smartfire.gis.CoordinateTransformer;
+import smartfire.gis.GeometryBuilder;
+import smartfire.util.Functions;
+import smartfire.util.ShapefileUtil;
+import smartfire.util.ShapefileUtil.SharedShapefile;
+import smartfire.util.Sorted;
+
+/**
+ * An in-memory index of the boundaries in the summary data layers, for
+ * finding the county, state and country of a point without intersecting
+ * whole shapes with the layer files.
+ *
+ * <p>Only features of layers that have at least one of the location
+ * attributes (see {@link #LOCATION_ATTRIBUTES}) are indexed, and only those
+ * attributes are kept.  An index is built once for a given set of layers,
+ * and is rebuilt if any of their files change.
+ *
+ * <p>Building an index reads whole shapefiles, so web views must not do it.
+ * Instead, the index of each stream is built ahead of time (see
+ * {@link smartfire.jobs.IndexLocationsJob}), and views use
+ * {@link #getBuilt} to look up whatever index is already there.
+ */
+public class ReverseGeocoder {
+    private static final Logger log = LoggerFactory.getLogger(ReverseGeocoder.class);
+
+    /** The attributes used by {@link Functions#formatLocation} to describe a location. */
+    public static final List<String> LOCATION_ATTRIBUTES = ImmutableList.of("CNTY", "STATE", "CNTRY");
+
+    private static final ReverseGeocoder EMPTY = new ReverseGeocoder(Collections.<Boundary>emptyList());
+    private static final Map<String, ReverseGeocoder> indexes = Maps.newHashMap();
+    private static final Map<Integer, ReverseGeocoder> streamIndexes = new ConcurrentHashMap<Integer, ReverseGeocoder>();
+
+    private static final Comparator<SummaryDataLayer> BY_ID = new Comparator<SummaryDataLayer>() {
+        @Override
+        public int compare(SummaryDataLayer a, SummaryDataLayer b) {
+            if(a.getId() == null || b.getId() == null) {
+                return (a.getId() == null ? 0 : 1) - (b.getId() == null ? 0 : 1);
+            }
+            return a.getId().compareTo(b.getId());
+        }
+    };
+
+    private static final Comparator<Boundary> BY_ORDER = new Comparator<Boundary>() {
+        @Override
+        public int compare(Boundary a, Boundary b) {
+            return a.order - b.order;
+        }
+    };
+
+    private final STRtree index;
+    private String version;
+
+    static final class Boundary {
+        private final PreparedGeometry shape;
+        private final Map<String, String> attributes;
+        private int order;
+
+        Boundary(Geometry shape, Map<String, String> attributes) {
+            this.shape = PreparedGeometryFactory.prepare(shape);
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * Constructs an index of the given boundaries.  Where boundaries
+     * overlap, those earlier in the list take precedence.
+     *
+     * @param boundaries the boundaries to index
+     */
+    ReverseGeocoder(List<Boundary> boundaries) {
+        this.index = new STRtree();
+        for(int i = 0; i < boundaries.size(); i++) {
+            Boundary boundary = boundaries.get(i);
+            boundary.order = i;
+            index.insert(boundary.shape.getGeometry().getEnvelopeInternal(), boundary);
+        }
+        index.build();
+    }
+
+    /**
+     * Gets the index for the given layers, building it if it hasn't been
+     * built yet or if any of the layers' files have changed since.  The
+     * layers are indexed in order of their ids.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, giving the coordinate system of the
+     *                        points to look up
+     * @param layers the SummaryDataLayers to index
+     * @return an index of the layers' boundaries
+     */
+    public static synchronized ReverseGeocoder forLayers(GeometryBuilder geometryBuilder,
+            Collection<SummaryDataLayer> layers) {
+        // Sets of layers loaded in different sessions may iterate in
+        // different orders, so put them in a fixed one
+        List<SummaryDataLayer> sortedLayers = Sorted.by(layers, BY_ID);
+        StringBuilder key = new StringBuilder();
+        StringBuilder version = new StringBuilder();
+        for(SummaryDataLayer layer : sortedLayers) {
+            key.append(layer.getId()).append(';');
+            version.append(layer.getDataLocation()).append(':')
+                    .append(new File(layer.getDataLocation()).lastModified()).append(';');
+        }
+        ReverseGeocoder result = indexes.get(key.toString());
+        if(result == null || !result.version.equals(version.toString())) {
+            result = build(geometryBuilder, sortedLayers);
+            result.version = version.toString();
+            indexes.put(key.toString(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the index for the summary data layers of the given stream; see
+     * {@link #forLayers}.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, giving the coordinate system of the
+     *                        points to look up
+     * @param stream a ReconciliationStream; may be null
+     * @return an index of the stream's layer boundaries; empty if the stream
+     *         is null
+     */
+    public static ReverseGeocoder forStream(GeometryBuilder geometryBuilder, ReconciliationStream stream) {
+        if(stream == null) {
+            return EMPTY;
+        }
+        return forStream(geometryBuilder, stream.getId(), stream.getSummaryDataLayers());
+    }
+
+    /**
+     * Gets the index for the given summary data layers of the stream with
+     * the given id, building it if needed, and makes it the index returned
+     * by {@link #getBuilt} for that stream.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, giving the coordinate system of the
+     *                        points to look up
+     * @param streamId the id of a ReconciliationStream; may be null
+     * @param layers the stream's SummaryDataLayers
+     * @return an index of the layers' boundaries
+     */
+    public static ReverseGeocoder forStream(GeometryBuilder geometryBuilder, Integer streamId,
+            Collection<SummaryDataLayer> layers) {
+        ReverseGeocoder result = forLayers(geometryBuilder, layers);
+        if(streamId != null) {
+            streamIndexes.put(streamId, result);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the index of the given stream's summary data layers, as last
+     * built by {@link #forStream}.  This never reads any files or waits for
+     * an index to be built, so it is safe to call from web views.
+     *
+     * @param stream a ReconciliationStream; may be null
+     * @return the index last built for the stream; empty if the stream is
+     *         null or its index hasn't been built yet
+     */
+    public static ReverseGeocoder getBuilt(ReconciliationStream stream) {
+        if(stream == null || stream.getId() == null) {
+            return EMPTY;
+        }
+        ReverseGeocoder result = streamIndexes.get(stream.getId());
+        return (result == null) ? EMPTY : result;
+    }
+
+    /**
+     * Finds the location attributes of the boundaries that contain the given
+     * point.  If several boundaries contain it, the first one indexed to
+     * have each attribute wins.
+     *
+     * @param point a point in the application's coordinate system
+     * @return a map of location attributes; empty if no boundary contains it
+     */
+    public Map<String, String> lookup(Point point) {
+        // The tree doesn't return its items in the order they were indexed
+        List<Boundary> matches = Lists.newArrayList();
+        for(Object item : index.query(point.getEnvelopeInternal())) {
+            Boundary boundary = (Boundary) item;
+            if(boundary.shape.covers(point)) {
+                matches.add(boundary);
+            }
+        }
+        Collections.sort(matches, BY_ORDER);
+
+        Map<String, String> result = Maps.newHashMap();
+        for(Boundary boundary : matches) {
+            for(Map.Entry<String, String> entry : boundary.attributes.entrySet()) {
+                if(!result.containsKey(entry.getKey())) {
+                    result.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ReverseGeocoder build(GeometryBuilder geometryBuilder, Collection<SummaryDataLayer> layers) {
+        List<Boundary> boundaries = Lists.newArrayList();
+        long started = System.currentTimeMillis();
+        for(SummaryDataLayer layer : layers) {
+            if(!ShapefileLayerReadingMethod.class.getName().equals(layer.getLayerReadingMethod())) {
+                continue;
+            }
+            readBoundaries(geometryBuilder, layer, boundaries);
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        log.info("Indexed {} location boundaries in {} ms", boundaries.size(), elapsed);
+        return new ReverseGeocoder(boundaries);
+    }
+
+    private static void readBoundaries(GeometryBuilder geometryBuilder, SummaryDataLayer layer,
+            List<Boundary> boundaries) {
+        SharedShapefile shapefile = ShapefileUtil.acquireSharedShapefile(layer.getDataLocation());
+        try {
+            SimpleFeatureSource source = shapefile.getSource();
+            SimpleFeatureType schema = source.getSchema();
+            List<String> attributeNames = Lists.newArrayList();
+            for(String name : LOCATION_ATTRIBUTES) {
+                if(schema.getDescriptor(name) != null) {
+                    attributeNames.add(name);
+                }
+            }
+            if(attributeNames.isEmpty()) {
+                return;
+            }
+
+            CoordinateTransformer xform = ShapefileUtil.makeCoordinateTransformer(
+                    geometryBuilder, schema.getCoordinateReferenceSystem());
+            SimpleFeatureIterator features = source.getFeatures().features();
+            try {
+                while(features.hasNext()) {
+                    SimpleFeature feature = features.next();
+                    Map<String, String> attributes = Maps.newHashMap();
+                    for(String name : attributeNames) {
+                        attributes.put(name, Functions.formatGeneral(feature.getAttribute(name)));
+                    }
+                    Geometry shape = xform.transform((Geometry) feature.getDefaultGeometry());
+                    boundaries.add(new Boundary(shape, attributes));
+                }
+            } finally {
+                features.close();
+            }
+        } catch(IOException ex) {
+            throw new SmartfireException("Error reading boundaries from SummaryDataLayer", ex);
+        } finally {
+            shapefile.release();
+        }
+    }
+}
@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import smartfire.database.SummaryDataLayer;
 import smartfire.gis.*;
 import smartfire.util.ShapefileUtil;
+import smartfire.util.ShapefileUtil.SharedShapefile;
 
 /**
  * LayerReadingMethod implementation for reading data from Shapefile layers.
@@ -45,6 +46,18 @@ public class ShapefileLayerReadingMethod implements LayerReadingMethod {
         return new LayerAttributes(shapeAttributes, layer);
     }
 
+    @Override
+    public FeatureAreas readFeatureAreas(GeometryBuilder geometryBuilder, SummaryDataLayer layer, Geometry geom) {
+        // Layers are read over and over, often from several threads at once,
+        // so keep them open rather than reopening them for every read
+        SharedShapefile shapefile = ShapefileUtil.acquireSharedShapefile(layer.getDataLocation());
+        try {
+            return ShapefileUtil.readFeatureAreas(geometryBuilder, geom, shapefile.getSource());
+        } finally {
+            shapefile.release();
+        }
+    }
+
     @Override
     public Geometry readExtent(GeometryBuilder geometryBuilder, String dataLocation) throws IllegalArgumentException {
         log.info("Reading extent geometry from: {}", dataLocation);
@@ -0,0 +1,285 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the JobResources held by running jobs, and of the jobs
+ * that are waiting ("parked") for a conflicting job to finish.
+ *
+ * <p>Held resources are indexed by name and then by start time, so finding
+ * a conflict only looks at holders of the same data whose time spans could
+ * overlap, rather than asking every running job.  A parked job waits on the
+ * specific resource (or, for jobs that don't declare resources, the specific
+ * job) that blocked it.  When that is released the parked job is granted its
+ * resources directly, and handed back to the JobQueue ready to start.
+ *
+ * <p>Jobs that are not {@link ResourceJob}s are checked against running jobs
+ * with {@link Job#isConflictingWith}, as are ResourceJobs against running
+ * jobs that are not ResourceJobs.
+ */
+final class ConflictRegistry {
+    private final Map<String, ResourceIndex> indexes = Maps.newHashMap();
+    // Jobs holding resources; the value is null for jobs that aren't ResourceJobs
+    private final Map<QueuedJob, List<JobResource>> holders = Maps.newHashMap();
+    private final Set<QueuedJob> nonResourceHolders = Sets.newLinkedHashSet();
+    private final Map<QueuedJob, Parked> parked = Maps.newHashMap();
+    // Keyed by resource name, or by the QueuedJob that a job is waiting for
+    private final Map<Object, List<QueuedJob>> parkedOn = Maps.newHashMap();
+    private long parkSequence = 0;
+
+    /**
+     * Grants a job its resources if no running job conflicts with it, or
+     * parks it otherwise.  A job that was granted its resources while parked
+     * already holds them.
+     *
+     * @param queuedJob the job that is about to start
+     * @param resources the resources the job needs, or null if the job is not
+     *                  a ResourceJob
+     * @return true if the job now holds its resources and may start; false if
+     *         it has been parked
+     */
+    synchronized boolean acquire(QueuedJob queuedJob, List<JobResource> resources) {
+        if(holders.containsKey(queuedJob)) {
+            return true;
+        }
+        if(parked.containsKey(queuedJob)) {
+            return false;
+        }
+        Object blocker = findBlocker(queuedJob, resources);
+        if(blocker == null) {
+            grant(queuedJob, resources);
+            return true;
+        }
+        park(queuedJob, new Parked(resources, parkSequence++), blocker);
+        return false;
+    }
+
+    /**
+     * Returns true if the given job currently holds its resources.
+     *
+     * @param queuedJob a job
+     * @return true if the job holds its resources
+     */
+    synchronized boolean holds(QueuedJob queuedJob) {
+        return holders.containsKey(queuedJob);
+    }
+
+    /**
+     * Releases the resources held by a job, and grants them to any parked
+     * jobs that no longer conflict with a running job.
+     *
+     * @param queuedJob the job that has finished, or will not start after all
+     * @return the jobs that were granted their resources, in the order they
+     *         were parked; these should be submitted to run
+     */
+    synchronized List<QueuedJob> release(QueuedJob queuedJob) {
+        if(!holders.containsKey(queuedJob)) {
+            return Collections.emptyList();
+        }
+        List<JobResource> resources = holders.remove(queuedJob);
+        nonResourceHolders.remove(queuedJob);
+
+        List<QueuedJob> woken = Lists.newArrayList();
+        addParked(woken, queuedJob);
+        if(resources != null) {
+            for(JobResource resource : resources) {
+                ResourceIndex index = indexes.get(resource.getName());
+                index.remove(queuedJob, resource);
+                if(index.isEmpty()) {
+                    indexes.remove(resource.getName());
+                }
+                addParked(woken, resource.getName());
+            }
+        }
+        if(woken.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Earlier parked jobs get the first chance at the released resources
+        Collections.sort(woken, new Comparator<QueuedJob>() {
+            @Override
+            public int compare(QueuedJob job1, QueuedJob job2) {
+                long seq1 = parked.get(job1).sequence;
+                long seq2 = parked.get(job2).sequence;
+                return (seq1 < seq2 ? -1 : (seq1 == seq2 ? 0 : 1));
+            }
+        });
+        List<QueuedJob> granted = Lists.newArrayList();
+        for(QueuedJob wokenJob : woken) {
+            Parked parkedJob = parked.remove(wokenJob);
+            Object blocker = findBlocker(wokenJob, parkedJob.resources);
+            if(blocker == null) {
+                grant(wokenJob, parkedJob.resources);
+                granted.add(wokenJob);
+            } else {
+                park(wokenJob, parkedJob, blocker);
+            }
+        }
+        return granted;
+    }
+
+    /**
+     * Returns the number of jobs currently waiting for a conflicting job to
+     * finish.
+     *
+     * @return the number of parked jobs
+     */
+    synchronized int getNumParked() {
+        return parked.size();
+    }
+
+    private Object findBlocker(QueuedJob queuedJob, List<JobResource> resources) {
+        if(resources != null) {
+            for(JobResource resource : resources) {
+                ResourceIndex index = indexes.get(resource.getName());
+                if(index != null && index.findConflict(queuedJob, resource) != null) {
+                    return resource.getName();
+                }
+            }
+        }
+        // Jobs that don't declare resources can only be compared pairwise
+        Iterable<QueuedJob> candidates = (resources == null) ? holders.keySet() : nonResourceHolders;
+        for(QueuedJob holder : candidates) {
+            if(holder != queuedJob && queuedJob.getJob().isConflictingWith(holder.getJob())) {
+                return holder;
+            }
+        }
+        return null;
+    }
+
+    private void grant(QueuedJob queuedJob, List<JobResource> resources) {
+        holders.put(queuedJob, resources);
+        if(resources == null) {
+            nonResourceHolders.add(queuedJob);
+            return;
+        }
+        for(JobResource resource : resources) {
+            ResourceIndex index = indexes.get(resource.getName());
+            if(index == null) {
+                index = new ResourceIndex();
+                indexes.put(resource.getName(), index);
+            }
+            index.add(queuedJob, resource);
+        }
+    }
+
+    private void park(QueuedJob queuedJob, Parked parkedJob, Object blocker) {
+        parked.put(queuedJob, parkedJob);
+        List<QueuedJob> waiting = parkedOn.get(blocker);
+        if(waiting == null) {
+            waiting = Lists.newArrayList();
+            parkedOn.put(blocker, waiting);
+        }
+        waiting.add(queuedJob);
+    }
+
+    private void addParked(List<QueuedJob> woken, Object blocker) {
+        List<QueuedJob> waiting = parkedOn.remove(blocker);
+        if(waiting != null) {
+            woken.addAll(waiting);
+        }
+    }
+
+    private static final class Parked {
+        private final List<JobResource> resources;
+        private final long sequence;
+
+        Parked(List<JobResource> resources, long sequence) {
+            this.resources = resources;
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * The held resources with a particular name, ordered by start time.
+     */
+    private static final class ResourceIndex {
+        private final TreeMap<Long, List<Hold>> byStart = Maps.newTreeMap();
+        private long maxSpan = 0;
+        private int size = 0;
+
+        void add(QueuedJob queuedJob, JobResource resource) {
+            List<Hold> holds = byStart.get(resource.getStartMillis());
+            if(holds == null) {
+                holds = Lists.newArrayListWithCapacity(1);
+                byStart.put(resource.getStartMillis(), holds);
+            }
+            holds.add(new Hold(queuedJob, resource));
+            maxSpan = Math.max(maxSpan, resource.getEndMillis() - resource.getStartMillis());
+            size++;
+        }
+
+        void remove(QueuedJob queuedJob, JobResource resource) {
+            List<Hold> holds = byStart.get(resource.getStartMillis());
+            if(holds == null) {
+                return;
+            }
+            for(int i = 0; i < holds.size(); i++) {
+                Hold hold = holds.get(i);
+                if(hold.queuedJob == queuedJob && hold.resource == resource) {
+                    holds.remove(i);
+                    size--;
+                    break;
+                }
+            }
+            if(holds.isEmpty()) {
+                byStart.remove(resource.getStartMillis());
+            }
+            if(size == 0) {
+                maxSpan = 0;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        QueuedJob findConflict(QueuedJob queuedJob, JobResource resource) {
+            // Only holds starting within maxSpan before this resource could
+            // reach far enough to overlap it
+            long from = resource.getStartMillis() - maxSpan;
+            for(List<Hold> holds : byStart.subMap(from, true, resource.getEndMillis(), true).values()) {
+                for(Hold hold : holds) {
+                    if(hold.queuedJob != queuedJob && hold.resource.conflictsWith(resource)) {
+                        return hold.queuedJob;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Hold {
+        private final QueuedJob queuedJob;
+        private final JobResource resource;
+
+        Hold(QueuedJob queuedJob, JobResource resource) {
+            this.queuedJob = queuedJob;
+            this.resource = resource;
+        }
+    }
+}
@@ -17,13 +17,10 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 package smartfire.queue;
 
 import org.joda.time.DateTime;
-import smartfire.database.Source;
 
 /**
  * Represents a Job that acquires data via uploads or through a fetch
  */
-public interface DataAcquireJob extends Job {
-    Source getSource();
-
+public interface DataAcquireJob extends SourceJob {
     DateTime getFetchTime();
 }
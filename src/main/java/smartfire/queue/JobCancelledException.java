@@ -0,0 +1,31 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import smartfire.SmartfireException;
+
+/**
+ * Thrown from inside a running Job when it has been cancelled, or has
+ * exceeded its time limit.
+ */
+public class JobCancelledException extends SmartfireException {
+    private static final long serialVersionUID = 1L;
+
+    public JobCancelledException(String message) {
+        super(message);
+    }
+}
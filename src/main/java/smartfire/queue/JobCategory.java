@@ -0,0 +1,65 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+/**
+ * Represents the kind of work a Job does.  Each category of job runs in its
+ * own thread pool, so that, for example, fetches waiting on a slow server
+ * can't hold up clumping and association.
+ */
+public enum JobCategory {
+    /**
+     * Fetching and ingesting data, which mostly waits on network and disk.
+     */
+    FETCH("Fetch and ingest"),
+    /**
+     * Clumping, association, reconciliation and other geometry processing,
+     * which is CPU-bound.
+     */
+    PROCESSING("Geometry processing"),
+    /**
+     * Export, caching and other maintenance work that nobody is waiting on.
+     */
+    MAINTENANCE("Export and maintenance");
+
+    private final String displayName;
+
+    private JobCategory(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Determines the category of the given job.  Jobs that acquire data are
+     * in the FETCH category; other jobs are in the PROCESSING category,
+     * unless they declare otherwise by implementing {@link CategorizedJob}.
+     *
+     * @param job a Job
+     * @return the category of the job
+     */
+    public static JobCategory of(Job job) {
+        if(job instanceof CategorizedJob) {
+            return ((CategorizedJob) job).getCategory();
+        } else if(job instanceof DataAcquireJob) {
+            return FETCH;
+        }
+        return PROCESSING;
+    }
+}
@@ -29,24 +29,33 @@ import org.kohsuke.stapler.export.ExportedBean;
  */
 @ExportedBean(defaultVisibility=2)
 public class JobInfo {
+    private final int id;
     private final Job job;
     private final String name;
     private final JobState state;
+    private final JobPriority priority;
     private final Progress progress;
     private final DateTime submitted;
     private final DateTime started;
     private final DateTime completed;
 
-    JobInfo(Job job, String name, JobState state, Progress progress, DateTime submitted, DateTime started, DateTime completed) {
+    JobInfo(int id, Job job, String name, JobState state, JobPriority priority, Progress progress, DateTime submitted, DateTime started, DateTime completed) {
+        this.id = id;
         this.job = job;
         this.name = name;
         this.state = state;
+        this.priority = priority;
         this.progress = progress;
         this.submitted = submitted;
         this.started = started;
         this.completed = completed;
     }
 
+    @Exported
+    public int getId() {
+        return id;
+    }
+
     public Job getJob() {
         return job;
     }
@@ -66,6 +75,11 @@ public class JobInfo {
         return state;
     }
 
+    @Exported
+    public JobPriority getPriority() {
+        return priority;
+    }
+
     public DateTime getSubmittedTime() {
         return submitted;
     }
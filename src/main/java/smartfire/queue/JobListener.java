@@ -0,0 +1,34 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+/**
+ * Receives notifications about jobs executed by a JobQueue.
+ */
+public interface JobListener {
+    /**
+     * Called when a job has finished executing, after its database
+     * transaction has been committed or rolled back.  Check
+     * {@link QueuedJob#getState()} to find out whether it succeeded.
+     *
+     * <p>This is called on the thread that executed the job, so
+     * implementations should return quickly.
+     *
+     * @param queuedJob the job that finished
+     */
+    void jobFinished(QueuedJob queuedJob);
+}
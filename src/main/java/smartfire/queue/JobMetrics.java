@@ -0,0 +1,186 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Records where a job spent its time: the wall-clock time spent in each
+ * named stage, plus the CPU time used and the bytes allocated by the thread
+ * that ran it and by any worker threads it handed tasks to (see
+ * {@link ProgressReporter#forCurrentJob}).
+ *
+ * <p>A job is in at most one stage at a time.  Entering a stage ends the
+ * previous one; time spent in a stage that is entered several times is
+ * added up.
+ */
+public final class JobMetrics {
+    private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private final Map<String, Long> stageNanos = new LinkedHashMap<String, Long>();
+    private String currentStage;
+    private long currentStageStarted;
+    private long cpuStarted = -1;
+    private long allocatedStarted = -1;
+    private long cpuNanos = -1;
+    private long allocatedBytes = -1;
+    private long workerCpuNanos;
+    private long workerAllocatedBytes;
+
+    /**
+     * Ends the current stage, if any, and starts timing the given stage.
+     *
+     * @param stage the name of the stage to enter, or null to stop timing
+     * @return the name of the stage that was ended, or null
+     */
+    public synchronized String enterStage(String stage) {
+        long now = System.nanoTime();
+        String previous = currentStage;
+        if(previous != null) {
+            Long total = stageNanos.get(previous);
+            stageNanos.put(previous, (total == null ? 0 : total) + (now - currentStageStarted));
+        }
+        currentStage = stage;
+        currentStageStarted = now;
+        return previous;
+    }
+
+    /**
+     * Returns the wall-clock time spent in each stage so far, in the order
+     * the stages were first entered.
+     *
+     * @return a map of stage names to milliseconds
+     */
+    public synchronized Map<String, Long> getStageMillis() {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for(Map.Entry<String, Long> entry : stageNanos.entrySet()) {
+            result.put(entry.getKey(), entry.getValue() / 1000000);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the CPU time used by the job's thread and its worker threads
+     * while it ran, or -1 if the JVM can't measure it.
+     *
+     * @return the CPU time in milliseconds, or -1
+     */
+    public synchronized long getCpuMillis() {
+        return (cpuNanos < 0 ? -1 : (cpuNanos + workerCpuNanos) / 1000000);
+    }
+
+    /**
+     * Returns the number of bytes allocated by the job's thread and its
+     * worker threads while it ran, or -1 if the JVM can't measure it.
+     *
+     * @return the allocated bytes, or -1
+     */
+    public synchronized long getAllocatedBytes() {
+        return (allocatedBytes < 0 ? -1 : allocatedBytes + workerAllocatedBytes);
+    }
+
+    /**
+     * Starts measuring the current thread.  Called from the thread that is
+     * about to run the job.
+     */
+    /* package */ synchronized void begin() {
+        cpuStarted = currentThreadCpuTime();
+        allocatedStarted = currentThreadAllocatedBytes();
+    }
+
+    /**
+     * Ends the current stage and stops measuring the current thread.  Called
+     * from the thread that ran the job.
+     */
+    /* package */ synchronized void end() {
+        enterStage(null);
+        long cpu = currentThreadCpuTime();
+        if(cpuStarted >= 0 && cpu >= 0) {
+            cpuNanos = cpu - cpuStarted;
+        }
+        long allocated = currentThreadAllocatedBytes();
+        if(allocatedStarted >= 0 && allocated >= 0) {
+            allocatedBytes = allocated - allocatedStarted;
+        }
+    }
+
+    /**
+     * Adds the CPU time and allocations used by a worker thread on behalf of
+     * the job.  Negative values, meaning the JVM couldn't measure them, are
+     * ignored.
+     */
+    /* package */ synchronized void addWorkerUsage(long cpuNanos, long allocatedBytes) {
+        if(cpuNanos > 0) {
+            workerCpuNanos += cpuNanos;
+        }
+        if(allocatedBytes > 0) {
+            workerAllocatedBytes += allocatedBytes;
+        }
+    }
+
+    /**
+     * Wraps a task so that the resources used by whichever thread runs it
+     * are added to these metrics.
+     */
+    /* package */ <T> Callable<T> measuring(final Callable<T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long cpu = currentThreadCpuTime();
+                long allocated = currentThreadAllocatedBytes();
+                try {
+                    return task.call();
+                } finally {
+                    long cpuUsed = currentThreadCpuTime();
+                    long allocatedUsed = currentThreadAllocatedBytes();
+                    addWorkerUsage((cpu < 0 || cpuUsed < 0) ? -1 : cpuUsed - cpu,
+                            (allocated < 0 || allocatedUsed < 0) ? -1 : allocatedUsed - allocated);
+                }
+            }
+        };
+    }
+
+    private static long currentThreadCpuTime() {
+        try {
+            if(threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled()) {
+                return threadBean.getCurrentThreadCpuTime();
+            }
+        } catch(UnsupportedOperationException ex) {
+            // Fall through
+        }
+        return -1;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        // Allocation counting is only available on HotSpot-derived JVMs
+        if(threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspotBean = (com.sun.management.ThreadMXBean) threadBean;
+            try {
+                if(hotspotBean.isThreadAllocatedMemorySupported() && hotspotBean.isThreadAllocatedMemoryEnabled()) {
+                    return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+                }
+            } catch(UnsupportedOperationException ex) {
+                // Fall through
+            }
+        }
+        return -1;
+    }
+}
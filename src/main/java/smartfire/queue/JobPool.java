@@ -0,0 +1,115 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import com.sti.justice.concurrent.DisposableExecutorService;
+import com.sti.justice.concurrent.NamedThreadFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import smartfire.database.DatabaseConnection;
+
+/**
+ * The thread pool that runs the jobs of a single JobCategory, together with
+ * the jobs of that category that are waiting for one of its threads.
+ */
+final class JobPool {
+    private final JobCategory category;
+    private final int numThreads;
+    private final DisposableExecutorService executor;
+    private final ReadyJobQueue readyJobs = new ReadyJobQueue();
+    private final Map<Thread, Long> busySince = new ConcurrentHashMap<Thread, Long>();
+    private final AtomicLong finishedBusyNanos = new AtomicLong();
+    private final long createdNanos = System.nanoTime();
+    private final Runnable dispatcher;
+
+    JobPool(JobCategory category, int numThreads, final DatabaseConnection conn) {
+        this.category = category;
+        this.numThreads = numThreads;
+        this.executor = NamedThreadFactory.newFixedThreadPool(
+                "SMARTFIRE-" + category.name().toLowerCase(), numThreads);
+        this.dispatcher = new Runnable() {
+            @Override
+            public void run() {
+                QueuedJob queuedJob = readyJobs.poll();
+                if(queuedJob == null) {
+                    return;
+                }
+                Thread thread = Thread.currentThread();
+                long start = System.nanoTime();
+                busySince.put(thread, start);
+                try {
+                    new RunnableJob(conn, queuedJob).run();
+                } finally {
+                    busySince.remove(thread);
+                    finishedBusyNanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    JobCategory getCategory() {
+        return category;
+    }
+
+    /**
+     * Adds a job that is ready to run to this pool.
+     *
+     * @param queuedJob the job
+     */
+    void submit(QueuedJob queuedJob) {
+        if(readyJobs.add(queuedJob)) {
+            // Each dispatch runs whichever ready job should go next, which
+            // is not necessarily this one
+            executor.execute(dispatcher);
+        }
+    }
+
+    void raisePriority(QueuedJob queuedJob, JobPriority priority) {
+        readyJobs.raisePriority(queuedJob, priority);
+    }
+
+    List<JobWaitStatistics> getWaitStatistics() {
+        return readyJobs.getStatistics();
+    }
+
+    JobPoolStatistics getStatistics() {
+        long now = System.nanoTime();
+        long busyNanos = finishedBusyNanos.get();
+        long longestBusyNanos = 0;
+        int numBusy = 0;
+        for(Long start : busySince.values()) {
+            numBusy++;
+            busyNanos += now - start;
+            longestBusyNanos = Math.max(longestBusyNanos, now - start);
+        }
+        int numWaiting = 0;
+        long numStarted = 0;
+        for(JobWaitStatistics stats : readyJobs.getStatistics()) {
+            numWaiting += stats.getNumWaiting();
+            numStarted += stats.getNumStarted();
+        }
+        double utilization = busyNanos / ((double) numThreads * Math.max(1, now - createdNanos));
+        return new JobPoolStatistics(category, numThreads, numBusy, numWaiting, numStarted,
+                Math.min(1.0, utilization), longestBusyNanos / 1000000);
+    }
+
+    void dispose() {
+        executor.dispose();
+    }
+}
@@ -0,0 +1,111 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Summarizes how busy the thread pool of a particular JobCategory is.
+ */
+@ExportedBean(defaultVisibility=2)
+public class JobPoolStatistics {
+    private final JobCategory category;
+    private final int numThreads;
+    private final int numBusy;
+    private final int numWaiting;
+    private final long numStarted;
+    private final double utilization;
+    private final long longestRunningMillis;
+
+    JobPoolStatistics(JobCategory category, int numThreads, int numBusy, int numWaiting,
+            long numStarted, double utilization, long longestRunningMillis) {
+        this.category = category;
+        this.numThreads = numThreads;
+        this.numBusy = numBusy;
+        this.numWaiting = numWaiting;
+        this.numStarted = numStarted;
+        this.utilization = utilization;
+        this.longestRunningMillis = longestRunningMillis;
+    }
+
+    @Exported
+    public JobCategory getCategory() {
+        return category;
+    }
+
+    @Exported
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Returns the number of threads that are currently running a job.
+     *
+     * @return the number of busy threads
+     */
+    @Exported
+    public int getNumBusy() {
+        return numBusy;
+    }
+
+    /**
+     * Returns the number of jobs that are ready to run but are waiting for a
+     * free thread in this pool.
+     *
+     * @return the number of waiting jobs
+     */
+    @Exported
+    public int getNumWaiting() {
+        return numWaiting;
+    }
+
+    @Exported
+    public long getNumStarted() {
+        return numStarted;
+    }
+
+    /**
+     * Returns the fraction of the pool's thread time that has been spent
+     * running jobs since the application started.
+     *
+     * @return a number between 0 and 1
+     */
+    @Exported
+    public double getUtilization() {
+        return utilization;
+    }
+
+    /**
+     * Returns how long the longest-running job in this pool has been running;
+     * a large value for the fetch pool usually means a hung server.
+     *
+     * @return a duration in milliseconds, or 0 if no jobs are running
+     */
+    @Exported
+    public long getLongestRunningMillis() {
+        return longestRunningMillis;
+    }
+
+    public String getUtilizationString() {
+        return String.format("%.1f%%", utilization * 100);
+    }
+
+    public String getLongestRunningString() {
+        return JobWaitStatistics.formatMillis(longestRunningMillis);
+    }
+}
@@ -0,0 +1,47 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+/**
+ * Represents how urgently a Job should run.  When a thread becomes free, the
+ * JobQueue runs the waiting job with the highest priority; that is, the one
+ * whose priority is declared first here.
+ */
+public enum JobPriority {
+    /**
+     * The job was requested by a user, who is probably waiting for it.
+     */
+    INTERACTIVE("Interactive"),
+    /**
+     * The job was triggered automatically, e.g. by a ScheduledFetch.
+     */
+    SCHEDULED("Scheduled"),
+    /**
+     * The job is part of reprocessing a long span of historical data.
+     */
+    BACKFILL("Backfill");
+
+    private final String displayName;
+
+    private JobPriority(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+}
@@ -18,36 +18,50 @@ package smartfire.queue;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.ObjectArrays;
-import com.sti.justice.concurrent.DisposableExecutorService;
-import com.sti.justice.concurrent.NamedThreadFactory;
 import com.sti.justice.Validator;
 import java.lang.ref.WeakReference;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import smartfire.database.DatabaseConnection;
 
 /**
  * Represents a queue of executing jobs.
+ *
+ * <p>Each {@link JobCategory} of job has its own pool of threads, so that
+ * slow jobs of one category can't starve the others.  Jobs that are ready to
+ * run wait in their pool's {@link ReadyJobQueue} until one of its threads is
+ * free.  Each time a thread becomes free it runs the waiting job with the
+ * highest {@link JobPriority}; jobs of equal priority working on different
+ * Sources take turns.
  */
 public class JobQueue {
     private static final Logger log = LoggerFactory.getLogger(JobQueue.class);
-    private final DisposableExecutorService pool;
+    private final Map<JobCategory, JobPool> pools = new EnumMap<JobCategory, JobPool>(JobCategory.class);
     private final List<WeakReference<QueuedJob>> jobs = new CopyOnWriteArrayList<WeakReference<QueuedJob>>();
+    private final List<JobListener> listeners = new CopyOnWriteArrayList<JobListener>();
+    private final ConflictRegistry conflicts = new ConflictRegistry();
+    private final Map<Class<? extends Job>, Long> timeLimits = new ConcurrentHashMap<Class<? extends Job>, Long>();
+    private final AtomicInteger nextJobId = new AtomicInteger();
     private final DatabaseConnection conn;
+    private volatile JobStore store;
 
     /**
-     * Constructs a new JobQueue.  The queue will be sized to take advantage of
-     * all the CPUs available to the current runtime.
+     * Constructs a new JobQueue.  Each pool will be sized to take advantage
+     * of all the CPUs available to the current runtime.
      */
     public JobQueue() {
         this(null, Runtime.getRuntime().availableProcessors());
     }
 
     /**
-     * Constructs a new JobQueue.  The queue will be sized to take advantage of
-     * all the CPUs available to the current runtime.
+     * Constructs a new JobQueue.  Each pool will be sized to take advantage
+     * of all the CPUs available to the current runtime.
      *
      * <p>Note: this constructor takes a DatabaseConnection so that it can
      * ensure that database transactions are properly handled for all the jobs
@@ -61,7 +75,7 @@ public class JobQueue {
 
     /**
      * Constructs a new JobQueue, which will use the given number of threads
-     * to schedule jobs.
+     * in each pool to schedule jobs.
      * 
      * <p>Note: this constructor takes a DatabaseConnection so that it can 
      * ensure that database transactions are properly handled for all the jobs
@@ -71,18 +85,148 @@ public class JobQueue {
      * @param nThreads the number of threads to use
      */
     public JobQueue(DatabaseConnection conn, int nThreads) {
+        this(conn, nThreads, nThreads, nThreads);
+    }
+
+    /**
+     * Constructs a new JobQueue, with the given number of threads in the pool
+     * for each JobCategory.
+     *
+     * <p>Note: this constructor takes a DatabaseConnection so that it can
+     * ensure that database transactions are properly handled for all the jobs
+     * that are run in this queue.
+     *
+     * @param conn the current database connection
+     * @param numFetchThreads the number of threads for FETCH jobs
+     * @param numProcessingThreads the number of threads for PROCESSING jobs
+     * @param numMaintenanceThreads the number of threads for MAINTENANCE jobs
+     */
+    public JobQueue(DatabaseConnection conn, int numFetchThreads, int numProcessingThreads, int numMaintenanceThreads) {
         this.conn = conn;
-        this.pool = NamedThreadFactory.newFixedThreadPool("SMARTFIRE", nThreads);
+        pools.put(JobCategory.FETCH, new JobPool(JobCategory.FETCH, numFetchThreads, conn));
+        pools.put(JobCategory.PROCESSING, new JobPool(JobCategory.PROCESSING, numProcessingThreads, conn));
+        pools.put(JobCategory.MAINTENANCE, new JobPool(JobCategory.MAINTENANCE, numMaintenanceThreads, conn));
     }
 
     /**
      * Disposes any resources associated with this JobQueue.
      */
     public void dispose() {
-        pool.dispose();
+        for(JobPool pool : pools.values()) {
+            pool.dispose();
+        }
         jobs.clear();
     }
 
+    /**
+     * Sets whether pending {@link PersistableJob}s are saved to the database,
+     * so that they can be resumed with
+     * {@link #resume(Job, String, JobPriority, int, QueuedJob[])} after a
+     * restart.  This has no effect on a JobQueue without a DatabaseConnection.
+     *
+     * @param persistent true to save pending jobs
+     */
+    public void setPersistent(boolean persistent) {
+        if(persistent && conn != null) {
+            this.store = new JobStore(conn);
+        } else {
+            this.store = null;
+        }
+    }
+
+    /**
+     * Returns true if pending PersistableJobs are saved to the database.
+     *
+     * @return true if this JobQueue is persistent
+     */
+    public boolean isPersistent() {
+        return store != null;
+    }
+
+    /* package */ JobStore getJobStore() {
+        return store;
+    }
+
+    /**
+     * Sets the maximum wall-clock time that jobs of the given type may run
+     * for.  A job that runs past its time limit is cancelled the next time it
+     * checks its ProgressReporter.
+     *
+     * @param jobType the class of Job to limit; subclasses are also limited
+     * @param limitMillis the time limit in milliseconds, or zero for no limit
+     */
+    public void setTimeLimit(Class<? extends Job> jobType, long limitMillis) {
+        Validator.notNull(jobType, "jobType");
+        if(limitMillis > 0) {
+            timeLimits.put(jobType, limitMillis);
+        } else {
+            timeLimits.remove(jobType);
+        }
+    }
+
+    /**
+     * Returns the time limit in milliseconds for the given job, or zero if
+     * it may run for as long as it needs to.
+     */
+    /* package */ long getTimeLimit(Job job) {
+        long result = 0;
+        for(Map.Entry<Class<? extends Job>, Long> entry : timeLimits.entrySet()) {
+            if(entry.getKey().isInstance(job) && (result == 0 || entry.getValue() < result)) {
+                result = entry.getValue();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Cancels the job in this queue with the given ID, if it hasn't already
+     * finished.
+     *
+     * @param id the ID of the job, as returned by {@link JobInfo#getId()}
+     * @param reason a user-friendly description of why it was cancelled
+     * @return true if a matching unfinished job was found
+     */
+    public boolean cancel(int id, String reason) {
+        for(QueuedJob queuedJob : getQueuedJobs()) {
+            if(queuedJob.getId() == id && !queuedJob.isFinished()) {
+                log.info("Cancelling job {}: {}", queuedJob.getName(), reason);
+                queuedJob.cancel(reason);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers a JobListener to be notified whenever a job in this queue
+     * finishes.
+     *
+     * @param listener the listener to add
+     */
+    public void addJobListener(JobListener listener) {
+        Validator.notNull(listener, "listener");
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a previously added JobListener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeJobListener(JobListener listener) {
+        listeners.remove(listener);
+    }
+
+    /* package */ void fireJobFinished(QueuedJob queuedJob) {
+        for(JobListener listener : listeners) {
+            try {
+                listener.jobFinished(queuedJob);
+            } catch(Exception ex) {
+                log.warn("JobListener threw an exception for job " + queuedJob.getName(), ex);
+            }
+        }
+    }
+
     /**
      * Adds a new job to this JobQueue, with a default name and with no
      * upstream jobs.
@@ -97,7 +241,7 @@ public class JobQueue {
 
     /**
      * Adds a new job to this JobQueue with the given name and given upstream
-     * Jobs.
+     * Jobs, at SCHEDULED priority.
      *
      * @param job the Job to execute
      * @param name a name for this Job
@@ -106,16 +250,32 @@ public class JobQueue {
      * @return a QueuedJob object for tracking the newly enqueued job
      */
     public QueuedJob enqueue(Job job, String name, QueuedJob... upstreamJobs) {
+        return enqueue(job, name, JobPriority.SCHEDULED, upstreamJobs);
+    }
+
+    /**
+     * Adds a new job to this JobQueue with the given name, priority and
+     * upstream Jobs.
+     *
+     * @param job the Job to execute
+     * @param name a name for this Job
+     * @param priority the priority of this Job
+     * @param upstreamJobs array of upstream QueuedJobs that this job depends on;
+     *                     it may be null
+     * @return a QueuedJob object for tracking the newly enqueued job
+     */
+    public QueuedJob enqueue(Job job, String name, JobPriority priority, QueuedJob... upstreamJobs) {
         Validator.notNull(job, "job");
         Validator.notNull(name, "name");
-        QueuedJob queuedJob = new QueuedJob(this, job, name);
+        Validator.notNull(priority, "priority");
+        QueuedJob queuedJob = new QueuedJob(this, nextJobId.incrementAndGet(), job, name, priority);
         enqueueInternal(queuedJob, upstreamJobs);
         return queuedJob;
     }
 
     /**
-     * Adds a new job to this JobQueue, as long as it is not equivalent to 
-     * any job that is currently pending.
+     * Adds a new job to this JobQueue at SCHEDULED priority, as long as it is
+     * not equivalent to any job that is currently pending.
      *
      * @param job the Job to execute
      * @param name a name for this Job
@@ -125,9 +285,27 @@ public class JobQueue {
      *         equivalent job is already queued, it will be returned instead
      */
     public QueuedJob enqueueIfNoneEquivalent(Job job, String name, QueuedJob... upstreamJobs) {
+        return enqueueIfNoneEquivalent(job, name, JobPriority.SCHEDULED, upstreamJobs);
+    }
+
+    /**
+     * Adds a new job to this JobQueue, as long as it is not equivalent to 
+     * any job that is currently pending.  If an equivalent job is waiting
+     * with a lower priority, it is raised to the given priority.
+     *
+     * @param job the Job to execute
+     * @param name a name for this Job
+     * @param priority the priority of this Job
+     * @param upstreamJobs array of upstream QueuedJobs that this job depends
+     *                     on; it may be null
+     * @return a QueuedJob object for tracking the enqueued job; if an
+     *         equivalent job is already queued, it will be returned instead
+     */
+    public QueuedJob enqueueIfNoneEquivalent(Job job, String name, JobPriority priority, QueuedJob... upstreamJobs) {
         Validator.notNull(job, "job");
         Validator.notNull(name, "name");
-        QueuedJob queuedJob = new QueuedJob(this, job, name);
+        Validator.notNull(priority, "priority");
+        QueuedJob queuedJob = new QueuedJob(this, nextJobId.incrementAndGet(), job, name, priority);
         for(QueuedJob existing : getQueuedJobs()) {
             boolean isEquivalent = existing.getJob().isEquivalentTo(job);
             boolean isWaiting = (existing.getState() == JobState.WAITING);
@@ -143,6 +321,14 @@ public class JobQueue {
                             existing.addUpstreamJob(upstreamJob);
                         }
                     }
+                    if(priority.compareTo(existing.getPriority()) < 0) {
+                        existing.setPriority(priority);
+                        poolFor(existing).raisePriority(existing, priority);
+                    }
+                    JobStore currentStore = store;
+                    if(currentStore != null) {
+                        currentStore.upstreamJobsChanged(existing);
+                    }
                     return existing;
                 } finally {
                     existing.lock.unlock();
@@ -157,12 +343,38 @@ public class JobQueue {
         return queuedJob;
     }
 
+    /**
+     * Adds a job that was saved by a persistent JobQueue before a restart
+     * back to this JobQueue.  Its saved record is kept, and deleted once the
+     * job completes.
+     *
+     * @param job the Job to execute, recreated from its saved parameters
+     * @param name the saved name of the Job
+     * @param priority the saved priority of the Job
+     * @param storedId the ID of the job's saved record
+     * @param upstreamJobs the resumed jobs that this job depends on
+     * @return a QueuedJob object for tracking the resumed job
+     */
+    public QueuedJob resume(Job job, String name, JobPriority priority, int storedId, QueuedJob... upstreamJobs) {
+        Validator.notNull(job, "job");
+        Validator.notNull(name, "name");
+        Validator.notNull(priority, "priority");
+        QueuedJob queuedJob = new QueuedJob(this, nextJobId.incrementAndGet(), job, name, priority);
+        queuedJob.setStoredId(storedId);
+        enqueueInternal(queuedJob, upstreamJobs);
+        return queuedJob;
+    }
+
     private void enqueueInternal(QueuedJob queuedJob, QueuedJob[] upstreamJobs) {
         if(upstreamJobs != null) {
             for(QueuedJob upstreamJob : upstreamJobs) {
                 queuedJob.addUpstreamJob(upstreamJob);
             }
         }
+        JobStore currentStore = store;
+        if(currentStore != null) {
+            currentStore.jobEnqueued(queuedJob);
+        }
         jobs.add(new WeakReference<QueuedJob>(queuedJob));
         queuedJob.setState(JobState.WAITING);
         if(queuedJob.isReadyToRun()) {
@@ -174,7 +386,50 @@ public class JobQueue {
 
     /* package */ void submit(QueuedJob queuedJob) {
         log.debug("Adding job {} to the ThreadPool queue", queuedJob.getName());
-        pool.execute(new RunnableJob(conn, queuedJob));
+        poolFor(queuedJob).submit(queuedJob);
+    }
+
+    private JobPool poolFor(QueuedJob queuedJob) {
+        return pools.get(queuedJob.getCategory());
+    }
+
+    /* package */ ConflictRegistry getConflictRegistry() {
+        return conflicts;
+    }
+
+    /**
+     * Get statistics on how long jobs of each priority have waited for a
+     * free thread.
+     *
+     * @return a JobWaitStatistics instance for each JobPriority, from highest
+     *         to lowest priority
+     */
+    public List<JobWaitStatistics> getWaitStatistics() {
+        List<JobWaitStatistics> result = null;
+        for(JobPool pool : pools.values()) {
+            List<JobWaitStatistics> poolStatistics = pool.getWaitStatistics();
+            if(result == null) {
+                result = poolStatistics;
+            } else {
+                for(int i = 0; i < result.size(); i++) {
+                    result.set(i, result.get(i).plus(poolStatistics.get(i)));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get statistics on how busy the thread pool of each JobCategory is.
+     *
+     * @return a JobPoolStatistics instance for each JobCategory
+     */
+    public List<JobPoolStatistics> getPoolStatistics() {
+        List<JobPoolStatistics> result = Lists.newArrayList();
+        for(JobPool pool : pools.values()) {
+            result.add(pool.getStatistics());
+        }
+        return result;
     }
 
     /**
@@ -0,0 +1,102 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import org.joda.time.DateTime;
+
+/**
+ * Represents a span of time within some named body of data (e.g. the fires
+ * of a particular Source) that a Job needs while it runs.
+ *
+ * <p>Two JobResources conflict if they have the same name, their time spans
+ * overlap (spans that merely touch are considered to overlap), and at least
+ * one of them is exclusive.  Jobs that only read data can use shared
+ * resources, so that they may run alongside each other.
+ */
+public final class JobResource {
+    private final String name;
+    private final long start;
+    private final long end;
+    private final boolean exclusive;
+
+    private JobResource(String name, DateTime start, DateTime end, boolean exclusive) {
+        this.name = name;
+        this.start = start.getMillis();
+        this.end = end.getMillis();
+        this.exclusive = exclusive;
+    }
+
+    /**
+     * Constructs a resource that no other job may use at the same time.
+     *
+     * @param name the name of the data, e.g. "fires:source:3"
+     * @param start the start of the time span
+     * @param end the end of the time span
+     * @return a new JobResource
+     */
+    public static JobResource exclusive(String name, DateTime start, DateTime end) {
+        return new JobResource(name, start, end, true);
+    }
+
+    /**
+     * Constructs a resource that other jobs may also use as a shared
+     * resource at the same time.
+     *
+     * @param name the name of the data, e.g. "fires:source:3"
+     * @param start the start of the time span
+     * @param end the end of the time span
+     * @return a new JobResource
+     */
+    public static JobResource shared(String name, DateTime start, DateTime end) {
+        return new JobResource(name, start, end, false);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getStartMillis() {
+        return start;
+    }
+
+    public long getEndMillis() {
+        return end;
+    }
+
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * Returns true if this resource cannot be used at the same time as the
+     * other.
+     *
+     * @param other another JobResource
+     * @return true if the resources conflict
+     */
+    public boolean conflictsWith(JobResource other) {
+        return name.equals(other.name)
+                && (exclusive || other.exclusive)
+                && start <= other.end
+                && other.start <= end;
+    }
+
+    @Override
+    public String toString() {
+        return (exclusive ? "exclusive " : "shared ") + name + " [" + new DateTime(start) + ", " + new DateTime(end) + "]";
+    }
+}
@@ -19,6 +19,8 @@ package smartfire.queue;
 import com.google.common.collect.Maps;
 import it.sauronsoftware.cron4j.Scheduler;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.joda.time.DateTimeZone;
 import smartfire.ApplicationSettings;
 import smartfire.SmartfireException;
@@ -29,8 +31,11 @@ import smartfire.database.ScheduledFetch;
  * Schedules and Handles fetch jobs.
  */
 public class JobScheduler {
+    private static final String FETCH_ROUND_ID = "FetchRound";
+    private static final String EVERY_MINUTE = "* * * * *";
     private final Scheduler scheduler;
     private final HashMap<String, String> scheduledJobs;
+    private final Map<Integer, ScheduledFetch> roundFetches = new ConcurrentHashMap<Integer, ScheduledFetch>();
 
     /**
      * Constructs a new JobScheduler.
@@ -72,6 +77,11 @@ public class JobScheduler {
     /**
      * Schedule a fetch job to run.
      *
+     * <p>If the configuration enables coordinated fetch rounds, all the
+     * fetches that are due in the same minute are run together as a single
+     * {@link smartfire.jobs.FetchRound}.  Otherwise each fetch is run on its
+     * own.
+     *
      * @param appSettings Settings for the application. Used for getting a job queue.
      * @param fetch Fetch to be scheduled.
      */
@@ -81,6 +91,17 @@ public class JobScheduler {
         }
 
         Integer fetchId = fetch.getId();
+        if(appSettings.getConfig().isCoordinatedFetchRounds()) {
+            synchronized(scheduledJobs) {
+                roundFetches.put(fetchId, fetch);
+                if(!scheduledJobs.containsKey(FETCH_ROUND_ID)) {
+                    SchedulableJob roundJob = new SchedulableFetchRound(appSettings, roundFetches.values(), scheduler.getTimeZone());
+                    scheduledJobs.put(FETCH_ROUND_ID, this.scheduler.schedule(EVERY_MINUTE, roundJob));
+                }
+            }
+            return;
+        }
+
         SchedulableJob schedulableJob = new SchedulableFetchJob(appSettings, fetch);
         String id = this.scheduler.schedule(fetch.getSchedule(), schedulableJob);
         scheduledJobs.put("Fetch_" + fetchId, id);
@@ -103,6 +124,9 @@ public class JobScheduler {
      * @param fetch Fetch to be descheduled.
      */
     public void deschedule(ScheduledFetch fetch) {
+        if(roundFetches.remove(fetch.getId()) != null) {
+            return;
+        }
         this.deschedule("Fetch_" + fetch.getId());
     }
     
@@ -40,5 +40,9 @@ public enum JobState {
     /**
      * The job has failed.
      */
-    FAILURE
+    FAILURE,
+    /**
+     * The job was cancelled, or ran past its time limit, before it completed.
+     */
+    CANCELLED
 }
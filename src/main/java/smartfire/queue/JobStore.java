@@ -0,0 +1,204 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import com.google.common.collect.Lists;
+import java.util.List;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.database.DatabaseConnection;
+import smartfire.database.PersistentJob;
+import smartfire.database.PersistentJobDao;
+
+/**
+ * Saves the PersistableJobs of a JobQueue in the persistent_job table while
+ * they are pending, so that they can be resumed after a restart.
+ *
+ * <p>A job is saved in the transaction of the thread that enqueues it, if
+ * there is one; jobs scheduled by a FetchJob are therefore only saved if the
+ * fetched data is committed.  (A job that could start before that
+ * transaction commits is not saved at all.)  A job's record is deleted in
+ * the job's own transaction when it succeeds, so its work and its removal
+ * from the table are committed together.
+ */
+final class JobStore {
+    private static final Logger log = LoggerFactory.getLogger(JobStore.class);
+    private final DatabaseConnection conn;
+
+    JobStore(DatabaseConnection conn) {
+        this.conn = conn;
+    }
+
+    static boolean isPersistable(QueuedJob queuedJob) {
+        return queuedJob.getJob() instanceof PersistableJob;
+    }
+
+    /**
+     * Saves a newly enqueued job, unless it was resumed from a saved record.
+     */
+    void jobEnqueued(QueuedJob queuedJob) {
+        if(!isPersistable(queuedJob) || queuedJob.getStoredId() != null) {
+            return;
+        }
+        if(conn.isInTransaction() && queuedJob.getUpstreamJobs().isEmpty()) {
+            // The job could finish before the enclosing transaction commits
+            // its record, which would then never be deleted
+            log.debug("Not saving job {}, which can start before its record is committed", queuedJob.getName());
+            return;
+        }
+        boolean ownTransaction = begin();
+        try {
+            PersistentJob record = new PersistentJob();
+            record.setName(queuedJob.getName());
+            record.setType(queuedJob.getJob().getClass().getName());
+            record.setPriority(queuedJob.getPriority().name());
+            record.setState(JobState.WAITING.name());
+            record.setParameters(((PersistableJob) queuedJob.getJob()).getParameters());
+            record.setUpstreamIds(getUpstreamIds(queuedJob));
+            record.setCreatedDate(new DateTime());
+            conn.getPersistentJob().save(record);
+            queuedJob.setStoredId(record.getId());
+        } catch(RuntimeException ex) {
+            log.warn("Unable to save job {}; it won't be resumed after a restart", queuedJob.getName());
+            log.debug("Exception was:", ex);
+            if(ownTransaction) {
+                conn.rollbackOnly();
+            }
+        } finally {
+            end(ownTransaction);
+        }
+    }
+
+    /**
+     * Updates the saved dependencies of a job that has been given new
+     * upstream jobs.
+     */
+    void upstreamJobsChanged(QueuedJob queuedJob) {
+        if(queuedJob.getStoredId() == null) {
+            return;
+        }
+        boolean ownTransaction = begin();
+        try {
+            PersistentJob record = conn.getPersistentJob().getById(queuedJob.getStoredId());
+            if(record != null) {
+                record.setUpstreamIds(getUpstreamIds(queuedJob));
+                record.setPriority(queuedJob.getPriority().name());
+            }
+        } catch(RuntimeException ex) {
+            log.warn("Unable to update saved dependencies of job {}", queuedJob.getName());
+            log.debug("Exception was:", ex);
+            if(ownTransaction) {
+                conn.rollbackOnly();
+            }
+        } finally {
+            end(ownTransaction);
+        }
+    }
+
+    /**
+     * Records that a job has started running.
+     */
+    void jobStarted(QueuedJob queuedJob) {
+        if(queuedJob.getStoredId() == null) {
+            return;
+        }
+        boolean ownTransaction = begin();
+        try {
+            PersistentJob record = conn.getPersistentJob().getById(queuedJob.getStoredId());
+            if(record != null) {
+                record.setState(JobState.RUNNING.name());
+            }
+        } catch(RuntimeException ex) {
+            log.debug("Unable to record that job " + queuedJob.getName() + " started", ex);
+            if(ownTransaction) {
+                conn.rollbackOnly();
+            }
+        } finally {
+            end(ownTransaction);
+        }
+    }
+
+    /**
+     * Deletes the record of a job that has succeeded.  This is called within
+     * the job's own transaction.
+     */
+    void jobSucceeded(QueuedJob queuedJob) {
+        if(queuedJob.getStoredId() == null) {
+            return;
+        }
+        PersistentJobDao dao = conn.getPersistentJob();
+        PersistentJob record = dao.getById(queuedJob.getStoredId());
+        if(record != null) {
+            dao.delete(record);
+        }
+    }
+
+    /**
+     * Deletes the records of a job that has failed, and of all the jobs that
+     * depend on it, since none of them will run.
+     */
+    void jobFailed(QueuedJob queuedJob) {
+        boolean ownTransaction = begin();
+        try {
+            PersistentJobDao dao = conn.getPersistentJob();
+            List<QueuedJob> toVisit = Lists.newArrayList(queuedJob);
+            while(!toVisit.isEmpty()) {
+                QueuedJob failed = toVisit.remove(toVisit.size() - 1);
+                if(failed.getStoredId() != null) {
+                    PersistentJob record = dao.getById(failed.getStoredId());
+                    if(record != null) {
+                        dao.delete(record);
+                    }
+                }
+                toVisit.addAll(failed.getDownstreamJobs());
+            }
+        } catch(RuntimeException ex) {
+            log.warn("Unable to delete saved records for failed job {}", queuedJob.getName());
+            log.debug("Exception was:", ex);
+            if(ownTransaction) {
+                conn.rollbackOnly();
+            }
+        } finally {
+            end(ownTransaction);
+        }
+    }
+
+    private static List<Integer> getUpstreamIds(QueuedJob queuedJob) {
+        List<Integer> upstreamIds = Lists.newArrayList();
+        for(QueuedJob upstreamJob : queuedJob.getUpstreamJobs()) {
+            if(upstreamJob.getStoredId() != null) {
+                upstreamIds.add(upstreamJob.getStoredId());
+            }
+        }
+        return upstreamIds;
+    }
+
+    private boolean begin() {
+        if(conn.isInTransaction()) {
+            return false;
+        }
+        conn.beginTransaction();
+        return true;
+    }
+
+    private void end(boolean ownTransaction) {
+        if(ownTransaction) {
+            conn.resolveTransaction();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import org.joda.time.Period;
+import org.joda.time.format.PeriodFormat;
+import org.kohsuke.stapler.export.Exported;
+import org.kohsuke.stapler.export.ExportedBean;
+
+/**
+ * Summarizes how long jobs of a particular priority have waited for a free
+ * thread after becoming ready to run.
+ */
+@ExportedBean(defaultVisibility=2)
+public class JobWaitStatistics {
+    private final JobPriority priority;
+    private final long numStarted;
+    private final long totalWaitMillis;
+    private final long maxWaitMillis;
+    private final int numWaiting;
+    private final long longestCurrentWaitMillis;
+
+    JobWaitStatistics(JobPriority priority, long numStarted, long totalWaitMillis, long maxWaitMillis,
+            int numWaiting, long longestCurrentWaitMillis) {
+        this.priority = priority;
+        this.numStarted = numStarted;
+        this.totalWaitMillis = totalWaitMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.numWaiting = numWaiting;
+        this.longestCurrentWaitMillis = longestCurrentWaitMillis;
+    }
+
+    /**
+     * Combines these statistics with those of another queue, for the same
+     * priority.
+     *
+     * @param other statistics for another queue
+     * @return the combined statistics
+     */
+    JobWaitStatistics plus(JobWaitStatistics other) {
+        return new JobWaitStatistics(priority,
+                numStarted + other.numStarted,
+                totalWaitMillis + other.totalWaitMillis,
+                Math.max(maxWaitMillis, other.maxWaitMillis),
+                numWaiting + other.numWaiting,
+                Math.max(longestCurrentWaitMillis, other.longestCurrentWaitMillis));
+    }
+
+    @Exported
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Returns the number of jobs of this priority that have been handed to a
+     * thread since the application started.
+     *
+     * @return the number of jobs started
+     */
+    @Exported
+    public long getNumStarted() {
+        return numStarted;
+    }
+
+    @Exported
+    public long getAverageWaitMillis() {
+        if(numStarted == 0) {
+            return 0;
+        }
+        return totalWaitMillis / numStarted;
+    }
+
+    @Exported
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Returns the number of jobs of this priority that are ready to run but
+     * are waiting for a free thread.
+     *
+     * @return the number of waiting jobs
+     */
+    @Exported
+    public int getNumWaiting() {
+        return numWaiting;
+    }
+
+    @Exported
+    public long getLongestCurrentWaitMillis() {
+        return longestCurrentWaitMillis;
+    }
+
+    public String getAverageWaitString() {
+        return formatMillis(getAverageWaitMillis());
+    }
+
+    public String getMaxWaitString() {
+        return formatMillis(maxWaitMillis);
+    }
+
+    public String getLongestCurrentWaitString() {
+        return formatMillis(longestCurrentWaitMillis);
+    }
+
+    /**
+     * Formats a duration in a user-friendly way.
+     *
+     * @param millis a duration in milliseconds
+     * @return a user-friendly string describing the duration
+     */
+    public static String formatMillis(long millis) {
+        if(millis < 1000) {
+            return millis + " ms";
+        }
+        // Drop the milliseconds, which are just noise at this scale
+        Period period = new Period(millis - (millis % 1000)).normalizedStandard();
+        return period.toString(PeriodFormat.getDefault());
+    }
+}
@@ -16,6 +16,7 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.queue;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 
@@ -24,8 +25,12 @@ import org.slf4j.Logger;
  * from another thread.
  */
 public class ProgressReporter {
+    private static final ThreadLocal<ProgressReporter> current = new ThreadLocal<ProgressReporter>();
     private final AtomicReference<Progress> progress;
     private final Logger log;
+    private final JobMetrics metrics = new JobMetrics();
+    private volatile String cancelReason;
+    private volatile long deadlineMillis = Long.MAX_VALUE;
 
     /**
      * Constructs a new ProgressReporter with an initial state of 0% complete.
@@ -77,4 +82,143 @@ public class ProgressReporter {
     public Progress getProgress() {
         return progress.get();
     }
+
+    /**
+     * Ends the current stage of the operation, if any, and starts timing the
+     * given stage.  Callers that interrupt another stage can restore it by
+     * entering the returned stage again when they are done.
+     *
+     * @param stage a short name for the stage, e.g. "association"; or null
+     *              to stop timing
+     * @return the name of the stage that was ended, or null
+     */
+    public String enterStage(String stage) {
+        return metrics.enterStage(stage);
+    }
+
+    /**
+     * Gets the timings and resource usage recorded for the operation.
+     *
+     * @return the metrics of the operation
+     */
+    public JobMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Requests that the operation being tracked stop as soon as possible.
+     * The operation is expected to notice the request the next time it calls
+     * {@link #checkCancelled()}.
+     *
+     * @param reason a user-friendly description of why it was cancelled
+     */
+    public void cancel(String reason) {
+        this.cancelReason = reason;
+    }
+
+    /**
+     * Sets the wall-clock time after which {@link #checkCancelled()} will
+     * treat the operation as cancelled.
+     *
+     * @param deadlineMillis a time in milliseconds since the epoch
+     */
+    public void setDeadline(long deadlineMillis) {
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Returns true if the operation has been cancelled, or has run past its
+     * deadline.
+     *
+     * @return true if the operation should stop
+     */
+    public boolean isCancelled() {
+        return (cancelReason != null || System.currentTimeMillis() > deadlineMillis);
+    }
+
+    /**
+     * Throws a JobCancelledException if the operation has been cancelled or
+     * has run past its deadline.  Long-running loops should call this
+     * periodically.
+     *
+     * @throws JobCancelledException if the operation should stop
+     */
+    public void checkCancelled() {
+        String reason = cancelReason;
+        if(reason != null) {
+            throw new JobCancelledException(reason);
+        }
+        if(System.currentTimeMillis() > deadlineMillis) {
+            throw new JobCancelledException("Exceeded time limit");
+        }
+    }
+
+    /**
+     * Calls {@link #checkCancelled()} on the ProgressReporter of the job
+     * running in the current thread, if any.  This lets low-level geometry
+     * code that has no ProgressReporter of its own stop promptly.
+     *
+     * @throws JobCancelledException if the current job should stop
+     */
+    public static void checkCurrentThreadCancelled() {
+        ProgressReporter reporter = current.get();
+        if(reporter != null) {
+            reporter.checkCancelled();
+        }
+    }
+
+    /**
+     * Calls {@link #enterStage(String)} on the ProgressReporter of the job
+     * running in the current thread, if any.
+     *
+     * @param stage the name of the stage to enter, or null
+     * @return the name of the stage that was ended, or null
+     */
+    public static String enterCurrentThreadStage(String stage) {
+        ProgressReporter reporter = current.get();
+        if(reporter != null) {
+            return reporter.enterStage(stage);
+        }
+        return null;
+    }
+
+    /**
+     * Calls {@link #setProgress(int, String)} on the ProgressReporter of the
+     * job running in the current thread, if any.
+     *
+     * @param percentProgress percent complete of current operation
+     * @param currentStatus a user-friendly status message
+     */
+    public static void setCurrentThreadProgress(int percentProgress, String currentStatus) {
+        ProgressReporter reporter = current.get();
+        if(reporter != null) {
+            reporter.setProgress(percentProgress, currentStatus);
+        }
+    }
+
+    /**
+     * Wraps a task that the job running in the current thread is about to
+     * hand to a worker thread, so that the CPU time and allocations of the
+     * worker are included in the job's {@link JobMetrics}.  If no job is
+     * running in the current thread, the task is returned unchanged.
+     *
+     * @param <T> the result type of the task
+     * @param task the task to wrap
+     * @return a task to submit to the worker pool in place of the original
+     */
+    public static <T> Callable<T> forCurrentJob(Callable<T> task) {
+        ProgressReporter reporter = current.get();
+        if(reporter == null) {
+            return task;
+        }
+        return reporter.getMetrics().measuring(task);
+    }
+
+    /* package */ static void setCurrent(ProgressReporter reporter) {
+        if(reporter == null) {
+            current.remove();
+        } else {
+            current.set(reporter);
+        }
+    }
 }
@@ -27,22 +27,35 @@ import smartfire.database.JobHistory;
 
 public final class QueuedJob {
     private final JobQueue queue;
+    private final int id;
     private final Job job;
     private final String name;
     private final DateTime submitted;
+    private final String fairnessKey;
+    private final JobCategory category;
     private final ProgressReporter progressReporter;
     private final List<QueuedJob> upstreamJobs;
     private final List<QueuedJob> downstreamJobs;
     final ReentrantLock lock = new ReentrantLock();
     private volatile JobState state;
+    private volatile JobPriority priority;
     private volatile DateTime started;
     private volatile DateTime completed;
+    private volatile Integer storedId;
 
-    QueuedJob(JobQueue queue, Job job, String name) {
+    QueuedJob(JobQueue queue, int id, Job job, String name, JobPriority priority) {
         this.queue = queue;
+        this.id = id;
         this.job = job;
         this.name = name;
+        this.priority = priority;
         this.submitted = new DateTime();
+        if(job instanceof SourceJob) {
+            this.fairnessKey = "source:" + ((SourceJob) job).getSource().getId();
+        } else {
+            this.fairnessKey = job.getClass().getName();
+        }
+        this.category = JobCategory.of(job);
         Logger log = LoggerFactory.getLogger(job.getClass());
         this.progressReporter = new ProgressReporter(log);
         this.upstreamJobs = new CopyOnWriteArrayList<QueuedJob>();
@@ -58,9 +71,11 @@ public final class QueuedJob {
      */
     public JobInfo getJobInfo() {
         return new JobInfo(
+                id,
                 job,
                 name,
                 state,
+                priority,
                 progressReporter.getProgress(),
                 submitted,
                 started,
@@ -117,6 +132,17 @@ public final class QueuedJob {
         jobHistory.setStatus(this.getJobInfo().getState().name());
         jobHistory.setType(this.getJob().getClass().getName());
         jobHistory.setFinalStatus(this.getProgressReporter().getProgress().getCurrentStatus());
+        if(job instanceof SourceJob) {
+            jobHistory.setSourceId(((SourceJob) job).getSource().getId());
+        }
+        JobMetrics metrics = this.getProgressReporter().getMetrics();
+        if(metrics.getCpuMillis() >= 0) {
+            jobHistory.setCpuTimeMillis(metrics.getCpuMillis());
+        }
+        if(metrics.getAllocatedBytes() >= 0) {
+            jobHistory.setAllocatedBytes(metrics.getAllocatedBytes());
+        }
+        jobHistory.setStageTimings(metrics.getStageMillis());
         return jobHistory;
     }
 
@@ -137,13 +163,40 @@ public final class QueuedJob {
      * @return
      */
     public boolean isFinished() {
-        return (state == JobState.SUCCESS || state == JobState.FAILURE);
+        return (state == JobState.SUCCESS || state == JobState.FAILURE || state == JobState.CANCELLED);
+    }
+
+    /**
+     * Requests that this job stop.  A running job stops the next time it
+     * checks its ProgressReporter; a job that hasn't started yet is cancelled
+     * as soon as it is dispatched.
+     *
+     * @param reason a user-friendly description of why it was cancelled
+     */
+    public void cancel(String reason) {
+        if(!isFinished()) {
+            progressReporter.cancel(reason);
+        }
+    }
+
+    /**
+     * Returns an ID that identifies this job among the others in its
+     * JobQueue.
+     *
+     * @return the ID of this job
+     */
+    public int getId() {
+        return id;
     }
 
     public Job getJob() {
         return job;
     }
 
+    JobQueue getQueue() {
+        return queue;
+    }
+
     public String getName() {
         return name;
     }
@@ -156,6 +209,34 @@ public final class QueuedJob {
         return progressReporter;
     }
 
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    void setPriority(JobPriority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the key used to share threads fairly between jobs of the same
+     * priority; jobs working on the same Source share a key.
+     *
+     * @return the fairness key of this job
+     */
+    String getFairnessKey() {
+        return fairnessKey;
+    }
+
+    /**
+     * Returns the category of this job, which determines the thread pool it
+     * runs in.
+     *
+     * @return the category of this job
+     */
+    public JobCategory getCategory() {
+        return category;
+    }
+
     public JobState getState() {
         return state;
     }
@@ -179,4 +260,18 @@ public final class QueuedJob {
     void setCompleted(DateTime completed) {
         this.completed = completed;
     }
+
+    /**
+     * Returns the ID of this job's record in a persistent JobQueue, or null
+     * if it hasn't been saved.
+     *
+     * @return a PersistentJob ID, or null
+     */
+    Integer getStoredId() {
+        return storedId;
+    }
+
+    void setStoredId(Integer storedId) {
+        this.storedId = storedId;
+    }
 }
@@ -0,0 +1,180 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the jobs that are ready to run but waiting for a free thread, and
+ * decides which of them runs next.
+ *
+ * <p>Jobs of a higher JobPriority always run before jobs of a lower one.
+ * Within a priority, jobs are grouped by their fairness key (usually their
+ * Source), and the groups take turns: each time a job is taken from a
+ * group, that group moves to the back of the line.  Jobs within a group run
+ * in the order they became ready.
+ */
+final class ReadyJobQueue {
+    private final Map<JobPriority, LinkedHashMap<String, Deque<Entry>>> waiting =
+            new EnumMap<JobPriority, LinkedHashMap<String, Deque<Entry>>>(JobPriority.class);
+    private final Map<QueuedJob, Entry> entries = Maps.newHashMap();
+    private final Map<JobPriority, WaitCounter> counters = new EnumMap<JobPriority, WaitCounter>(JobPriority.class);
+
+    ReadyJobQueue() {
+        for(JobPriority priority : JobPriority.values()) {
+            waiting.put(priority, new LinkedHashMap<String, Deque<Entry>>());
+            counters.put(priority, new WaitCounter());
+        }
+    }
+
+    /**
+     * Adds a job that has become ready to run.
+     *
+     * @param queuedJob the job
+     * @return false if the job was already waiting, true otherwise
+     */
+    synchronized boolean add(QueuedJob queuedJob) {
+        if(entries.containsKey(queuedJob)) {
+            return false;
+        }
+        Entry entry = new Entry(queuedJob, System.currentTimeMillis());
+        entries.put(queuedJob, entry);
+        insert(entry, queuedJob.getPriority());
+        return true;
+    }
+
+    /**
+     * Removes and returns the job that should run next.
+     *
+     * @return the next job to run, or null if no jobs are waiting
+     */
+    synchronized QueuedJob poll() {
+        for(JobPriority priority : JobPriority.values()) {
+            Iterator<Map.Entry<String, Deque<Entry>>> iter = waiting.get(priority).entrySet().iterator();
+            if(!iter.hasNext()) {
+                continue;
+            }
+            Map.Entry<String, Deque<Entry>> group = iter.next();
+            Deque<Entry> groupEntries = group.getValue();
+            Entry entry = groupEntries.poll();
+            // Move the group to the back of the line
+            iter.remove();
+            if(!groupEntries.isEmpty()) {
+                waiting.get(priority).put(group.getKey(), groupEntries);
+            }
+            entries.remove(entry.queuedJob);
+            counters.get(priority).record(System.currentTimeMillis() - entry.readySince);
+            return entry.queuedJob;
+        }
+        return null;
+    }
+
+    /**
+     * Moves a waiting job to the given priority, if it is waiting with a
+     * lower one.  Its place in line is based on the time it became ready.
+     *
+     * @param queuedJob the job
+     * @param priority the new priority
+     */
+    synchronized void raisePriority(QueuedJob queuedJob, JobPriority priority) {
+        Entry entry = entries.get(queuedJob);
+        if(entry == null || priority.compareTo(entry.priority) >= 0) {
+            return;
+        }
+        LinkedHashMap<String, Deque<Entry>> groups = waiting.get(entry.priority);
+        String key = queuedJob.getFairnessKey();
+        Deque<Entry> groupEntries = groups.get(key);
+        groupEntries.remove(entry);
+        if(groupEntries.isEmpty()) {
+            groups.remove(key);
+        }
+        insert(entry, priority);
+    }
+
+    synchronized List<JobWaitStatistics> getStatistics() {
+        long now = System.currentTimeMillis();
+        List<JobWaitStatistics> result = Lists.newArrayList();
+        for(JobPriority priority : JobPriority.values()) {
+            int numWaiting = 0;
+            long longestWait = 0;
+            for(Deque<Entry> groupEntries : waiting.get(priority).values()) {
+                numWaiting += groupEntries.size();
+                // Entries are in the order they became ready
+                longestWait = Math.max(longestWait, now - groupEntries.peekFirst().readySince);
+            }
+            WaitCounter counter = counters.get(priority);
+            result.add(new JobWaitStatistics(priority, counter.numStarted, counter.totalWaitMillis,
+                    counter.maxWaitMillis, numWaiting, longestWait));
+        }
+        return result;
+    }
+
+    private void insert(Entry entry, JobPriority priority) {
+        entry.priority = priority;
+        LinkedHashMap<String, Deque<Entry>> groups = waiting.get(priority);
+        String key = entry.queuedJob.getFairnessKey();
+        Deque<Entry> groupEntries = groups.get(key);
+        if(groupEntries == null) {
+            groupEntries = new ArrayDeque<Entry>();
+            groups.put(key, groupEntries);
+        }
+        if(groupEntries.isEmpty() || groupEntries.peekLast().readySince <= entry.readySince) {
+            groupEntries.addLast(entry);
+        } else {
+            // Keep the group ordered by the time its jobs became ready
+            List<Entry> sorted = Lists.newArrayList(groupEntries);
+            int index = 0;
+            while(sorted.get(index).readySince <= entry.readySince) {
+                index++;
+            }
+            sorted.add(index, entry);
+            groupEntries.clear();
+            groupEntries.addAll(sorted);
+        }
+    }
+
+    private static final class Entry {
+        private final QueuedJob queuedJob;
+        private final long readySince;
+        private JobPriority priority;
+
+        Entry(QueuedJob queuedJob, long readySince) {
+            this.queuedJob = queuedJob;
+            this.readySince = readySince;
+        }
+    }
+
+    private static final class WaitCounter {
+        private long numStarted = 0;
+        private long totalWaitMillis = 0;
+        private long maxWaitMillis = 0;
+
+        void record(long waitMillis) {
+            numStarted++;
+            totalWaitMillis += waitMillis;
+            maxWaitMillis = Math.max(maxWaitMillis, waitMillis);
+        }
+    }
+}
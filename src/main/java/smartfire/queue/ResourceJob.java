@@ -0,0 +1,35 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import java.util.List;
+
+/**
+ * Represents a Job that declares the data it needs in terms of
+ * JobResources.  The JobQueue will not run two ResourceJobs with conflicting
+ * resources at the same time; {@link Job#isConflictingWith} is only
+ * consulted for pairs of jobs where at least one is not a ResourceJob.
+ */
+public interface ResourceJob extends Job {
+    /**
+     * Gets the resources this job needs while it runs.  This is called once,
+     * within a database transaction, just before the job would first start.
+     *
+     * @return a list of JobResources; it may be empty
+     */
+    List<JobResource> getResources();
+}
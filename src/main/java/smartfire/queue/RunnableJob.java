@@ -16,9 +16,7 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 */
 package smartfire.queue;
 
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,7 +25,6 @@ import smartfire.database.JobHistory;
 
 final class RunnableJob implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(RunnableJob.class);
-    private static final Set<QueuedJob> runningJobs = Collections.synchronizedSet(new HashSet<QueuedJob>());
     private final DatabaseConnection conn;
     private final QueuedJob queuedJob;
 
@@ -36,56 +33,103 @@ final class RunnableJob implements Runnable {
         this.queuedJob = queuedJob;
     }
 
-    private QueuedJob findAnyExecutingConflictingJob() {
-        synchronized(runningJobs) {
-            for(QueuedJob runningJob : runningJobs) {
-                if(this.queuedJob.getJob().isConflictingWith(runningJob.getJob())) {
-                    return runningJob;
-                }
+    /**
+     * Acquires the job's resources from the ConflictRegistry, or parks the
+     * job if a running job conflicts with it.
+     *
+     * @return true if the job may start now
+     */
+    private boolean acquireResources(ConflictRegistry registry) {
+        if(registry.holds(queuedJob)) {
+            // Granted while the job was parked
+            return true;
+        }
+        try {
+            if(conn != null) {
+                conn.beginTransaction();
+            }
+            List<JobResource> resources = null;
+            Job job = queuedJob.getJob();
+            if(job instanceof ResourceJob) {
+                resources = ((ResourceJob) job).getResources();
+            }
+            if(!registry.acquire(queuedJob, resources)) {
+                log.debug("Job {} is waiting for a conflicting job to finish", queuedJob.getName());
+                return false;
+            }
+        } catch(Exception ex) {
+            log.warn("Ignoring exception that occurred while attempting to find jobs that conflict with {}", queuedJob.getName());
+            log.debug("Ignored exception is:", ex);
+            if(conn != null) {
+                conn.rollbackOnly();
+            }
+        } finally {
+            if(conn != null) {
+                conn.resolveTransaction();
             }
         }
-        return null;
+        return true;
+    }
+
+    /**
+     * Releases the job's resources, and submits any parked jobs that were
+     * waiting for them.
+     */
+    private void releaseResources(ConflictRegistry registry) {
+        for(QueuedJob grantedJob : registry.release(queuedJob)) {
+            log.debug("Job {} is no longer blocked by job {}", grantedJob.getName(), queuedJob.getName());
+            grantedJob.getQueue().submit(grantedJob);
+        }
     }
 
     @Override
     public void run() {
         queuedJob.lock.lock();
         try {
+            ConflictRegistry registry = queuedJob.getQueue().getConflictRegistry();
             if(!queuedJob.isReadyToRun()) {
                 log.debug("Ready to execute job {}, but it is not ready to run; abort", queuedJob.getName());
+                // The job may have been granted its resources while it was
+                // parked; pass them on, since it won't be using them now
+                releaseResources(registry);
                 return;
             }
-            try {
-                if(conn != null) {
-                    conn.beginTransaction();
-                }
-                QueuedJob otherJob = findAnyExecutingConflictingJob();
-                if(otherJob != null) {
-                    log.debug("Waiting to execute job {} until job {} is done", queuedJob.getName(), otherJob.getName());
-                    queuedJob.addUpstreamJob(otherJob);
-                    return;
-                }
-            } catch(Exception ex) {
-                log.warn("Ignoring exception that occurred while attempting to find jobs that conflict with {}", queuedJob.getName());
-                log.debug("Ignored exception is:", ex);
-                if(conn != null) {
-                    conn.rollbackOnly();
-                }
-            } finally {
-                if(conn != null) {
-                    conn.resolveTransaction();
-                }
+            if(!acquireResources(registry)) {
+                return;
             }
-            runningJobs.add(this.queuedJob);
             queuedJob.setState(JobState.RUNNING);
             queuedJob.setStarted(new DateTime());
+            JobStore store = queuedJob.getQueue().getJobStore();
+            if(store != null) {
+                store.jobStarted(queuedJob);
+            }
             JobState result = JobState.FAILURE;
+            long timeLimit = queuedJob.getQueue().getTimeLimit(queuedJob.getJob());
+            if(timeLimit > 0) {
+                queuedJob.getProgressReporter().setDeadline(System.currentTimeMillis() + timeLimit);
+            }
+            ProgressReporter.setCurrent(queuedJob.getProgressReporter());
+            queuedJob.getProgressReporter().getMetrics().begin();
             try {
+                // The job may have been cancelled while it was waiting
+                queuedJob.getProgressReporter().checkCancelled();
                 if(conn != null) {
                     conn.beginTransaction();
                 }
                 queuedJob.getJob().execute(queuedJob.getProgressReporter());
+                if(store != null) {
+                    // Commit the job's removal from the persistent queue
+                    // along with its work
+                    store.jobSucceeded(queuedJob);
+                }
                 result = JobState.SUCCESS;
+            } catch(JobCancelledException ex) {
+                log.info("Job \"{}\" was cancelled: {}", queuedJob.getName(), ex.getMessage());
+                result = JobState.CANCELLED;
+                if(conn != null && conn.isInTransaction()) {
+                    conn.rollbackOnly();
+                }
+                queuedJob.getProgressReporter().setProgress(100, "Cancelled: " + ex.getMessage());
             } catch(Exception ex) {
                 log.debug("Exception while executing job \"" + queuedJob.getName() + "\"", ex);
                 result = JobState.FAILURE;
@@ -95,10 +139,12 @@ final class RunnableJob implements Runnable {
                 queuedJob.getProgressReporter().setProgress(100,
                         "Exception while executing job: " + ex.getMessage());
             } finally {
+                ProgressReporter.setCurrent(null);
                 ProgressReporter pr = queuedJob.getProgressReporter();
                 String message = pr.getProgress().getCurrentStatus();
-                if(conn != null) {
+                if(conn != null && conn.isInTransaction()) {
                     pr.setProgress(100, "Flushing changes to database");
+                    pr.enterStage("commit");
                     try {
                         conn.resolveTransaction();
                     } catch(Exception ex) {
@@ -107,8 +153,13 @@ final class RunnableJob implements Runnable {
                         result = JobState.FAILURE;
                     }
                 }
+                pr.getMetrics().end();
+
+                if(store != null && result != JobState.SUCCESS) {
+                    store.jobFailed(queuedJob);
+                }
 
-                runningJobs.remove(this.queuedJob);
+                releaseResources(registry);
                 pr.setProgress(100, message);
                 queuedJob.setCompleted(new DateTime());
                 queuedJob.setState(result);
@@ -123,6 +174,8 @@ final class RunnableJob implements Runnable {
                     conn.resolveTransaction();
                 }
 
+                queuedJob.getQueue().fireJobFinished(queuedJob);
+
                 for(QueuedJob downstreamJob : queuedJob.getDownstreamJobs()) {
                     downstreamJob.notifyUpstreamJobCompleted(queuedJob);
                 }
@@ -30,6 +30,6 @@ public class SchedulableFetchJob extends SchedulableJob {
 
     @Override
     public void run() {
-        JobChain.schedule(this.appSettings, fetch, currentDate(), true); // TBD: dynamically set useMaxBackwardDays
+        JobChain.schedule(this.appSettings, fetch, currentDate(), true, JobPriority.SCHEDULED); // TBD: dynamically set useMaxBackwardDays
     }
 }
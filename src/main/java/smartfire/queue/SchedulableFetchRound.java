@@ -0,0 +1,74 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import com.google.common.collect.Lists;
+import it.sauronsoftware.cron4j.InvalidPatternException;
+import it.sauronsoftware.cron4j.SchedulingPattern;
+import java.util.Collection;
+import java.util.List;
+import java.util.TimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import smartfire.ApplicationSettings;
+import smartfire.database.ScheduledFetch;
+import smartfire.jobs.FetchRound;
+import smartfire.jobs.JobChain;
+
+/**
+ * Runs every minute, and starts a FetchRound for all the registered
+ * ScheduledFetches whose schedules are due in that minute.
+ */
+public class SchedulableFetchRound extends SchedulableJob {
+    private static final Logger log = LoggerFactory.getLogger(SchedulableFetchRound.class);
+    private final Collection<ScheduledFetch> fetches;
+    private final TimeZone timeZone;
+
+    /**
+     * Constructs a new SchedulableFetchRound.
+     *
+     * @param appSettings application settings
+     * @param fetches a live view of the ScheduledFetches to consider
+     * @param timeZone the time zone that the fetch schedules are in
+     */
+    public SchedulableFetchRound(ApplicationSettings appSettings, Collection<ScheduledFetch> fetches, TimeZone timeZone) {
+        super(appSettings);
+        this.fetches = fetches;
+        this.timeZone = (timeZone == null ? TimeZone.getDefault() : timeZone);
+    }
+
+    @Override
+    public void run() {
+        long now = System.currentTimeMillis();
+        List<ScheduledFetch> due = Lists.newArrayList();
+        for(ScheduledFetch fetch : fetches) {
+            try {
+                if(new SchedulingPattern(fetch.getSchedule()).match(timeZone, now)) {
+                    due.add(fetch);
+                }
+            } catch(InvalidPatternException e) {
+                log.warn("Ignoring ScheduledFetch \"{}\" with invalid schedule \"{}\"", fetch.getName(), fetch.getSchedule());
+            }
+        }
+        if(due.size() == 1) {
+            ScheduledFetch fetch = due.get(0);
+            JobChain.schedule(this.appSettings, fetch, currentDate(), true, JobPriority.SCHEDULED); // TBD: dynamically set useMaxBackwardDays
+        } else if(!due.isEmpty()) {
+            FetchRound.schedule(this.appSettings, due, currentDate(), true, JobPriority.SCHEDULED);
+        }
+    }
+}
@@ -32,6 +32,6 @@ public class SchedulableReconciliationJob extends SchedulableJob {
     @Override
     public void run() {
         DateTime date = currentDate();
-        JobChain.schedule(this.appSettings, stream, date, date); // TBD: dynamically set useMaxBackwardDays
+        JobChain.schedule(this.appSettings, stream, date, date, JobPriority.SCHEDULED); // TBD: dynamically set useMaxBackwardDays
     }
 }
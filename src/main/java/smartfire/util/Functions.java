@@ -17,6 +17,7 @@ along with this program.  If not, see <https://www.gnu.org/licenses/>.
 package smartfire.util;
 
 import java.text.DecimalFormat;
+import java.util.Map;
 import org.apache.commons.lang.WordUtils;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
@@ -25,6 +26,7 @@ import org.kohsuke.stapler.Stapler;
 import smartfire.Application;
 import smartfire.VersionInfo;
 import smartfire.database.Event;
+import smartfire.layer.ReverseGeocoder;
 
 /**
  * Utility functions used in views.
@@ -102,7 +104,28 @@ public class Functions {
         return percent + "%";
     }
 
-    public static String formatLocation(Event event) {
+    /**
+     * Describes the location of an Event, looking up its centroid in the
+     * already built index of its own reconciliation stream if needed.
+     *
+     * @param event the Event to describe
+     * @return a user-friendly location, or "Unknown" (also while the
+     *         stream's index is still being built)
+     */
+    public String formatLocation(Event event) {
+        return formatLocation(event, ReverseGeocoder.getBuilt(event.getReconciliationStream()));
+    }
+
+    /**
+     * Describes the location of an Event.  If the Event doesn't have the
+     * location attributes from the summary data layers, the location of its
+     * centroid is looked up in the given index instead.
+     *
+     * @param event the Event to describe
+     * @param geocoder an index of location boundaries
+     * @return a user-friendly location, or "Unknown"
+     */
+    public static String formatLocation(Event event, ReverseGeocoder geocoder) {
         String county = event.get("CNTY");
         String state = event.get("STATE");
         String country = event.get("CNTRY");
@@ -114,7 +137,16 @@ public class Functions {
                 return location;
             }
 
-            return "Unknown";
+            if(event.getShape() == null) {
+                return "Unknown";
+            }
+            Map<String, String> found = geocoder.lookup(event.getShape().getCentroid());
+            county = found.get("CNTY");
+            state = found.get("STATE");
+            country = found.get("CNTRY");
+            if(country == null) {
+                return "Unknown";
+            }
         }
 
         if("USA".equals(country)) {
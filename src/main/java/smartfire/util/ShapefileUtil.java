@@ -38,6 +38,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import smartfire.SmartfireException;
 import smartfire.gis.CoordinateTransformer;
+import smartfire.gis.FeatureAreas;
 import smartfire.gis.GeometryBuilder;
 import smartfire.gis.ShapeAttributes;
 
@@ -47,6 +48,52 @@ import java.util.Map;
 
 public class ShapefileUtil {
     private static final Logger log = LoggerFactory.getLogger(ShapefileUtil.class);
+    private static final Map<String, SharedShapefile> sharedShapefiles = Maps.newHashMap();
+
+    /**
+     * A counted reference to a shapefile that is kept open and shared by
+     * every read of the file; see {@link #acquireSharedShapefile(String)}.
+     */
+    public static final class SharedShapefile {
+        private final String path;
+        private final long lastModified;
+        private final SimpleFeatureSource source;
+        private int references;
+        private boolean retired;
+
+        private SharedShapefile(String path, long lastModified, SimpleFeatureSource source) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.source = source;
+        }
+
+        /**
+         * Gets the open feature source.  Callers must not dispose its data
+         * store, and must not use it after calling {@link #release()}.
+         *
+         * @return the shared feature source
+         */
+        public SimpleFeatureSource getSource() {
+            return source;
+        }
+
+        /**
+         * Releases this reference to the shapefile.  If the file has been
+         * modified and reopened since this reference was acquired, the old
+         * data store is disposed once its last reference is released.
+         */
+        public void release() {
+            synchronized(sharedShapefiles) {
+                if(references <= 0) {
+                    throw new IllegalStateException("Shapefile released too many times: " + path);
+                }
+                references--;
+                if(references == 0 && retired) {
+                    source.getDataStore().dispose();
+                }
+            }
+        }
+    }
 
     private static Map<String, String> readFeatureAttributes(SimpleFeature feature) {
         SimpleFeatureType featureType = feature.getFeatureType();
@@ -87,8 +134,43 @@ public class ShapefileUtil {
     }
 
     public static ShapeAttributes readShapeFile(GeometryBuilder geometryBuilder, Geometry geom, String shapefileLocation) {
+        return readFeatureAreas(geometryBuilder, geom, shapefileLocation).toShapeAttributes(geom);
+    }
+
+    /**
+     * Reads the area by which the given Geometry intersects each feature of
+     * a shapefile, along with the attributes of those features.  Areas are
+     * measured in the coordinate system of the shapefile.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, used to determine the coordinate
+     *                        system of the Geometry
+     * @param geom the Geometry to intersect with
+     * @param shapefileLocation the path of the shapefile to read
+     * @return the intersection area and attributes of each intersecting feature
+     */
+    public static FeatureAreas readFeatureAreas(GeometryBuilder geometryBuilder, Geometry geom, String shapefileLocation) {
         SimpleFeatureSource featureSource = openShapefile(shapefileLocation);
 //        log.debug("ShapeFile Opened Successfully.");
+        try {
+            return readFeatureAreas(geometryBuilder, geom, featureSource);
+        } finally {
+            featureSource.getDataStore().dispose();
+        }
+    }
+
+    /**
+     * Reads the area by which the given Geometry intersects each feature of
+     * an already open shapefile.  The feature source is left open.
+     *
+     * @param geometryBuilder the GeometryBuilder from the current application
+     *                        settings, used to determine the coordinate
+     *                        system of the Geometry
+     * @param geom the Geometry to intersect with
+     * @param featureSource the open shapefile to read
+     * @return the intersection area and attributes of each intersecting feature
+     */
+    public static FeatureAreas readFeatureAreas(GeometryBuilder geometryBuilder, Geometry geom, SimpleFeatureSource featureSource) {
         try {
             FilterFactory2 ff = CommonFactoryFinder.getFilterFactory2(GeoTools.getDefaultHints());
             SimpleFeatureType schema = featureSource.getSchema();
@@ -111,7 +193,8 @@ public class ShapefileUtil {
 
             Query envelopeQuery = new Query(typeName, envelopefilter, Query.ALL_PROPERTIES);
 
-            ShapeAttributes result = null;
+            Map<String, Double> areas = Maps.newLinkedHashMap();
+            Map<String, Map<String, String>> attributes = Maps.newHashMap();
 //            log.debug("Querying features from ShapeFile.");
             SimpleFeatureCollection envelopeFeatures = featureSource.getFeatures(envelopeQuery);
             SimpleFeatureCollection features = envelopeFeatures.subCollection(shapefilter);
@@ -120,31 +203,52 @@ public class ShapefileUtil {
                 while(iter.hasNext()) {
 //                    log.debug("Reading feature from ShapeFile.");
                     SimpleFeature feature = iter.next();
-                    Map<String, String> attrs = readFeatureAttributes(feature);
-
                     Geometry featureShape = (Geometry) feature.getDefaultGeometry();
                     Geometry intersection = projectedGeom.intersection(featureShape);
-                    double intersectionArea = intersection.getArea();
-                    double representativeFraction = intersectionArea / geomArea;
-
-                    if(result == null || representativeFraction > result.getRepresentativeFraction()) {
-                        result = new ShapeAttributes(attrs, geom, representativeFraction);
-                    }
+                    areas.put(feature.getID(), intersection.getArea());
+                    attributes.put(feature.getID(), readFeatureAttributes(feature));
                 }
             } finally {
                 iter.close();
             }
 
-            if(result == null) {
-//                log.debug("No intersection found in the ShapeFile.");
-                return ShapeAttributes.emptyIntersection(geom);
-            }
-
-            return result;
+            return new FeatureAreas(geomArea, areas, attributes);
         } catch(IOException ex) {
             throw new SmartfireException("Error reading features from SummaryDataLayer", ex);
-        } finally {
-            featureSource.getDataStore().dispose();
+        }
+    }
+
+    /**
+     * Acquires a reference to a feature source for the shapefile at the
+     * given path that stays open, so that it can be shared by every read of
+     * the file, including concurrent reads from several threads.  If the
+     * file has been modified since it was opened, it is opened again; the
+     * old data store stays open until the reads that still hold it release
+     * their references.
+     *
+     * <p>Callers must call {@link SharedShapefile#release()} when they are
+     * done with the feature source, and must not dispose its data store.
+     *
+     * @param path the path of the shapefile
+     * @return a reference to a shared, open feature source
+     */
+    public static SharedShapefile acquireSharedShapefile(String path) {
+        long lastModified = new File(path).lastModified();
+        synchronized(sharedShapefiles) {
+            SharedShapefile shared = sharedShapefiles.get(path);
+            if(shared == null || shared.lastModified != lastModified) {
+                if(shared != null) {
+                    log.info("Reopening modified shapefile: {}", path);
+                    shared.retired = true;
+                    if(shared.references == 0) {
+                        shared.source.getDataStore().dispose();
+                    }
+                }
+                shared = new SharedShapefile(path, lastModified, openShapefile(path));
+                sharedShapefiles.put(path, shared);
+            }
+            shared.references++;
+            return shared;
         }
     }
 }
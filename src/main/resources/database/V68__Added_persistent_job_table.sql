@@ -0,0 +1,17 @@
+CREATE TABLE persistent_job (
+    id integer NOT NULL,
+    name character varying(100) NOT NULL,
+    type character varying(255) NOT NULL,
+    priority character varying(20) NOT NULL,
+    state character varying(20) NOT NULL,
+    parameters text NOT NULL,
+    upstream_ids text NOT NULL,
+    created_date timestamp without time zone NOT NULL,
+    CONSTRAINT persistent_job_pkey PRIMARY KEY (id)
+)
+WITH (
+  OIDS = FALSE
+)
+;
+
+CREATE SEQUENCE persistent_job_seq;
@@ -0,0 +1,4 @@
+ALTER TABLE job_history ADD COLUMN source_id integer;
+ALTER TABLE job_history ADD COLUMN cpu_time_ms bigint;
+ALTER TABLE job_history ADD COLUMN allocated_bytes bigint;
+ALTER TABLE job_history ADD COLUMN stage_timings text;
@@ -0,0 +1,2 @@
+ALTER TABLE fire ADD COLUMN modified_date timestamp without time zone NOT NULL DEFAULT '1970-01-01 00:00:00';
+ALTER TABLE event ADD COLUMN reconciled_date timestamp without time zone DEFAULT '1970-01-01 00:00:00';
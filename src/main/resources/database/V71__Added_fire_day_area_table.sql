@@ -0,0 +1,18 @@
+CREATE TABLE fire_day_area (
+    id integer NOT NULL,
+    fire_id integer,
+    fire_date date NOT NULL,
+    daily_area double precision NOT NULL,
+    num_clumps integer NOT NULL,
+    CONSTRAINT fire_day_area_pkey PRIMARY KEY (id),
+    CONSTRAINT fire_day_area_fire_id_fkey FOREIGN KEY (fire_id)
+        REFERENCES fire (id) ON DELETE CASCADE
+)
+WITH (
+  OIDS = FALSE
+)
+;
+
+CREATE INDEX fire_day_area_fire_id_idx ON fire_day_area (fire_id);
+
+CREATE SEQUENCE fire_day_area_seq;
@@ -0,0 +1,2 @@
+ALTER TABLE clump ADD COLUMN needs_association boolean NOT NULL DEFAULT true;
+UPDATE clump SET needs_association = false WHERE fire_id IS NOT NULL;
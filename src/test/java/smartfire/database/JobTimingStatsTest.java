@@ -0,0 +1,76 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.database;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import java.util.List;
+import java.util.Map;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+public class JobTimingStatsTest extends TestCase {
+
+    public JobTimingStatsTest(String testName) {
+        super(testName);
+    }
+
+    private static JobHistory newHistory(long runTimeMillis, Map<String, Long> stages) {
+        DateTime start = new DateTime(2014, 8, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+        JobHistory history = new JobHistory();
+        history.setType("smartfire.jobs.AssociationJob");
+        history.setStartDate(start);
+        history.setEndDate(start.plus(runTimeMillis));
+        history.setStageTimings(stages);
+        return history;
+    }
+
+    public void testPercentile() {
+        long[] values = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+        assertEquals(5, JobTimingStats.percentile(values, 50));
+        assertEquals(9, JobTimingStats.percentile(values, 90));
+        assertEquals(10, JobTimingStats.percentile(values, 100));
+        assertEquals(1, JobTimingStats.percentile(values, 0));
+        assertEquals(0, JobTimingStats.percentile(new long[0], 50));
+    }
+
+    public void testStageTimingsRoundTrip() {
+        Map<String, Long> stages = ImmutableMap.of("query", 12L, "association", 3400L);
+        JobHistory history = newHistory(5000, stages);
+        assertEquals("query=12,association=3400", history.getStageTimingsString());
+        assertEquals(stages, history.getStageTimings());
+    }
+
+    public void testStats() {
+        List<JobHistory> histories = Lists.newArrayList();
+        for(int i = 1; i <= 10; i++) {
+            Map<String, Long> stages = ImmutableMap.of("association", i * 100L);
+            histories.add(newHistory(i * 1000L, stages));
+        }
+        JobTimingStats stats = new JobTimingStats("smartfire.jobs.AssociationJob", "Test", histories);
+        assertEquals("AssociationJob", stats.getShortType());
+        assertEquals(10, stats.getNumJobs());
+        assertEquals(5000, stats.getMedianRunTimeMillis());
+        assertEquals(9000, stats.getP90RunTimeMillis());
+        assertEquals(10000, stats.getMaxRunTimeMillis());
+        assertEquals("", stats.getCpuTimeString());
+        assertEquals(1, stats.getStages().size());
+        assertEquals("association", stats.getStages().get(0).getName());
+        assertEquals(500, stats.getStages().get(0).getMedianMillis());
+    }
+}
@@ -0,0 +1,56 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.database;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class PersistentJobTest extends TestCase {
+
+    public PersistentJobTest(String testName) {
+        super(testName);
+    }
+
+    public void testParametersRoundTrip() {
+        Map<String, String> parameters = new LinkedHashMap<String, String>();
+        parameters.put("sourceId", "12");
+        parameters.put("intervals", "2012-07-01T00:00:00.000-07:00/2012-07-02T00:00:00.000-07:00,"
+                + "2012-07-02T00:00:00.000-07:00/2012-07-03T00:00:00.000-07:00");
+        parameters.put("odd & name=", "value with = and & and %");
+
+        PersistentJob record = new PersistentJob();
+        record.setParameters(parameters);
+        assertEquals(parameters, record.getParameters());
+    }
+
+    public void testEmptyParameters() {
+        PersistentJob record = new PersistentJob();
+        assertTrue(record.getParameters().isEmpty());
+        record.setParameters(Collections.<String, String>emptyMap());
+        assertTrue(record.getParameters().isEmpty());
+    }
+
+    public void testUpstreamIds() {
+        PersistentJob record = new PersistentJob();
+        assertTrue(record.getUpstreamIds().isEmpty());
+        record.setUpstreamIds(Arrays.asList(3, 17, 42));
+        assertEquals(Arrays.asList(3, 17, 42), record.getUpstreamIds());
+    }
+}
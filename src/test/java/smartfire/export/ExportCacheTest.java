@@ -0,0 +1,100 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import junit.framework.TestCase;
+
+public class ExportCacheTest extends TestCase {
+    public ExportCacheTest(String testName) {
+        super(testName);
+    }
+
+    public void testCachedUntilInvalidated() throws IOException {
+        ExportCache cache = new ExportCache();
+        assertNull(cache.get("stream:1", "csv"));
+
+        store(cache, "stream:1", "csv", "hello");
+        assertEquals("hello", read(cache.get("stream:1", "csv")));
+
+        cache.invalidate("stream:2");
+        assertEquals("hello", read(cache.get("stream:1", "csv")));
+
+        cache.invalidate("stream:1");
+        assertNull(cache.get("stream:1", "csv"));
+    }
+
+    public void testInvalidateAll() throws IOException {
+        ExportCache cache = new ExportCache();
+        store(cache, "stream:1", "csv", "a");
+        store(cache, "source:1", "csv", "b");
+        long before = cache.getVersion("source:9");
+        cache.invalidateAll();
+        assertNull(cache.get("stream:1", "csv"));
+        assertNull(cache.get("source:1", "csv"));
+        assertTrue(cache.getVersion("source:9") != before);
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    public void testETagChangesWithVersion() {
+        ExportCache cache = new ExportCache();
+        String tag1 = cache.getETag("stream:1", "kml", cache.getVersion("stream:1"));
+        assertEquals(tag1, cache.getETag("stream:1", "kml", cache.getVersion("stream:1")));
+        assertFalse(tag1.equals(cache.getETag("stream:1", "csv", cache.getVersion("stream:1"))));
+        cache.invalidate("stream:1");
+        assertFalse(tag1.equals(cache.getETag("stream:1", "kml", cache.getVersion("stream:1"))));
+    }
+
+    public void testStaleExportNotCached() throws IOException {
+        ExportCache cache = new ExportCache();
+        long version = cache.getVersion("stream:1");
+        ExportCache.Recorder recorder = cache.record(new ByteArrayOutputStream(), "stream:1", "csv", version, "text/csv");
+        recorder.write("old data".getBytes());
+        cache.invalidate("stream:1");
+        recorder.commit();
+        assertNull(cache.get("stream:1", "csv"));
+    }
+
+    public void testSizeLimit() throws IOException {
+        ExportCache cache = new ExportCache(12);
+        for(String key : new String[] { "a", "b", "c", "d", "e" }) {
+            store(cache, "stream:1", key, "xyz");
+        }
+        assertEquals(12, cache.getTotalBytes());
+        assertNull(cache.get("stream:1", "a"));
+        assertNotNull(cache.get("stream:1", "e"));
+
+        // Larger than a quarter of the cache, so not cached at all
+        store(cache, "stream:1", "f", "wxyz");
+        assertNull(cache.get("stream:1", "f"));
+    }
+
+    private static void store(ExportCache cache, String scope, String key, String content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExportCache.Recorder recorder = cache.record(out, scope, key, cache.getVersion(scope), "text/plain");
+        recorder.write(content.getBytes("UTF-8"));
+        recorder.commit();
+        assertEquals(content, out.toString("UTF-8"));
+    }
+
+    private static String read(ExportCache.Entry entry) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.writeTo(out);
+        return out.toString("UTF-8");
+    }
+}
@@ -0,0 +1,105 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.google.common.collect.Lists;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import junit.framework.TestCase;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.joda.time.DateTime;
+import smartfire.Config;
+import smartfire.gis.GeometryBuilder;
+
+public class GeoJSONExportMethodTest extends TestCase {
+    private GeometryFactory factory;
+    private GeometryBuilder geometryBuilder;
+
+    @Override
+    protected void setUp() {
+        factory = new GeometryFactory();
+        geometryBuilder = new GeometryBuilder(new Config());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        factory = null;
+        geometryBuilder = null;
+    }
+
+    public GeoJSONExportMethodTest(String testName) {
+        super(testName);
+    }
+
+    public void testCoordinateFormat() {
+        GeoJSONExportMethod.CoordinateFormat format = new GeoJSONExportMethod.CoordinateFormat(3);
+        assertEquals("-120.123", format.format(-120.12345));
+        assertEquals("45.1", format.format(45.1));
+        assertEquals("45.01", format.format(45.0099));
+        assertEquals("7", format.format(7.0));
+        assertEquals("0", format.format(-0.0001));
+        assertEquals("0.001", format.format(0.0005));
+    }
+
+    public void testParseParameters() {
+        assertEquals(GeoJSONExportMethod.DEFAULT_PRECISION, GeoJSONExportMethod.parsePrecision(null));
+        assertEquals(2, GeoJSONExportMethod.parsePrecision("2"));
+        assertEquals(GeoJSONExportMethod.MAX_PRECISION, GeoJSONExportMethod.parsePrecision("99"));
+        assertEquals(0.0, GeoJSONExportMethod.parseTolerance(""));
+        assertEquals(250.0, GeoJSONExportMethod.parseTolerance("250"));
+    }
+
+    public void testFeatureCollection() throws Exception {
+        List<Exportable> records = Lists.newArrayList();
+        records.add(new TestExportable("Point Fire", factory.createPoint(new Coordinate(-1500000, 200000)), new DateTime()));
+        records.add(new TestExportable("Polygon Fire", factory.createPoint(new Coordinate(-1400000, 250000)).buffer(5000, 32), new DateTime()));
+
+        JsonNode plain = export(records, 6, 0);
+        assertEquals("FeatureCollection", plain.get("type").getTextValue());
+        JsonNode features = plain.get("features");
+        assertEquals(2, features.size());
+
+        // Sorted by area, so the polygon comes first
+        JsonNode polygon = features.get(0);
+        assertEquals("Polygon", polygon.get("geometry").get("type").getTextValue());
+        assertEquals("Polygon Fire", polygon.get("properties").get("name").getTextValue());
+        JsonNode point = features.get(1).get("geometry");
+        assertEquals("Point", point.get("type").getTextValue());
+        double lon = point.get("coordinates").get(0).getDoubleValue();
+        double lat = point.get("coordinates").get(1).getDoubleValue();
+        assertTrue(lon > -180 && lon < -60);
+        assertTrue(lat > 20 && lat < 70);
+
+        JsonNode simplified = export(records, 6, 1000);
+        int plainPoints = polygon.get("geometry").get("coordinates").get(0).size();
+        int simplifiedPoints = simplified.get("features").get(0).get("geometry").get("coordinates").get(0).size();
+        assertTrue(simplifiedPoints < plainPoints);
+
+        JsonNode rounded = export(records, 2, 0);
+        String lonText = rounded.get("features").get(1).get("geometry").get("coordinates").get(0).asText();
+        assertTrue(lonText.length() - lonText.indexOf('.') - 1 <= 2);
+    }
+
+    private JsonNode export(List<Exportable> records, int precision, double tolerance) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GeoJSONExportMethod.writeGeoJson(out, geometryBuilder, records, precision, tolerance);
+        return new ObjectMapper().readTree(out.toString("UTF-8"));
+    }
+}
@@ -0,0 +1,231 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Polygon;
+import de.micromata.opengis.kml.v_2_2_0.Kml;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import junit.framework.TestCase;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import smartfire.Config;
+import smartfire.gis.GeometryBuilder;
+import smartfire.gis.GeometryEntity;
+
+public class KMLExportMethodTest extends TestCase {
+    private static final String NS = StreamingKmlWriter.KML_NAMESPACE;
+    private static final int BENCHMARK_SIZE = 10000;
+    private GeometryFactory factory;
+    private GeometryBuilder geometryBuilder;
+
+    @Override
+    protected void setUp() {
+        factory = new GeometryFactory();
+        geometryBuilder = new GeometryBuilder(new Config());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        factory = null;
+        geometryBuilder = null;
+    }
+
+    public KMLExportMethodTest(String testName) {
+        super(testName);
+    }
+
+    public void testStreamingMatchesObjectModel() throws Exception {
+        List<GeometryEntity> entities = Lists.newArrayList();
+        entities.add(entity("Point Fire", factory.createPoint(new Coordinate(-1500000, 200000))));
+        entities.add(entity("", factory.createPoint(new Coordinate(-1400000, 250000))));
+        entities.add(entity("Polygon Fire", polygonWithHole(-1200000, 300000)));
+        entities.add(entity("", factory.createMultiPolygon(new Polygon[] {
+            polygonWithHole(-1000000, 100000),
+            (Polygon) factory.createPoint(new Coordinate(-900000, 100000)).buffer(2000)
+        })));
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        KMLExportMethod.createKml(streamed, geometryBuilder, "Test Folder", entities);
+
+        ByteArrayOutputStream marshalled = new ByteArrayOutputStream();
+        JakKmlBuilder.createKmlDocument(geometryBuilder, "Test Folder", entities).marshal(marshalled);
+
+        Document expected = parse(marshalled.toByteArray());
+        Document actual = parse(streamed.toByteArray());
+
+        assertEquals("kml", actual.getDocumentElement().getLocalName());
+        assertEquals(NS, actual.getDocumentElement().getNamespaceURI());
+        assertEquals(texts(expected, "name"), texts(actual, "name"));
+        assertEquals(texts(expected, "styleUrl"), texts(actual, "styleUrl"));
+        assertEquals(texts(expected, "color"), texts(actual, "color"));
+        assertEquals(texts(expected, "altitudeMode"), texts(actual, "altitudeMode"));
+        assertEquals(count(expected, "Placemark"), count(actual, "Placemark"));
+        assertEquals(count(expected, "MultiGeometry"), count(actual, "MultiGeometry"));
+        assertEquals(count(expected, "innerBoundaryIs"), count(actual, "innerBoundaryIs"));
+
+        List<String> expectedCoords = texts(expected, "coordinates");
+        List<String> actualCoords = texts(actual, "coordinates");
+        assertEquals(expectedCoords.size(), actualCoords.size());
+        for(int i = 0; i < expectedCoords.size(); i++) {
+            assertEquals(tokens(expectedCoords.get(i)), tokens(actualCoords.get(i)));
+        }
+    }
+
+    public void testUnsupportedGeometry() throws Exception {
+        List<GeometryEntity> entities = Lists.newArrayList();
+        entities.add(entity("Line", factory.createLineString(new Coordinate[] {
+            new Coordinate(0, 0), new Coordinate(1, 1)
+        })));
+        try {
+            KMLExportMethod.createKml(new ByteArrayOutputStream(), geometryBuilder, "Test", entities);
+            fail("Expected an exception for LineString geometry");
+        } catch(smartfire.SmartfireException expected) {
+            // OK
+        }
+    }
+
+    /**
+     * Compares heap usage and time of the streaming writer against the JAK
+     * object model on 10,000 synthetic events.  This is slow, so it only runs
+     * when the "smartfire.benchmark" system property is set, e.g.:
+     * <pre>
+     *     mvn test -Dtest=KMLExportMethodTest -Dsmartfire.benchmark=true
+     * </pre>
+     */
+    public void testBenchmark() throws Exception {
+        if(System.getProperty("smartfire.benchmark") == null) {
+            return;
+        }
+        List<GeometryEntity> entities = Lists.newArrayListWithCapacity(BENCHMARK_SIZE);
+        for(int i = 0; i < BENCHMARK_SIZE; i++) {
+            double x = -2000000 + (i % 100) * 30000;
+            double y = -1000000 + (i / 100) * 25000;
+            entities.add(entity("Event " + i, polygonWithHole(x, y)));
+        }
+
+        // Warm up both code paths so that class loading isn't measured
+        List<GeometryEntity> warmup = entities.subList(0, 100);
+        KMLExportMethod.createKml(ByteStreams.nullOutputStream(), geometryBuilder, "Warmup", warmup);
+        JakKmlBuilder.createKmlDocument(geometryBuilder, "Warmup", warmup).marshal(ByteStreams.nullOutputStream());
+
+        resetPeakHeap();
+        long baseline = currentHeap();
+        long started = System.nanoTime();
+        CountingOutputStream jakOut = new CountingOutputStream(ByteStreams.nullOutputStream());
+        Kml kml = JakKmlBuilder.createKmlDocument(geometryBuilder, "Benchmark", entities);
+        kml.marshal(jakOut);
+        long jakMillis = (System.nanoTime() - started) / 1000000;
+        long jakPeak = peakHeap() - baseline;
+        kml = null;
+
+        resetPeakHeap();
+        baseline = currentHeap();
+        started = System.nanoTime();
+        CountingOutputStream streamOut = new CountingOutputStream(ByteStreams.nullOutputStream());
+        KMLExportMethod.createKml(streamOut, geometryBuilder, "Benchmark", entities);
+        long streamMillis = (System.nanoTime() - started) / 1000000;
+        long streamPeak = peakHeap() - baseline;
+
+        System.out.println(String.format("KML export of %d events:", BENCHMARK_SIZE));
+        System.out.println(String.format("  JAK marshal: %6d ms, peak heap +%6d KB, %d bytes",
+                jakMillis, jakPeak / 1024, jakOut.getCount()));
+        System.out.println(String.format("  StAX stream: %6d ms, peak heap +%6d KB, %d bytes",
+                streamMillis, streamPeak / 1024, streamOut.getCount()));
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long currentHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long peakHeap() {
+        long total = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    private Polygon polygonWithHole(double x, double y) {
+        Polygon outer = (Polygon) factory.createPoint(new Coordinate(x, y)).buffer(10000, 4);
+        Geometry hole = factory.createPoint(new Coordinate(x, y)).buffer(2000, 2);
+        return (Polygon) outer.difference(hole);
+    }
+
+    private static Document parse(byte[] bytes) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        DocumentBuilder builder = dbf.newDocumentBuilder();
+        return builder.parse(new ByteArrayInputStream(bytes));
+    }
+
+    private static int count(Document doc, String tagName) {
+        return doc.getElementsByTagNameNS(NS, tagName).getLength();
+    }
+
+    private static List<String> texts(Document doc, String tagName) {
+        List<String> result = Lists.newArrayList();
+        NodeList nodes = doc.getElementsByTagNameNS(NS, tagName);
+        for(int i = 0; i < nodes.getLength(); i++) {
+            result.add(((Element) nodes.item(i)).getTextContent().trim());
+        }
+        return result;
+    }
+
+    private static List<String> tokens(String coordinates) {
+        return Arrays.asList(coordinates.trim().split("\\s+"));
+    }
+
+    private static GeometryEntity entity(final String name, final Geometry shape) {
+        return new GeometryEntity() {
+            @Override
+            public Geometry getShape() {
+                return shape;
+            }
+
+            @Override
+            public String getShapeName() {
+                return name;
+            }
+        };
+    }
+}
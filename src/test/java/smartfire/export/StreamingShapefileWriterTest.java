@@ -0,0 +1,166 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.MultiPolygon;
+import com.vividsolutions.jts.geom.Polygon;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.joda.time.DateTime;
+import org.opengis.feature.simple.SimpleFeature;
+import smartfire.Config;
+import smartfire.gis.GeometryBuilder;
+import smartfire.util.ShapefileUtil;
+
+public class StreamingShapefileWriterTest extends TestCase {
+    private GeometryFactory factory;
+    private GeometryBuilder geometryBuilder;
+    private File folder;
+
+    @Override
+    protected void setUp() {
+        factory = new GeometryFactory();
+        geometryBuilder = new GeometryBuilder(new Config());
+        folder = new File(System.getProperty("java.io.tmpdir"), UUID.randomUUID().toString());
+        folder.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(folder);
+        factory = null;
+        geometryBuilder = null;
+    }
+
+    public StreamingShapefileWriterTest(String testName) {
+        super(testName);
+    }
+
+    public void testPolygonRoundTrip() throws Exception {
+        List<Exportable> records = Lists.newArrayList();
+        records.add(new TestExportable("Small", circle(-1500000, 200000, 1000), new DateTime(2012, 8, 1, 0, 0, 0, 0)));
+        records.add(new TestExportable("Large", circle(-1400000, 250000, 5000), new DateTime(2012, 8, 2, 0, 0, 0, 0)));
+        records.add(new TestExportable("Multi", factory.createMultiPolygon(new Polygon[] {
+            circle(-1000000, 100000, 2000),
+            circle(-900000, 100000, 2000)
+        }), new DateTime(2012, 8, 3, 0, 0, 0, 0)));
+
+        List<String> names = readNames(writeAndOpen(records));
+
+        // Rows are exported largest first
+        assertEquals(Lists.newArrayList("Large", "Multi", "Small"), names);
+    }
+
+    public void testZipEntries() throws Exception {
+        List<Exportable> records = Lists.newArrayList();
+        records.add(new TestExportable("Point", factory.createPoint(new Coordinate(-1500000, 200000)), new DateTime()));
+        byte[] zip = write(records);
+
+        Set<String> entries = Sets.newHashSet();
+        ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip));
+        try {
+            ZipEntry entry;
+            while((entry = in.getNextEntry()) != null) {
+                entries.add(entry.getName());
+            }
+        } finally {
+            in.close();
+        }
+        assertEquals(Sets.newHashSet("test.shp", "test.shx", "test.dbf", "test.prj"), entries);
+    }
+
+    public void testEmptyRows() throws Exception {
+        List<Exportable> records = Lists.newArrayList();
+        try {
+            write(records);
+            fail("Expected an exception for an empty export");
+        } catch(smartfire.SmartfireException expected) {
+            // OK
+        }
+    }
+
+    private byte[] write(List<Exportable> records) throws IOException {
+        Map<String, Class<?>> memberMap = Exports.getMemberMapAllFields(records);
+        Iterable<ExportRow> rows = Exports.iterateExportRows(geometryBuilder, records, Lists.newArrayList(memberMap.keySet()));
+        StreamingShapefileWriter writer = new StreamingShapefileWriter("test", geometryBuilder.getCoordSysWKT());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeZip(out, memberMap, rows);
+        return out.toByteArray();
+    }
+
+    private SimpleFeatureSource writeAndOpen(List<Exportable> records) throws IOException {
+        ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(write(records)));
+        try {
+            ZipEntry entry;
+            while((entry = in.getNextEntry()) != null) {
+                OutputStream out = new FileOutputStream(new File(folder, entry.getName()));
+                try {
+                    IOUtils.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            }
+        } finally {
+            in.close();
+        }
+        return ShapefileUtil.openShapefile(new File(folder, "test.shp").getPath());
+    }
+
+    private static List<String> readNames(SimpleFeatureSource source) throws IOException {
+        List<String> names = Lists.newArrayList();
+        try {
+            SimpleFeatureIterator features = source.getFeatures().features();
+            try {
+                while(features.hasNext()) {
+                    SimpleFeature feature = features.next();
+                    assertTrue(feature.getDefaultGeometry() instanceof MultiPolygon);
+                    names.add((String) feature.getAttribute("name"));
+                }
+            } finally {
+                features.close();
+            }
+        } finally {
+            source.getDataStore().dispose();
+        }
+        return names;
+    }
+
+    private Polygon circle(double x, double y, double radius) {
+        Geometry geom = factory.createPoint(new Coordinate(x, y)).buffer(radius);
+        return (Polygon) geom;
+    }
+}
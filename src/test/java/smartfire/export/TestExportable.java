@@ -0,0 +1,95 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.export;
+
+import com.google.common.collect.ImmutableMap;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import java.util.Map;
+import org.joda.time.DateTime;
+
+/**
+ * Simple Exportable implementation for use in export tests.
+ */
+class TestExportable implements Exportable {
+    private final String name;
+    private final Geometry shape;
+    private final DateTime date;
+
+    TestExportable(String name, Geometry shape, DateTime date) {
+        this.name = name;
+        this.shape = shape;
+        this.date = date;
+    }
+
+    @Override
+    public Map<String, Class<?>> getExtraExportMemberMap() {
+        return ImmutableMap.<String, Class<?>>of("name", String.class, "num_points", Integer.class);
+    }
+
+    @Override
+    public Map<String, Class<?>> getBasicMemberMap() {
+        return ImmutableMap.<String, Class<?>>of("name", String.class);
+    }
+
+    @Override
+    public Object getExtraExportMember(String key) {
+        if("name".equals(key)) {
+            return name;
+        } else if("num_points".equals(key)) {
+            return shape.getNumPoints();
+        }
+        return null;
+    }
+
+    @Override
+    public double getArea() {
+        return shape.getArea();
+    }
+
+    @Override
+    public DateTime getStartDateTime() {
+        return date;
+    }
+
+    @Override
+    public DateTime getEndDateTime() {
+        return date;
+    }
+
+    @Override
+    public Double getExportPointX() {
+        Point centroid = shape.getCentroid();
+        return centroid.getX();
+    }
+
+    @Override
+    public Double getExportPointY() {
+        Point centroid = shape.getCentroid();
+        return centroid.getY();
+    }
+
+    @Override
+    public Geometry getShape() {
+        return shape;
+    }
+
+    @Override
+    public String getShapeName() {
+        return name;
+    }
+}
@@ -0,0 +1,87 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.gis;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import java.util.Map;
+import junit.framework.TestCase;
+
+public class FeatureAreasTest extends TestCase {
+    private Geometry geom;
+
+    public FeatureAreasTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() {
+        geom = new GeometryFactory().createPoint(new Coordinate(0, 0)).buffer(10);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        geom = null;
+    }
+
+    public void testEmptyIntersection() {
+        ShapeAttributes result = FeatureAreas.emptyIntersection(100).toShapeAttributes(geom);
+        assertTrue(result.isEmpty());
+        assertEquals(0.0, result.getRepresentativeFraction());
+    }
+
+    public void testLargestFeatureWins() {
+        Map<String, Double> areas = Maps.newLinkedHashMap();
+        areas.put("a", 20.0);
+        areas.put("b", 60.0);
+        FeatureAreas featureAreas = new FeatureAreas(100, areas, attributes("a", "b"));
+        ShapeAttributes result = featureAreas.toShapeAttributes(geom);
+        assertEquals("b", result.get("name"));
+        assertEquals(0.6, result.getRepresentativeFraction(), 1e-9);
+    }
+
+    public void testPlusAddsAreasOfSameFeature() {
+        Map<String, Double> before = Maps.newLinkedHashMap();
+        before.put("a", 40.0);
+        before.put("b", 50.0);
+        Map<String, Double> growth = Maps.newLinkedHashMap();
+        growth.put("a", 30.0);
+        growth.put("c", 20.0);
+        FeatureAreas combined = new FeatureAreas(90, before, attributes("a", "b"))
+                .plus(new FeatureAreas(50, growth, attributes("a", "c")));
+
+        assertEquals(140.0, combined.getGeomArea());
+        assertEquals(70.0, combined.getAreas().get("a"));
+        assertEquals(50.0, combined.getAreas().get("b"));
+        assertEquals(20.0, combined.getAreas().get("c"));
+        ShapeAttributes result = combined.toShapeAttributes(geom);
+        assertEquals("a", result.get("name"));
+        assertEquals(0.5, result.getRepresentativeFraction(), 1e-9);
+    }
+
+    private static Map<String, Map<String, String>> attributes(String... featureIds) {
+        Map<String, Map<String, String>> result = Maps.newHashMap();
+        for(String featureId : featureIds) {
+            Map<String, String> attrs = ImmutableMap.of("name", featureId);
+            result.put(featureId, attrs);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.gis;
+
+import com.sti.justice.util.FileUtil;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKTReader;
+import java.io.File;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.apache.commons.io.FileUtils;
+
+public class RenderCacheTest extends TestCase {
+    private static final String SQUARE = "POLYGON ((0 0, 10 0, 10 10, 0 10, 0 0))";
+    private static final String TRIANGLE = "POLYGON ((0 0, 10 0, 5 10, 0 0))";
+
+    public RenderCacheTest(String testName) {
+        super(testName);
+    }
+
+    private static Geometry parse(String wkt) throws Exception {
+        return new WKTReader().read(wkt);
+    }
+
+    public void testFingerprint() throws Exception {
+        assertEquals(GeometryFingerprint.of(parse(SQUARE)), GeometryFingerprint.of(parse(SQUARE)));
+        assertFalse(GeometryFingerprint.of(parse(SQUARE)) == GeometryFingerprint.of(parse(TRIANGLE)));
+    }
+
+    public void testDigest() throws Exception {
+        String square = GeometryFingerprint.digest(parse(SQUARE));
+        assertEquals(40, square.length());
+        assertEquals(square, GeometryFingerprint.digest(parse(SQUARE)));
+        assertFalse(square.equals(GeometryFingerprint.digest(parse(TRIANGLE))));
+    }
+
+    public void testKeyChangesWithShape() throws Exception {
+        RenderCache.Key square = RenderCache.keyFor("event", 1L, 32, 32, parse(SQUARE));
+        RenderCache.Key triangle = RenderCache.keyFor("event", 1L, 32, 32, parse(TRIANGLE));
+        assertEquals(square.getName(), triangle.getName());
+        assertFalse(square.getETag().equals(triangle.getETag()));
+        assertFalse(square.getETag().equals(RenderCache.keyFor("event", 1L, 300, 300, parse(SQUARE)).getETag()));
+    }
+
+    public void testMemoryCache() throws Exception {
+        RenderCache cache = new RenderCache();
+        Geometry square = parse(SQUARE);
+        RenderCache.Key key = RenderCache.keyFor("fire", 7, 32, 32, square);
+        assertNull(cache.get(key));
+
+        byte[] png = cache.getOrRender(key, square);
+        assertTrue(png.length > 0);
+        assertSame(png, cache.get(key));
+        assertEquals(png.length, cache.getTotalBytes());
+
+        Geometry triangle = parse(TRIANGLE);
+        assertNull(cache.get(RenderCache.keyFor("fire", 7, 32, 32, triangle)));
+    }
+
+    public void testMemoryLimit() throws Exception {
+        Geometry square = parse(SQUARE);
+        byte[] png = RenderCache.render(32, 32, square);
+        RenderCache cache = new RenderCache(png.length, null);
+        RenderCache.Key key1 = RenderCache.keyFor("event", 1L, 32, 32, square);
+        RenderCache.Key key2 = RenderCache.keyFor("event", 2L, 32, 32, square);
+        cache.getOrRender(key1, square);
+        cache.getOrRender(key2, square);
+        assertNull(cache.get(key1));
+        assertNotNull(cache.get(key2));
+        assertEquals(png.length, cache.getTotalBytes());
+    }
+
+    public void testDiskCache() throws Exception {
+        File dir = FileUtil.createTempDir();
+        try {
+            Geometry square = parse(SQUARE);
+            RenderCache.Key key = RenderCache.keyFor("event", 3L, 32, 32, square);
+            byte[] png = new RenderCache(RenderCache.DEFAULT_MAX_BYTES, dir).getOrRender(key, square);
+
+            // A new cache (e.g. after a restart) finds the image on disk
+            RenderCache restarted = new RenderCache(RenderCache.DEFAULT_MAX_BYTES, dir);
+            assertTrue(Arrays.equals(png, restarted.get(key)));
+
+            // ...but not once the shape has changed
+            Geometry triangle = parse(TRIANGLE);
+            RenderCache.Key newKey = RenderCache.keyFor("event", 3L, 32, 32, triangle);
+            assertNull(restarted.get(newKey));
+            byte[] newPng = restarted.getOrRender(newKey, triangle);
+            assertTrue(Arrays.equals(newPng, new RenderCache(RenderCache.DEFAULT_MAX_BYTES, dir).get(newKey)));
+            assertEquals(1, dir.listFiles().length);
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+}
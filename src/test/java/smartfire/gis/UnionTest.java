@@ -98,6 +98,48 @@ public class UnionTest extends TestCase {
         }
     }
 
+    public void testCascadedUnionSingleShape() {
+        Geometry shape = circleAtPoint(10, 10, 5);
+        Geometry result = Union.cascadedUnion(Arrays.asList(shape));
+        assertSame(shape, result);
+    }
+
+    public void testCascadedUnionManyShapes() {
+        List<Geometry> shapes = Lists.newArrayList();
+        for(int i = 0; i < 50; i++) {
+            shapes.add(circleAtPoint(10 + (i * 8), 10, 5));
+        }
+        Geometry cascaded = Union.cascadedUnion(shapes);
+        Geometry expected = Union.unionAll(shapes);
+        assertEquals(1, cascaded.getNumGeometries());
+        assertEquals(expected.getEnvelopeInternal(), cascaded.getEnvelopeInternal());
+        assertEquals(expected.getArea(), cascaded.getArea(), 1e-6);
+    }
+
+    public void testCascadedUnionEntities() {
+        List<TestEntity> entities = Lists.newArrayList();
+        entities.add(circleAtPointEntity(10, 10, 5));
+        entities.add(circleAtPointEntity(10, 20, 5));
+        entities.add(circleAtPointEntity(10, 14, 5));
+        Geometry geom = Union.cascadedUnionShapes(entities);
+        Envelope env = geom.getEnvelopeInternal();
+        assertEquals(1, geom.getNumGeometries());
+        assertEquals(5.0, env.getMinX());
+        assertEquals(15.0, env.getMaxX());
+        assertEquals(5.0, env.getMinY());
+        assertEquals(25.0, env.getMaxY());
+    }
+
+    public void testCascadedUnionEmptyListThrowsIllegalArgumentException() {
+        Iterable<Geometry> emptyList = Collections.emptyList();
+        try {
+            Geometry result = Union.cascadedUnion(emptyList);
+            fail("Expected an exception, but instead got: " + result);
+        } catch(IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+
     public void testMultiPolygon() {
         List<Geometry> shapes = Lists.newArrayList();
         shapes.add(circleAtPoint(10, 10, 5));
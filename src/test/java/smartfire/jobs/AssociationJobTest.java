@@ -0,0 +1,334 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.joda.time.ReadableDateTime;
+import smartfire.database.Clump;
+import smartfire.database.ClumpDao;
+import smartfire.database.DefaultWeighting;
+import smartfire.database.Fire;
+import smartfire.database.FireDao;
+import smartfire.database.RawData;
+import smartfire.database.Source;
+import smartfire.func.assoc.DefaultAssociationMethod;
+import smartfire.func.firetype.DefaultFireTypeMethod;
+import smartfire.func.probability.DefaultProbabilityMethod;
+import smartfire.queue.ProgressReporter;
+import static org.mockito.Mockito.*;
+
+public class AssociationJobTest extends TestCase {
+    private static final DateTime DAY0 = new DateTime(2012, 8, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+    private static final DateTime DAY1 = DAY0.plusDays(1);
+    private static final DateTime DAY2 = DAY0.plusDays(2);
+    private static final DateTime DAY3 = DAY0.plusDays(3);
+    private GeometryFactory factory;
+    private Source source;
+
+    public AssociationJobTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() {
+        factory = new GeometryFactory();
+        source = new Source("Test");
+        source.setAssocMethod(DefaultAssociationMethod.class.getName());
+        source.put("numForwardDays", "1");
+        source.put("numBackwardDays", "2");
+        source.put("sizeThreshold", "1000000");
+        source.put("smallFireDistance", "500.0");
+        source.put("largeFireDistance", "1000.0");
+        source.setProbabilityMethod(DefaultProbabilityMethod.class.getName());
+        DefaultWeighting weighting = new DefaultWeighting();
+        weighting.setFalseAlarmRate(0.2);
+        source.setDefaultWeighting(weighting);
+        source.setFireTypeMethod(DefaultFireTypeMethod.class.getName());
+        source.put("fireType", "WF");
+    }
+
+    @Override
+    protected void tearDown() {
+        factory = null;
+        source = null;
+    }
+
+    public void testSerialAssociation() throws Exception {
+        Scenario scenario = new Scenario();
+        scenario.run(1);
+
+        // c2 reaches both F0 (through c0) and F1 (through c1), merging them
+        Fire merged = scenario.clumps.get(2).getFire();
+        assertNotNull(merged);
+        assertSame(merged, scenario.clumps.get(0).getFire());
+        assertSame(merged, scenario.clumps.get(1).getFire());
+        assertSame(merged, scenario.clumps.get(6).getFire());
+        assertSame(merged, scenario.existingClumps.get(0).getFire());
+        assertSame(merged, scenario.existingClumps.get(1).getFire());
+        assertFalse(scenario.fireDao.fires.contains(scenario.existingFires.get(0)));
+        assertFalse(scenario.fireDao.fires.contains(scenario.existingFires.get(1)));
+        assertTrue(scenario.fireDao.fires.contains(merged));
+
+        // c3 and c4 start a new fire together, which c7 then merges with F4
+        // on the second day, and c8 joins the result
+        Fire remerged = scenario.clumps.get(3).getFire();
+        assertNotSame(merged, remerged);
+        assertSame(remerged, scenario.clumps.get(4).getFire());
+        assertSame(remerged, scenario.clumps.get(7).getFire());
+        assertSame(remerged, scenario.clumps.get(8).getFire());
+        assertSame(remerged, scenario.existingClumps.get(4).getFire());
+        assertFalse(scenario.fireDao.fires.contains(scenario.existingFires.get(4)));
+        assertTrue(scenario.fireDao.fires.contains(remerged));
+
+        // c5 joins F2, and F3 is left alone
+        assertSame(scenario.existingFires.get(2), scenario.clumps.get(5).getFire());
+        assertEquals(1, scenario.existingFires.get(3).getClumps().size());
+        assertEquals(4, scenario.fireDao.fires.size());
+    }
+
+    public void testPartitionedAssociationMatchesSerial() throws Exception {
+        Scenario serial = new Scenario();
+        serial.run(1);
+        Scenario partitioned = new Scenario();
+        partitioned.run(4);
+
+        assertEquals(serial.describeClumps(), partitioned.describeClumps());
+        assertEquals(serial.describeFires(), partitioned.describeFires());
+        assertEquals(serial.describeDeletedFires(), partitioned.describeDeletedFires());
+    }
+
+    public void testBatchedAssociationMatchesOneJobPerInterval() throws Exception {
+        Scenario batched = new Scenario();
+        batched.run(1);
+        Scenario separate = new Scenario();
+        separate.runEachInterval(1);
+
+        assertEquals(separate.describeClumps(), batched.describeClumps());
+        assertEquals(separate.describeFires(), batched.describeFires());
+        assertEquals(separate.describeDeletedFires(), batched.describeDeletedFires());
+    }
+
+    public void testPartitionedBatchedAssociationMatchesOneJobPerInterval() throws Exception {
+        Scenario batched = new Scenario();
+        batched.run(4);
+        Scenario separate = new Scenario();
+        separate.runEachInterval(4);
+
+        assertEquals(separate.describeClumps(), batched.describeClumps());
+        assertEquals(separate.describeFires(), batched.describeFires());
+        assertEquals(separate.describeDeletedFires(), batched.describeDeletedFires());
+    }
+
+    /**
+     * Existing fires F0 to F4, and clumps c0 to c4 on the first day and c5
+     * to c8 on the second, all 100 m squares unless noted.  Each call
+     * builds the same layout out of new objects.
+     */
+    private class Scenario {
+        private final List<Clump> clumps = Lists.newArrayList();
+        private final List<Clump> existingClumps = Lists.newArrayList();
+        private final List<Fire> existingFires = Lists.newArrayList();
+        private final Map<Clump, Integer> clumpIndexes = new IdentityHashMap<Clump, Integer>();
+        private final StubFireDao fireDao = new StubFireDao();
+        private final ClumpDao clumpDao = mock(ClumpDao.class);
+
+        Scenario() {
+            existingFire(0, 0);
+            existingFire(2000, 0);
+            existingFire(0, 100000);
+            existingFire(50000, 50000);
+            existingFire(101000, 0);
+
+            clump(DAY1, 300, 0, 100);
+            clump(DAY1, 1700, 0, 100);
+            clump(DAY1, 800, 0, 500);
+            clump(DAY1, 100000, 0, 100);
+            clump(DAY1, 100300, 0, 100);
+            clump(DAY2, 200, 100000, 100);
+            clump(DAY2, 1400, 0, 100);
+            clump(DAY2, 100600, 0, 100);
+            clump(DAY2, 99700, 0, 100);
+
+            when(clumpDao.getByDate(source, DAY1, DAY2)).thenReturn(clumps.subList(0, 5));
+            when(clumpDao.getByDate(source, DAY2, DAY3)).thenReturn(clumps.subList(5, 9));
+        }
+
+        /**
+         * Associates both days in a single batched job.
+         */
+        void run(int numThreads) throws Exception {
+            run(numThreads, Arrays.asList(new Interval(DAY1, DAY2), new Interval(DAY2, DAY3)));
+        }
+
+        /**
+         * Associates each day in a job of its own.
+         */
+        void runEachInterval(int numThreads) throws Exception {
+            run(numThreads, Arrays.asList(new Interval(DAY1, DAY2)));
+            run(numThreads, Arrays.asList(new Interval(DAY2, DAY3)));
+        }
+
+        private void run(int numThreads, List<Interval> intervals) throws Exception {
+            AssociationJob job = new AssociationJob(null, clumpDao, fireDao, source, intervals,
+                    false, null, 1, numThreads, false);
+            job.execute(new ProgressReporter());
+        }
+
+        private void existingFire(double x, double y) {
+            Clump clump = newClump(DAY0, x, y, 100);
+            clump.markAssociated();
+            clumpIndexes.put(clump, -1 - existingClumps.size());
+            existingClumps.add(clump);
+            Fire fire = new Fire();
+            fire.setSource(source);
+            fire.addClump(clump);
+            fire.setArea(clump.getArea());
+            fire.setProbability(0.8);
+            fire.setFireType("WF");
+            existingFires.add(fire);
+            fireDao.save(fire);
+        }
+
+        private void clump(DateTime day, double x, double y, double width) {
+            Clump clump = newClump(day, x, y, width);
+            clumpIndexes.put(clump, clumps.size());
+            clumps.add(clump);
+        }
+
+        private Clump newClump(DateTime day, double x, double y, double width) {
+            Clump clump = new Clump();
+            clump.setSource(source);
+            clump.setStartDate(day.plusHours(1));
+            clump.setEndDate(day.plusHours(2));
+            clump.setShape(factory.toGeometry(new Envelope(x, x + width, y, y + 100)));
+            clump.setArea(width * 100);
+            // Give each record its own attribute, so that the attributes of
+            // a merged Fire don't depend on the order it was merged in
+            RawData record = new RawData();
+            record.put("clump " + x + "," + y, day.toLocalDate().toString());
+            clump.addRawDataRecord(record);
+            return clump;
+        }
+
+        /**
+         * Describes each clump, in order, by the clumps that share its Fire.
+         */
+        List<String> describeClumps() {
+            List<String> result = Lists.newArrayList();
+            for(Clump clump : clumps) {
+                result.add(describe(clump.getFire()));
+            }
+            return result;
+        }
+
+        /**
+         * Describes the Fires left in the database, in a fixed order.
+         */
+        Set<String> describeFires() {
+            Set<String> result = Sets.newTreeSet();
+            for(Fire fire : fireDao.fires) {
+                result.add(describe(fire));
+            }
+            return result;
+        }
+
+        /**
+         * Gets the indexes of the existing Fires that were merged away.
+         */
+        List<Integer> describeDeletedFires() {
+            List<Integer> result = Lists.newArrayList();
+            for(int i = 0; i < existingFires.size(); i++) {
+                if(fireDao.deleted.contains(existingFires.get(i))) {
+                    result.add(i);
+                }
+            }
+            return result;
+        }
+
+        private String describe(Fire fire) {
+            if(fire == null) {
+                return "none";
+            }
+            Set<Integer> members = Sets.newTreeSet();
+            for(Clump clump : fire.getClumps()) {
+                members.add(clumpIndexes.get(clump));
+            }
+            return members + " area=" + fire.getArea()
+                    + " probability=" + fire.getProbability()
+                    + " type=" + fire.getFireType()
+                    + " attributes=" + new TreeMap<String, String>(fire);
+        }
+    }
+
+    /**
+     * Keeps Fires in memory in place of the database.  Like the
+     * EntityManager, it assigns each Fire an id when it is saved and always
+     * hands out the same instance for the same record.
+     */
+    private static class StubFireDao extends FireDao {
+        private final Set<Fire> fires = Sets.newLinkedHashSet();
+        private final Set<Fire> deleted = Sets.newHashSet();
+        private int nextId = 1;
+
+        StubFireDao() {
+            super(null);
+        }
+
+        @Override
+        public List<Fire> getByDate(Source source, ReadableDateTime start, ReadableDateTime end) {
+            return Lists.newArrayList(fires);
+        }
+
+        @Override
+        public void save(Fire fire) {
+            if(fire.getId() == null) {
+                try {
+                    Field id = Fire.class.getDeclaredField("id");
+                    id.setAccessible(true);
+                    id.set(fire, nextId++);
+                } catch(Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            fires.add(fire);
+        }
+
+        @Override
+        public void delete(Fire fire) {
+            if(fire.getId() == null) {
+                // Removing a Fire that was never saved is a no-op
+                return;
+            }
+            assertTrue("Fire #" + fire.getId() + " deleted twice", fires.remove(fire));
+            deleted.add(fire);
+        }
+    }
+}
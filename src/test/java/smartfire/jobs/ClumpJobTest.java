@@ -0,0 +1,142 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.Lists;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import smartfire.database.Clump;
+import smartfire.database.ClumpDao;
+import smartfire.database.RawData;
+import smartfire.database.RawDataDao;
+import smartfire.database.Source;
+import smartfire.func.ClumpMethod;
+import static org.mockito.Mockito.*;
+
+public class ClumpJobTest extends TestCase {
+    private ClumpDao clumpDao;
+    private ClumpJob job;
+
+    public ClumpJobTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() {
+        clumpDao = mock(ClumpDao.class);
+        DateTime start = new DateTime(2012, 8, 1, 0, 0, 0, 0);
+        job = new ClumpJob(null, mock(RawDataDao.class), clumpDao, mock(Source.class),
+                start, start.plusDays(1), true);
+    }
+
+    @Override
+    protected void tearDown() {
+        clumpDao = null;
+        job = null;
+    }
+
+    public void testMergesIntoClumpWithMostRecords() {
+        RawData r1 = record("r1");
+        RawData r2 = record("r2");
+        RawData r3 = record("r3");
+        RawData r4 = record("r4");
+        Clump a = clump(r1, r2);
+        Clump b = clump(r3);
+        Clump added = clump(r4);
+        a.markAssociated();
+        b.markAssociated();
+
+        ClumpMethod method = new StubClumpMethod(Arrays.asList(r3, r1, r2, r4));
+        int numUpdated = job.mergeGroup(method, Arrays.asList(a, b), Arrays.asList(added));
+
+        assertEquals(1, numUpdated);
+        assertEquals(4, a.getRawData().size());
+        assertTrue(a.needsAssociation());
+        assertTrue(b.getRawData().isEmpty());
+        verify(clumpDao).delete(b);
+        verify(clumpDao, never()).delete(a);
+        verify(clumpDao, never()).save(any(Clump.class));
+    }
+
+    public void testEachExistingClumpIsTargetedOnce() {
+        RawData r1 = record("r1");
+        RawData r2 = record("r2");
+        RawData r3 = record("r3");
+        Clump a = clump(r1, r2);
+        Clump b = clump(r3);
+        a.markAssociated();
+        b.markAssociated();
+
+        ClumpMethod method = new StubClumpMethod(Arrays.asList(r1), Arrays.asList(r2), Arrays.asList(r3));
+        int numUpdated = job.mergeGroup(method, Arrays.asList(a, b), Collections.<Clump>emptyList());
+
+        assertEquals(3, numUpdated);
+        assertEquals(Arrays.asList(r1), a.getRawData());
+        assertEquals(Arrays.asList(r3), b.getRawData());
+        assertTrue(a.needsAssociation());
+        verify(clumpDao, times(1)).save(any(Clump.class));
+        verify(clumpDao, never()).delete(any(Clump.class));
+    }
+
+    public void testNewRecordsOnlyGetNoTarget() {
+        RawData r1 = record("r1");
+        RawData r2 = record("r2");
+        Clump a = clump(r1);
+        Clump reclumped = clump(r2);
+        assertNull(ClumpJob.chooseTarget(reclumped, Collections.singletonMap(r1, a),
+                Collections.<Clump>emptySet()));
+    }
+
+    private static RawData record(String name) {
+        // RawData compares as a Map, so give each record distinct attributes
+        RawData record = new RawData();
+        record.put("name", name);
+        return record;
+    }
+
+    private static Clump clump(RawData... records) {
+        Clump clump = new Clump();
+        clump.addRawDataRecords(Arrays.asList(records));
+        return clump;
+    }
+
+    /**
+     * Re-clumps records into fixed groups, creating new unsaved Clumps.
+     */
+    private static class StubClumpMethod implements ClumpMethod {
+        private final List<List<RawData>> groups;
+
+        StubClumpMethod(List<RawData>... groups) {
+            this.groups = Arrays.asList(groups);
+        }
+
+        @Override
+        public Collection<Clump> clump(Iterable<RawData> rawData) {
+            List<Clump> result = Lists.newArrayList();
+            for(List<RawData> group : groups) {
+                Clump clump = new Clump();
+                clump.addRawDataRecords(group);
+                result.add(clump);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.Lists;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import smartfire.database.ReconciliationStream;
+import smartfire.queue.Job;
+import smartfire.queue.JobPriority;
+import smartfire.queue.JobQueue;
+import smartfire.queue.ProgressReporter;
+import smartfire.queue.QueuedJob;
+import static org.mockito.Mockito.*;
+
+public class FetchRoundTest extends TestCase {
+    private static final DateTime DAY1 = new DateTime(2012, 8, 1, 0, 0, 0, 0);
+    private static final DateTime DAY2 = DAY1.plusDays(1);
+    private static final DateTime DAY3 = DAY1.plusDays(2);
+    private JobQueue queue;
+    private RecordingScheduler scheduler;
+    private FetchRound round;
+    private CountDownLatch release;
+    private ReconciliationStream stream;
+
+    public FetchRoundTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() {
+        queue = new JobQueue();
+        scheduler = new RecordingScheduler();
+        round = new FetchRound(queue, scheduler);
+        queue.addJobListener(round);
+        release = new CountDownLatch(1);
+        stream = mock(ReconciliationStream.class);
+        when(stream.getId()).thenReturn(1);
+        when(stream.getName()).thenReturn("Test Stream");
+    }
+
+    @Override
+    protected void tearDown() {
+        queue.dispose();
+        queue = null;
+        round = null;
+    }
+
+    public void testReconcilesOnceAfterAllSources() throws Exception {
+        QueuedJob fetch1 = queue.enqueue(new TestJob(release, false), "fetch1");
+        QueuedJob fetch2 = queue.enqueue(new TestJob(release, false), "fetch2");
+        QueuedJob assoc1 = queue.enqueue(new TestJob(null, false), "assoc1", fetch1);
+        QueuedJob assoc2 = queue.enqueue(new TestJob(null, false), "assoc2", fetch2);
+        startRound(fetch1, fetch2);
+        round.addReconciliation(stream, DAY1, DAY2, JobPriority.SCHEDULED, Arrays.asList(assoc1));
+        round.addReconciliation(stream, DAY2, DAY3, JobPriority.INTERACTIVE, Arrays.asList(assoc2));
+        round.fetchesQueued();
+        assertTrue(scheduler.scheduled.isEmpty());
+
+        release.countDown();
+        assertTrue(scheduler.await());
+        assertEquals(1, scheduler.scheduled.size());
+        Scheduled scheduled = scheduler.scheduled.get(0);
+        assertEquals(DAY1, scheduled.startTime);
+        assertEquals(DAY3, scheduled.endTime);
+        assertEquals(JobPriority.INTERACTIVE, scheduled.priority);
+        assertEquals(Arrays.asList(assoc1, assoc2), scheduled.assocJobs);
+        assertTrue(scheduled.allFinished);
+    }
+
+    public void testDropsFailedAssociation() throws Exception {
+        QueuedJob fetch1 = queue.enqueue(new TestJob(release, false), "fetch1");
+        QueuedJob fetch2 = queue.enqueue(new TestJob(release, false), "fetch2");
+        QueuedJob assoc1 = queue.enqueue(new TestJob(null, false), "assoc1", fetch1);
+        QueuedJob assoc2 = queue.enqueue(new TestJob(null, true), "assoc2", fetch2);
+        startRound(fetch1, fetch2);
+        round.addReconciliation(stream, DAY1, DAY2, JobPriority.SCHEDULED, Arrays.asList(assoc1));
+        round.addReconciliation(stream, DAY2, DAY3, JobPriority.SCHEDULED, Arrays.asList(assoc2));
+        round.fetchesQueued();
+
+        release.countDown();
+        assertTrue(scheduler.await());
+        assertEquals(1, scheduler.scheduled.size());
+        assertEquals(Arrays.asList(assoc1), scheduler.scheduled.get(0).assocJobs);
+    }
+
+    public void testDropsAssociationOfFailedFetch() throws Exception {
+        // The association job of a failed fetch never runs, so the round
+        // is never told that it finished
+        QueuedJob fetch1 = queue.enqueue(new TestJob(release, false), "fetch1");
+        QueuedJob fetch2 = queue.enqueue(new TestJob(release, true), "fetch2");
+        QueuedJob assoc1 = queue.enqueue(new TestJob(null, false), "assoc1", fetch1);
+        QueuedJob assoc2 = queue.enqueue(new TestJob(null, false), "assoc2", fetch2);
+        startRound(fetch1, fetch2);
+        round.addReconciliation(stream, DAY1, DAY2, JobPriority.SCHEDULED, Arrays.asList(assoc1));
+        round.addReconciliation(stream, DAY2, DAY3, JobPriority.SCHEDULED, Arrays.asList(assoc2));
+        round.fetchesQueued();
+
+        release.countDown();
+        assertTrue(scheduler.await());
+        assertEquals(1, scheduler.scheduled.size());
+        assertEquals(Arrays.asList(assoc1), scheduler.scheduled.get(0).assocJobs);
+        assertTrue(FetchRound.hasFailed(assoc2));
+    }
+
+    public void testSkipsStreamWhenEverySourceFails() throws Exception {
+        QueuedJob fetch1 = queue.enqueue(new TestJob(release, true), "fetch1");
+        QueuedJob assoc1 = queue.enqueue(new TestJob(null, false), "assoc1", fetch1);
+        startRound(fetch1);
+        round.addReconciliation(stream, DAY1, DAY2, JobPriority.SCHEDULED, Arrays.asList(assoc1));
+        round.fetchesQueued();
+
+        release.countDown();
+        // assoc1 is failed only after the round has been told about fetch1
+        long deadline = System.currentTimeMillis() + 10000;
+        while(!assoc1.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(assoc1.isFinished());
+        assertTrue(scheduler.scheduled.isEmpty());
+    }
+
+    public void testNoReconciliations() {
+        round.fetchesQueued();
+        assertTrue(scheduler.scheduled.isEmpty());
+    }
+
+    private void startRound(QueuedJob... fetchJobs) {
+        for(QueuedJob fetchJob : fetchJobs) {
+            round.addFetch(fetchJob);
+        }
+    }
+
+    private static class TestJob implements Job {
+        private final CountDownLatch release;
+        private final boolean fail;
+
+        TestJob(CountDownLatch release, boolean fail) {
+            this.release = release;
+            this.fail = fail;
+        }
+
+        @Override
+        public void execute(ProgressReporter progressReporter) throws Exception {
+            if(release != null) {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            if(fail) {
+                throw new Exception("Test failure");
+            }
+        }
+
+        @Override
+        public boolean isEquivalentTo(Job other) {
+            return false;
+        }
+
+        @Override
+        public boolean isConflictingWith(Job other) {
+            return false;
+        }
+    }
+
+    private static class Scheduled {
+        DateTime startTime;
+        DateTime endTime;
+        JobPriority priority;
+        List<QueuedJob> assocJobs;
+        boolean allFinished;
+    }
+
+    private static class RecordingScheduler implements FetchRound.ReconciliationScheduler {
+        final List<Scheduled> scheduled = Collections.synchronizedList(Lists.<Scheduled>newArrayList());
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void schedule(ReconciliationStream stream, DateTime startTime, DateTime endTime,
+                JobPriority priority, List<QueuedJob> assocJobs) {
+            Scheduled result = new Scheduled();
+            result.startTime = startTime;
+            result.endTime = endTime;
+            result.priority = priority;
+            result.assocJobs = Lists.newArrayList(assocJobs);
+            result.allFinished = true;
+            for(QueuedJob assocJob : assocJobs) {
+                result.allFinished &= assocJob.isFinished();
+            }
+            scheduled.add(result);
+            latch.countDown();
+        }
+
+        boolean await() throws InterruptedException {
+            return latch.await(10, TimeUnit.SECONDS);
+        }
+    }
+}
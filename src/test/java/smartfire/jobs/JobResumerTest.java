@@ -0,0 +1,130 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.Interval;
+import smartfire.database.PersistentJob;
+import static org.mockito.Mockito.*;
+
+public class JobResumerTest extends TestCase {
+
+    public JobResumerTest(String testName) {
+        super(testName);
+    }
+
+    public void testResumesInDependencyOrder() {
+        // Saved in the opposite order to their dependencies
+        List<PersistentJob> records = Arrays.asList(
+                record(3, "reconcile", 2),
+                record(2, "associate", 1),
+                record(1, "clump"));
+        RecordingResumer resumer = new RecordingResumer();
+
+        Map<Integer, String> resumed = JobResumer.resumeInOrder(records, resumer);
+
+        assertEquals(Arrays.asList("clump", "associate", "reconcile"), resumer.resumed);
+        assertEquals(Collections.<String>emptyList(), resumer.upstreams.get("clump"));
+        assertEquals(Arrays.asList("clump"), resumer.upstreams.get("associate"));
+        assertEquals(Arrays.asList("associate"), resumer.upstreams.get("reconcile"));
+        assertEquals(3, resumed.size());
+        assertTrue(resumer.discarded.isEmpty());
+    }
+
+    public void testDiscardsDependentsOfUnrecreatableJobs() {
+        List<PersistentJob> records = Arrays.asList(
+                record(1, "clump"),
+                record(2, "associate", 1),
+                record(3, "reconcile", 2),
+                record(4, "other"));
+        RecordingResumer resumer = new RecordingResumer();
+        resumer.unrecreatable.add("clump");
+
+        Map<Integer, String> resumed = JobResumer.resumeInOrder(records, resumer);
+
+        assertEquals(Sets.newHashSet("clump", "associate", "reconcile"), resumer.discarded);
+        assertEquals(Arrays.asList("clump", "other"), resumer.attempted);
+        assertEquals(Collections.singletonMap(4, "other"), resumed);
+    }
+
+    public void testMissingUpstreamIsTreatedAsCompleted() {
+        List<PersistentJob> records = Arrays.asList(
+                record(5, "reconcile", 2, 4),
+                record(4, "associate"));
+        RecordingResumer resumer = new RecordingResumer();
+
+        Map<Integer, String> resumed = JobResumer.resumeInOrder(records, resumer);
+
+        assertEquals(2, resumed.size());
+        assertEquals(Arrays.asList("associate", "reconcile"), resumer.resumed);
+        assertEquals(Arrays.asList("associate"), resumer.upstreams.get("reconcile"));
+        assertTrue(resumer.discarded.isEmpty());
+    }
+
+    public void testIntervalsRoundTrip() {
+        DateTime start = new DateTime(2012, 7, 1, 0, 0, 0, 0);
+        List<Interval> intervals = Arrays.asList(
+                new Interval(start, start.plusDays(1)),
+                new Interval(start.plusDays(1), start.plusDays(2)));
+        List<Interval> parsed = JobResumer.parseIntervals(JobResumer.formatIntervals(intervals));
+        assertEquals(intervals.size(), parsed.size());
+        for(int i = 0; i < intervals.size(); i++) {
+            assertTrue(intervals.get(i).isEqual(parsed.get(i)));
+        }
+    }
+
+    private static PersistentJob record(int id, String name, Integer... upstreamIds) {
+        PersistentJob record = mock(PersistentJob.class);
+        when(record.getId()).thenReturn(id);
+        when(record.getName()).thenReturn(name);
+        when(record.getUpstreamIds()).thenReturn(Arrays.asList(upstreamIds));
+        return record;
+    }
+
+    private static class RecordingResumer implements JobResumer.Resumer<String> {
+        final Set<String> unrecreatable = Sets.newHashSet();
+        final List<String> attempted = Lists.newArrayList();
+        final List<String> resumed = Lists.newArrayList();
+        final Map<String, List<String>> upstreams = Maps.newHashMap();
+        final Set<String> discarded = Sets.newHashSet();
+
+        @Override
+        public String resume(PersistentJob record, List<String> upstreamJobs) {
+            attempted.add(record.getName());
+            if(unrecreatable.contains(record.getName())) {
+                return null;
+            }
+            resumed.add(record.getName());
+            upstreams.put(record.getName(), Lists.newArrayList(upstreamJobs));
+            return record.getName();
+        }
+
+        @Override
+        public void discard(PersistentJob record) {
+            discarded.add(record.getName());
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.jobs;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.ReadableDateTime;
+import smartfire.database.Clump;
+import smartfire.database.Event;
+import smartfire.database.EventDao;
+import smartfire.database.EventDay;
+import smartfire.database.Fire;
+import smartfire.database.FireDao;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.ReconciliationStreamDao;
+import smartfire.database.ReconciliationWeighting;
+import smartfire.database.Source;
+import smartfire.func.reconcile.DefaultReconciliationMethod;
+import smartfire.queue.ProgressReporter;
+import static org.mockito.Mockito.*;
+
+public class ReconciliationJobTest extends TestCase {
+    private static final DateTime DAY0 = new DateTime(2012, 8, 1, 0, 0, 0, 0, DateTimeZone.UTC);
+    private static final DateTime DAY1 = DAY0.plusDays(1);
+    private static final DateTime DAY2 = DAY0.plusDays(2);
+    private GeometryFactory factory;
+
+    public ReconciliationJobTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() {
+        factory = new GeometryFactory();
+    }
+
+    @Override
+    protected void tearDown() {
+        factory = null;
+    }
+
+    public void testSerialReconciliation() throws Exception {
+        Scenario scenario = new Scenario();
+        scenario.run(1, true);
+
+        // f0 and f1 start a new event together
+        Event first = scenario.eventOf("f0");
+        assertSame(first, scenario.eventOf("f1"));
+        assertFalse(scenario.existingEvents.contains(first));
+
+        // f2 reaches both E0 and E1, merging them
+        Event merged = scenario.eventOf("f2");
+        assertSame(merged, scenario.eventOf("g0"));
+        assertSame(merged, scenario.eventOf("g1"));
+        assertTrue(scenario.eventDao.deleted.contains(scenario.existingEvents.get(0)));
+        assertTrue(scenario.eventDao.deleted.contains(scenario.existingEvents.get(1)));
+
+        // f3 is alone, f4 joins E2, and E3 is left alone
+        assertEquals(1, scenario.eventOf("f3").getFires().size());
+        assertSame(scenario.existingEvents.get(2), scenario.eventOf("f4"));
+        assertEquals(1, scenario.existingEvents.get(3).getFires().size());
+        assertEquals(5, scenario.eventDao.events.size());
+    }
+
+    public void testParallelReconciliationMatchesSerial() throws Exception {
+        assertParallelMatchesSerial(false);
+    }
+
+    public void testParallelDeferredReconciliationMatchesSerial() throws Exception {
+        assertParallelMatchesSerial(true);
+    }
+
+    private void assertParallelMatchesSerial(boolean deferEventFields) throws Exception {
+        Scenario serial = new Scenario();
+        serial.run(1, deferEventFields);
+        Scenario parallel = new Scenario();
+        parallel.run(4, deferEventFields);
+
+        assertEquals(serial.describeEvents(), parallel.describeEvents());
+        assertEquals(serial.describeDeletedEvents(), parallel.describeDeletedEvents());
+        Map<String, Geometry> serialOutlines = serial.getOutlines();
+        Map<String, Geometry> parallelOutlines = parallel.getOutlines();
+        assertEquals(serialOutlines.keySet(), parallelOutlines.keySet());
+        for(Map.Entry<String, Geometry> entry : serialOutlines.entrySet()) {
+            assertTrue(entry.getKey(), entry.getValue().equalsTopo(parallelOutlines.get(entry.getKey())));
+        }
+    }
+
+    /**
+     * Existing events E0 to E3, each holding one fire g0 to g3, and new
+     * fires f0 to f4, all 100 m squares.  Each call builds the same layout
+     * out of new objects.
+     */
+    private class Scenario {
+        private final Source source = new Source("Test");
+        private final ReconciliationStream stream = new ReconciliationStream();
+        private final List<Fire> fires = Lists.newArrayList();
+        private final List<Event> existingEvents = Lists.newArrayList();
+        private final Map<Fire, String> fireNames = new IdentityHashMap<Fire, String>();
+        private final Map<String, Fire> firesByName = Maps.newHashMap();
+        private final StubEventDao eventDao = new StubEventDao();
+        private final FireDao fireDao = mock(FireDao.class);
+        private final ReconciliationStreamDao streamDao = mock(ReconciliationStreamDao.class);
+
+        Scenario() {
+            source.setFireNameField("name");
+            stream.setName("Test");
+            stream.setReconciliationMethod(DefaultReconciliationMethod.class.getName());
+            stream.put("maxNumBackwardDays", "");
+            ReconciliationWeighting weighting = new ReconciliationWeighting();
+            weighting.setSource(source);
+            weighting.setReconciliationStream(stream);
+            weighting.setLocationUncertainty(1.0);
+            weighting.setStartDateUncertainty(1);
+            weighting.setEndDateUncertainty(1);
+            stream.setReconciliationWeightings(Lists.newArrayList(weighting));
+
+            existingEvent("g0", 2000, 0);
+            existingEvent("g1", 3000, 0);
+            existingEvent("g2", 200, 100000);
+            existingEvent("g3", 50000, 50000);
+
+            fires.add(fire("f0", DAY1, 0, 0, 0.5));
+            fires.add(fire("f1", DAY1, 300, 0, 0.75));
+            fires.add(fire("f2", DAY1, 2500, 0, 0.5));
+            fires.add(fire("f3", DAY1, 100000, 0, 0.75));
+            fires.add(fire("f4", DAY1, 0, 100000, 0.5));
+
+            when(streamDao.getById((Integer) null)).thenReturn(stream);
+            when(fireDao.getByDate(source, DAY1, DAY2)).thenReturn(fires);
+        }
+
+        void run(int numThreads, boolean deferEventFields) throws Exception {
+            ReconciliationJob job = new ReconciliationJob(null, fireDao, eventDao, streamDao, stream,
+                    DAY1, DAY2, deferEventFields, numThreads, 1, false);
+            job.execute(new ProgressReporter());
+        }
+
+        Event eventOf(String fireName) {
+            Event result = null;
+            for(Event event : eventDao.events) {
+                if(event.getFires().contains(firesByName.get(fireName))) {
+                    assertNull(fireName + " is in more than one event", result);
+                    result = event;
+                }
+            }
+            assertNotNull(fireName + " is in no event", result);
+            return result;
+        }
+
+        private void existingEvent(String name, double x, double y) {
+            Fire fire = fire(name, DAY0, x, y, 0.5);
+            Event event = new Event();
+            event.addFire(fire);
+            event.setReconciliationStream(stream);
+            event.setShape(fire.getShape());
+            event.setStartDate(fire.getStartDateTime());
+            event.setEndDate(fire.getEndDateTime());
+            event.setTotalArea(fire.getArea());
+            existingEvents.add(event);
+            eventDao.events.add(event);
+        }
+
+        private Fire fire(String name, DateTime day, double x, double y, double probability) {
+            Clump clump = new Clump();
+            clump.setSource(source);
+            clump.setStartDate(day.plusHours(1));
+            clump.setEndDate(day.plusHours(2));
+            clump.setShape(factory.toGeometry(new Envelope(x, x + 100, y, y + 100)));
+            clump.setArea(10000);
+            Fire fire = new Fire();
+            fire.setSource(source);
+            fire.addClump(clump);
+            fire.setArea(10000);
+            fire.setProbability(probability);
+            fire.setFireType("WF");
+            // Give each fire its own attribute, so that the attributes of
+            // an event don't depend on the order its fires were added in
+            fire.put("fire " + name, name);
+            fireNames.put(fire, name);
+            firesByName.put(name, fire);
+            return fire;
+        }
+
+        /**
+         * Describes the events left in the database, in a fixed order.
+         */
+        Set<String> describeEvents() {
+            Set<String> result = Sets.newTreeSet();
+            for(Event event : eventDao.events) {
+                StringBuilder days = new StringBuilder();
+                for(EventDay day : new TreeMap<String, EventDay>(indexDays(event)).values()) {
+                    days.append(day.getEventDate()).append('=').append(day.getDailyArea()).append(' ');
+                }
+                result.add(describeMembers(event)
+                        + " name=" + event.getDisplayName()
+                        + " start=" + event.getStartDateTime()
+                        + " end=" + event.getEndDateTime()
+                        + " area=" + event.getTotalArea()
+                        + " probability=" + event.getProbability()
+                        + " type=" + event.getFireType()
+                        + " days=" + days
+                        + " attributes=" + new TreeMap<String, String>(event));
+            }
+            return result;
+        }
+
+        /**
+         * Gets the indexes of the existing events that were merged away.
+         */
+        List<Integer> describeDeletedEvents() {
+            List<Integer> result = Lists.newArrayList();
+            for(int i = 0; i < existingEvents.size(); i++) {
+                if(eventDao.deleted.contains(existingEvents.get(i))) {
+                    result.add(i);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Gets the outline of each event, keyed by its fires.
+         */
+        Map<String, Geometry> getOutlines() {
+            Map<String, Geometry> result = Maps.newHashMap();
+            for(Event event : eventDao.events) {
+                result.put(describeMembers(event), event.getShape());
+            }
+            return result;
+        }
+
+        private String describeMembers(Event event) {
+            Set<String> members = Sets.newTreeSet();
+            for(Fire fire : event.getFires()) {
+                members.add(fireNames.get(fire));
+            }
+            return members.toString();
+        }
+
+        private Map<String, EventDay> indexDays(Event event) {
+            Map<String, EventDay> result = Maps.newHashMap();
+            for(EventDay day : event.getEventDays()) {
+                result.put(day.getEventDate().toString(), day);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Keeps Events in memory in place of the database.
+     */
+    private static class StubEventDao extends EventDao {
+        private final Set<Event> events = Sets.newLinkedHashSet();
+        private final Set<Event> deleted = Sets.newHashSet();
+
+        StubEventDao() {
+            super(null);
+        }
+
+        @Override
+        public List<Event> getByDate(ReconciliationStream stream, ReadableDateTime start, ReadableDateTime end) {
+            return Lists.newArrayList(events);
+        }
+
+        @Override
+        public void save(Event event) {
+            events.add(event);
+        }
+
+        @Override
+        public void delete(Event event) {
+            events.remove(event);
+            deleted.add(event);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.layer;
+
+import com.google.common.collect.ImmutableMap;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import junit.framework.TestCase;
+import smartfire.database.ReconciliationStream;
+import smartfire.database.SummaryDataLayer;
+import static org.mockito.Mockito.*;
+
+public class ReverseGeocoderTest extends TestCase {
+    private GeometryFactory factory;
+    private ReverseGeocoder geocoder;
+
+    public ReverseGeocoderTest(String testName) {
+        super(testName);
+    }
+
+    @Override
+    protected void setUp() {
+        factory = new GeometryFactory();
+        // Two counties side by side, inside a state that is indexed after
+        // them, and an overlapping "county" indexed last
+        geocoder = new ReverseGeocoder(Arrays.asList(
+                boundary(0, 10, ImmutableMap.of("CNTY", "West")),
+                boundary(10, 20, ImmutableMap.of("CNTY", "East")),
+                boundary(0, 20, ImmutableMap.of("CNTY", "Whole", "STATE", "Test", "CNTRY", "USA")),
+                boundary(5, 15, ImmutableMap.of("CNTY", "Overlap"))));
+    }
+
+    @Override
+    protected void tearDown() {
+        factory = null;
+        geocoder = null;
+    }
+
+    public void testLookup() {
+        Map<String, String> expected = ImmutableMap.of("CNTY", "West", "STATE", "Test", "CNTRY", "USA");
+        assertEquals(expected, geocoder.lookup(point(2, 5)));
+    }
+
+    public void testEarlierBoundaryWins() {
+        assertEquals("West", geocoder.lookup(point(7, 5)).get("CNTY"));
+        assertEquals("East", geocoder.lookup(point(13, 5)).get("CNTY"));
+    }
+
+    public void testPointOnEdge() {
+        // Both counties cover their shared edge; the first one wins
+        assertEquals("West", geocoder.lookup(point(10, 5)).get("CNTY"));
+    }
+
+    public void testPointOutside() {
+        assertTrue(geocoder.lookup(point(30, 5)).isEmpty());
+    }
+
+    public void testEmptyIndex() {
+        ReverseGeocoder empty = new ReverseGeocoder(Collections.<ReverseGeocoder.Boundary>emptyList());
+        assertTrue(empty.lookup(point(2, 5)).isEmpty());
+    }
+
+    public void testStreamWithoutLayers() {
+        assertTrue(ReverseGeocoder.forStream(null, null).lookup(point(2, 5)).isEmpty());
+        ReverseGeocoder result = ReverseGeocoder.forStream(null, new ReconciliationStream());
+        assertTrue(result.lookup(point(2, 5)).isEmpty());
+        assertSame(result, ReverseGeocoder.forLayers(null, Collections.<SummaryDataLayer>emptyList()));
+    }
+
+    public void testGetBuilt() {
+        ReconciliationStream stream = mock(ReconciliationStream.class);
+        when(stream.getId()).thenReturn(-1);
+        assertTrue(ReverseGeocoder.getBuilt(null).lookup(point(2, 5)).isEmpty());
+        assertTrue(ReverseGeocoder.getBuilt(new ReconciliationStream()).lookup(point(2, 5)).isEmpty());
+
+        ReverseGeocoder built = ReverseGeocoder.forStream(null, -1, Collections.<SummaryDataLayer>emptyList());
+        assertSame(built, ReverseGeocoder.getBuilt(stream));
+    }
+
+    private ReverseGeocoder.Boundary boundary(double minX, double maxX, Map<String, String> attributes) {
+        Geometry shape = factory.toGeometry(new Envelope(minX, maxX, 0, 10));
+        return new ReverseGeocoder.Boundary(shape, attributes);
+    }
+
+    private Point point(double x, double y) {
+        return factory.createPoint(new Coordinate(x, y));
+    }
+}
@@ -0,0 +1,146 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.layer;
+
+import com.google.common.collect.Lists;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import smartfire.util.ShapefileUtil;
+import smartfire.util.ShapefileUtil.SharedShapefile;
+
+public class SharedShapefileTest extends ShapefileTest {
+    public SharedShapefileTest(String testName) {
+        super(testName);
+    }
+
+    public void testSourceIsShared() {
+        SharedShapefile first = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+        SharedShapefile second = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+        assertSame(first.getSource(), second.getSource());
+        first.release();
+        second.release();
+
+        // The source stays open for the next read
+        SharedShapefile third = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+        assertSame(first.getSource(), third.getSource());
+        third.release();
+    }
+
+    public void testReleasedTooManyTimes() {
+        SharedShapefile shapefile = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+        shapefile.release();
+        try {
+            shapefile.release();
+            fail("Expected an IllegalStateException");
+        } catch(IllegalStateException expected) {
+            // OK
+        }
+    }
+
+    public void testModifiedFileWaitsForReaders() throws Exception {
+        SharedShapefile old = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+        int expected = countFeatures(old.getSource());
+        SimpleFeatureIterator features = old.getSource().getFeatures().features();
+        try {
+            assertTrue(features.hasNext());
+            features.next();
+            int count = 1;
+
+            touch();
+            SharedShapefile reopened = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+            assertNotSame(old.getSource(), reopened.getSource());
+            assertEquals(expected, countFeatures(reopened.getSource()));
+            reopened.release();
+
+            // The old source is still open for the read in progress
+            while(features.hasNext()) {
+                features.next();
+                count++;
+            }
+            assertEquals(expected, count);
+        } finally {
+            features.close();
+            old.release();
+        }
+    }
+
+    public void testConcurrentReadsWhileModified() throws Exception {
+        SharedShapefile shapefile = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+        final int expected = countFeatures(shapefile.getSource());
+        shapefile.release();
+
+        final int NUM_THREADS = 4;
+        final int NUM_READS = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            List<Future<Integer>> results = Lists.newArrayList();
+            for(int i = 0; i < NUM_THREADS; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        int numRead = 0;
+                        for(int j = 0; j < NUM_READS; j++) {
+                            SharedShapefile shared = ShapefileUtil.acquireSharedShapefile(shapefilePath);
+                            try {
+                                assertEquals(expected, countFeatures(shared.getSource()));
+                                numRead++;
+                            } finally {
+                                shared.release();
+                            }
+                        }
+                        return numRead;
+                    }
+                }));
+            }
+            for(int i = 0; i < 10; i++) {
+                touch();
+                Thread.sleep(20);
+            }
+            for(Future<Integer> result : results) {
+                assertEquals(NUM_READS, result.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void touch() {
+        File file = new File(shapefilePath);
+        assertTrue(file.setLastModified(file.lastModified() + 1000));
+    }
+
+    private static int countFeatures(SimpleFeatureSource source) throws IOException {
+        int count = 0;
+        SimpleFeatureIterator features = source.getFeatures().features();
+        try {
+            while(features.hasNext()) {
+                features.next();
+                count++;
+            }
+        } finally {
+            features.close();
+        }
+        return count;
+    }
+}
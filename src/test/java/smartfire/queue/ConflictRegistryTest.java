@@ -0,0 +1,147 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.joda.time.DateTime;
+
+public class ConflictRegistryTest extends TestCase {
+    private static final DateTime DAY1 = new DateTime(2012, 8, 1, 0, 0, 0, 0);
+    private static final DateTime DAY2 = DAY1.plusDays(1);
+    private static final DateTime DAY3 = DAY1.plusDays(2);
+    private static final DateTime DAY4 = DAY1.plusDays(3);
+
+    public ConflictRegistryTest(String testName) {
+        super(testName);
+    }
+
+    private static class TestJob implements Job {
+        private final boolean conflictsWithEverything;
+
+        TestJob(boolean conflictsWithEverything) {
+            this.conflictsWithEverything = conflictsWithEverything;
+        }
+
+        @Override
+        public void execute(ProgressReporter progressReporter) throws Exception {
+        }
+
+        @Override
+        public boolean isEquivalentTo(Job other) {
+            return false;
+        }
+
+        @Override
+        public boolean isConflictingWith(Job other) {
+            return conflictsWithEverything;
+        }
+    }
+
+    private static QueuedJob newJob(String name, boolean conflictsWithEverything) {
+        return new QueuedJob(null, 0, new TestJob(conflictsWithEverything), name, JobPriority.SCHEDULED);
+    }
+
+    private static List<JobResource> exclusive(String name, DateTime start, DateTime end) {
+        return Collections.singletonList(JobResource.exclusive(name, start, end));
+    }
+
+    private static List<JobResource> shared(String name, DateTime start, DateTime end) {
+        return Collections.singletonList(JobResource.shared(name, start, end));
+    }
+
+    public void testOverlappingExclusiveResources() {
+        ConflictRegistry registry = new ConflictRegistry();
+        QueuedJob job1 = newJob("job1", false);
+        QueuedJob job2 = newJob("job2", false);
+        assertTrue(registry.acquire(job1, exclusive("fires:source:1", DAY1, DAY3)));
+        assertFalse(registry.acquire(job2, exclusive("fires:source:1", DAY2, DAY4)));
+        assertEquals(1, registry.getNumParked());
+
+        // Asking again while parked does not park the job twice
+        assertFalse(registry.acquire(job2, exclusive("fires:source:1", DAY2, DAY4)));
+        assertEquals(1, registry.getNumParked());
+
+        assertEquals(Arrays.asList(job2), registry.release(job1));
+        assertEquals(0, registry.getNumParked());
+        assertTrue(registry.holds(job2));
+        assertTrue(registry.acquire(job2, exclusive("fires:source:1", DAY2, DAY4)));
+    }
+
+    public void testTouchingIntervalsConflict() {
+        ConflictRegistry registry = new ConflictRegistry();
+        assertTrue(registry.acquire(newJob("job1", false), exclusive("clumps:source:1", DAY1, DAY2)));
+        assertFalse(registry.acquire(newJob("job2", false), exclusive("clumps:source:1", DAY2, DAY3)));
+    }
+
+    public void testIndependentResources() {
+        ConflictRegistry registry = new ConflictRegistry();
+        assertTrue(registry.acquire(newJob("job1", false), exclusive("fires:source:1", DAY1, DAY2)));
+        assertTrue(registry.acquire(newJob("job2", false), exclusive("fires:source:1", DAY3, DAY4)));
+        assertTrue(registry.acquire(newJob("job3", false), exclusive("fires:source:2", DAY1, DAY4)));
+        assertEquals(0, registry.getNumParked());
+    }
+
+    public void testSharedResources() {
+        ConflictRegistry registry = new ConflictRegistry();
+        QueuedJob reader1 = newJob("reader1", false);
+        QueuedJob reader2 = newJob("reader2", false);
+        QueuedJob writer = newJob("writer", false);
+        assertTrue(registry.acquire(reader1, shared("fires:source:1", DAY1, DAY3)));
+        assertTrue(registry.acquire(reader2, shared("fires:source:1", DAY2, DAY4)));
+        assertFalse(registry.acquire(writer, exclusive("fires:source:1", DAY3, DAY4)));
+
+        // The writer still conflicts with the second reader
+        assertTrue(registry.release(reader1).isEmpty());
+        assertEquals(1, registry.getNumParked());
+        assertEquals(Arrays.asList(writer), registry.release(reader2));
+    }
+
+    public void testLongResourceIsFound() {
+        ConflictRegistry registry = new ConflictRegistry();
+        assertTrue(registry.acquire(newJob("long", false), exclusive("events:stream:1", DAY1, DAY4)));
+        assertTrue(registry.acquire(newJob("short", false), exclusive("events:stream:1", DAY4.plusDays(1), DAY4.plusDays(2))));
+        assertFalse(registry.acquire(newJob("inside", false), exclusive("events:stream:1", DAY2, DAY3)));
+    }
+
+    public void testParkedJobsGrantedInOrder() {
+        ConflictRegistry registry = new ConflictRegistry();
+        QueuedJob holder = newJob("holder", false);
+        QueuedJob first = newJob("first", false);
+        QueuedJob second = newJob("second", false);
+        assertTrue(registry.acquire(holder, exclusive("fires:source:1", DAY1, DAY4)));
+        assertFalse(registry.acquire(first, exclusive("fires:source:1", DAY1, DAY2)));
+        assertFalse(registry.acquire(second, exclusive("fires:source:1", DAY2, DAY3)));
+
+        // The first parked job gets the resource; the second conflicts with it
+        assertEquals(Arrays.asList(first), registry.release(holder));
+        assertEquals(Arrays.asList(second), registry.release(first));
+    }
+
+    public void testJobsWithoutResources() {
+        ConflictRegistry registry = new ConflictRegistry();
+        QueuedJob resourceJob = newJob("resourceJob", false);
+        QueuedJob plainJob = newJob("plainJob", true);
+        assertTrue(registry.acquire(resourceJob, exclusive("fires:source:1", DAY1, DAY2)));
+        assertFalse(registry.acquire(plainJob, null));
+        assertEquals(Arrays.asList(plainJob), registry.release(resourceJob));
+        assertTrue(registry.release(plainJob).isEmpty());
+        assertFalse(registry.holds(plainJob));
+    }
+}
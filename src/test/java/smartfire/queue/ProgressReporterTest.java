@@ -0,0 +1,120 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import junit.framework.TestCase;
+
+public class ProgressReporterTest extends TestCase {
+
+    public ProgressReporterTest(String testName) {
+        super(testName);
+    }
+
+    public void testNotCancelledByDefault() {
+        ProgressReporter reporter = new ProgressReporter();
+        assertFalse(reporter.isCancelled());
+        reporter.checkCancelled();
+    }
+
+    public void testCancel() {
+        ProgressReporter reporter = new ProgressReporter();
+        reporter.cancel("Stop now");
+        assertTrue(reporter.isCancelled());
+        try {
+            reporter.checkCancelled();
+            fail("Expected a JobCancelledException");
+        } catch(JobCancelledException ex) {
+            assertEquals("Stop now", ex.getMessage());
+        }
+    }
+
+    public void testDeadline() {
+        ProgressReporter reporter = new ProgressReporter();
+        reporter.setDeadline(System.currentTimeMillis() + 60000);
+        assertFalse(reporter.isCancelled());
+        reporter.setDeadline(System.currentTimeMillis() - 1);
+        assertTrue(reporter.isCancelled());
+        try {
+            reporter.checkCancelled();
+            fail("Expected a JobCancelledException");
+        } catch(JobCancelledException ex) {
+            // expected
+        }
+    }
+
+    public void testCurrentThread() {
+        ProgressReporter reporter = new ProgressReporter();
+        ProgressReporter.setCurrent(reporter);
+        try {
+            ProgressReporter.checkCurrentThreadCancelled();
+            reporter.cancel("Stop now");
+            try {
+                ProgressReporter.checkCurrentThreadCancelled();
+                fail("Expected a JobCancelledException");
+            } catch(JobCancelledException ex) {
+                // expected
+            }
+        } finally {
+            ProgressReporter.setCurrent(null);
+        }
+        ProgressReporter.checkCurrentThreadCancelled();
+    }
+
+    public void testWorkerUsageIsAddedToMetrics() throws Exception {
+        ProgressReporter reporter = new ProgressReporter();
+        JobMetrics metrics = reporter.getMetrics();
+        ProgressReporter.setCurrent(reporter);
+        metrics.begin();
+        long workerAllocation = 32L * 1024 * 1024;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Callable<Integer> task = ProgressReporter.forCurrentJob(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int total = 0;
+                    for(int i = 0; i < 32; i++) {
+                        byte[] block = new byte[1024 * 1024];
+                        total += block.length;
+                    }
+                    return total;
+                }
+            });
+            assertEquals(Integer.valueOf(32 * 1024 * 1024), executor.submit(task).get());
+        } finally {
+            executor.shutdown();
+            metrics.end();
+            ProgressReporter.setCurrent(null);
+        }
+        // The job thread itself allocated far less than the worker did
+        if(metrics.getAllocatedBytes() >= 0) {
+            assertTrue(metrics.getAllocatedBytes() >= workerAllocation);
+        }
+    }
+
+    public void testForCurrentJobWithoutJob() {
+        Callable<Integer> task = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return 1;
+            }
+        };
+        assertSame(task, ProgressReporter.forCurrentJob(task));
+    }
+}
@@ -0,0 +1,120 @@
+/*SMARTFIRE: Satellite Mapping Automated Reanalysis Tool for Fire Incident REconciliation
+Copyright (C) 2006-Present  USDA Forest Service AirFire Research Team and Sonoma Technology, Inc.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+package smartfire.queue;
+
+import java.util.List;
+import junit.framework.TestCase;
+
+public class ReadyJobQueueTest extends TestCase {
+
+    public ReadyJobQueueTest(String testName) {
+        super(testName);
+    }
+
+    private static class NoOpJob implements Job {
+        @Override
+        public void execute(ProgressReporter progressReporter) throws Exception {
+        }
+
+        @Override
+        public boolean isEquivalentTo(Job other) {
+            return false;
+        }
+
+        @Override
+        public boolean isConflictingWith(Job other) {
+            return false;
+        }
+    }
+
+    private static class OtherNoOpJob extends NoOpJob {
+    }
+
+    private static QueuedJob newJob(Job job, String name, JobPriority priority) {
+        return new QueuedJob(null, 0, job, name, priority);
+    }
+
+    public void testPriorityOrder() {
+        ReadyJobQueue ready = new ReadyJobQueue();
+        QueuedJob backfill = newJob(new NoOpJob(), "backfill", JobPriority.BACKFILL);
+        QueuedJob scheduled = newJob(new NoOpJob(), "scheduled", JobPriority.SCHEDULED);
+        QueuedJob interactive = newJob(new NoOpJob(), "interactive", JobPriority.INTERACTIVE);
+        assertTrue(ready.add(backfill));
+        assertTrue(ready.add(scheduled));
+        assertTrue(ready.add(interactive));
+
+        assertSame(interactive, ready.poll());
+        assertSame(scheduled, ready.poll());
+        assertSame(backfill, ready.poll());
+        assertNull(ready.poll());
+    }
+
+    public void testFairnessWithinPriority() {
+        ReadyJobQueue ready = new ReadyJobQueue();
+        QueuedJob a1 = newJob(new NoOpJob(), "a1", JobPriority.SCHEDULED);
+        QueuedJob a2 = newJob(new NoOpJob(), "a2", JobPriority.SCHEDULED);
+        QueuedJob a3 = newJob(new NoOpJob(), "a3", JobPriority.SCHEDULED);
+        QueuedJob b1 = newJob(new OtherNoOpJob(), "b1", JobPriority.SCHEDULED);
+        ready.add(a1);
+        ready.add(a2);
+        ready.add(a3);
+        ready.add(b1);
+
+        assertSame(a1, ready.poll());
+        assertSame(b1, ready.poll());
+        assertSame(a2, ready.poll());
+        assertSame(a3, ready.poll());
+    }
+
+    public void testDuplicateAdd() {
+        ReadyJobQueue ready = new ReadyJobQueue();
+        QueuedJob job = newJob(new NoOpJob(), "job", JobPriority.SCHEDULED);
+        assertTrue(ready.add(job));
+        assertFalse(ready.add(job));
+        assertSame(job, ready.poll());
+        assertNull(ready.poll());
+        assertTrue(ready.add(job));
+    }
+
+    public void testRaisePriority() {
+        ReadyJobQueue ready = new ReadyJobQueue();
+        QueuedJob scheduled = newJob(new NoOpJob(), "scheduled", JobPriority.SCHEDULED);
+        QueuedJob backfill = newJob(new NoOpJob(), "backfill", JobPriority.BACKFILL);
+        ready.add(scheduled);
+        ready.add(backfill);
+
+        backfill.setPriority(JobPriority.INTERACTIVE);
+        ready.raisePriority(backfill, JobPriority.INTERACTIVE);
+        assertSame(backfill, ready.poll());
+        assertSame(scheduled, ready.poll());
+    }
+
+    public void testStatistics() {
+        ReadyJobQueue ready = new ReadyJobQueue();
+        ready.add(newJob(new NoOpJob(), "one", JobPriority.SCHEDULED));
+        ready.add(newJob(new NoOpJob(), "two", JobPriority.SCHEDULED));
+        ready.poll();
+
+        List<JobWaitStatistics> stats = ready.getStatistics();
+        assertEquals(JobPriority.values().length, stats.size());
+        JobWaitStatistics scheduled = stats.get(JobPriority.SCHEDULED.ordinal());
+        assertEquals(JobPriority.SCHEDULED, scheduled.getPriority());
+        assertEquals(1, scheduled.getNumStarted());
+        assertEquals(1, scheduled.getNumWaiting());
+        assertEquals(0, stats.get(JobPriority.BACKFILL.ordinal()).getNumStarted());
+    }
+}